@@ -0,0 +1,304 @@
+package applications;
+
+import core.DTNHost;
+import core.DTNSim;
+import core.SimClock;
+import core.SimError;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import routing.util.MaliciousRouters;
+
+/**
+ * Periodic malicious router detection. At every detection period the routers' input features are
+ * collected into a matrix (one row per router) on the simulation thread and the rows are evaluated
+ * by a classification model (e.g., {@link PmmlModel#newRowEvaluator(String)}), split to a number of
+ * worker threads. The routers the model classifies as malicious are published as an immutable
+ * {@link MaliciousRouters} snapshot.
+ *
+ * <p>Normally the snapshot is published before the simulation continues. If overlapping is
+ * enabled, the evaluation runs in the background while the simulation continues and its result is
+ * published at the next detection period, i.e., the published snapshot is one period old. Either
+ * way the results don't depend on thread scheduling.
+ */
+public class MaliciousRouterDetector {
+  /** Model result that marks a router malicious */
+  public static final double MALICIOUS = 1.0;
+
+  private static ExecutorService executor;
+
+  static {
+    DTNSim.registerForReset(MaliciousRouterDetector.class.getCanonicalName());
+    MaliciousRouterDetector.reset();
+  }
+
+  private final String[] inputNames;
+  private final Supplier<ToDoubleFunction<double[]>> evaluators;
+  private final int nrofThreads;
+  private final boolean overlap;
+
+  private MaliciousRouters published;
+  /** batch whose result is published at the next period (overlapping mode only) */
+  private Batch pending;
+  private final List<Period> periods;
+
+  /**
+   * Creates a new detector
+   *
+   * @param inputNames Names of the model's input features, in the order the evaluators expect them
+   * @param evaluators Creates an evaluation function for a worker; every worker calls this once per
+   *     period and uses the function from a single thread
+   * @param nrofThreads Number of threads used for the evaluation. Values smaller than two evaluate
+   *     all rows in one thread.
+   * @param overlap If true, evaluation overlaps with the simulation and results are published one
+   *     period late
+   */
+  public MaliciousRouterDetector(
+      String[] inputNames,
+      Supplier<ToDoubleFunction<double[]>> evaluators,
+      int nrofThreads,
+      boolean overlap) {
+    this.inputNames = inputNames.clone();
+    this.evaluators = evaluators;
+    this.nrofThreads = Math.max(1, nrofThreads);
+    this.overlap = overlap;
+    this.published = MaliciousRouters.EMPTY;
+    this.periods = new ArrayList<Period>();
+
+    if (this.overlap || this.nrofThreads > 1) {
+      MaliciousRouterDetector.reset();
+      MaliciousRouterDetector.executor =
+          Executors.newFixedThreadPool(
+              this.nrofThreads,
+              r -> {
+                Thread t = new Thread(r, "RouterDetector");
+                t.setDaemon(true);
+                return t;
+              });
+    }
+  }
+
+  /**
+   * Creates a detector that uses a PMML model
+   *
+   * @param model The model
+   * @param target Name of the model's target field
+   * @param nrofThreads Number of evaluation threads
+   * @param overlap Should evaluation overlap with the simulation
+   * @return The detector
+   */
+  public static MaliciousRouterDetector forModel(
+      PmmlModel model, String target, int nrofThreads, boolean overlap) {
+    return new MaliciousRouterDetector(
+        model.getInputNames(), () -> model.newRowEvaluator(target), nrofThreads, overlap);
+  }
+
+  /** Stops the worker threads of the previous run (if any) */
+  public static void reset() {
+    if (MaliciousRouterDetector.executor != null) {
+      MaliciousRouterDetector.executor.shutdownNow();
+    }
+    MaliciousRouterDetector.executor = null;
+  }
+
+  /**
+   * Runs the detection for one period
+   *
+   * @param routers The routers to classify
+   * @param features Returns the input features of a router by name; missing and non-numeric
+   *     features are passed to the model as missing values
+   * @return The snapshot that is valid from now until the next period
+   */
+  public MaliciousRouters detect(
+      List<DTNHost> routers, Function<DTNHost, Map<String, ?>> features) {
+    long start = System.nanoTime();
+    Batch done = this.pending;
+    Batch b = new Batch(routers, features);
+    if (this.overlap) {
+      this.pending = b;
+    } else {
+      done = b;
+    }
+    if (done != null) {
+      this.publish(done);
+      this.periods.add(
+          new Period(
+              done.time,
+              done.routers.length,
+              this.published.size(),
+              done.getLatency(),
+              System.nanoTime() - start));
+    }
+    return this.published;
+  }
+
+  /**
+   * Returns the latest published snapshot
+   *
+   * @return the snapshot
+   */
+  public MaliciousRouters getPublished() {
+    return this.published;
+  }
+
+  /**
+   * Returns true if the evaluation overlaps with the simulation
+   *
+   * @return true if the results are published one period late
+   */
+  public boolean isOverlapping() {
+    return this.overlap;
+  }
+
+  /**
+   * Returns the statistics of the published detection periods
+   *
+   * @return the periods in the order they were published
+   */
+  public List<Period> getPeriods() {
+    return this.periods;
+  }
+
+  private void publish(Batch b) {
+    b.await();
+    List<DTNHost> malicious = new ArrayList<DTNHost>();
+    for (int i = 0; i < b.routers.length; i++) {
+      if (b.results[i] == MALICIOUS) {
+        malicious.add(b.routers[i]);
+      }
+    }
+    this.published = new MaliciousRouters(this.published.getVersion() + 1, b.time, malicious);
+  }
+
+  /** Feature matrix and results of one detection period */
+  private class Batch {
+    private final int time;
+    private final DTNHost[] routers;
+    private final double[][] features;
+    private final double[] results;
+    private final List<Future<?>> stripes;
+    private final long startNanos;
+    /** end time of each stripe's evaluation */
+    private final long[] endNanos;
+
+    private Batch(List<DTNHost> routers, Function<DTNHost, Map<String, ?>> features) {
+      String[] names = MaliciousRouterDetector.this.inputNames;
+      this.time = SimClock.getIntTime();
+      this.routers = routers.toArray(new DTNHost[0]);
+      this.features = new double[this.routers.length][names.length];
+      this.results = new double[this.routers.length];
+      for (int i = 0; i < this.routers.length; i++) {
+        Map<String, ?> values = features.apply(this.routers[i]);
+        for (int j = 0; j < names.length; j++) {
+          Object v = values == null ? null : values.get(names[j]);
+          this.features[i][j] = v instanceof Number ? ((Number) v).doubleValue() : Double.NaN;
+        }
+      }
+
+      int nrofStripes =
+          Math.max(1, Math.min(MaliciousRouterDetector.this.nrofThreads, this.routers.length));
+      this.endNanos = new long[nrofStripes];
+      this.stripes = new ArrayList<Future<?>>(nrofStripes);
+      this.startNanos = System.nanoTime();
+      for (int s = 0; s < nrofStripes; s++) {
+        final int stripe = s;
+        final int from = (int) ((long) this.routers.length * s / nrofStripes);
+        final int to = (int) ((long) this.routers.length * (s + 1) / nrofStripes);
+        Runnable work = () -> this.evaluate(stripe, from, to);
+        if (MaliciousRouterDetector.executor == null) {
+          work.run();
+        } else {
+          this.stripes.add(MaliciousRouterDetector.executor.submit(work));
+        }
+      }
+    }
+
+    private void evaluate(int stripe, int from, int to) {
+      ToDoubleFunction<double[]> evaluator = MaliciousRouterDetector.this.evaluators.get();
+      for (int i = from; i < to; i++) {
+        this.results[i] = evaluator.applyAsDouble(this.features[i]);
+      }
+      this.endNanos[stripe] = System.nanoTime();
+    }
+
+    /** Waits until all stripes are evaluated */
+    private void await() {
+      try {
+        for (Future<?> f : this.stripes) {
+          f.get();
+        }
+      } catch (InterruptedException e) {
+        throw new SimError("Router detection interrupted:" + e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new SimError("Router detection failed:" + cause);
+      }
+    }
+
+    /** Returns the time from the start of the evaluation until the last stripe was done */
+    private long getLatency() {
+      long end = this.startNanos;
+      for (long t : this.endNanos) {
+        end = Math.max(end, t);
+      }
+      return end - this.startNanos;
+    }
+  }
+
+  /** Statistics of one detection period */
+  public static class Period {
+    private final int time;
+    private final int nrofRouters;
+    private final int nrofMalicious;
+    private final long latencyNanos;
+    private final long blockedNanos;
+
+    private Period(
+        int time, int nrofRouters, int nrofMalicious, long latencyNanos, long blockedNanos) {
+      this.time = time;
+      this.nrofRouters = nrofRouters;
+      this.nrofMalicious = nrofMalicious;
+      this.latencyNanos = latencyNanos;
+      this.blockedNanos = blockedNanos;
+    }
+
+    /** Returns the simulation time when the features were collected */
+    public int getTime() {
+      return this.time;
+    }
+
+    public int getNrofRouters() {
+      return this.nrofRouters;
+    }
+
+    public int getNrofMalicious() {
+      return this.nrofMalicious;
+    }
+
+    /** Returns the real time (nanoseconds) from the start to the end of the evaluation */
+    public long getLatencyNanos() {
+      return this.latencyNanos;
+    }
+
+    /**
+     * Returns the real time (nanoseconds) the simulation was blocked by the detection call that
+     * published the result. Includes collecting the next period's features if evaluation overlaps
+     * with the simulation.
+     */
+    public long getBlockedNanos() {
+      return this.blockedNanos;
+    }
+  }
+}
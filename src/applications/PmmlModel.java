@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 public class PmmlModel {
@@ -50,6 +51,42 @@ public class PmmlModel {
     var result = (Computable) this.evaluator.evaluate(arguments).get(target);
     return (double) result.getResult();
   }
+
+  /**
+   * Returns the names of the model's input fields in the order of {@link #getInputFields()}
+   *
+   * @return the input field names
+   */
+  public String[] getInputNames() {
+    var inputFields = this.evaluator.getInputFields();
+    String[] names = new String[inputFields.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = inputFields.get(i).getName();
+    }
+    return names;
+  }
+
+  /**
+   * Returns a function that evaluates feature rows. A row holds the values of the input fields in
+   * the order of {@link #getInputNames()}; NaN marks a missing value. The function reuses its
+   * argument map, so it must be used by one thread at a time, but each thread can have its own.
+   *
+   * @param target Name of the target field whose result is returned
+   * @return The evaluation function
+   */
+  public ToDoubleFunction<double[]> newRowEvaluator(String target) {
+    var inputFields = this.evaluator.getInputFields();
+    var arguments = new HashMap<String, FieldValue>();
+    return row -> {
+      for (int i = 0, n = inputFields.size(); i < n; i++) {
+        var inputField = inputFields.get(i);
+        arguments.put(inputField.getName(), inputField.prepare(Double.isNaN(row[i]) ? null : row[i]));
+      }
+      var result = (Computable) this.evaluator.evaluate(arguments).get(target);
+      return (double) result.getResult();
+    };
+  }
+
   public String getModelPath() {
     return modelPath;
   }
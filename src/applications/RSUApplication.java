@@ -2,9 +2,11 @@ package applications;
 
 import core.Application;
 import core.DTNHost;
+import core.InterfaceTypes;
 import core.Settings;
 import core.SimClock;
 import core.SimScenario;
+import core.TrustStore;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealVector;
@@ -24,6 +26,8 @@ public class RSUApplication extends Application {
   public static final String INTERVAL = "interval";
   public static final String HOST_COUNT = "nrofHosts";
   public static final String APP_ID = "security.RSUApplication";
+  private static final int V2R = InterfaceTypes.idOf("V2R");
+  private static final int R2R = InterfaceTypes.idOf("R2R");
   private SimpleDirectedWeightedGraph<DTNHost, DefaultWeightedEdge> trustGraph;
   private final SimpleDirectedWeightedGraph<DTNHost, DefaultWeightedEdge> socialGraph;
   private int interval;
@@ -64,7 +68,7 @@ public class RSUApplication extends Application {
       // Somehow this method may be called twice in 1 second simulation time
       // although Scenario.updateInterval is set to 1
       once = true;
-      var contactList = host.getNeighborsByInterface("V2R");
+      var contactList = host.getNeighborsByInterface(V2R);
       if (contactList.size() > 2) {
         // do not aggregate trusts if there are too few hosts in the range
         var trust = eigenWeightedTrust();
@@ -75,23 +79,22 @@ public class RSUApplication extends Application {
         }
       }
       // exchange trust values between RSUs
-      contactList = host.getNeighborsByInterface("R2R");
+      contactList = host.getNeighborsByInterface(R2R);
       var tmpTrust = new HashMap<DTNHost, Pair<Double, Integer>>();
       for (var c : contactList) {
-        c.getTrusts().forEach((k, v) -> {
-              tmpTrust.computeIfAbsent(k, key -> Pair.of(v.getLeft(), 1));
-              tmpTrust.computeIfPresent(k,
-                  (key, value) -> Pair.of(value.getLeft() + v.getLeft(), value.getRight() + 1));
-            }
-        );
+        TrustStore opinions = c.getTrusts();
+        for (int i = 0; i < opinions.size(); i++) {
+          double v = opinions.trustAt(i);
+          tmpTrust.computeIfAbsent(opinions.hostAt(i), key -> Pair.of(v, 1));
+          tmpTrust.computeIfPresent(opinions.hostAt(i),
+              (key, value) -> Pair.of(value.getLeft() + v, value.getRight() + 1));
+        }
       }
       tmpTrust.forEach((k, v) -> {
             double avg = v.getLeft() / v.getRight();
-            host.getTrusts()
-                .computeIfAbsent(k, key -> Pair.of(avg, (double) currentTime));
-            host.getTrusts().computeIfPresent(k,
-                (key, value) -> Pair.of(0.2 * avg + 0.8 * value.getLeft(),
-                    (double) currentTime));
+            // a new opinion is blended with the average itself
+            double old = host.getTrustForHost(k, avg);
+            host.updateTrust(k, 0.2 * avg + 0.8 * old, currentTime);
           }
       );
     } else {
@@ -101,29 +104,29 @@ public class RSUApplication extends Application {
     if (currentTime == SimScenario.getInstance().getEndTime() && host.toString().equals("R17")) {
       System.out.println(host);
       double threshold = SimScenario.getInstance().getDynamicThreshold();
-      var mhs =
-          host.getTrusts().entrySet().stream()
-              .filter(e -> e.getValue().getLeft() < threshold)
-              .collect(Collectors.toList());
-      for (var m : mhs) {
-        System.out.println(m.getKey());
+      TrustStore opinions = host.getTrusts();
+      for (int i = 0; i < opinions.size(); i++) {
+        if (opinions.trustAt(i) < threshold) {
+          System.out.println(opinions.hostAt(i));
+        }
       }
     }
   }
 
   private void collectInfo(DTNHost host) {
     var contactList =
-        host.getConnectionsByInterface("V2R").stream().map(c -> c.getOtherNode(host))
+        host.getConnectionsByInterface(V2R).stream().map(c -> c.getOtherNode(host))
             .collect(Collectors.toList());
     for (var c : contactList) {
       this.trustGraph.addVertex(c);
-      var opinions = c.getTrusts().entrySet();
-      for (var t : opinions) {
-        var e = Graphs.addEdgeWithVertices(this.trustGraph, c, t.getKey());
+      TrustStore opinions = c.getTrusts();
+      for (int i = 0; i < opinions.size(); i++) {
+        DTNHost t = opinions.hostAt(i);
+        var e = Graphs.addEdgeWithVertices(this.trustGraph, c, t);
         if (e == null) {
-          e = this.trustGraph.getEdge(c, t.getKey());
+          e = this.trustGraph.getEdge(c, t);
         }
-        this.trustGraph.setEdgeWeight(e, t.getValue().getLeft());
+        this.trustGraph.setEdgeWeight(e, opinions.trustAt(i));
       }
       var socialMetric = c.getSocial().entrySet();
       for (var t : socialMetric) {
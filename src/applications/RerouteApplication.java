@@ -4,15 +4,7 @@ import core.Application;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
-import core.SimScenario;
-import movement.RouterPlacementMovement;
-import org.apache.commons.lang3.tuple.Pair;
-
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Random;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import movement.RouterSpatialIndex;
 
 public class RerouteApplication extends Application {
     public static final String APP_ID = "security.reroute";;
@@ -37,18 +29,17 @@ public class RerouteApplication extends Application {
                 return msg;
             }
         } else {
-            var world = SimScenario.getInstance().getWorld();
-            var routers = world.getHosts().stream().filter(e -> e.toString().startsWith("R"));
             var vehiclePath = msg.getTo().getPath();
             if (vehiclePath == null) {
                 return null;
             } else {
                 var coords = vehiclePath.getCoords();
                 var dest = coords.get(coords.size() - 1);
-                var distances = new TreeSet<Pair<DTNHost, Double>>(Comparator.comparingDouble(Pair::getRight));
-                routers.forEach(e -> distances.add(Pair.of(e, e.getLocation().distance(dest))));
-
-                var to = distances.first().getLeft();
+                // the router closest to the vehicle's destination
+                var to = RouterSpatialIndex.getInstance().getNearest(dest);
+                if (to == null) {
+                    return null;
+                }
                 msg.setRerouteDest(msg.getTo());
                 msg.setTo(to);
                 return msg;
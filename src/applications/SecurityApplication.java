@@ -7,13 +7,10 @@ import core.Message;
 import core.Settings;
 import core.SimClock;
 import core.SimScenario;
+import core.TrustStore;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
-import org.apache.commons.math3.ml.distance.ManhattanDistance;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 
 public class SecurityApplication extends Application {
@@ -30,15 +27,13 @@ public class SecurityApplication extends Application {
   private double Tdefault = -1; // Default trust value
   private int warmup = 0;
 
-  private final ManhattanDistance distance = new ManhattanDistance();
-
   class Evidence {
     public int sat = 1;
     public int unsat = 0;
   }
 
   private final Map<DTNHost, Evidence> evidenceMap = new HashMap<>();
-  private final Map<DTNHost, Pair<Double, Double>> preTrust = new HashMap<>();
+  private final TrustStore preTrust = new TrustStore();
 
   public SecurityApplication(Settings s) {
     if (s.contains(PLT_S)) {
@@ -92,24 +87,17 @@ public class SecurityApplication extends Application {
     int currentTime = SimClock.getIntTime();
     if (currentTime < this.warmup) {
       // trust myself
-      preTrust.put(host, Pair.of(1.0, (double) currentTime));
+      preTrust.put(host, 1.0, currentTime);
       // trust three trams
       var world = SimScenario.getInstance().getWorld();
-      preTrust.put(world.getNodeByAddress(0), Pair.of(1.0, (double) currentTime));
-      preTrust.put(world.getNodeByAddress(1), Pair.of(1.0, (double) currentTime));
-      preTrust.put(world.getNodeByAddress(2), Pair.of(1.0, (double) currentTime));
+      preTrust.put(world.getNodeByAddress(0), 1.0, currentTime);
+      preTrust.put(world.getNodeByAddress(1), 1.0, currentTime);
+      preTrust.put(world.getNodeByAddress(2), 1.0, currentTime);
       return;
     }
     this.Tmin = SimScenario.getInstance().getDynamicThreshold();
     // decay trust values
-    for (var o : host.getTrusts().entrySet()) {
-      if (currentTime - o.getValue().getRight() > this.decayInterval) {
-        double newTrust = o.getValue().getLeft() * 0.9;
-        if (!(o.getValue().getLeft() >= this.Tmin && newTrust < this.Tmin)) {
-          host.updateTrust(o.getKey(), newTrust, currentTime);
-        }
-      }
-    }
+    host.getTrusts().decay(currentTime, this.decayInterval, 0.9, this.Tmin);
   }
 
   @Override
@@ -144,15 +132,10 @@ public class SecurityApplication extends Application {
         return;
       }
       // detect blackhole
-      // get interaction records from target host
-      var irList = peer.getInteractions();
+      // get interaction totals from target host
+      var totals = peer.getInteractionStore().getTotals();
       // calculate packet loss rate
-      int rec = 0, send = 0, create = 0;
-      for (var ir : irList) {
-        rec += ir.getReceive();
-        send += ir.getSend();
-        create += ir.getCreatedByMe();
-      }
+      int rec = totals.getReceive(), send = totals.getSend(), create = totals.getCreatedByMe();
       if (create == 0 && rec > 0) { // balck hole attackers do not create messages
         double lossRate = (double) (rec - send + create) / rec;
         if (lossRate > PLT) {
@@ -164,33 +147,12 @@ public class SecurityApplication extends Application {
         }
       }
       // detect badmouth
-      var peerTrusts = peer.getTrusts();
-      var selfTrusts = new HashMap<>(host.getTrusts());
-      // when comparing trust values, trust pre-trusted hosts
-      selfTrusts.putAll(this.preTrust);
-
-      var commonHosts = new HashSet<>(peerTrusts.keySet());
-      commonHosts.retainAll(selfTrusts.keySet());
-
-      if (commonHosts.size() > 0) {
-        // preserve order
-        var commonList = new ArrayList<>(commonHosts);
-
-        double[] peerTrustsArray = new double[commonList.size()];
-        double[] selfTrustsArray = new double[commonList.size()];
-        for (int i = 0; i < commonList.size(); i++) {
-          peerTrustsArray[i] = peerTrusts.get(commonList.get(i)).getLeft();
-          selfTrustsArray[i] = selfTrusts.get(commonList.get(i)).getLeft();
-        }
-
-        var dis = distance.compute(peerTrustsArray, selfTrustsArray) / commonList.size();
-
-        if (dis > BD) {
-          super.sendEventToListeners(
-              "badmouth", StringUtils.joinWith(",", currentTime, peer, dis), host);
-          genEvidenceAndOpinion(host, peer, -10);
-          return;
-        }
+      var dis = this.trustDistance(peer.getTrusts(), host.getTrusts());
+      if (dis > BD) { // false (NaN) if there are no common hosts
+        super.sendEventToListeners(
+            "badmouth", StringUtils.joinWith(",", currentTime, peer, dis), host);
+        genEvidenceAndOpinion(host, peer, -10);
+        return;
       }
       genEvidenceAndOpinion(host, peer, 1);
     }
@@ -201,6 +163,46 @@ public class SecurityApplication extends Application {
     return new SecurityApplication(this);
   }
 
+  /**
+   * Returns the mean absolute difference of the peer's and this host's trust in the hosts both
+   * have an opinion of. When comparing, the pre-trusted hosts are trusted fully. Walks the smaller
+   * side and looks the hosts up from the other one.
+   *
+   * @return the mean difference or NaN if there are no common hosts
+   */
+  private double trustDistance(TrustStore peerTrusts, TrustStore selfTrusts) {
+    double sum = 0;
+    int common = 0;
+    if (peerTrusts.size() <= selfTrusts.size() + this.preTrust.size()) {
+      for (int i = 0; i < peerTrusts.size(); i++) {
+        DTNHost h = peerTrusts.hostAt(i);
+        if (this.preTrust.contains(h)) {
+          sum += Math.abs(peerTrusts.trustAt(i) - this.preTrust.getTrust(h, 1.0));
+          common++;
+        } else if (selfTrusts.contains(h)) {
+          sum += Math.abs(peerTrusts.trustAt(i) - selfTrusts.getTrust(h, 0));
+          common++;
+        }
+      }
+    } else {
+      for (int i = 0; i < selfTrusts.size(); i++) {
+        DTNHost h = selfTrusts.hostAt(i);
+        if (!this.preTrust.contains(h) && peerTrusts.contains(h)) {
+          sum += Math.abs(peerTrusts.getTrust(h, 0) - selfTrusts.trustAt(i));
+          common++;
+        }
+      }
+      for (int i = 0; i < this.preTrust.size(); i++) {
+        DTNHost h = this.preTrust.hostAt(i);
+        if (peerTrusts.contains(h)) {
+          sum += Math.abs(peerTrusts.getTrust(h, 0) - this.preTrust.trustAt(i));
+          common++;
+        }
+      }
+    }
+    return common == 0 ? Double.NaN : sum / common;
+  }
+
   protected void genEvidenceAndOpinion(DTNHost host, DTNHost target, double value) {
     // always trust trams
     if (target.toString().startsWith("t")) {
@@ -3,13 +3,11 @@ package applications;
 import core.Application;
 import core.Connection;
 import core.DTNHost;
+import core.InterfaceTypes;
 import core.Settings;
 import core.SimClock;
-import org.jgrapht.Graphs;
-import org.jgrapht.graph.DefaultWeightedEdge;
-import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 import util.PathDistance;
-import util.WeightedJaccardSimilarity;
+import util.WeightedAdjacency;
 
 public class SocialApplication extends Application {
 
@@ -17,9 +15,20 @@ public class SocialApplication extends Application {
   public static final String SFT_S = "SFT";
   public static final String Warmup_S = "warmup";
   public static final String PathSim_S = "PST";
+
+  /**
+   * Maximum distance of matching path coordinates from the diagonal of the two paths -setting id
+   * ({@value}). Negative value (default) compares all coordinates.
+   */
+  public static final String PathBand_S = "pathBand";
+
+  private static final int V2V = InterfaceTypes.idOf("V2V");
+
   private double SFT;
   private int warmup = 0;
   private double pathSim = 0.5; // Path Sim Threshold
+  private int pathBand = -1;
+  private PathDistance pathDistance;
 
   public SocialApplication(Settings s) {
     if (s.contains(SFT_S)) {
@@ -31,6 +40,8 @@ public class SocialApplication extends Application {
     if (s.contains(PathSim_S)) {
       this.pathSim = s.getDouble(PathSim_S);
     }
+    this.pathBand = s.getInt(PathBand_S, this.pathBand);
+    this.pathDistance = new PathDistance(PathDistance.DEF_NEARBY, this.pathBand);
     super.setAppID(SOCIAL_APP_ID);
   }
 
@@ -39,6 +50,8 @@ public class SocialApplication extends Application {
     this.SFT = a.SFT;
     this.warmup = a.warmup;
     this.pathSim = a.pathSim;
+    this.pathBand = a.pathBand;
+    this.pathDistance = new PathDistance(PathDistance.DEF_NEARBY, this.pathBand);
   }
 
   @Override
@@ -64,19 +77,17 @@ public class SocialApplication extends Application {
       var peerPath = peer.getPath();
       var hostPath = host.getPath();
       if (peerPath != null && hostPath != null) {
-        ps = PathDistance.lcs(peerPath.getCoords(), hostPath.getCoords());
+        ps = this.pathDistance.similarity(hostPath.getCoords(), peerPath.getCoords());
       }
 
-      var interGraph =
-          new SimpleDirectedWeightedGraph<DTNHost, DefaultWeightedEdge>(DefaultWeightedEdge.class);
-      populateInterGraph(host, interGraph);
-      populateInterGraph(peer, interGraph);
-      var jaccard = new WeightedJaccardSimilarity<>(interGraph);
-      is = jaccard.predict(host, peer);
+      is =
+          WeightedAdjacency.jaccard(
+              host.getInteractionStore().getContactGraph(),
+              peer.getInteractionStore().getContactGraph());
 
       ds = this.SFT * ps + (1 - this.SFT) * is;
 
-      var neighbors = host.getNeighborsByInterface("V2V");
+      var neighbors = host.getNeighborsByInterface(V2V);
       var rs = 0.0;
       var count = 0;
       for (var neighbor : neighbors) {
@@ -95,20 +106,6 @@ public class SocialApplication extends Application {
     }
   }
 
-  public void populateInterGraph(
-      DTNHost host, SimpleDirectedWeightedGraph<DTNHost, DefaultWeightedEdge> interGraph) {
-    interGraph.addVertex(host);
-    var interactions = host.getInteractions();
-    for (var i : interactions) {
-      var e = Graphs.addEdgeWithVertices(interGraph, host, i.getTarget());
-      if (e == null) {
-        e = interGraph.getEdge(host, i.getTarget());
-      }
-      var w = interGraph.getEdgeWeight(e);
-      interGraph.setEdgeWeight(e, w + i.getSend() + i.getReceive());
-    }
-  }
-
   @Override
   public Application replicate() {
     return new SocialApplication(this);
@@ -6,12 +6,13 @@ package core;
 
 import movement.MovementModel;
 import movement.Path;
-import org.apache.commons.lang3.tuple.Pair;
 import routing.MessageRouter;
 import routing.util.RoutingInfo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,11 +41,28 @@ public class DTNHost implements Comparable<DTNHost> {
   private final List<MovementListener> movListeners;
   private final List<NetworkInterface> net;
   private final ModuleCommunicationBus comBus;
-  private final List<InteractionRecord> interactions;
-  private final Map<DTNHost, Pair<Double, Double>> trusts;
+  private final InteractionStore interactions;
+  private final TrustStore trusts;
   private final Map<DTNHost, Double> social;
   private Map<Coord,DTNHost> cDTNHosts;
   private String categoryMark;
+  /*
+   * Read-only views of the connections and neighbors, built when asked for. They are rebuilt after
+   * a link has gone up or down; the number of connections is checked too since interfaces remove a
+   * connection from their own list only after informing the hosts.
+   */
+  private boolean connectionsChanged = true;
+  private int viewedConnections;
+  private List<Connection> connectionView;
+  private List<DTNHost> neighborView;
+  /* connection views by interface type ID and neighbor views by connect type ID */
+  private List<Connection>[] connectionViewsByType;
+  private List<DTNHost>[] neighborViewsByInterface;
+  /** the first interface of every connect type, indexed by the {@link InterfaceTypes} ID */
+  private NetworkInterface[] interfacesByConnectType;
+  /** store that keeps a copy of the movement state, or null if there is none */
+  private PositionStore positions;
+  private int positionIndex;
 
   /**
    * Creates a new DTNHost.
@@ -76,6 +94,7 @@ public class DTNHost implements Comparable<DTNHost> {
       ni.setHost(this);
       this.net.add(ni);
     }
+    this.indexInterfaces();
 
     // TODO - think about the names of the interfaces and the nodes
     // this.name = groupId + ((NetworkInterface)net.get(1)).getAddress();
@@ -100,8 +119,8 @@ public class DTNHost implements Comparable<DTNHost> {
       }
     }
 
-    this.interactions = new ArrayList<>();
-    this.trusts = new HashMap<>();
+    this.interactions = new InteractionStore();
+    this.trusts = new TrustStore();
     this.social = new HashMap<>();
     this.cDTNHosts = new HashMap<>();
     this.categoryMark = null;
@@ -184,11 +203,13 @@ public class DTNHost implements Comparable<DTNHost> {
    * @param con The connection object whose state changed
    */
   public void connectionUp(Connection con) {
+    this.connectionsChanged = true;
     this.router.changedConnection(con);
     con.setUpTime(SimClock.getTime());
   }
 
   public void connectionDown(Connection con) {
+    this.connectionsChanged = true;
     this.router.changedConnection(con);
     con.setDownTime(SimClock.getTime());
     if (con.isInitiator(this)) {
@@ -215,39 +236,168 @@ public class DTNHost implements Comparable<DTNHost> {
   }
 
   /**
-   * Returns a copy of the list of connections this host has with other hosts
+   * Returns the connections this host has with other hosts. The list is a read-only view that is
+   * not updated when links go up or down; ask again for the current connections.
    *
-   * @return a copy of the list of connections this host has with other hosts
+   * @return the connections this host has with other hosts
    */
   public List<Connection> getConnections() {
-    List<Connection> lc = new ArrayList<>();
-
-    for (NetworkInterface i : this.net) {
-      lc.addAll(i.getConnections());
+    this.checkViews();
+    if (this.connectionView == null) {
+      List<Connection> lc = new ArrayList<>();
+      for (NetworkInterface i : this.net) {
+        lc.addAll(i.getConnections());
+      }
+      this.connectionView = Collections.unmodifiableList(lc);
     }
-
-    return lc;
+    return this.connectionView;
   }
 
   public List<Connection> getConnectionsByInterface(String connecttype) {
     return this.getInterfaceByConnectionType(connecttype).getConnections();
   }
+
+  /**
+   * Returns the connections of the first interface of a connect type
+   *
+   * @param connectTypeId {@link InterfaceTypes} ID of the interface's name
+   * @return the connections of the interface
+   */
+  public List<Connection> getConnectionsByInterface(int connectTypeId) {
+    return this.getInterfaceByConnectionType(connectTypeId).getConnections();
+  }
+
+  /**
+   * Returns the connections of the interfaces of a type (settings name space of the interface, see
+   * {@link NetworkInterface#getInterfaceType()}). Like {@link #getConnections()}, the list is a
+   * read-only view.
+   *
+   * @param interfaceType The interface type
+   * @return the connections of the interfaces of the type
+   */
+  public List<Connection> getConnectionsByInterfaceType(String interfaceType) {
+    int id = InterfaceTypes.find(interfaceType);
+    if (id < 0) {
+      return Collections.emptyList();
+    }
+    return this.getConnectionsByInterfaceType(id);
+  }
+
+  /**
+   * Returns the connections of the interfaces of a type. Like {@link #getConnections()}, the list
+   * is a read-only view.
+   *
+   * @param interfaceTypeId {@link InterfaceTypes} ID of the interface type
+   * @return the connections of the interfaces of the type
+   */
+  public List<Connection> getConnectionsByInterfaceType(int interfaceTypeId) {
+    this.checkViews();
+    if (interfaceTypeId >= this.connectionViewsByType.length) {
+      return Collections.emptyList();
+    }
+    List<Connection> lc = this.connectionViewsByType[interfaceTypeId];
+    if (lc == null) {
+      lc = new ArrayList<>();
+      for (int i = 0, n = this.net.size(); i < n; i++) {
+        NetworkInterface ni = this.net.get(i);
+        if (ni.getInterfaceTypeId() == interfaceTypeId) {
+          lc.addAll(ni.getConnections());
+        }
+      }
+      lc = Collections.unmodifiableList(lc);
+      this.connectionViewsByType[interfaceTypeId] = lc;
+    }
+    return lc;
+  }
+
+  /**
+   * Returns the hosts this host has connections with, in the order of {@link #getConnections()}.
+   * The list is a read-only view.
+   *
+   * @return the neighbors
+   */
   public List<DTNHost> getNeighbors() {
-    List<Connection> lc = this.getConnections();
-    List<DTNHost> neighbors = new ArrayList<>();
-    for (Connection c : lc) {
-      neighbors.add(c.getOtherNode(this));
+    this.checkViews();
+    if (this.neighborView == null) {
+      this.neighborView = this.neighborsOf(this.getConnections());
     }
-    return neighbors;
+    return this.neighborView;
   }
 
+  /**
+   * Returns the hosts this host has connections with using an interface. The list is a read-only
+   * view.
+   *
+   * @param connecttype Name of the interface
+   * @return the neighbors
+   */
   public List<DTNHost> getNeighborsByInterface(String connecttype) {
-    List<Connection> lc = this.getConnectionsByInterface(connecttype);
-    List<DTNHost> neighbors = new ArrayList<>();
+    int id = InterfaceTypes.find(connecttype);
+    if (id < 0) {
+      return this.neighborsOf(this.getConnectionsByInterface(connecttype));
+    }
+    return this.getNeighborsByInterface(id);
+  }
+
+  /**
+   * Returns the hosts this host has connections with using the first interface of a connect type.
+   * The list is a read-only view.
+   *
+   * @param connectTypeId {@link InterfaceTypes} ID of the interface's name
+   * @return the neighbors
+   */
+  public List<DTNHost> getNeighborsByInterface(int connectTypeId) {
+    this.checkViews();
+    if (connectTypeId >= this.neighborViewsByInterface.length) {
+      return this.neighborsOf(this.getConnectionsByInterface(connectTypeId));
+    }
+    List<DTNHost> neighbors = this.neighborViewsByInterface[connectTypeId];
+    if (neighbors == null) {
+      neighbors = this.neighborsOf(this.getConnectionsByInterface(connectTypeId));
+      this.neighborViewsByInterface[connectTypeId] = neighbors;
+    }
+    return neighbors;
+  }
+
+  private List<DTNHost> neighborsOf(List<Connection> lc) {
+    List<DTNHost> neighbors = new ArrayList<>(lc.size());
     for (Connection c : lc) {
       neighbors.add(c.getOtherNode(this));
     }
-    return neighbors;
+    return Collections.unmodifiableList(neighbors);
+  }
+
+  /** Indexes the interfaces by their connect type IDs and sizes the per type views */
+  @SuppressWarnings("unchecked")
+  private void indexInterfaces() {
+    int size = 0;
+    for (NetworkInterface ni : this.net) {
+      size = Math.max(size, Math.max(ni.getInterfaceTypeId(), ni.getConnectTypeId()) + 1);
+    }
+    this.interfacesByConnectType = new NetworkInterface[size];
+    for (NetworkInterface ni : this.net) {
+      if (this.interfacesByConnectType[ni.getConnectTypeId()] == null) {
+        this.interfacesByConnectType[ni.getConnectTypeId()] = ni;
+      }
+    }
+    this.connectionViewsByType = (List<Connection>[]) new List<?>[size];
+    this.neighborViewsByInterface = (List<DTNHost>[]) new List<?>[size];
+  }
+
+  /** Drops the connection and neighbor views if the connections have changed */
+  private void checkViews() {
+    int n = 0;
+    for (int i = 0, m = this.net.size(); i < m; i++) {
+      n += this.net.get(i).getConnections().size();
+    }
+    if (this.connectionsChanged || n != this.viewedConnections) {
+      this.connectionView = null;
+      this.neighborView = null;
+      Arrays.fill(this.connectionViewsByType, null);
+      Arrays.fill(this.neighborViewsByInterface, null);
+      this.viewedConnections = n;
+      this.connectionsChanged = false;
+    }
   }
 
   /**
@@ -266,6 +416,27 @@ public class DTNHost implements Comparable<DTNHost> {
    */
   public void setLocation(Coord location) {
     this.location = location.clone();
+    this.storePosition();
+  }
+
+  /**
+   * Makes the host keep its movement state also in a position store
+   *
+   * @param store The store
+   * @param index The host's index in the store
+   */
+  void setPositionStore(PositionStore store, int index) {
+    this.positions = store;
+    this.positionIndex = index;
+    this.storePosition();
+  }
+
+  /** Copies the movement state to the position store (if there is one) */
+  private void storePosition() {
+    if (this.positions != null) {
+      this.positions.set(
+          this.positionIndex, this.location, this.destination, this.speed, this.nextTimeToMove);
+    }
   }
 
   /**
@@ -352,12 +523,21 @@ public class DTNHost implements Comparable<DTNHost> {
   }
 
   protected NetworkInterface getInterfaceByConnectionType(String connecttype) {
-    for (NetworkInterface ni : this.net) {
-      if (ni.getConnectType().equals(connecttype)) {
-        return ni;
-      }
+    int id = InterfaceTypes.find(connecttype);
+    return id < 0 ? null : this.getInterfaceByConnectionType(id);
+  }
+
+  /**
+   * Returns the first interface of a connect type
+   *
+   * @param connectTypeId {@link InterfaceTypes} ID of the interface's name
+   * @return the interface or null if the host has no interface of the type
+   */
+  protected NetworkInterface getInterfaceByConnectionType(int connectTypeId) {
+    if (connectTypeId < 0 || connectTypeId >= this.interfacesByConnectType.length) {
+      return null;
     }
-    return null;
+    return this.interfacesByConnectType[connectTypeId];
   }
 
   /** Force a connection event */
@@ -402,10 +582,22 @@ public class DTNHost implements Comparable<DTNHost> {
    * @param simulateConnections Should network layer be updated too
    */
   public void update(boolean simulateConnections) {
+    if (this.updateInterfaces(simulateConnections)) {
+      this.updateRouter();
+    }
+  }
+
+  /**
+   * Updates node's network layer. This is the first half of {@link #update(boolean)}.
+   *
+   * @param simulateConnections Should network layer be updated too
+   * @return True if the radio is active and the router should be updated, false if not
+   */
+  boolean updateInterfaces(boolean simulateConnections) {
     if (!this.isRadioActive()) {
       // Make sure inactive nodes don't have connections
       this.tearDownAllConnections();
-      return;
+      return false;
     }
 
     if (simulateConnections) {
@@ -413,6 +605,11 @@ public class DTNHost implements Comparable<DTNHost> {
         i.update();
       }
     }
+    return true;
+  }
+
+  /** Updates node's router. This is the second half of {@link #update(boolean)}. */
+  void updateRouter() {
     this.router.update();
   }
 
@@ -442,6 +639,11 @@ public class DTNHost implements Comparable<DTNHost> {
    * @param timeIncrement How long time the node moves
    */
   public void move(double timeIncrement) {
+    this.moveOnPath(timeIncrement);
+    this.storePosition();
+  }
+
+  private void moveOnPath(double timeIncrement) {
     double possibleMovement;
     double distance;
     double dx, dy;
@@ -475,6 +677,38 @@ public class DTNHost implements Comparable<DTNHost> {
     this.location.translate(dx, dy);
   }
 
+  /**
+   * Moves the node towards its current destination if it can be done without reaching the
+   * destination. Unlike {@link #move(double)} this never asks the movement model for a new path or
+   * informs the movement listeners, so it does not touch any state shared with other hosts and can
+   * be called for several hosts concurrently. Activeness of the movement model must be checked by
+   * the caller.
+   *
+   * @param timeIncrement How long time the node moves
+   * @return True if the move was done, false if nothing was done and the node must be moved using
+   *     {@link #move(double)}
+   */
+  boolean moveWithinLeg(double timeIncrement) {
+    if (SimClock.getTime() < this.nextTimeToMove) {
+      return true;
+    }
+    if (this.destination == null) {
+      return false;
+    }
+
+    double possibleMovement = timeIncrement * this.speed;
+    double distance = this.location.distance(this.destination);
+    if (possibleMovement >= distance) {
+      return false; // would reach the destination and need the next waypoint
+    }
+
+    double dx = (possibleMovement / distance) * (this.destination.getX() - this.location.getX());
+    double dy = (possibleMovement / distance) * (this.destination.getY() - this.location.getY());
+    this.location.translate(dx, dy);
+    this.storePosition();
+    return true;
+  }
+
   /**
    * Sets the next destination and speed to correspond the next waypoint on the path.
    *
@@ -617,24 +851,35 @@ public class DTNHost implements Comparable<DTNHost> {
     return destination;
   }
 
+  /**
+   * Returns the most recent interaction records of this host (see {@link
+   * InteractionStore#WINDOW_S})
+   *
+   * @return a copy of the recent records, the oldest first
+   */
   public List<InteractionRecord> getInteractions() {
+    return interactions.getRecent();
+  }
+
+  /**
+   * Returns the interaction history of this host
+   *
+   * @return the interaction store
+   */
+  public InteractionStore getInteractionStore() {
     return interactions;
   }
 
-  public Map<DTNHost, Pair<Double, Double>> getTrusts() {
+  public TrustStore getTrusts() {
     return trusts;
   }
 
   public void updateTrust(DTNHost target, double trust, double time) {
-    this.trusts.put(target, Pair.of(trust, time));
+    this.trusts.put(target, trust, time);
   }
 
   public double getTrustForHost(DTNHost target, double defaultTrust) {
-    if (this.trusts.containsKey(target)) {
-      return this.trusts.get(target).getLeft();
-    } else {
-      return defaultTrust;
-    }
+    return this.trusts.getTrust(target, defaultTrust);
   }
 
   public Map<DTNHost, Double> getSocial() {
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Pool of worker threads that {@link World} uses for running one update phase for all hosts
+ * concurrently. The index range is split into contiguous stripes and every index is handled by
+ * exactly one worker, so the result does not depend on thread scheduling as long as the work done
+ * for an index only touches the state of that index.
+ */
+public class HostWorkers {
+  private static ExecutorService executor;
+  private static int executorThreads;
+
+  static {
+    DTNSim.registerForReset(HostWorkers.class.getCanonicalName());
+    HostWorkers.reset();
+  }
+
+  private final int nrofThreads;
+
+  /**
+   * Creates a new worker pool.
+   *
+   * @param nrofThreads Number of threads to use. Values smaller than two run all work in the
+   *     calling thread.
+   */
+  public HostWorkers(int nrofThreads) {
+    this.nrofThreads = Math.max(1, nrofThreads);
+    if (this.nrofThreads > 1 && HostWorkers.executorThreads != this.nrofThreads) {
+      HostWorkers.reset();
+      HostWorkers.executorThreads = this.nrofThreads;
+      HostWorkers.executor =
+          Executors.newFixedThreadPool(
+              this.nrofThreads,
+              r -> {
+                Thread t = new Thread(r, "HostWorker");
+                t.setDaemon(true);
+                return t;
+              });
+    }
+  }
+
+  /** Shuts down the worker threads of the previous run (if any) */
+  public static void reset() {
+    if (HostWorkers.executor != null) {
+      HostWorkers.executor.shutdownNow();
+    }
+    HostWorkers.executor = null;
+    HostWorkers.executorThreads = 0;
+  }
+
+  /**
+   * Returns the number of threads work is split to
+   *
+   * @return the number of threads
+   */
+  public int getNrofThreads() {
+    return this.nrofThreads;
+  }
+
+  /**
+   * Runs the given work for all indexes from 0 to n-1 and returns when all of them are done.
+   *
+   * @param n Number of indexes
+   * @param work The work to do for a single index
+   * @throws SimError if the work for some index failed
+   */
+  public void forEach(int n, IntConsumer work) {
+    int nrofStripes = Math.min(this.nrofThreads, n);
+    if (nrofStripes <= 1) {
+      for (int i = 0; i < n; i++) {
+        work.accept(i);
+      }
+      return;
+    }
+
+    List<Callable<Object>> stripes = new ArrayList<>(nrofStripes);
+    for (int s = 0; s < nrofStripes; s++) {
+      final int from = (int) ((long) n * s / nrofStripes);
+      final int to = (int) ((long) n * (s + 1) / nrofStripes);
+      stripes.add(
+          () -> {
+            for (int i = from; i < to; i++) {
+              work.accept(i);
+            }
+            return null;
+          });
+    }
+
+    try {
+      for (Future<Object> f : HostWorkers.executor.invokeAll(stripes)) {
+        f.get();
+      }
+    } catch (InterruptedException e) {
+      throw new SimError("Host update interrupted:" + e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new SimError("Host update failed:" + cause);
+    }
+  }
+}
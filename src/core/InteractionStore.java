@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import util.WeightedAdjacency;
+
+/**
+ * Interaction history of a host. Instead of all {@link InteractionRecord}s, the store keeps running
+ * totals over all contacts, one aggregate per peer and a sliding window of the most recent raw
+ * records. The memory use grows with the number of distinct peers instead of the number of contacts
+ * and the totals are available in constant time. The store also keeps the host's weighted contact
+ * graph edges (see {@link #getContactGraph()}) up to date.
+ */
+public class InteractionStore {
+  /**
+   * Number of raw interaction records kept per host -setting id ({@value}). Integer variable in the
+   * {@link World#OPTIMIZATION_SETTINGS_NS} name space. A negative value keeps all records. Default is
+   * {@link #DEF_WINDOW}.
+   */
+  public static final String WINDOW_S = "interactionWindow";
+
+  public static final int DEF_WINDOW = 100;
+
+  /** window size read from the settings, or null if not read yet */
+  private static Integer defaultWindow;
+
+  static {
+    DTNSim.registerForReset(InteractionStore.class.getCanonicalName());
+    InteractionStore.reset();
+  }
+
+  private final int window;
+  private final ArrayDeque<InteractionRecord> recent;
+  private final Map<DTNHost, Aggregate> peers;
+  private final Aggregate totals;
+  private final WeightedAdjacency contactGraph;
+
+  /** Creates a store with the window size given in the settings */
+  public InteractionStore() {
+    this(InteractionStore.getDefaultWindow());
+  }
+
+  /**
+   * Creates a store
+   *
+   * @param window Number of raw records to keep; negative value keeps all records
+   */
+  public InteractionStore(int window) {
+    this.window = window;
+    this.recent = new ArrayDeque<>();
+    this.peers = new LinkedHashMap<>();
+    this.totals = new Aggregate(null);
+    this.contactGraph = new WeightedAdjacency();
+  }
+
+  /** Forgets the window size setting of the previous run */
+  public static synchronized void reset() {
+    InteractionStore.defaultWindow = null;
+  }
+
+  private static synchronized int getDefaultWindow() {
+    if (InteractionStore.defaultWindow == null) {
+      Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+      InteractionStore.defaultWindow = s.getInt(WINDOW_S, DEF_WINDOW);
+    }
+    return InteractionStore.defaultWindow;
+  }
+
+  /**
+   * Adds the record of a finished contact
+   *
+   * @param r The record
+   */
+  public void add(InteractionRecord r) {
+    this.totals.add(r);
+    Aggregate a = this.peers.get(r.getTarget());
+    if (a == null) {
+      a = new Aggregate(r.getTarget());
+      this.peers.put(r.getTarget(), a);
+      this.contactGraph.add(r.getTarget().getAddress(), 1);
+    }
+    a.add(r);
+    this.contactGraph.add(r.getTarget().getAddress(), r.getSend() + r.getReceive());
+
+    if (this.window != 0) {
+      this.recent.addLast(r);
+      if (this.window > 0 && this.recent.size() > this.window) {
+        this.recent.removeFirst();
+      }
+    }
+  }
+
+  /**
+   * Returns the totals over all contacts. The target of the returned aggregate is null.
+   *
+   * @return the totals
+   */
+  public Aggregate getTotals() {
+    return this.totals;
+  }
+
+  /**
+   * Returns the aggregate of the contacts with a peer
+   *
+   * @param peer The peer
+   * @return The aggregate or null if there has been no contacts with the peer
+   */
+  public Aggregate getAggregate(DTNHost peer) {
+    return this.peers.get(peer);
+  }
+
+  /**
+   * Returns the aggregates of all peers in the order of their first finished contact
+   *
+   * @return unmodifiable view to the aggregates
+   */
+  public Collection<Aggregate> getPeers() {
+    return Collections.unmodifiableCollection(this.peers.values());
+  }
+
+  /**
+   * Returns the host's outgoing edges in the weighted contact graph. There is an edge to every peer,
+   * identified by its address, and the weight of the edge is one plus the number of messages sent
+   * to and received from the peer.
+   *
+   * @return the edges (not to be modified)
+   */
+  public WeightedAdjacency getContactGraph() {
+    return this.contactGraph;
+  }
+
+  /**
+   * Returns the most recent raw records, the oldest first
+   *
+   * @return a copy of the records in the window
+   */
+  public List<InteractionRecord> getRecent() {
+    return new ArrayList<>(this.recent);
+  }
+
+  /**
+   * Returns the size of the window of raw records
+   *
+   * @return number of kept records or a negative value if all records are kept
+   */
+  public int getWindow() {
+    return this.window;
+  }
+
+  /**
+   * Returns the number of raw records currently in the window
+   *
+   * @return the number of raw records
+   */
+  public int getNrofRecent() {
+    return this.recent.size();
+  }
+
+  /** Running sums over a number of interaction records */
+  public static class Aggregate {
+    private final DTNHost target;
+    private int nrofContacts;
+    private int send;
+    private int receive;
+    private int createdByMe;
+    private int createdByTarget;
+    private double contactTime;
+
+    private Aggregate(DTNHost target) {
+      this.target = target;
+    }
+
+    private void add(InteractionRecord r) {
+      this.nrofContacts++;
+      this.send += r.getSend();
+      this.receive += r.getReceive();
+      this.createdByMe += r.getCreatedByMe();
+      this.createdByTarget += r.getCreatedByTarget();
+      this.contactTime += r.getDownTime() - r.getUpTime();
+    }
+
+    public DTNHost getTarget() {
+      return this.target;
+    }
+
+    public int getNrofContacts() {
+      return this.nrofContacts;
+    }
+
+    public int getSend() {
+      return this.send;
+    }
+
+    public int getReceive() {
+      return this.receive;
+    }
+
+    public int getCreatedByMe() {
+      return this.createdByMe;
+    }
+
+    public int getCreatedByTarget() {
+      return this.createdByTarget;
+    }
+
+    /** Returns the sum of the contact durations */
+    public double getContactTime() {
+      return this.contactTime;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of interface type names (settings name spaces of the interfaces, e.g.,
+ * "preRouterInterface") and connect type names (the interfaces' {@value NetworkInterface#NAME_S}
+ * settings, e.g., "V2V"). Every name gets a small integer ID when it is first seen, so hosts can
+ * keep their interfaces and connections in arrays indexed by the ID and routers can look them up
+ * without comparing strings. The network interfaces register their names when the scenario creates
+ * them; routers and applications resolve the names they use once, e.g., to a static constant.
+ * Both kinds of names share the same IDs and an ID never changes during the life of the JVM.
+ */
+public final class InterfaceTypes {
+  private static final Map<String, Integer> ids = new HashMap<>();
+  private static final List<String> names = new ArrayList<>();
+
+  private InterfaceTypes() {}
+
+  /**
+   * Returns the ID of a name, registering the name if it is new
+   *
+   * @param name The interface or connect type name
+   * @return the ID of the name
+   */
+  public static synchronized int idOf(String name) {
+    Integer id = ids.get(name);
+    if (id == null) {
+      id = names.size();
+      ids.put(name, id);
+      names.add(name);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the ID of a registered name
+   *
+   * @param name The interface or connect type name
+   * @return the ID or -1 if the name hasn't been registered
+   */
+  public static synchronized int find(String name) {
+    Integer id = ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the name of an ID
+   *
+   * @param id The ID
+   * @return the name
+   * @throws SimError if there is no such ID
+   */
+  public static synchronized String nameOf(int id) {
+    if (id < 0 || id >= names.size()) {
+      throw new SimError("No interface type with ID " + id);
+    }
+    return names.get(id);
+  }
+
+  /**
+   * Returns the number of registered names, i.e., one more than the largest ID
+   *
+   * @return the number of names
+   */
+  public static synchronized int size() {
+    return names.size();
+  }
+}
@@ -66,6 +66,11 @@ public class Message implements Comparable<Message> {
   public int copyVersion;
   public int lastCopyVersion;
   private DTNHost rerouteDest = null;
+  /** index of the message ID for {@link MessageKey} (-1 if not yet looked up) */
+  private int idIndex = -1;
+  /** cached "id_copyVersion" string and the copy version it was created for */
+  private String copyId;
+  private int copyIdVersion;
 
   /**
    * Creates a new Message.
@@ -313,6 +318,7 @@ public class Message implements Comparable<Message> {
     this.copyVersion = m.copyVersion;
     this.lastCopyVersion = m.lastCopyVersion;
     this.rerouteDest = m.rerouteDest;
+    this.idIndex = m.idIndex;
 
     if (m.properties != null) {
       Set<String> keys = m.properties.keySet();
@@ -451,6 +457,43 @@ public class Message implements Comparable<Message> {
   public int getCopyVersion() {
     return this.copyVersion;
   }
+
+  /**
+   * Returns the per-run index of this message's ID (same for all replicates)
+   *
+   * @return The message ID index
+   * @see MessageKey#idIndex(String)
+   */
+  public int getIdIndex() {
+    if (this.idIndex < 0) {
+      this.idIndex = MessageKey.idIndex(this.id);
+    }
+    return this.idIndex;
+  }
+
+  /**
+   * Returns the packed key of this message copy
+   *
+   * @return The key
+   * @see MessageKey#of(Message)
+   */
+  public long getKey() {
+    return MessageKey.of(this);
+  }
+
+  /**
+   * Returns the ID of this message copy in form "id_copyVersion". The string is created only when
+   * the copy version has changed since the previous call.
+   *
+   * @return The message copy ID
+   */
+  public String getCopyId() {
+    if (this.copyId == null || this.copyIdVersion != this.copyVersion) {
+      this.copyId = this.id + "_" + this.copyVersion;
+      this.copyIdVersion = this.copyVersion;
+    }
+    return this.copyId;
+  }
   public void updateLastCopyVersion() {
     this.lastCopyVersion++;
   }
@@ -58,6 +58,9 @@ public abstract class NetworkInterface implements ModuleCommunicationListener {
   protected DTNHost host = null;
   protected String interfacetype;
   protected String connecttype; // allow connection of different interfacetypes
+  /** {@link InterfaceTypes} IDs of the interface and connect types */
+  protected int interfaceTypeId;
+  protected int connectTypeId;
   protected List<Connection> connections; // connected hosts
   protected double transmitRange;
   protected double oldTransmitRange;
@@ -79,6 +82,8 @@ public abstract class NetworkInterface implements ModuleCommunicationListener {
   public NetworkInterface(Settings s) {
     this.interfacetype = s.getNameSpace();
     this.connecttype = s.getSetting(NetworkInterface.NAME_S);
+    this.interfaceTypeId = InterfaceTypes.idOf(this.interfacetype);
+    this.connectTypeId = InterfaceTypes.idOf(this.connecttype);
     this.connections = new ArrayList<>();
 
     this.transmitRange = s.getDouble(NetworkInterface.TRANSMIT_RANGE_S);
@@ -91,6 +96,8 @@ public abstract class NetworkInterface implements ModuleCommunicationListener {
   public NetworkInterface() {
     this.interfacetype = "Default";
     this.connecttype = "Default";
+    this.interfaceTypeId = InterfaceTypes.idOf(this.interfacetype);
+    this.connectTypeId = this.interfaceTypeId;
     this.connections = new ArrayList<>();
   }
 
@@ -101,6 +108,8 @@ public abstract class NetworkInterface implements ModuleCommunicationListener {
     this.cListeners = ni.cListeners;
     this.interfacetype = ni.interfacetype;
     this.connecttype = ni.connecttype;
+    this.interfaceTypeId = ni.interfaceTypeId;
+    this.connectTypeId = ni.connectTypeId;
     this.transmitRange = ni.transmitRange;
     this.transmitSpeed = ni.transmitSpeed;
     this.scanInterval = ni.scanInterval;
@@ -154,6 +163,25 @@ public abstract class NetworkInterface implements ModuleCommunicationListener {
   public String getConnectType() {
     return this.connecttype;
   }
+
+  /**
+   * Returns the {@link InterfaceTypes} ID of the interface type
+   *
+   * @return the ID of {@link #getInterfaceType()}
+   */
+  public int getInterfaceTypeId() {
+    return this.interfaceTypeId;
+  }
+
+  /**
+   * Returns the {@link InterfaceTypes} ID of the connect type
+   *
+   * @return the ID of {@link #getConnectType()}
+   */
+  public int getConnectTypeId() {
+    return this.connectTypeId;
+  }
+
   /**
    * For setting the connectionListeners
    *
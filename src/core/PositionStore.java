@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Positions, current destinations and speeds of a set of hosts in primitive arrays indexed by the
+ * host's index in the list the store was created for. The hosts keep their {@link Coord} objects
+ * as views of the store: a move done in the store also updates the host's location object, and the
+ * hosts write their changes (new waypoints, {@link DTNHost#setLocation(Coord)}) back to the store.
+ * {@link World} moves the hosts that advance on their current leg with one loop over the arrays
+ * instead of calling every host.
+ */
+public class PositionStore {
+  private final Coord[] locations;
+  private final double[] xs;
+  private final double[] ys;
+  private final double[] destXs;
+  private final double[] destYs;
+  private final boolean[] hasDestination;
+  private final double[] speeds;
+  private final double[] nextTimesToMove;
+
+  /**
+   * Creates a store for the hosts and makes them use it
+   *
+   * @param hosts The hosts
+   */
+  public PositionStore(List<DTNHost> hosts) {
+    int n = hosts.size();
+    this.locations = new Coord[n];
+    this.xs = new double[n];
+    this.ys = new double[n];
+    this.destXs = new double[n];
+    this.destYs = new double[n];
+    this.hasDestination = new boolean[n];
+    this.speeds = new double[n];
+    this.nextTimesToMove = new double[n];
+    for (int i = 0; i < n; i++) {
+      hosts.get(i).setPositionStore(this, i);
+    }
+  }
+
+  /**
+   * Returns the number of hosts in the store
+   *
+   * @return the number of hosts
+   */
+  public int size() {
+    return this.xs.length;
+  }
+
+  /**
+   * Returns the x coordinate of a host
+   *
+   * @param i Index of the host
+   * @return the x coordinate
+   */
+  public double getX(int i) {
+    return this.xs[i];
+  }
+
+  /**
+   * Returns the y coordinate of a host
+   *
+   * @param i Index of the host
+   * @return the y coordinate
+   */
+  public double getY(int i) {
+    return this.ys[i];
+  }
+
+  /**
+   * Stores the movement state of a host
+   *
+   * @param i Index of the host
+   * @param location The host's location object; kept up to date by the store's moves
+   * @param destination The current destination or null if there is none
+   * @param speed The speed on the current leg
+   * @param nextTimeToMove The time when the host moves the next time
+   */
+  void set(int i, Coord location, Coord destination, double speed, double nextTimeToMove) {
+    this.locations[i] = location;
+    this.xs[i] = location.getX();
+    this.ys[i] = location.getY();
+    this.hasDestination[i] = destination != null;
+    if (destination != null) {
+      this.destXs[i] = destination.getX();
+      this.destYs[i] = destination.getY();
+    }
+    this.speeds[i] = speed;
+    this.nextTimesToMove[i] = nextTimeToMove;
+  }
+
+  /**
+   * Moves a host towards its destination if it doesn't reach it, like {@link
+   * DTNHost#moveWithinLeg(double)}. Touches only the state of the given host.
+   *
+   * @param i Index of the host
+   * @param time The current simulation time
+   * @param timeIncrement How long time the host moves
+   * @return True if the move was done, false if the host must be moved using {@link
+   *     DTNHost#move(double)}
+   */
+  public boolean moveWithinLeg(int i, double time, double timeIncrement) {
+    if (time < this.nextTimesToMove[i]) {
+      return true;
+    }
+    if (!this.hasDestination[i]) {
+      return false;
+    }
+
+    double x = this.xs[i];
+    double y = this.ys[i];
+    double possibleMovement = timeIncrement * this.speeds[i];
+    /* the same arithmetic as with the Coord objects */
+    double ex = x - this.destXs[i];
+    double ey = y - this.destYs[i];
+    double distance = Math.sqrt(ex * ex + ey * ey);
+    if (possibleMovement >= distance) {
+      return false; // would reach the destination and need the next waypoint
+    }
+
+    x += (possibleMovement / distance) * (this.destXs[i] - x);
+    y += (possibleMovement / distance) * (this.destYs[i] - y);
+    this.xs[i] = x;
+    this.ys[i] = y;
+    this.locations[i].setLocation(x, y);
+    return true;
+  }
+}
@@ -11,7 +11,6 @@ import interfaces.RouterPreConnEngine1;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -25,7 +24,6 @@ import movement.map.MapNode;
 import movement.map.SimMap;
 import routing.MessageRouter;
 
-import org.apache.commons.lang3.tuple.Pair;
 import java.util.Comparator;
 
 /**
@@ -498,9 +496,7 @@ public class SimScenario implements Serializable {
 	      DTNHost r = this.hosts.stream().filter(h -> h.toString().startsWith("R"))
 	          .max(Comparator.comparingInt(o -> o.getTrusts().size()))
 	          .orElseThrow();
-	      Collection<Pair<Double, Double>> trusts = r.getTrusts().values();
-	      double avg = trusts.stream().mapToDouble(Pair::getLeft).average()
-	          .orElse(this.dynamicThreshold);
+	      double avg = r.getTrusts().getMeanTrust(this.dynamicThreshold);
 	      double delta = avg - this.dynamicThreshold;
 	      double newThres = this.dynamicThreshold;
 	      if (delta > 0) {
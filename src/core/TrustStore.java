@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * A host's trust opinions of other hosts. The trust values and the times they were last updated
+ * are kept in primitive arrays indexed by the other host's address, and the addresses of the
+ * entries are kept sorted, so the entries can be iterated in address order with {@link
+ * #hostAt(int)}, {@link #trustAt(int)} and {@link #timeAt(int)} for <code>0 &lt;= i &lt; size()
+ * </code>. The sum of the trust values is kept up to date for {@link #getMeanTrust(double)}.
+ */
+public class TrustStore {
+  private static final int MIN_CAPACITY = 16;
+
+  /** the hosts of the entries by address, null if there is no entry */
+  private DTNHost[] hosts;
+  private double[] trusts;
+  private double[] times;
+  /** addresses of the entries in ascending order */
+  private int[] order;
+  private int size;
+  private double trustSum;
+  /** no entry has been updated before this time */
+  private double oldest;
+
+  /** Creates an empty store */
+  public TrustStore() {
+    this.hosts = new DTNHost[MIN_CAPACITY];
+    this.trusts = new double[MIN_CAPACITY];
+    this.times = new double[MIN_CAPACITY];
+    this.order = new int[MIN_CAPACITY];
+    this.oldest = Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Returns true if there is an opinion of the host
+   *
+   * @param host The host
+   * @return true if there is an entry for the host
+   */
+  public boolean contains(DTNHost host) {
+    int a = host.getAddress();
+    return a < this.hosts.length && this.hosts[a] != null;
+  }
+
+  /**
+   * Returns the trust of a host
+   *
+   * @param host The host
+   * @param defaultTrust Value to return if there is no entry for the host
+   * @return the trust or the default value
+   */
+  public double getTrust(DTNHost host, double defaultTrust) {
+    int a = host.getAddress();
+    if (a >= this.hosts.length || this.hosts[a] == null) {
+      return defaultTrust;
+    }
+    return this.trusts[a];
+  }
+
+  /**
+   * Sets the trust of a host
+   *
+   * @param host The host
+   * @param trust The trust value
+   * @param time Time of the update
+   */
+  public void put(DTNHost host, double trust, double time) {
+    int a = host.getAddress();
+    if (a >= this.hosts.length) {
+      int capacity = Math.max(a + 1, this.hosts.length * 2);
+      this.hosts = Arrays.copyOf(this.hosts, capacity);
+      this.trusts = Arrays.copyOf(this.trusts, capacity);
+      this.times = Arrays.copyOf(this.times, capacity);
+    }
+    if (this.hosts[a] == null) {
+      this.insert(a);
+      this.hosts[a] = host;
+      this.trustSum += trust;
+    } else {
+      this.trustSum += trust - this.trusts[a];
+    }
+    this.trusts[a] = trust;
+    this.times[a] = time;
+    if (time < this.oldest) {
+      this.oldest = time;
+    }
+  }
+
+  /** Adds an address to the sorted addresses */
+  private void insert(int address) {
+    if (this.size == this.order.length) {
+      this.order = Arrays.copyOf(this.order, this.size * 2);
+    }
+    int i = Arrays.binarySearch(this.order, 0, this.size, address);
+    i = -(i + 1);
+    System.arraycopy(this.order, i, this.order, i + 1, this.size - i);
+    this.order[i] = address;
+    this.size++;
+  }
+
+  /**
+   * Returns the number of hosts there is an opinion of
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the host of the i:th entry in address order
+   *
+   * @param i Index of the entry
+   * @return the host
+   */
+  public DTNHost hostAt(int i) {
+    return this.hosts[this.order[i]];
+  }
+
+  /**
+   * Returns the trust of the i:th entry in address order
+   *
+   * @param i Index of the entry
+   * @return the trust
+   */
+  public double trustAt(int i) {
+    return this.trusts[this.order[i]];
+  }
+
+  /**
+   * Returns the update time of the i:th entry in address order
+   *
+   * @param i Index of the entry
+   * @return the time of the last update
+   */
+  public double timeAt(int i) {
+    return this.times[this.order[i]];
+  }
+
+  /**
+   * Returns the mean of the trust values
+   *
+   * @param defaultMean Value to return if the store is empty
+   * @return the mean trust or the default value
+   */
+  public double getMeanTrust(double defaultMean) {
+    return this.size == 0 ? defaultMean : this.trustSum / this.size;
+  }
+
+  /**
+   * Decays stale opinions: every entry that hasn't been updated for more than the interval is
+   * multiplied by the factor and stamped with the current time, unless that would take it from at
+   * or above the floor to below it. The entries are only scanned when at least one of them may be
+   * stale.
+   *
+   * @param time The current time
+   * @param interval Age an entry must exceed to be decayed
+   * @param factor The decay multiplier
+   * @param floor Trust the decay must not cross
+   */
+  public void decay(double time, double interval, double factor, double floor) {
+    if (!(time - this.oldest > interval)) {
+      return;
+    }
+    double newOldest = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < this.size; i++) {
+      int a = this.order[i];
+      double trust = this.trusts[a];
+      if (time - this.times[a] > interval) {
+        double newTrust = trust * factor;
+        if (!(trust >= floor && newTrust < floor)) {
+          this.trustSum += newTrust - trust;
+          this.trusts[a] = newTrust;
+          this.times[a] = time;
+        }
+      }
+      newOldest = Math.min(newOldest, this.times[a]);
+    }
+    this.oldest = newOldest;
+  }
+}
@@ -4,11 +4,16 @@
  */
 package core;
 
+import applications.MaliciousRouterDetector;
 import applications.PmmlModel;
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MergedEventQueue;
 import input.ScheduledUpdatesQueue;
+import interfaces.ConnectivityGrid;
 import routing.MultipahTrajectoryTimeSpaceRouter;
+import routing.util.BufferOccupancy;
+import routing.util.MaliciousRouters;
 
 import java.util.*;
 
@@ -41,13 +46,69 @@ public class World {
   public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
   public static final String MODEL_PATH_S = "pmmlModelPath";
 
+  /**
+   * Interval of the malicious router detection with the {@link #MODEL_PATH_S} model -setting id
+   * ({@value}). Integer variable (seconds). Default is {@link #DEF_DETECTION_INTERVAL}.
+   */
+  public static final String DETECTION_INTERVAL_S = "detectionInterval";
+
+  public static final int DEF_DETECTION_INTERVAL = 101;
+
+  /**
+   * Number of threads the malicious router detection model is evaluated in -setting id ({@value}).
+   * Integer variable. Default = 1.
+   */
+  public static final String DETECTION_THREADS_S = "detectionThreads";
+
+  /**
+   * Should the malicious router detection overlap with the simulation -setting id ({@value}).
+   * Boolean (true/false) variable. If true, the model is evaluated in the background while the
+   * simulation continues and the result is given to the routers at the next detection period (one
+   * period later than normally). Default = false.
+   */
+  public static final String DETECTION_OVERLAP_S = "detectionOverlap";
+
+  /**
+   * Should hosts be updated using several threads -setting id ({@value}). Boolean (true/false)
+   * variable. If true, movement is computed in parallel for all hosts and, if all routers are
+   * host-local (see {@link routing.MessageRouter#isHostLocal()}), routers are updated in parallel
+   * after the (serial) connection phase. Results are identical to the serial run. Default = false.
+   */
+  public static final String PARALLEL_HOSTS_S = "parallelHosts";
+
+  /**
+   * Should external events with the same timestamp be processed as one batch -setting id
+   * ({@value}). Boolean (true/false) variable. If false, all hosts are updated after every external
+   * event. If true, all events of the same time are processed first and then only the hosts the
+   * events looked up (see {@link #getNodeByAddress(int)}) are updated; a batch with an event that
+   * didn't touch any host (e.g., a scheduled update) still updates all hosts. The regular update of
+   * all hosts at the end of every update interval is not affected. Changes the results since hosts
+   * untouched by an event no longer get the extra update. Default = false.
+   */
+  public static final String COALESCE_EVENTS_S = "coalesceEvents";
+
+  /**
+   * Should the hosts' positions be kept in a {@link PositionStore} -setting id ({@value}). Boolean
+   * (true/false) variable. If true, the hosts that only advance on their current leg are moved with
+   * one loop over the store's arrays (in parallel if {@link #PARALLEL_HOSTS_S} is set) and only the
+   * hosts that need a new waypoint are moved one by one. Results are identical to the run without
+   * the store. Default = false.
+   */
+  public static final String POSITION_STORE_S = "positionStore";
+
+  /**
+   * Number of threads for parallel host updates -setting id ({@value}). Integer variable. Default is
+   * the number of available processors.
+   */
+  public static final String NROF_THREADS_S = "nrofThreads";
+
   private final int sizeX;
   private final int sizeY;
-  private final List<EventQueue> eventQueues;
   private final double updateInterval;
   private final SimClock simClock;
   private double nextQueueEventTime;
-  private EventQueue nextEventQueue;
+  /** the scheduled updates and the event queues, merged in time order */
+  private final MergedEventQueue mergedQueues;
   /** list of nodes; nodes are indexed by their network address */
   private final List<DTNHost> hosts;
 
@@ -69,7 +130,35 @@ public class World {
   private boolean realtimeSimulation;
   private long simStartRealtime;
   private String updateOrderConf;
-  private PmmlModel model = null;
+  /** malicious router detection, or null if no model is configured */
+  private MaliciousRouterDetector detector;
+  private int detectionInterval;
+  private int lastDetectionTime;
+  /** routers that are classified by the detection */
+  private List<DTNHost> detectedRouters;
+  /** workers for parallel host updates, or null if hosts are updated serially */
+  private HostWorkers hostWorkers;
+  /** positions of the hosts, or null if the hosts are moved one by one */
+  private PositionStore positions;
+  /** workers for the batch connectivity updates (see {@link ConnectivityGrid#BATCH_UPDATE_S}) */
+  private HostWorkers connectivityWorkers;
+  /** are all routers host-local so that they can be updated in parallel */
+  private boolean parallelRouters;
+  /** per host flags used by the parallel update phases (indexed like hosts/updateOrder) */
+  private boolean[] pendingHosts;
+  /** are events of the same time processed as a batch */
+  private boolean coalesceEvents;
+  /** are host lookups recorded for the event batch */
+  private boolean recordLookups;
+  /** did the event being processed look up any host */
+  private boolean hostLookedUp;
+  /** hosts looked up by the events of the batch, by address */
+  private boolean[] dirtyHosts;
+  private int nrofDirtyHosts;
+  /** number of host updates done so far */
+  private long nrofHostUpdates;
+  /** buffer snapshot of the latest update round, or null if nobody has asked for one */
+  private BufferOccupancy bufferOccupancy;
 
   /** Constructor. */
   public World(
@@ -86,10 +175,13 @@ public class World {
     this.updateInterval = updateInterval;
     this.updateListeners = updateListeners;
     this.simulateConnections = simulateConnections;
-    this.eventQueues = eventQueues;
 
     this.simClock = SimClock.getInstance();
     this.scheduledUpdates = new ScheduledUpdatesQueue();
+    List<EventQueue> queues = new ArrayList<>(eventQueues.size() + 1);
+    queues.add(this.scheduledUpdates); // first, so scheduled updates win ties
+    queues.addAll(eventQueues);
+    this.mergedQueues = new MergedEventQueue(queues);
     this.isCancelled = false;
 
     this.simStartRealtime = -1;
@@ -107,10 +199,31 @@ public class World {
 
     this.realtimeSimulation = s.getBoolean(World.REALTIME_SIM_S, false);
 
+    this.coalesceEvents = s.getBoolean(World.COALESCE_EVENTS_S, false);
+    if (this.coalesceEvents) {
+      this.dirtyHosts = new boolean[this.hosts.size()];
+    }
+
     this.updateOrder = new ArrayList<>(this.hosts);
     String modelPath = s.getSetting(World.MODEL_PATH_S, "");
     if (!modelPath.isEmpty()) {
-      this.model = new PmmlModel(modelPath);
+      this.detector =
+          MaliciousRouterDetector.forModel(
+              new PmmlModel(modelPath),
+              "y",
+              s.getInt(World.DETECTION_THREADS_S, 1),
+              s.getBoolean(World.DETECTION_OVERLAP_S, false));
+      this.detectionInterval = s.getInt(World.DETECTION_INTERVAL_S, World.DEF_DETECTION_INTERVAL);
+      if (this.detectionInterval <= 0) {
+        throw new SettingsError(
+            "Invalid " + World.DETECTION_INTERVAL_S + " value " + this.detectionInterval);
+      }
+      this.detectedRouters = new ArrayList<>();
+      for (DTNHost host : this.hosts) {
+        if ("ROUTER".equals(host.getCategoryMark())) {
+          this.detectedRouters.add(host);
+        }
+      }
     }
 
     switch (updateOrderConf) {
@@ -121,6 +234,28 @@ public class World {
         this.updateOrder.sort(Comparator.comparing(DTNHost::toString));
         break;
     }
+
+    if (s.getBoolean(World.PARALLEL_HOSTS_S, false)) {
+      int nrofThreads = Runtime.getRuntime().availableProcessors();
+      if (s.contains(World.NROF_THREADS_S)) {
+        nrofThreads = s.getInt(World.NROF_THREADS_S);
+      }
+      this.hostWorkers = new HostWorkers(nrofThreads);
+      this.pendingHosts = new boolean[this.hosts.size()];
+      this.parallelRouters = true;
+      for (DTNHost host : this.hosts) {
+        if (!host.getRouter().isHostLocal()) {
+          this.parallelRouters = false;
+          break;
+        }
+      }
+    }
+    this.connectivityWorkers = this.hostWorkers != null ? this.hostWorkers : new HostWorkers(1);
+
+    if (s.getBoolean(World.POSITION_STORE_S, false)) {
+      this.positions = new PositionStore(this.hosts);
+      this.pendingHosts = new boolean[this.hosts.size()];
+    }
   }
 
   /**
@@ -145,21 +280,15 @@ public class World {
     this.simClock.setTime(0);
   }
 
-  /** Goes through all event Queues and sets the event queue that has the next event. */
+  /**
+   * Goes through all event Queues and sets the time of the next event. Of the events with the same
+   * time, scheduled updates come first and then the events of the queues in the order they were
+   * given to the constructor. Between the calls, the queues are kept in a heap (see {@link
+   * MergedEventQueue}) and only the queue whose event was processed is asked for its next time.
+   */
   public void setNextEventQueue() {
-    EventQueue nextQueue = this.scheduledUpdates;
-    double earliest = nextQueue.nextEventsTime();
-
-    /* find the queue that has the next event */
-    for (EventQueue eq : this.eventQueues) {
-      if (eq.nextEventsTime() < earliest) {
-        nextQueue = eq;
-        earliest = eq.nextEventsTime();
-      }
-    }
-
-    this.nextEventQueue = nextQueue;
-    this.nextQueueEventTime = earliest;
+    this.mergedQueues.rebuild();
+    this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
   }
 
   /**
@@ -190,38 +319,27 @@ public class World {
 
     /* process all events that are due until next interval update */
     while (this.nextQueueEventTime <= runUntil) {
+      if (this.coalesceEvents) {
+        this.processEventBatch();
+        continue;
+      }
       this.simClock.setTime(this.nextQueueEventTime);
-      ExternalEvent ee = this.nextEventQueue.nextEvent();
+      ExternalEvent ee = this.mergedQueues.nextEvent();
       ee.processEvent(this);
       this.updateHosts(); // update all hosts after every event
-      this.setNextEventQueue();
+      this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
     }
 
     this.moveHosts(this.updateInterval);
     this.simClock.setTime(runUntil);
 
     this.updateHosts();
+    if (this.bufferOccupancy != null) {
+      this.bufferOccupancy = new BufferOccupancy(SimClock.getTime(), this.hosts);
+    }
 
-    if (this.model != null) {
-      int currentTime = SimClock.getIntTime();
-      if (currentTime > 0 && currentTime % 101 == 0) {
-        var malicious = new HashSet<DTNHost>();
-        for (DTNHost host : hosts) {
-          if (host.getCategoryMark().equals("ROUTER")) {
-            var data = ((MultipahTrajectoryTimeSpaceRouter) host.getRouter()).getModelArgs();
-            var res = model.evaluate(data, "y");
-            if (res == 1.0) {
-              malicious.add(host);
-            }
-          }
-        }
-        System.out.println(malicious);
-        for (DTNHost host : hosts) {
-          if (host.getCategoryMark().equals("ROUTER")) {
-            host.getRouter().setMaliciousRouters(malicious);
-          }
-        }
-      }
+    if (this.detector != null) {
+      this.detectMaliciousRouters();
     }
     /* inform all update listeners */
     for (UpdateListener ul : this.updateListeners) {
@@ -229,6 +347,106 @@ public class World {
     }
   }
 
+  /**
+   * Processes all the events of the next event time and updates the hosts the events touched (or
+   * all hosts if some event didn't touch any host).
+   */
+  private void processEventBatch() {
+    double time = this.nextQueueEventTime;
+    boolean updateAll = false;
+    this.simClock.setTime(time);
+    this.recordLookups = true;
+    try {
+      do {
+        this.hostLookedUp = false;
+        this.mergedQueues.nextEvent().processEvent(this);
+        updateAll |= !this.hostLookedUp;
+        this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
+      } while (this.nextQueueEventTime == time);
+    } finally {
+      this.recordLookups = false;
+    }
+
+    if (updateAll) {
+      this.updateHosts();
+    } else {
+      for (int i = 0, n = this.updateOrder.size(); i < n && this.nrofDirtyHosts > 0; i++) {
+        DTNHost host = this.updateOrder.get(i);
+        if (this.dirtyHosts[host.getAddress()]) {
+          this.dirtyHosts[host.getAddress()] = false;
+          this.nrofDirtyHosts--;
+          if (!this.isCancelled) {
+            host.update(this.simulateConnections);
+            this.nrofHostUpdates++;
+          }
+        }
+      }
+    }
+    if (this.nrofDirtyHosts > 0) {
+      Arrays.fill(this.dirtyHosts, false);
+      this.nrofDirtyHosts = 0;
+    }
+  }
+
+  /**
+   * Returns the number of host updates done so far. Updating every host once counts as many
+   * updates as there are hosts.
+   *
+   * @return the number of host updates
+   */
+  public long getNrofHostUpdates() {
+    return this.nrofHostUpdates;
+  }
+
+  /**
+   * Runs the malicious router detection once per detection interval and gives a new result to the
+   * routers.
+   */
+  private void detectMaliciousRouters() {
+    int currentTime = SimClock.getIntTime();
+    if (currentTime <= 0
+        || currentTime % this.detectionInterval != 0
+        || currentTime == this.lastDetectionTime) {
+      return;
+    }
+    this.lastDetectionTime = currentTime;
+
+    long version = this.detector.getPublished().getVersion();
+    MaliciousRouters malicious =
+        this.detector.detect(
+            this.detectedRouters,
+            h -> ((MultipahTrajectoryTimeSpaceRouter) h.getRouter()).getModelArgs());
+    System.out.println(malicious);
+    if (malicious.getVersion() != version) {
+      for (DTNHost host : this.detectedRouters) {
+        host.getRouter().setMaliciousRouters(malicious);
+      }
+    }
+  }
+
+  /**
+   * Returns the malicious router detection of this world
+   *
+   * @return the detection or null if no detection model is configured
+   */
+  public MaliciousRouterDetector getDetector() {
+    return this.detector;
+  }
+
+  /**
+   * Returns a snapshot of all hosts' message buffers. After the first call a new snapshot is taken at
+   * the end of every update round (before update listeners are informed), so routers see the state
+   * of the previous round and listeners the state of the current one.
+   *
+   * @return the snapshot
+   */
+  public BufferOccupancy getBufferOccupancy() {
+    if (this.bufferOccupancy == null) {
+      this.bufferOccupancy = new BufferOccupancy(SimClock.getTime(), this.hosts);
+    }
+    return this.bufferOccupancy;
+  }
+
   /**
    * Updates all hosts (calls update for every one of them) according to the updateOrder.
    * If the updateOrder is set to random, randomize the order every time this method is called.
@@ -239,11 +457,20 @@ public class World {
       Random rng = new Random(SimClock.getIntTime());
       Collections.shuffle(this.updateOrder, rng);
     }
-    for (int i = 0, n = this.hosts.size(); i < n; i++) {
-      if (this.isCancelled) {
-        break;
+    if (this.simulateConnections) {
+      ConnectivityGrid.updateConnections(this.connectivityWorkers);
+    }
+    if (this.parallelRouters) {
+      this.updateHostsInParallel();
+      this.nrofHostUpdates += this.hosts.size();
+    } else {
+      for (int i = 0, n = this.hosts.size(); i < n; i++) {
+        if (this.isCancelled) {
+          break;
+        }
+        this.updateOrder.get(i).update(this.simulateConnections);
+        this.nrofHostUpdates++;
       }
-      this.updateOrder.get(i).update(this.simulateConnections);
     }
 
     if (this.simulateConOnce && this.simulateConnections) {
@@ -251,18 +478,121 @@ public class World {
     }
   }
 
+  /**
+   * Updates all hosts in two phases: first the network interfaces of all hosts are updated serially
+   * in the update order (creating and tearing down connections informs the routers of both hosts)
+   * and then the host-local routers are updated in parallel.
+   */
+  private void updateHostsInParallel() {
+    int n = this.hosts.size();
+    for (int i = 0; i < n; i++) {
+      if (this.isCancelled) {
+        return;
+      }
+      this.pendingHosts[i] = this.updateOrder.get(i).updateInterfaces(this.simulateConnections);
+    }
+    this.hostWorkers.forEach(
+        n,
+        i -> {
+          if (this.pendingHosts[i]) {
+            this.updateOrder.get(i).updateRouter();
+          }
+        });
+  }
+
   /**
    * Moves all hosts in the world for a given amount of time
    *
    * @param timeIncrement The time how long all nodes should move
    */
   private void moveHosts(double timeIncrement) {
+    if (this.positions != null) {
+      this.moveHostsInStore(timeIncrement);
+      return;
+    }
+    if (this.hostWorkers != null) {
+      this.moveHostsInParallel(timeIncrement);
+      return;
+    }
     for (int i = 0, n = this.hosts.size(); i < n; i++) {
       DTNHost host = this.hosts.get(i);
       host.move(timeIncrement);
     }
   }
 
+  /**
+   * Moves all hosts in the world for a given amount of time using the host workers. Hosts that only
+   * advance on their current leg are moved in parallel. Hosts that reach a waypoint need a new one
+   * from their movement model (which share a random number generator) and inform the movement
+   * listeners, so they are moved afterwards serially in the same order as in {@link
+   * #moveHosts(double)}. This keeps the results identical to the serial update.
+   *
+   * @param timeIncrement The time how long all nodes should move
+   */
+  private void moveHostsInParallel(double timeIncrement) {
+    int n = this.hosts.size();
+    /* activeness handlers can be shared by all hosts of a group -> check serially */
+    for (int i = 0; i < n; i++) {
+      this.pendingHosts[i] = this.hosts.get(i).isMovementActive();
+    }
+    this.hostWorkers.forEach(
+        n,
+        i -> {
+          if (this.pendingHosts[i] && this.hosts.get(i).moveWithinLeg(timeIncrement)) {
+            this.pendingHosts[i] = false;
+          }
+        });
+    for (int i = 0; i < n; i++) {
+      if (this.pendingHosts[i]) {
+        this.hosts.get(i).move(timeIncrement);
+      }
+    }
+  }
+
+  /**
+   * Moves all hosts in the world for a given amount of time using the position store. Like {@link
+   * #moveHostsInParallel(double)}, but the hosts that advance on their current leg are moved in the
+   * store's arrays.
+   *
+   * @param timeIncrement The time how long all nodes should move
+   */
+  private void moveHostsInStore(double timeIncrement) {
+    int n = this.hosts.size();
+    double time = SimClock.getTime();
+    for (int i = 0; i < n; i++) {
+      this.pendingHosts[i] = this.hosts.get(i).isMovementActive();
+    }
+    if (this.hostWorkers != null) {
+      this.hostWorkers.forEach(
+          n,
+          i -> {
+            if (this.pendingHosts[i] && this.positions.moveWithinLeg(i, time, timeIncrement)) {
+              this.pendingHosts[i] = false;
+            }
+          });
+    } else {
+      for (int i = 0; i < n; i++) {
+        if (this.pendingHosts[i] && this.positions.moveWithinLeg(i, time, timeIncrement)) {
+          this.pendingHosts[i] = false;
+        }
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      if (this.pendingHosts[i]) {
+        this.hosts.get(i).move(timeIncrement);
+      }
+    }
+  }
+
+  /**
+   * Returns the position store of the hosts
+   *
+   * @return the store or null if positions are not stored (see {@link #POSITION_STORE_S})
+   */
+  public PositionStore getPositionStore() {
+    return this.positions;
+  }
+
   /** Asynchronously cancels the currently running simulation */
   public void cancelSim() {
     this.isCancelled = true;
@@ -316,6 +646,14 @@ public class World {
     assert node.getAddress() == address
         : "Node indexing failed. " + "Node " + node + " in index " + address;
 
+    if (this.recordLookups) {
+      this.hostLookedUp = true;
+      if (!this.dirtyHosts[address]) {
+        this.dirtyHosts[address] = true;
+        this.nrofDirtyHosts++;
+      }
+    }
+
     return node;
   }
 
@@ -338,5 +676,6 @@ public class World {
    */
   public void scheduleUpdate(double simTime) {
     this.scheduledUpdates.addUpdate(simTime);
+    this.mergedQueues.refresh(0);
   }
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.DTNSim;
+import core.SimError;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Reads batches from a source on a background thread, one batch ahead of the consumer. The
+ * consumer works through one batch while the next one is read (double buffering); the batches are
+ * handed over through a single slot with atomic operations, so a consumer whose next batch is
+ * ready never blocks or takes a lock. The batches are returned in the order the source produced
+ * them. The source is only called from the background thread and must not depend on the state of
+ * the simulation, since it runs ahead of it.
+ *
+ * <p>The prefetcher keeps count of the batches, of the times the consumer had to wait for a batch
+ * (stalls) and how long it waited, and of how long the batches were ready before they were needed
+ * (lead).
+ *
+ * @param <T> Type of the batch items
+ */
+public class BatchPrefetcher<T> {
+  /** all prefetchers of the current run, closed on reset */
+  private static final List<BatchPrefetcher<?>> ACTIVE =
+      Collections.synchronizedList(new ArrayList<>());
+  /** all prefetchers created in the current run, for their statistics */
+  private static final List<BatchPrefetcher<?>> CREATED =
+      Collections.synchronizedList(new ArrayList<>());
+
+  static {
+    DTNSim.registerForReset(BatchPrefetcher.class.getCanonicalName());
+  }
+
+  /** batch handed over from the reader thread, null if none is ready */
+  private final AtomicReference<Batch<T>> slot = new AtomicReference<>();
+  private final Supplier<List<T>> source;
+  private final Thread thread;
+  private volatile Thread consumer;
+  private volatile Throwable error;
+  private volatile boolean closed;
+  private boolean finished;
+
+  private long batches;
+  private long stalls;
+  private long stallNanos;
+  private long maxStallNanos;
+  private long leadNanos;
+
+  /**
+   * Creates a prefetcher and starts reading the first batch.
+   *
+   * @param name Name of the reader thread
+   * @param source Returns the next batch, or an empty list when there are no more
+   */
+  public BatchPrefetcher(String name, Supplier<List<T>> source) {
+    this.source = source;
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+    BatchPrefetcher.ACTIVE.add(this);
+    BatchPrefetcher.CREATED.add(this);
+    this.thread.start();
+  }
+
+  /**
+   * Returns the prefetchers created since the last reset, e.g. for printing their statistics at the
+   * end of a run
+   *
+   * @return the prefetchers in the order they were created
+   */
+  public static List<BatchPrefetcher<?>> getPrefetchers() {
+    synchronized (BatchPrefetcher.CREATED) {
+      return new ArrayList<>(BatchPrefetcher.CREATED);
+    }
+  }
+
+  /** Stops the reader threads of the previous run */
+  public static void reset() {
+    synchronized (BatchPrefetcher.ACTIVE) {
+      for (BatchPrefetcher<?> p : BatchPrefetcher.ACTIVE) {
+        p.closed = true;
+        LockSupport.unpark(p.thread);
+      }
+      BatchPrefetcher.ACTIVE.clear();
+    }
+    BatchPrefetcher.CREATED.clear();
+  }
+
+  private void run() {
+    try {
+      while (!this.closed) {
+        List<T> items = this.source.get();
+        this.slot.set(new Batch<>(items, System.nanoTime()));
+        LockSupport.unpark(this.consumer);
+        if (items.isEmpty()) {
+          break;
+        }
+        while (this.slot.get() != null && !this.closed) {
+          LockSupport.park(this); // read the next batch only when this one is taken
+        }
+      }
+    } catch (Throwable t) {
+      this.error = t;
+      LockSupport.unpark(this.consumer);
+    } finally {
+      BatchPrefetcher.ACTIVE.remove(this);
+    }
+  }
+
+  /**
+   * Returns the next batch, waiting for it if it hasn't been read yet.
+   *
+   * @return The next batch or an empty list if there are no more batches
+   * @throws SimError if reading the batch failed (errors and runtime exceptions of the source are
+   *     thrown as they are)
+   */
+  public List<T> take() {
+    if (this.finished) {
+      return Collections.emptyList();
+    }
+    Batch<T> batch = this.slot.getAndSet(null);
+    if (batch == null) {
+      batch = this.await();
+    } else {
+      this.leadNanos += System.nanoTime() - batch.readyTime;
+    }
+    LockSupport.unpark(this.thread);
+    this.batches++;
+    if (batch.items.isEmpty()) {
+      this.finished = true;
+    }
+    return batch.items;
+  }
+
+  private Batch<T> await() {
+    long start = System.nanoTime();
+    this.consumer = Thread.currentThread();
+    Batch<T> batch;
+    while ((batch = this.slot.getAndSet(null)) == null) {
+      Throwable t = this.error;
+      if (t != null) {
+        this.finished = true;
+        if (t instanceof RuntimeException) {
+          throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+          throw (Error) t;
+        }
+        throw new SimError("Prefetching " + this.thread.getName() + " failed: " + t);
+      }
+      if (this.closed) {
+        throw new SimError("Prefetcher " + this.thread.getName() + " is closed");
+      }
+      LockSupport.park(this);
+    }
+    this.consumer = null;
+    long stall = System.nanoTime() - start;
+    this.stalls++;
+    this.stallNanos += stall;
+    this.maxStallNanos = Math.max(this.maxStallNanos, stall);
+    return batch;
+  }
+
+  /** Stops the reader thread; the source is not called after the batch it is reading. */
+  public void close() {
+    this.closed = true;
+    LockSupport.unpark(this.thread);
+  }
+
+  /**
+   * Returns the number of batches taken
+   *
+   * @return the number of batches taken
+   */
+  public long getBatches() {
+    return this.batches;
+  }
+
+  /**
+   * Returns how many times the next batch wasn't ready when it was taken
+   *
+   * @return the number of stalls
+   */
+  public long getStalls() {
+    return this.stalls;
+  }
+
+  /**
+   * Returns the total time spent waiting for batches
+   *
+   * @return the stall time in nanoseconds
+   */
+  public long getStallNanos() {
+    return this.stallNanos;
+  }
+
+  /**
+   * Returns the longest wait for a batch
+   *
+   * @return the longest stall in nanoseconds
+   */
+  public long getMaxStallNanos() {
+    return this.maxStallNanos;
+  }
+
+  /**
+   * Returns the mean time the batches that were ready when taken had been waiting for the
+   * consumer, i.e. how far ahead of the consumer the prefetching ran
+   *
+   * @return the mean lead in nanoseconds, or 0 if no batch was ready when taken
+   */
+  public double getMeanLeadNanos() {
+    long ready = this.batches - this.stalls;
+    return ready > 0 ? (double) this.leadNanos / ready : 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d batches, %d stalls (%.3f ms, max %.3f ms), mean lead %.3f ms",
+        this.thread.getName(), this.batches, this.stalls, this.stallNanos / 1e6,
+        this.maxStallNanos / 1e6, this.getMeanLeadNanos() / 1e6);
+  }
+
+  /** A batch and the time it was ready */
+  private static final class Batch<T> {
+    private final List<T> items;
+    private final long readyTime;
+
+    private Batch(List<T> items, long readyTime) {
+      this.items = items;
+      this.readyTime = readyTime;
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.Coord;
+import core.SimError;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import util.Tuple;
+
+/**
+ * Compact binary format for external event and movement traces, and converters from the text
+ * formats. Events and movements are stored as records in chunks. Inside a chunk the records are
+ * stored by column, every column having a fixed width, so a chunk can be read straight from a
+ * memory-mapped buffer. An index of the chunks' time ranges allows seeking to a time without
+ * reading the chunks before it. Message IDs, interface IDs and host IDs are stored once in a table
+ * of strings and referred to by their index.
+ *
+ * <p>Layout (version {@value #VERSION}, all values big-endian):
+ *
+ * <ul>
+ *   <li>Header ({@value #HEADER_SIZE} bytes): magic <code>"ONETRACE"</code>, version (short),
+ *       kind (short, {@value #KIND_EVENTS} = events, {@value #KIND_MOVEMENT} = movement), number
+ *       of chunks (int), number of records (long), offset of the string table (long), offset of the
+ *       index (long) and the six offset header values of the movement format (doubles, minTime
+ *       maxTime minX maxX minY maxY; zeros for events).
+ *   <li>Chunks of N records. Event chunks: time[N] (double), action[N] (byte), from[N] (int),
+ *       to[N] (int), string[N] (int, message ID or interface ID, -1 for none), and the size and
+ *       response size (ints) of every message creation record in the chunk, in the order of the
+ *       records. Movement chunks: time[N] (double), id[N] (int, the host ID), x[N] (double),
+ *       y[N] (double).
+ *   <li>String table: number of strings (int), and for every string its length in bytes (int)
+ *       and the UTF-8 bytes.
+ *   <li>Index: for every chunk its file offset (long), number of records (int), and the smallest
+ *       and largest time of its records (doubles).
+ * </ul>
+ *
+ * <p>Event times are stored as they are in the text trace. Movement records are stored without
+ * normalizing and with the time stamp of the time instance the text reader returns them in, so
+ * the binary reader returns exactly the same tuples in the same groups.
+ *
+ * <p>Convert traces from the command line with <code>
+ * java -cp target/classes:lib/* input.BinaryTrace events|movement &lt;input&gt; &lt;output&gt;
+ * [chunkSize]</code>. {@link ExternalEventsQueue} and the ExternalMovement movement model
+ * recognize binary traces by their header.
+ */
+public final class BinaryTrace {
+  /** Version of the format written by this class ({@value}) */
+  public static final int VERSION = 1;
+  /** Kind of a trace of external events ({@value}) */
+  public static final int KIND_EVENTS = 1;
+  /** Kind of a trace of ExternalMovement locations ({@value}) */
+  public static final int KIND_MOVEMENT = 2;
+  /** Default number of records per chunk ({@value}) */
+  public static final int DEFAULT_CHUNK_SIZE = 65536;
+  /** Size of the header in bytes ({@value}) */
+  public static final int HEADER_SIZE = 88;
+
+  /** "ONETRACE" */
+  static final long MAGIC = 0x4F4E455452414345L;
+  /** bytes per event record, not counting the sizes of message creations */
+  static final int EVENT_RECORD_SIZE = 21;
+  /** bytes per movement record */
+  static final int MOVEMENT_RECORD_SIZE = 28;
+  /** bytes per index entry */
+  static final int INDEX_ENTRY_SIZE = 28;
+
+  /* action codes of the event records */
+  static final byte CREATE = 0;
+  static final byte SEND = 1;
+  static final byte DELIVERED = 2;
+  static final byte ABORT = 3;
+  static final byte DROP = 4;
+  static final byte REMOVE = 5;
+  static final byte CONNECTION_UP = 6;
+  static final byte CONNECTION_DOWN = 7;
+
+  /** number of events the converter reads at a time */
+  private static final int CONVERT_BATCH = 10000;
+
+  private BinaryTrace() {}
+
+  /**
+   * Checks if the given file is a binary trace (of any version or kind)
+   *
+   * @param file The file to check
+   * @return True if the file starts with the binary trace header
+   */
+  public static boolean isBinaryTrace(File file) {
+    if (!file.isFile() || file.length() < HEADER_SIZE) {
+      return false;
+    }
+    byte[] magic = new byte[Long.BYTES];
+    try (InputStream in = new FileInputStream(file)) {
+      if (in.read(magic) != magic.length) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    return ByteBuffer.wrap(magic).getLong() == MAGIC;
+  }
+
+  /**
+   * Converts an external events file (standard text format or the old binary format, see {@link
+   * BinaryEventsReader}) to a binary trace
+   *
+   * @param in The events file
+   * @param out The binary trace file to create
+   * @param chunkSize Number of records per chunk
+   * @return The number of events converted
+   * @throws IOException if writing the trace fails
+   */
+  public static long convertEvents(File in, File out, int chunkSize) throws IOException {
+    ExternalEventsReader reader =
+        BinaryEventsReader.isBinaryEeFile(in)
+            ? new BinaryEventsReader(in)
+            : new StandardEventsReader(in);
+    long n = 0;
+    try (BinaryTraceWriter writer = new BinaryTraceWriter(out, KIND_EVENTS, chunkSize)) {
+      List<ExternalEvent> events;
+      while ((events = reader.readEvents(CONVERT_BATCH)).size() > 0) {
+        for (ExternalEvent e : events) {
+          writeEvent(writer, e);
+        }
+        n += events.size();
+      }
+    } finally {
+      reader.close();
+    }
+    return n;
+  }
+
+  private static void writeEvent(BinaryTraceWriter writer, ExternalEvent e)
+      throws IOException {
+    if (e.getClass() == MessageCreateEvent.class) {
+      MessageCreateEvent c = (MessageCreateEvent) e;
+      writer.addEvent(c.time, CREATE, c.fromAddr, c.toAddr, c.id, c.getSize(),
+          c.getResponseSize());
+    } else if (e.getClass() == MessageRelayEvent.class) {
+      MessageRelayEvent r = (MessageRelayEvent) e;
+      byte action;
+      switch (r.getStage()) {
+        case MessageRelayEvent.SENDING:
+          action = SEND;
+          break;
+        case MessageRelayEvent.TRANSFERRED:
+          action = DELIVERED;
+          break;
+        default:
+          action = ABORT;
+          break;
+      }
+      writer.addEvent(r.time, action, r.fromAddr, r.toAddr, r.id, 0, 0);
+    } else if (e.getClass() == MessageDeleteEvent.class) {
+      MessageDeleteEvent d = (MessageDeleteEvent) e;
+      writer.addEvent(d.time, d.isDrop() ? DROP : REMOVE, d.fromAddr, d.toAddr, d.id, 0, 0);
+    } else if (e.getClass() == ConnectionEvent.class) {
+      ConnectionEvent c = (ConnectionEvent) e;
+      writer.addEvent(c.time, c.isUp ? CONNECTION_UP : CONNECTION_DOWN, c.fromAddr, c.toAddr,
+          c.interfaceId, 0, 0);
+    } else {
+      throw new SimError("Can't store " + e.getClass().getName() + " in a binary trace");
+    }
+  }
+
+  /**
+   * Converts an ExternalMovement location file (see {@link ExternalMovementReader}) to a binary
+   * trace
+   *
+   * @param in The location file
+   * @param out The binary trace file to create
+   * @param chunkSize Number of records per chunk
+   * @return The number of locations converted
+   * @throws IOException if writing the trace fails
+   */
+  public static long convertMovement(File in, File out, int chunkSize) throws IOException {
+    ExternalMovementReader reader = new ExternalMovementReader(in.getPath());
+    reader.setNormalize(false);
+    long n = 0;
+    try (BinaryTraceWriter writer = new BinaryTraceWriter(out, KIND_MOVEMENT, chunkSize)) {
+      writer.setOffsets(reader.getMinTime(), reader.getMaxTime(), reader.getMinX(),
+          reader.getMaxX(), reader.getMinY(), reader.getMaxY());
+      List<Tuple<String, Coord>> moves;
+      while ((moves = reader.readNextMovements()).size() > 0) {
+        double time = reader.getLastTimeStamp();
+        for (Tuple<String, Coord> t : moves) {
+          writer.addMove(time, t.getKey(), t.getValue().getX(), t.getValue().getY());
+        }
+        n += moves.size();
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Converts a text trace to a binary trace.
+   *
+   * @param args <code>events|movement input output [chunkSize]</code>
+   * @throws IOException if reading or writing fails
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3 || !(args[0].equals("events") || args[0].equals("movement"))) {
+      System.err.println("Usage: BinaryTrace events|movement <input> <output> [chunkSize]");
+      System.exit(1);
+    }
+    int chunkSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_CHUNK_SIZE;
+    File in = new File(args[1]);
+    File out = new File(args[2]);
+    long start = System.currentTimeMillis();
+    long n = args[0].equals("events")
+        ? convertEvents(in, out, chunkSize)
+        : convertMovement(in, out, chunkSize);
+    System.out.println("Converted " + n + " records from " + in + " (" + in.length()
+        + " bytes) to " + out + " (" + out.length() + " bytes) in "
+        + (System.currentTimeMillis() - start) / 1000.0 + "s");
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.SimError;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads external events from a binary trace (see {@link BinaryTrace}). The chunks are
+ * memory-mapped one at a time and the events are created straight from their columns. Message IDs
+ * are shared from the trace's string table.
+ */
+public class BinaryTraceEventsReader implements ExternalEventsReader {
+  private final BinaryTraceFile file;
+  private int chunk = -1;
+  private ByteBuffer data;
+  private int count;
+  private int next;
+  /** number of message creations before the next record in the chunk */
+  private int creates;
+
+  /**
+   * Opens a binary events trace
+   *
+   * @param eventsFile The trace file
+   * @throws SimError if the file is not a valid binary events trace
+   */
+  public BinaryTraceEventsReader(File eventsFile) {
+    this.file = new BinaryTraceFile(eventsFile, BinaryTrace.KIND_EVENTS);
+  }
+
+  /**
+   * Moves to the given chunk
+   *
+   * @return false if there is no such chunk
+   */
+  private boolean loadChunk(int c) {
+    this.chunk = c;
+    this.next = 0;
+    this.creates = 0;
+    if (c >= this.file.getChunkCount()) {
+      this.data = null;
+      this.count = 0;
+      return false;
+    }
+    this.data = this.file.mapChunk(c);
+    this.count = this.file.getCount(c);
+    return true;
+  }
+
+  /**
+   * Skips to the first event at or after the given time. Assumes the events are sorted by time.
+   *
+   * @param time The time
+   */
+  public void seek(double time) {
+    if (!this.loadChunk(this.file.findChunk(time))) {
+      return;
+    }
+    int lo = 0;
+    int hi = this.count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (this.data.getDouble(mid * Double.BYTES) < time) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    this.next = lo;
+    for (int i = 0; i < lo; i++) {
+      if (this.data.get(8 * this.count + i) == BinaryTrace.CREATE) {
+        this.creates++;
+      }
+    }
+  }
+
+  @Override
+  public List<ExternalEvent> readEvents(int nrof) {
+    ArrayList<ExternalEvent> events = new ArrayList<>(nrof);
+    while (events.size() < nrof) {
+      if (this.next == this.count) {
+        if (!this.loadChunk(this.chunk + 1)) {
+          break;
+        }
+        continue;
+      }
+      events.add(this.event(this.next++));
+    }
+    return events;
+  }
+
+  /** Creates the event from the i:th record of the current chunk */
+  private ExternalEvent event(int i) {
+    int n = this.count;
+    double time = this.data.getDouble(i * 8);
+    byte action = this.data.get(8 * n + i);
+    int from = this.data.getInt(9 * n + 4 * i);
+    int to = this.data.getInt(13 * n + 4 * i);
+    String string = this.file.getString(this.data.getInt(17 * n + 4 * i));
+    switch (action) {
+      case BinaryTrace.CREATE:
+        int sizes = 21 * n + 8 * this.creates++;
+        return new MessageCreateEvent(from, to, string, this.data.getInt(sizes),
+            this.data.getInt(sizes + 4), time);
+      case BinaryTrace.SEND:
+        return new MessageRelayEvent(from, to, string, time, MessageRelayEvent.SENDING);
+      case BinaryTrace.DELIVERED:
+        return new MessageRelayEvent(from, to, string, time, MessageRelayEvent.TRANSFERRED);
+      case BinaryTrace.ABORT:
+        return new MessageRelayEvent(from, to, string, time, MessageRelayEvent.ABORTED);
+      case BinaryTrace.DROP:
+        return new MessageDeleteEvent(from, string, time, true);
+      case BinaryTrace.REMOVE:
+        return new MessageDeleteEvent(from, string, time, false);
+      case BinaryTrace.CONNECTION_UP:
+        return new ConnectionEvent(from, to, string, true, time);
+      case BinaryTrace.CONNECTION_DOWN:
+        return new ConnectionEvent(from, to, string, false, time);
+      default:
+        throw new SimError("Unknown action code " + action + " in binary trace");
+    }
+  }
+
+  @Override
+  public void close() {
+    this.file.close();
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.SimError;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An open binary trace (see {@link BinaryTrace}): the header, the string table and the chunk index
+ * are read when the file is opened and the chunks are memory-mapped on demand.
+ */
+final class BinaryTraceFile implements Closeable {
+  private final File file;
+  private final FileChannel channel;
+  private final double[] offsets = new double[6];
+  private final String[] strings;
+  /** file offsets of the chunks and the string table after them */
+  private final long[] chunkOffsets;
+  private final int[] chunkCounts;
+  private final double[] chunkMaxTimes;
+
+  /**
+   * Opens a binary trace
+   *
+   * @param file The trace file
+   * @param kind The kind of trace expected
+   * @throws SimError if the file can't be read or isn't a binary trace of the right kind and
+   *     version
+   */
+  BinaryTraceFile(File file, int kind) {
+    this.file = file;
+    try {
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    } catch (IOException e) {
+      throw new SimError("Can't open binary trace " + file + ": " + e.getMessage(), e);
+    }
+    try {
+      ByteBuffer header = this.read(0, BinaryTrace.HEADER_SIZE);
+      if (header.getLong() != BinaryTrace.MAGIC) {
+        throw new SimError(file + " is not a binary trace");
+      }
+      int version = header.getShort();
+      if (version != BinaryTrace.VERSION) {
+        throw new SimError("Unsupported binary trace version " + version + " in " + file);
+      }
+      int fileKind = header.getShort();
+      if (fileKind != kind) {
+        throw new SimError("Binary trace " + file + " is of kind " + fileKind + ", expected "
+            + kind);
+      }
+      int chunkCount = header.getInt();
+      header.getLong(); // number of records
+      long stringsOffset = header.getLong();
+      long indexOffset = header.getLong();
+      for (int i = 0; i < this.offsets.length; i++) {
+        this.offsets[i] = header.getDouble();
+      }
+
+      ByteBuffer table = this.map(stringsOffset, indexOffset - stringsOffset);
+      this.strings = new String[table.getInt()];
+      byte[] bytes = new byte[64];
+      for (int i = 0; i < this.strings.length; i++) {
+        int length = table.getInt();
+        if (length > bytes.length) {
+          bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        table.get(bytes, 0, length);
+        this.strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+      }
+
+      ByteBuffer index =
+          this.read(indexOffset, chunkCount * BinaryTrace.INDEX_ENTRY_SIZE);
+      this.chunkOffsets = new long[chunkCount + 1];
+      this.chunkOffsets[chunkCount] = stringsOffset;
+      this.chunkCounts = new int[chunkCount];
+      this.chunkMaxTimes = new double[chunkCount];
+      for (int i = 0; i < chunkCount; i++) {
+        this.chunkOffsets[i] = index.getLong();
+        this.chunkCounts[i] = index.getInt();
+        index.getDouble(); // smallest time of the chunk
+        this.chunkMaxTimes[i] = index.getDouble();
+      }
+    } catch (SimError e) {
+      this.close();
+      throw e;
+    } catch (IOException | RuntimeException e) {
+      this.close();
+      throw new SimError("Invalid binary trace " + file + ": " + e, e);
+    }
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer b = ByteBuffer.allocate(length);
+    while (b.hasRemaining()) {
+      if (this.channel.read(b, position + b.position()) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+    b.flip();
+    return b;
+  }
+
+  private MappedByteBuffer map(long position, long length) throws IOException {
+    return this.channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+  }
+
+  /**
+   * Maps a chunk to memory
+   *
+   * @param chunk Index of the chunk
+   * @return the chunk's columns
+   */
+  ByteBuffer mapChunk(int chunk) {
+    try {
+      return this.map(this.chunkOffsets[chunk],
+          this.chunkOffsets[chunk + 1] - this.chunkOffsets[chunk]);
+    } catch (IOException e) {
+      throw new SimError("Can't read binary trace " + this.file + ": " + e.getMessage(), e);
+    }
+  }
+
+  int getChunkCount() {
+    return this.chunkCounts.length;
+  }
+
+  /** Returns the number of records in a chunk */
+  int getCount(int chunk) {
+    return this.chunkCounts[chunk];
+  }
+
+  /** Returns the string with the given index in the string table, or null for -1 */
+  String getString(int index) {
+    return index < 0 ? null : this.strings[index];
+  }
+
+  /** Returns a value of the offset header: minTime maxTime minX maxX minY maxY */
+  double getOffset(int i) {
+    return this.offsets[i];
+  }
+
+  /**
+   * Finds the first chunk that may contain records at or after the given time, assuming the
+   * records are sorted by time
+   *
+   * @param time The time
+   * @return index of the chunk or the number of chunks if all records are before the time
+   */
+  int findChunk(double time) {
+    int lo = 0;
+    int hi = this.chunkMaxTimes.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (this.chunkMaxTimes[mid] < time) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  @Override
+  public void close() {
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      // nothing to do
+    }
+  }
+}
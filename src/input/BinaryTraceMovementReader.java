@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.Coord;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import util.Tuple;
+
+/**
+ * Reads ExternalMovement locations from a binary trace (see {@link BinaryTrace}). Returns the same
+ * tuples in the same time instances as {@link ExternalMovementReader} does for the text trace the
+ * binary trace was converted from.
+ */
+public class BinaryTraceMovementReader implements MovementTraceReader {
+  private final BinaryTraceFile file;
+  private int chunk = -1;
+  private ByteBuffer data;
+  private int count;
+  private int next;
+  private double lastTimeStamp = -1;
+  private boolean normalize;
+
+  /**
+   * Opens a binary movement trace
+   *
+   * @param inFile The trace file
+   * @throws core.SimError if the file is not a valid binary movement trace
+   */
+  public BinaryTraceMovementReader(File inFile) {
+    this.file = new BinaryTraceFile(inFile, BinaryTrace.KIND_MOVEMENT);
+    this.normalize = true;
+  }
+
+  @Override
+  public void setNormalize(boolean normalize) {
+    this.normalize = normalize;
+  }
+
+  /**
+   * Moves to the given chunk
+   *
+   * @return false if there is no such chunk
+   */
+  private boolean loadChunk(int c) {
+    this.chunk = c;
+    this.next = 0;
+    if (c >= this.file.getChunkCount()) {
+      this.data = null;
+      this.count = 0;
+      return false;
+    }
+    this.data = this.file.mapChunk(c);
+    this.count = this.file.getCount(c);
+    return true;
+  }
+
+  /** Returns true if there is a next record, moving to the next chunk if needed */
+  private boolean hasNext() {
+    while (this.next == this.count) {
+      if (!this.loadChunk(this.chunk + 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Skips to the first time instance at or after the given time
+   *
+   * @param time The time, normalized if normalizing is on
+   */
+  public void seek(double time) {
+    double raw = this.normalize ? time + this.getMinTime() : time;
+    if (!this.loadChunk(this.file.findChunk(raw))) {
+      return;
+    }
+    int lo = 0;
+    int hi = this.count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (this.data.getDouble(mid * Double.BYTES) < raw) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    this.next = lo;
+  }
+
+  @Override
+  public List<Tuple<String, Coord>> readNextMovements() {
+    ArrayList<Tuple<String, Coord>> moves = new ArrayList<>();
+    if (!this.hasNext()) {
+      return moves;
+    }
+    double time = this.data.getDouble(this.next * 8);
+    double minX = this.normalize ? this.getMinX() : 0;
+    double minY = this.normalize ? this.getMinY() : 0;
+    do {
+      int i = this.next++;
+      int n = this.count;
+      String id = this.file.getString(this.data.getInt(8 * n + 4 * i));
+      double x = this.data.getDouble(12 * n + 8 * i);
+      double y = this.data.getDouble(20 * n + 8 * i);
+      if (this.normalize) {
+        x -= minX;
+        y -= minY;
+      }
+      moves.add(new Tuple<>(id, new Coord(x, y)));
+    } while (this.hasNext() && this.data.getDouble(this.next * 8) == time);
+
+    this.lastTimeStamp = this.normalize ? time - this.getMinTime() : time;
+    return moves;
+  }
+
+  @Override
+  public double getLastTimeStamp() {
+    return this.lastTimeStamp;
+  }
+
+  @Override
+  public double getMinTime() {
+    return this.file.getOffset(0);
+  }
+
+  @Override
+  public double getMaxTime() {
+    return this.file.getOffset(1);
+  }
+
+  @Override
+  public double getMinX() {
+    return this.file.getOffset(2);
+  }
+
+  @Override
+  public double getMaxX() {
+    return this.file.getOffset(3);
+  }
+
+  @Override
+  public double getMinY() {
+    return this.file.getOffset(4);
+  }
+
+  @Override
+  public double getMaxY() {
+    return this.file.getOffset(5);
+  }
+}
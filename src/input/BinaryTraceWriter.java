@@ -0,0 +1,233 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes binary traces in the format described in {@link BinaryTrace}. The records are buffered
+ * by column and written a chunk at a time; the string table, the index and the header are written
+ * when the writer is closed.
+ */
+final class BinaryTraceWriter implements Closeable {
+  private final FileChannel channel;
+  private final int kind;
+  private final int chunkSize;
+  private final double[] offsets = new double[6];
+
+  /* columns of the current chunk */
+  private final double[] times;
+  private final byte[] actions;
+  private final int[] from;
+  private final int[] to;
+  private final int[] strings;
+  private final int[] sizes;
+  private final int[] responseSizes;
+  private final double[] xs;
+  private final double[] ys;
+  private int count;
+
+  private final Map<String, Integer> stringIds = new HashMap<>();
+  private final List<String> stringTable = new ArrayList<>();
+  private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+  private final DataOutputStream index = new DataOutputStream(this.indexBytes);
+  private int chunkCount;
+  private long records;
+
+  BinaryTraceWriter(File file, int kind, int chunkSize) throws IOException {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+    }
+    this.channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    this.kind = kind;
+    this.chunkSize = chunkSize;
+    this.times = new double[chunkSize];
+    boolean events = kind == BinaryTrace.KIND_EVENTS;
+    this.actions = new byte[events ? chunkSize : 0];
+    this.from = new int[events ? chunkSize : 0];
+    this.to = new int[events ? chunkSize : 0];
+    this.strings = new int[chunkSize];
+    this.sizes = new int[events ? chunkSize : 0];
+    this.responseSizes = new int[events ? chunkSize : 0];
+    this.xs = new double[events ? 0 : chunkSize];
+    this.ys = new double[events ? 0 : chunkSize];
+    this.channel.position(BinaryTrace.HEADER_SIZE);
+  }
+
+  /** Sets the offset header values of a movement trace */
+  void setOffsets(double minTime, double maxTime, double minX, double maxX, double minY,
+      double maxY) {
+    this.offsets[0] = minTime;
+    this.offsets[1] = maxTime;
+    this.offsets[2] = minX;
+    this.offsets[3] = maxX;
+    this.offsets[4] = minY;
+    this.offsets[5] = maxY;
+  }
+
+  /** Adds an event record; <code>string</code> may be null */
+  void addEvent(double time, byte action, int fromAddr, int toAddr, String string, int size,
+      int responseSize) throws IOException {
+    int i = this.count;
+    this.times[i] = time;
+    this.actions[i] = action;
+    this.from[i] = fromAddr;
+    this.to[i] = toAddr;
+    this.strings[i] = this.stringId(string);
+    this.sizes[i] = size;
+    this.responseSizes[i] = responseSize;
+    this.added();
+  }
+
+  /** Adds a movement record */
+  void addMove(double time, String id, double x, double y) throws IOException {
+    int i = this.count;
+    this.times[i] = time;
+    this.strings[i] = this.stringId(id);
+    this.xs[i] = x;
+    this.ys[i] = y;
+    this.added();
+  }
+
+  private int stringId(String s) {
+    if (s == null) {
+      return -1;
+    }
+    Integer id = this.stringIds.get(s);
+    if (id == null) {
+      id = this.stringTable.size();
+      this.stringIds.put(s, id);
+      this.stringTable.add(s);
+    }
+    return id;
+  }
+
+  private void added() throws IOException {
+    this.count++;
+    this.records++;
+    if (this.count == this.chunkSize) {
+      this.writeChunk();
+    }
+  }
+
+  private void writeChunk() throws IOException {
+    int n = this.count;
+    if (n == 0) {
+      return;
+    }
+    boolean events = this.kind == BinaryTrace.KIND_EVENTS;
+    int creates = 0;
+    for (int i = 0; events && i < n; i++) {
+      if (this.actions[i] == BinaryTrace.CREATE) {
+        creates++;
+      }
+    }
+    ByteBuffer b =
+        ByteBuffer.allocate(
+            events
+                ? n * BinaryTrace.EVENT_RECORD_SIZE + creates * 2 * Integer.BYTES
+                : n * BinaryTrace.MOVEMENT_RECORD_SIZE);
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      b.putDouble(this.times[i]);
+      min = Math.min(min, this.times[i]);
+      max = Math.max(max, this.times[i]);
+    }
+    if (events) {
+      b.put(this.actions, 0, n);
+      putInts(b, this.from, n);
+      putInts(b, this.to, n);
+      putInts(b, this.strings, n);
+      for (int i = 0; i < n; i++) {
+        if (this.actions[i] == BinaryTrace.CREATE) {
+          b.putInt(this.sizes[i]);
+          b.putInt(this.responseSizes[i]);
+        }
+      }
+    } else {
+      putInts(b, this.strings, n);
+      for (int i = 0; i < n; i++) {
+        b.putDouble(this.xs[i]);
+      }
+      for (int i = 0; i < n; i++) {
+        b.putDouble(this.ys[i]);
+      }
+    }
+    this.index.writeLong(this.channel.position());
+    this.index.writeInt(n);
+    this.index.writeDouble(min);
+    this.index.writeDouble(max);
+    this.write(b);
+    this.chunkCount++;
+    this.count = 0;
+  }
+
+  private static void putInts(ByteBuffer b, int[] values, int n) {
+    for (int i = 0; i < n; i++) {
+      b.putInt(values[i]);
+    }
+  }
+
+  private void write(ByteBuffer b) throws IOException {
+    b.flip();
+    while (b.hasRemaining()) {
+      this.channel.write(b);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      this.writeChunk();
+
+      long stringsOffset = this.channel.position();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(this.stringTable.size());
+      for (String s : this.stringTable) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+      }
+      out.flush();
+      this.write(ByteBuffer.allocate(bytes.size()).put(bytes.toByteArray()));
+
+      long indexOffset = this.channel.position();
+      this.index.flush();
+      this.write(ByteBuffer.allocate(this.indexBytes.size()).put(this.indexBytes.toByteArray()));
+
+      ByteBuffer header = ByteBuffer.allocate(BinaryTrace.HEADER_SIZE);
+      header.putLong(BinaryTrace.MAGIC);
+      header.putShort((short) BinaryTrace.VERSION);
+      header.putShort((short) this.kind);
+      header.putInt(this.chunkCount);
+      header.putLong(this.records);
+      header.putLong(stringsOffset);
+      header.putLong(indexOffset);
+      for (double d : this.offsets) {
+        header.putDouble(d);
+      }
+      this.channel.position(0);
+      this.write(header);
+    } finally {
+      this.channel.close();
+    }
+  }
+}
@@ -41,6 +41,16 @@ public class EventQueueHandler {
   public static final String PRELOAD_SETTING = "nrofPreload";
   /** path of external events file -setting id ({@value}) */
   public static final String PATH_SETTING = "filePath";
+  /**
+   * time of the first external event to use -setting id ({@value}). Default is 0 (use all events).
+   * See {@link ExternalEventsQueue#START_TIME_SETTING}.
+   */
+  public static final String START_TIME_SETTING = ExternalEventsQueue.START_TIME_SETTING;
+  /**
+   * read external events file on a background thread -setting id ({@value}). Boolean; default is
+   * false. See {@link PrefetchingEventQueue}.
+   */
+  public static final String PREFETCH_SETTING = "prefetch";
 
   private final List<EventQueue> queues;
 
@@ -60,8 +70,16 @@ public class EventQueueHandler {
           preload = s.getInt(EventQueueHandler.PRELOAD_SETTING);
         }
         path = s.getSetting(EventQueueHandler.PATH_SETTING);
+        double startTime = 0;
+        if (s.contains(EventQueueHandler.START_TIME_SETTING)) {
+          startTime = s.getDouble(EventQueueHandler.START_TIME_SETTING);
+        }
 
-        this.queues.add(new ExternalEventsQueue(path, preload));
+        EventQueue eq = new ExternalEventsQueue(path, preload, startTime);
+        if (s.getBoolean(EventQueueHandler.PREFETCH_SETTING, false)) {
+          eq = new PrefetchingEventQueue(eq, preload);
+        }
+        this.queues.add(eq);
       } else if (s.contains(EventQueueHandler.CLASS_SETTING)) { // event generator class
         String className = EventQueueHandler.CLASS_PACKAGE + "." + s.getSetting(
             EventQueueHandler.CLASS_SETTING);
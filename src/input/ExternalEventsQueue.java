@@ -20,6 +20,11 @@ public class ExternalEventsQueue implements EventQueue {
   public static final String PRELOAD_SETTING = "nrofPreload";
   /** path of external events file -setting id ({@value}) */
   public static final String PATH_SETTING = "filePath";
+  /**
+   * time of the first event to use -setting id ({@value}). Events before it are skipped; binary
+   * traces (see {@link BinaryTrace}) seek to it directly. Default is 0 (use all events).
+   */
+  public static final String START_TIME_SETTING = "startTime";
 
   /** default number of preloaded events */
   public static final int DEFAULT_NROF_PRELOAD = 500;
@@ -30,24 +35,40 @@ public class ExternalEventsQueue implements EventQueue {
   private int nrofPreload;
   private List<ExternalEvent> queue;
   private boolean allEventsRead = false;
+  private double startTime = 0;
 
   /**
    * Creates a new Queue from a file
    *
-   * @param filePath Path to the file where the events are read from. If file ends with extension
-   *     defined in {@link BinaryEventsReader#BINARY_EXT} the file is assumed to be a binary file.
+   * @param filePath Path to the file where the events are read from. Binary traces (see {@link
+   *     BinaryTrace}) are recognized by their header. If file ends with extension defined in
+   *     {@link BinaryEventsReader#BINARY_EXT} the file is assumed to be a binary file.
    * @param nrofPreload How many events to preload
    * @see BinaryEventsReader#BINARY_EXT
    * @see BinaryEventsReader#storeToBinaryFile(String, List)
    */
   public ExternalEventsQueue(String filePath, int nrofPreload) {
+    this(filePath, nrofPreload, 0);
+  }
+
+  /**
+   * Creates a new Queue from a file, starting from the given time
+   *
+   * @param filePath Path to the file where the events are read from (see {@link
+   *     #ExternalEventsQueue(String, int)})
+   * @param nrofPreload How many events to preload
+   * @param startTime Time of the first event to use (see {@link #START_TIME_SETTING}); 0 uses all
+   *     events
+   */
+  public ExternalEventsQueue(String filePath, int nrofPreload, double startTime) {
     this.setNrofPreload(nrofPreload);
+    this.startTime = startTime;
     this.init(filePath);
   }
 
   /**
-   * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING} and {@link
-   * #PATH_SETTING}. The path setting supports value filling.
+   * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING}, {@link
+   * #PATH_SETTING} and {@link #START_TIME_SETTING}. The path setting supports value filling.
    *
    * @param s The settings
    */
@@ -57,6 +78,9 @@ public class ExternalEventsQueue implements EventQueue {
     } else {
       this.setNrofPreload(ExternalEventsQueue.DEFAULT_NROF_PRELOAD);
     }
+    if (s.contains(ExternalEventsQueue.START_TIME_SETTING)) {
+      this.startTime = s.getDouble(ExternalEventsQueue.START_TIME_SETTING);
+    }
     String eeFilePath = s.valueFillString(s.getSetting(ExternalEventsQueue.PATH_SETTING));
     this.init(eeFilePath);
   }
@@ -77,7 +101,13 @@ public class ExternalEventsQueue implements EventQueue {
   private void init(String eeFilePath) {
     this.eventsFile = new File(eeFilePath);
 
-    if (BinaryEventsReader.isBinaryEeFile(this.eventsFile)) {
+    if (BinaryTrace.isBinaryTrace(this.eventsFile)) {
+      BinaryTraceEventsReader binaryReader = new BinaryTraceEventsReader(this.eventsFile);
+      if (this.startTime > 0) {
+        binaryReader.seek(this.startTime);
+      }
+      this.reader = binaryReader;
+    } else if (BinaryEventsReader.isBinaryEeFile(this.eventsFile)) {
       this.reader = new BinaryEventsReader(this.eventsFile);
     } else {
       this.reader = new StandardEventsReader(this.eventsFile);
@@ -85,6 +115,11 @@ public class ExternalEventsQueue implements EventQueue {
 
     this.queue = this.readEvents(this.nrofPreload);
     this.nextEventIndex = 0;
+    if (this.startTime > 0) {
+      while (this.nextEventsTime() < this.startTime) {
+        this.nextEvent(); // skip events before the start time
+      }
+    }
   }
 
   /**
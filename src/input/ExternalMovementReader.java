@@ -8,9 +8,9 @@ import core.Coord;
 import core.SettingsError;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 import util.Tuple;
 
 /**
@@ -28,12 +28,16 @@ import util.Tuple;
  * <p>All lines must be sorted by time. Sampling interval (time difference between two time
  * instances) must be same for the whole file.
  */
-public class ExternalMovementReader {
+public class ExternalMovementReader implements MovementTraceReader {
   /* Prefix for comment lines (lines starting with this are ignored) */
   public static final String COMMENT_PREFIX = "#";
-  private final Scanner scanner;
+  private final TraceTokenizer in;
   private double lastTimeStamp = -1;
-  private String lastLine;
+  /* the fields of the last read line, whose tuple hasn't been returned yet */
+  private double nextTime;
+  private String nextId;
+  private double nextX;
+  private double nextY;
   private final double minTime;
   private final double maxTime;
   private final double minX;
@@ -52,31 +56,57 @@ public class ExternalMovementReader {
     this.normalize = true;
     File inFile = new File(inFilePath);
     try {
-      this.scanner = new Scanner(inFile);
+      this.in = new TraceTokenizer(inFile);
     } catch (FileNotFoundException e) {
       throw new SettingsError("Couldn't find external movement input " + "file " + inFile);
     }
 
-    String offsets = this.scanner.nextLine();
-    Scanner lineScan = null;
+    try {
+      if (!this.in.nextLine()) {
+        throw new SettingsError("Empty external movement input file " + inFile);
+      }
+      try {
+        this.minTime = this.in.nextDouble();
+        this.maxTime = this.in.nextDouble();
+        this.minX = this.in.nextDouble();
+        this.maxX = this.in.nextDouble();
+        this.minY = this.in.nextDouble();
+        this.maxY = this.in.nextDouble();
+      } catch (Exception e) {
+        throw new SettingsError("Invalid offset line '" + this.in.line() + "'");
+      }
 
+      if (!this.in.nextLine()) {
+        throw new SettingsError("No movement lines in external movement input file " + inFile);
+      }
+    } catch (IOException e) {
+      throw new SettingsError("Couldn't read external movement input file " + inFile, e);
+    }
+    this.parseLine();
+  }
+
+  /**
+   * Parses the fields of the current line
+   *
+   * @throws SettingsError if the line is invalid
+   */
+  private void parseLine() {
     try {
-      lineScan = new Scanner(offsets);
-      this.minTime = lineScan.nextDouble();
-      this.maxTime = lineScan.nextDouble();
-      this.minX = lineScan.nextDouble();
-      this.maxX = lineScan.nextDouble();
-      this.minY = lineScan.nextDouble();
-      this.maxY = lineScan.nextDouble();
+      this.nextTime = this.in.nextDouble();
+      this.nextId = this.in.next();
+      this.nextX = this.in.nextDouble();
+      this.nextY = this.in.nextDouble();
     } catch (Exception e) {
-      throw new SettingsError("Invalid offset line '" + offsets + "'");
-    } finally {
-      if (lineScan != null) {
-        lineScan.close();
-      }
+      throw new SettingsError("Invalid line '" + this.in.line() + "'");
     }
+  }
 
-    this.lastLine = this.scanner.nextLine();
+  private boolean hasMoreLines() {
+    try {
+      return this.in.hasMoreLines();
+    } catch (IOException e) {
+      throw new SettingsError("Couldn't read external movement input: " + e.getMessage(), e);
+    }
   }
 
   /**
@@ -98,15 +128,14 @@ public class ExternalMovementReader {
   public List<Tuple<String, Coord>> readNextMovements() {
     ArrayList<Tuple<String, Coord>> moves = new ArrayList<>();
 
-    if (!this.scanner.hasNextLine()) {
+    if (!this.hasMoreLines()) {
       return moves;
     }
 
-    Scanner lineScan = new Scanner(this.lastLine);
-    double time = lineScan.nextDouble();
-    String id = lineScan.next();
-    double x = lineScan.nextDouble();
-    double y = lineScan.nextDouble();
+    double time = this.nextTime;
+    String id = this.nextId;
+    double x = this.nextX;
+    double y = this.nextY;
 
     if (this.normalize) {
       time -= this.minTime;
@@ -116,29 +145,25 @@ public class ExternalMovementReader {
 
     this.lastTimeStamp = time;
 
-    while (this.scanner.hasNextLine() && this.lastTimeStamp == time) {
-      this.lastLine = this.scanner.nextLine();
+    while (this.hasMoreLines() && this.lastTimeStamp == time) {
+      try {
+        this.in.nextLine();
+      } catch (IOException e) {
+        throw new SettingsError("Couldn't read external movement input: " + e.getMessage(), e);
+      }
 
-      if (this.lastLine.trim().length() == 0 || this.lastLine.startsWith(
-          ExternalMovementReader.COMMENT_PREFIX)) {
+      if (this.in.isBlank() || this.in.startsWith(COMMENT_PREFIX.charAt(0))) {
         continue; /* skip empty and comment lines */
       }
 
       // add previous line's tuple
       moves.add(new Tuple<>(id, new Coord(x, y)));
 
-      lineScan = new Scanner(this.lastLine);
-
-      try {
-        time = lineScan.nextDouble();
-        id = lineScan.next();
-        x = lineScan.nextDouble();
-        y = lineScan.nextDouble();
-      } catch (Exception e) {
-        throw new SettingsError("Invalid line '" + this.lastLine + "'");
-      } finally {
-        lineScan.close();
-      }
+      this.parseLine();
+      time = this.nextTime;
+      id = this.nextId;
+      x = this.nextX;
+      y = this.nextY;
 
       if (this.normalize) {
         time -= this.minTime;
@@ -147,7 +172,7 @@ public class ExternalMovementReader {
       }
     }
 
-    if (!this.scanner.hasNextLine()) { // add the last tuple of the file
+    if (!this.hasMoreLines()) { // add the last tuple of the file
       moves.add(new Tuple<>(id, new Coord(x, y)));
     }
 
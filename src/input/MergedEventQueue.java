@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.List;
+
+/**
+ * Event queue that merges the events of several queues in time order. The queues are kept in a
+ * binary heap keyed by their next event's time, so taking an event costs O(log n) for n queues
+ * instead of asking every queue for its next event time.
+ *
+ * <p>Events of the same time are taken from the queue that comes first in the list given to the
+ * constructor; the events of a single queue keep their own order. This is the same order as
+ * scanning the queues in list order and taking the first queue with the earliest time.
+ *
+ * <p>The time of a queue is read again only after an event is taken from it (the next time this
+ * queue is used, so the event can be processed first) and when {@link #refresh(int)} or {@link
+ * #rebuild()} is called. A queue whose next event time changes for any other reason must be
+ * refreshed.
+ */
+public class MergedEventQueue implements EventQueue {
+  private final EventQueue[] queues;
+  /** cached next event times of the queues */
+  private final double[] times;
+  /** queue indexes in heap order */
+  private final int[] heap;
+  /** heap position of every queue */
+  private final int[] position;
+  /** has an event been taken from the queue at the top of the heap after it was keyed */
+  private boolean topTaken;
+
+  /**
+   * Creates a queue that merges the given queues.
+   *
+   * @param queues The queues to merge; ties are resolved in the order of this list
+   */
+  public MergedEventQueue(List<? extends EventQueue> queues) {
+    int n = queues.size();
+    this.queues = queues.toArray(new EventQueue[n]);
+    this.times = new double[n];
+    this.heap = new int[n];
+    this.position = new int[n];
+    this.rebuild();
+  }
+
+  /** Reads the next event times of all queues again. */
+  public void rebuild() {
+    int n = this.queues.length;
+    for (int i = 0; i < n; i++) {
+      this.times[i] = this.queues[i].nextEventsTime();
+      this.heap[i] = i;
+      this.position[i] = i;
+    }
+    for (int i = n / 2 - 1; i >= 0; i--) {
+      this.siftDown(i);
+    }
+    this.topTaken = false;
+  }
+
+  /**
+   * Reads the next event time of one queue again, e.g. after an event was added to it.
+   *
+   * @param index Index of the queue in the list given to the constructor
+   */
+  public void refresh(int index) {
+    this.fixTop();
+    int pos = this.position[index];
+    this.times[index] = this.queues[index].nextEventsTime();
+    this.siftUp(pos);
+    this.siftDown(this.position[index]);
+  }
+
+  /**
+   * Returns the next event of the queue with the earliest next event, or ExternalEvent with time
+   * of Double.MAX_VALUE if there are no queues.
+   *
+   * @return The next event
+   */
+  @Override
+  public ExternalEvent nextEvent() {
+    this.fixTop();
+    if (this.heap.length == 0) {
+      return new ExternalEvent(Double.MAX_VALUE);
+    }
+    this.topTaken = true;
+    return this.queues[this.heap[0]].nextEvent();
+  }
+
+  @Override
+  public double nextEventsTime() {
+    this.fixTop();
+    if (this.heap.length == 0) {
+      return Double.MAX_VALUE;
+    }
+    return this.times[this.heap[0]];
+  }
+
+  /** Re-keys the queue an event was taken from last */
+  private void fixTop() {
+    if (this.topTaken) {
+      this.topTaken = false;
+      int q = this.heap[0];
+      this.times[q] = this.queues[q].nextEventsTime();
+      this.siftDown(0);
+    }
+  }
+
+  /** Is queue a before queue b */
+  private boolean before(int a, int b) {
+    return this.times[a] < this.times[b] || (this.times[a] == this.times[b] && a < b);
+  }
+
+  private void siftUp(int pos) {
+    int q = this.heap[pos];
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      int p = this.heap[parent];
+      if (!this.before(q, p)) {
+        break;
+      }
+      this.heap[pos] = p;
+      this.position[p] = pos;
+      pos = parent;
+    }
+    this.heap[pos] = q;
+    this.position[q] = pos;
+  }
+
+  private void siftDown(int pos) {
+    int n = this.heap.length;
+    int q = this.heap[pos];
+    while (true) {
+      int child = 2 * pos + 1;
+      if (child >= n) {
+        break;
+      }
+      if (child + 1 < n && this.before(this.heap[child + 1], this.heap[child])) {
+        child++;
+      }
+      int c = this.heap[child];
+      if (!this.before(c, q)) {
+        break;
+      }
+      this.heap[pos] = c;
+      this.position[c] = pos;
+      pos = child;
+    }
+    this.heap[pos] = q;
+    this.position[q] = pos;
+  }
+}
@@ -29,6 +29,24 @@ public class MessageCreateEvent extends MessageEvent {
     this.responseSize = responseSize;
   }
 
+  /**
+   * Returns the size of the message
+   *
+   * @return the size
+   */
+  public int getSize() {
+    return this.size;
+  }
+
+  /**
+   * Returns the size of the requested response
+   *
+   * @return the response size or 0 if no response is requested
+   */
+  public int getResponseSize() {
+    return this.responseSize;
+  }
+
   /** Creates the message this event represents. */
   @Override
   public void processEvent(World world) {
@@ -27,6 +27,15 @@ public class MessageDeleteEvent extends MessageEvent {
     this.drop = drop;
   }
 
+  /**
+   * Returns true if the delete is caused by a drop
+   *
+   * @return true for a drop, false for a remove
+   */
+  public boolean isDrop() {
+    return this.drop;
+  }
+
   /** Deletes the message */
   @Override
   public void processEvent(World world) {
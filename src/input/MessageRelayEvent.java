@@ -36,6 +36,15 @@ public class MessageRelayEvent extends MessageEvent {
     this.stage = stage;
   }
 
+  /**
+   * Returns the stage of the event
+   *
+   * @return {@link #SENDING}, {@link #TRANSFERRED} or {@link #ABORTED}
+   */
+  public int getStage() {
+    return this.stage;
+  }
+
   /** Relays the message */
   @Override
   public void processEvent(World world) {
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.Coord;
+import java.util.List;
+import util.Tuple;
+
+/**
+ * Interface for readers of time-location traces for the ExternalMovement movement model.
+ *
+ * @see ExternalMovementReader
+ * @see BinaryTraceMovementReader
+ */
+public interface MovementTraceReader {
+
+  /**
+   * Sets normalizing of read values on/off. If on, values returned by {@link #readNextMovements()}
+   * are decremented by minimum values of the offsets. Default is on (normalize).
+   *
+   * @param normalize If true, normalizing is on (false -> off).
+   */
+  void setNormalize(boolean normalize);
+
+  /**
+   * Reads all new id-coordinate tuples that belong to the same time instance
+   *
+   * @return A list of tuples or empty list if there were no more moves
+   */
+  List<Tuple<String, Coord>> readNextMovements();
+
+  /**
+   * Returns the time stamp where the last moves read with {@link #readNextMovements()} belong to.
+   *
+   * @return The time stamp
+   */
+  double getLastTimeStamp();
+
+  /**
+   * Returns offset minTime
+   *
+   * @return the minTime
+   */
+  double getMinTime();
+
+  /**
+   * Returns offset maxTime
+   *
+   * @return the maxTime
+   */
+  double getMaxTime();
+
+  /**
+   * Returns offset minX
+   *
+   * @return the minX
+   */
+  double getMinX();
+
+  /**
+   * Returns offset maxX
+   *
+   * @return the maxX
+   */
+  double getMaxX();
+
+  /**
+   * Returns offset minY
+   *
+   * @return the minY
+   */
+  double getMinY();
+
+  /**
+   * Returns offset maxY
+   *
+   * @return the maxY
+   */
+  double getMaxY();
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event queue that reads the events of another queue on a background thread (see {@link
+ * BatchPrefetcher}), so that the simulation doesn't wait for the wrapped queue to read its file.
+ * The events are returned in the same order as the wrapped queue returns them. The wrapped queue
+ * is only used by the background thread, so it must not depend on the state of the simulation;
+ * external event files are fine, event generators that look at the hosts are not.
+ */
+public class PrefetchingEventQueue implements EventQueue {
+  /** default number of events per prefetched batch */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  private final BatchPrefetcher<ExternalEvent> prefetcher;
+  private List<ExternalEvent> batch;
+  private int next;
+
+  /**
+   * Creates a queue that prefetches the events of the given queue.
+   *
+   * @param queue The queue to read events from
+   * @param batchSize Number of events per batch. If less than 1, {@value #DEFAULT_BATCH_SIZE} is
+   *     used.
+   */
+  public PrefetchingEventQueue(EventQueue queue, int batchSize) {
+    int size = batchSize < 1 ? PrefetchingEventQueue.DEFAULT_BATCH_SIZE : batchSize;
+    this.prefetcher = new BatchPrefetcher<>("EventPrefetcher", () -> readBatch(queue, size));
+    this.batch = this.prefetcher.take();
+    this.next = 0;
+  }
+
+  private static List<ExternalEvent> readBatch(EventQueue queue, int size) {
+    List<ExternalEvent> events = new ArrayList<>(size);
+    while (events.size() < size && queue.nextEventsTime() != Double.MAX_VALUE) {
+      events.add(queue.nextEvent());
+    }
+    return events;
+  }
+
+  @Override
+  public ExternalEvent nextEvent() {
+    if (this.next >= this.batch.size()) { // no more events
+      return new ExternalEvent(Double.MAX_VALUE);
+    }
+
+    ExternalEvent ee = this.batch.get(this.next++);
+    if (this.next >= this.batch.size()) {
+      this.batch = this.prefetcher.take();
+      this.next = 0;
+    }
+    return ee;
+  }
+
+  @Override
+  public double nextEventsTime() {
+    if (this.next >= this.batch.size()) {
+      return Double.MAX_VALUE;
+    }
+    return this.batch.get(this.next).getTime();
+  }
+
+  /**
+   * Returns the prefetcher, e.g. for its stall and lead statistics
+   *
+   * @return the prefetcher
+   */
+  public BatchPrefetcher<ExternalEvent> getPrefetcher() {
+    return this.prefetcher;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.Coord;
+import core.SimError;
+import java.util.ArrayList;
+import java.util.List;
+import util.Tuple;
+
+/**
+ * Movement trace reader that reads the time instances of another reader on a background thread
+ * (see {@link BatchPrefetcher}). The instances are returned in the same order and with the same
+ * time stamps as the wrapped reader returns them. Reading starts on the first call of {@link
+ * #readNextMovements()}, so normalizing can be set before it.
+ */
+public class PrefetchingMovementReader implements MovementTraceReader {
+  /** default number of time instances per prefetched batch */
+  public static final int DEFAULT_BATCH_SIZE = 10;
+
+  private final MovementTraceReader reader;
+  private final int batchSize;
+  private BatchPrefetcher<Tuple<Double, List<Tuple<String, Coord>>>> prefetcher;
+  private List<Tuple<Double, List<Tuple<String, Coord>>>> batch;
+  private int next;
+  private double lastTimeStamp;
+
+  /**
+   * Creates a reader that prefetches the movements of the given reader.
+   *
+   * @param reader The reader to read movements from
+   * @param batchSize Number of time instances per batch. If less than 1, {@value
+   *     #DEFAULT_BATCH_SIZE} is used.
+   */
+  public PrefetchingMovementReader(MovementTraceReader reader, int batchSize) {
+    this.reader = reader;
+    this.batchSize = batchSize < 1 ? PrefetchingMovementReader.DEFAULT_BATCH_SIZE : batchSize;
+  }
+
+  private List<Tuple<Double, List<Tuple<String, Coord>>>> readBatch() {
+    List<Tuple<Double, List<Tuple<String, Coord>>>> instances = new ArrayList<>(this.batchSize);
+    while (instances.size() < this.batchSize) {
+      List<Tuple<String, Coord>> moves = this.reader.readNextMovements();
+      if (moves.isEmpty()) {
+        break;
+      }
+      instances.add(new Tuple<>(this.reader.getLastTimeStamp(), moves));
+    }
+    return instances;
+  }
+
+  @Override
+  public void setNormalize(boolean normalize) {
+    if (this.prefetcher != null) {
+      throw new SimError("Normalizing can't be changed after reading has started");
+    }
+    this.reader.setNormalize(normalize);
+  }
+
+  @Override
+  public List<Tuple<String, Coord>> readNextMovements() {
+    if (this.prefetcher == null) {
+      this.prefetcher = new BatchPrefetcher<>("MovementPrefetcher", this::readBatch);
+      this.batch = this.prefetcher.take();
+    }
+    if (this.next >= this.batch.size()) { // no more movements
+      return new ArrayList<>(0);
+    }
+
+    Tuple<Double, List<Tuple<String, Coord>>> instance = this.batch.get(this.next++);
+    if (this.next >= this.batch.size()) {
+      this.batch = this.prefetcher.take();
+      this.next = 0;
+    }
+    this.lastTimeStamp = instance.getKey();
+    return instance.getValue();
+  }
+
+  @Override
+  public double getLastTimeStamp() {
+    return this.lastTimeStamp;
+  }
+
+  /**
+   * Returns the prefetcher, e.g. for its stall and lead statistics
+   *
+   * @return the prefetcher or null if reading hasn't started
+   */
+  public BatchPrefetcher<Tuple<Double, List<Tuple<String, Coord>>>> getPrefetcher() {
+    return this.prefetcher;
+  }
+
+  @Override
+  public double getMinTime() {
+    return this.reader.getMinTime();
+  }
+
+  @Override
+  public double getMaxTime() {
+    return this.reader.getMaxTime();
+  }
+
+  @Override
+  public double getMinX() {
+    return this.reader.getMinX();
+  }
+
+  @Override
+  public double getMaxX() {
+    return this.reader.getMaxX();
+  }
+
+  @Override
+  public double getMinY() {
+    return this.reader.getMinY();
+  }
+
+  @Override
+  public double getMaxY() {
+    return this.reader.getMaxY();
+  }
+}
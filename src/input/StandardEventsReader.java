@@ -5,15 +5,11 @@
 package input;
 
 import core.SimError;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Pattern;
 
 /**
  * External events reader for standard-format events (created e.g by the dtnsim2parser).
@@ -55,13 +51,11 @@ public class StandardEventsReader implements ExternalEventsReader {
   /** Message identifier to use to refer to all messages ({@value}) */
   public static final String ALL_MESSAGES_ID = "*";
 
-  // private Scanner scanner;
-  private final BufferedReader reader;
+  private final TraceTokenizer in;
 
   public StandardEventsReader(File eventsFile) {
     try {
-      // this.scanner = new Scanner(eventsFile);
-      this.reader = new BufferedReader(new FileReader(eventsFile));
+      this.in = new TraceTokenizer(eventsFile);
     } catch (FileNotFoundException e) {
       throw new SimError(e.getMessage(), e);
     }
@@ -71,152 +65,121 @@ public class StandardEventsReader implements ExternalEventsReader {
   public List<ExternalEvent> readEvents(int nrof) {
     ArrayList<ExternalEvent> events = new ArrayList<>(nrof);
     int eventsRead = 0;
-    // skip empty and comment lines
-    Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 
-    String line;
-    try {
-      line = this.reader.readLine();
-    } catch (IOException e1) {
-      throw new SimError("Reading from external event file failed.");
-    }
-    while (eventsRead < nrof && line != null) {
-      Scanner lineScan = new Scanner(line);
-      if (skipPattern.matcher(line).matches()) {
-        // skip empty and comment lines
-        try {
-          line = this.reader.readLine();
-        } catch (IOException e) {
-          lineScan.close();
-          throw new SimError("Reading from external event file " + "failed.");
+    while (eventsRead < nrof) {
+      try {
+        if (!this.in.nextLine()) {
+          break;
         }
+      } catch (IOException e) {
+        throw new SimError("Reading from external event file failed.", e);
+      }
+      if (this.in.startsWith('#') || this.in.isWhitespace()) {
+        // skip empty and comment lines
         continue;
       }
 
       double time;
-      String action;
       String msgId;
       int hostAddr;
       int host2Addr;
 
       try {
-        time = lineScan.nextDouble();
-        action = lineScan.next();
+        time = this.in.nextDouble();
+        this.in.nextToken();
 
-        if (action.equals(StandardEventsReader.DROP)) {
-          msgId = lineScan.next();
-          hostAddr = this.getHostAddress(lineScan.next());
+        if (this.in.tokenEquals(StandardEventsReader.DROP)) {
+          msgId = this.in.next();
+          hostAddr = this.in.nextHostAddress();
           events.add(new MessageDeleteEvent(hostAddr, msgId, time, true));
-        } else if (action.equals(StandardEventsReader.REMOVE)) {
-          msgId = lineScan.next();
-          hostAddr = this.getHostAddress(lineScan.next());
+        } else if (this.in.tokenEquals(StandardEventsReader.REMOVE)) {
+          msgId = this.in.next();
+          hostAddr = this.in.nextHostAddress();
           events.add(new MessageDeleteEvent(hostAddr, msgId, time, false));
-        } else if (action.equals(StandardEventsReader.CONNECTION)) {
-          String connEventType;
+        } else if (this.in.tokenEquals(StandardEventsReader.CONNECTION)) {
           boolean isUp;
-          hostAddr = this.getHostAddress(lineScan.next());
-          host2Addr = this.getHostAddress(lineScan.next());
-          connEventType = lineScan.next();
-
-          String interfaceId = null;
-          if (lineScan.hasNext()) {
-            interfaceId = lineScan.next();
-          }
+          hostAddr = this.in.nextHostAddress();
+          host2Addr = this.in.nextHostAddress();
+          this.in.next();
 
-          if (connEventType.equalsIgnoreCase(StandardEventsReader.CONNECTION_UP)) {
+          if (this.in.tokenEqualsIgnoreCase(StandardEventsReader.CONNECTION_UP)) {
             isUp = true;
-          } else if (connEventType.equalsIgnoreCase(StandardEventsReader.CONNECTION_DOWN)) {
+          } else if (this.in.tokenEqualsIgnoreCase(StandardEventsReader.CONNECTION_DOWN)) {
             isUp = false;
           } else {
-            throw new SimError("Unknown up/down value '" + connEventType + "'");
+            throw new SimError("Unknown up/down value '" + this.in.token() + "'");
+          }
+
+          String interfaceId = null;
+          if (this.in.hasNext()) {
+            interfaceId = this.in.next();
           }
 
           ConnectionEvent ce = new ConnectionEvent(hostAddr, host2Addr, interfaceId, isUp, time);
 
           events.add(ce);
         } else {
-          msgId = lineScan.next();
-          hostAddr = this.getHostAddress(lineScan.next());
+          boolean create = this.in.tokenEquals(StandardEventsReader.CREATE);
+          int stage = this.tokenRelayStage();
+          String unknownAction = !create && stage < 0 ? this.in.token() : null;
 
-          host2Addr = this.getHostAddress(lineScan.next());
+          msgId = this.in.next();
+          hostAddr = this.in.nextHostAddress();
+          host2Addr = this.in.nextHostAddress();
 
-          if (action.equals(StandardEventsReader.CREATE)) {
-            int size = 0;
-
-            if (lineScan.hasNextInt()) {
-              size = lineScan.nextInt();
-            } else if (lineScan.hasNext()) {
-              size = this.convertToInteger(lineScan.next());
-            } else {
+          if (create) {
+            if (!this.in.nextToken()) {
               throw new Exception("Invalid number of columns for CREATE event");
             }
+            int size = this.tokenSize();
 
             int respSize = 0;
-            if (lineScan.hasNextInt()) {
-              respSize = lineScan.nextInt();
-            } else if (lineScan.hasNext()) {
-              respSize = this.convertToInteger(lineScan.next());
+            if (this.in.nextToken()) {
+              respSize = this.tokenSize();
             }
             events.add(new MessageCreateEvent(hostAddr, host2Addr, msgId, size, respSize, time));
           } else {
-            int stage = -1;
-            if (action.equals(StandardEventsReader.SEND)) {
-              stage = MessageRelayEvent.SENDING;
-            } else if (action.equals(StandardEventsReader.DELIVERED)) {
-              stage = MessageRelayEvent.TRANSFERRED;
-            } else if (action.equals(StandardEventsReader.ABORT)) {
-              stage = MessageRelayEvent.ABORTED;
-            } else {
-              throw new SimError("Unknown action '" + action + "' in external events");
+            if (unknownAction != null) {
+              throw new SimError("Unknown action '" + unknownAction + "' in external events");
             }
             events.add(new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage));
           }
         }
-        // discard the newline in the end
-        if (lineScan.hasNextLine()) {
-          lineScan.nextLine(); // TODO: test
-        }
         eventsRead++;
-        if (eventsRead < nrof) {
-          line = this.reader.readLine();
-        }
       } catch (Exception e) {
         e.printStackTrace();
         throw new SimError(
-            "Can't parse external event " + (eventsRead + 1) + " from '" + line + "'", e);
-      } finally {
-        lineScan.close();
+            "Can't parse external event " + (eventsRead + 1) + " from '" + this.in.line() + "'", e);
       }
     }
 
     return events;
   }
 
-  /**
-   * Parses a host address from a hostId string (the numeric part after optional non-numeric part).
-   *
-   * @param hostId The id to parse the address from
-   * @return The address
-   * @throws SimError if no address could be parsed from the id
-   */
-  private int getHostAddress(String hostId) {
-    String addressPart = "";
-    if (hostId.matches("^\\d+$")) {
-      addressPart = hostId; // host id is only the address
-    } else if (hostId.matches("^\\D+\\d+$")) {
-      String[] parts = hostId.split("\\D");
-      addressPart = parts[parts.length - 1]; // last occurence is the addr
-    } else {
-      throw new SimError("Invalid host ID '" + hostId + "'");
+  /** Returns the relay stage of the current (action) token or -1 if it isn't a relay action */
+  private int tokenRelayStage() {
+    if (this.in.tokenEquals(StandardEventsReader.SEND)) {
+      return MessageRelayEvent.SENDING;
+    } else if (this.in.tokenEquals(StandardEventsReader.DELIVERED)) {
+      return MessageRelayEvent.TRANSFERRED;
+    } else if (this.in.tokenEquals(StandardEventsReader.ABORT)) {
+      return MessageRelayEvent.ABORTED;
     }
+    return -1;
+  }
 
-    return Integer.parseInt(addressPart);
+  /** Parses the current token as a size, with an optional unit (e.g., "10k") */
+  private int tokenSize() {
+    if (this.in.tokenIsInt()) {
+      return this.in.tokenInt();
+    }
+    return this.convertToInteger(this.in.token());
   }
 
   @Override
   public void close() {
     try {
-      this.reader.close();
+      this.in.close();
     } catch (IOException e) {
     }
   }
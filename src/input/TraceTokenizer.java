@@ -0,0 +1,481 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Line and whitespace tokenizer for text trace files. The file is read through a {@link
+ * FileChannel} into a large byte buffer and lines and tokens are parsed in place: numbers and host
+ * addresses are parsed straight from the bytes and only the tokens that are needed as text (e.g.,
+ * message IDs) become Strings. Lines end at <code>\n</code>, <code>\r</code> or <code>\r\n
+ * </code> like with {@link java.io.BufferedReader#readLine()}, and tokens are separated by ASCII
+ * whitespace. The text is expected to be UTF-8 (or ASCII), and numbers always use '.' as the
+ * decimal separator.
+ *
+ * <p>Usage: call {@link #nextLine()} to move to the next line and then read its tokens, e.g., with
+ * {@link #nextDouble()} or {@link #nextToken()} and {@link #tokenEquals(String)}. Reading a missing
+ * token throws a {@link NoSuchElementException} and an invalid number a {@link
+ * NumberFormatException}.
+ */
+public class TraceTokenizer implements Closeable {
+  /** Initial size of the read buffer */
+  public static final int BUFFER_SIZE = 1 << 20;
+
+  /** largest mantissa a double holds exactly (2^53) */
+  private static final long MAX_EXACT = 1L << 53;
+  /** powers of ten that are exact doubles */
+  private static final double[] POW10 = new double[23];
+
+  static {
+    POW10[0] = 1;
+    for (int i = 1; i < POW10.length; i++) {
+      POW10[i] = POW10[i - 1] * 10;
+    }
+  }
+
+  private final FileChannel channel;
+  private byte[] buf;
+  /** number of valid bytes in the buffer */
+  private int limit;
+  private boolean eof;
+
+  /** start and end (exclusive, without the terminator) of the current line */
+  private int start;
+  private int end;
+  /** start of the next line */
+  private int next;
+  /** position of the token cursor in the current line */
+  private int pos;
+  private int tokStart;
+  private int tokEnd;
+
+  /**
+   * Opens a file for reading
+   *
+   * @param file The file
+   * @throws FileNotFoundException if the file can't be opened
+   */
+  public TraceTokenizer(File file) throws FileNotFoundException {
+    this(file, BUFFER_SIZE);
+  }
+
+  /**
+   * Opens a file for reading with the given initial buffer size. The buffer grows if a line
+   * doesn't fit in it.
+   *
+   * @param file The file
+   * @param bufferSize Initial size of the read buffer
+   * @throws FileNotFoundException if the file can't be opened
+   */
+  public TraceTokenizer(File file, int bufferSize) throws FileNotFoundException {
+    this.channel = new FileInputStream(file).getChannel();
+    this.buf = new byte[Math.max(bufferSize, 1)];
+  }
+
+  /**
+   * Moves to the next line
+   *
+   * @return true if there was a next line, false at the end of the file
+   * @throws IOException if reading the file fails
+   */
+  public boolean nextLine() throws IOException {
+    int i = this.next;
+    while (true) {
+      while (i < this.limit && this.buf[i] != '\n' && this.buf[i] != '\r') {
+        i++;
+      }
+      if (i < this.limit) {
+        if (this.buf[i] == '\n' || i + 1 < this.limit || this.eof) {
+          break;
+        }
+        // a '\r' at the end of the buffer, see if a '\n' follows
+      } else if (this.eof) {
+        if (i == this.next) {
+          return false;
+        }
+        break; // last line without a terminator
+      }
+      i -= this.compact(this.next);
+      this.fill();
+    }
+    this.start = this.next;
+    this.end = i;
+    this.next = i;
+    if (i < this.limit) {
+      this.next++;
+      if (this.buf[i] == '\r' && this.next < this.limit && this.buf[this.next] == '\n') {
+        this.next++;
+      }
+    }
+    this.pos = this.start;
+    this.tokStart = this.tokEnd = this.start;
+    return true;
+  }
+
+  /**
+   * Returns true if there is input after the current line
+   *
+   * @return true if the next call to {@link #nextLine()} will find a line
+   * @throws IOException if reading the file fails
+   */
+  public boolean hasMoreLines() throws IOException {
+    while (this.next == this.limit && !this.eof) {
+      this.compact(this.start);
+      this.fill();
+    }
+    return this.next < this.limit;
+  }
+
+  /**
+   * Moves the bytes from the given position on to the start of the buffer
+   *
+   * @return the amount the contents moved
+   */
+  private int compact(int from) {
+    System.arraycopy(this.buf, from, this.buf, 0, this.limit - from);
+    this.limit -= from;
+    this.start -= from;
+    this.end -= from;
+    this.next -= from;
+    this.pos -= from;
+    this.tokStart -= from;
+    this.tokEnd -= from;
+    return from;
+  }
+
+  /** Reads more data after the valid bytes, growing the buffer if it is full */
+  private void fill() throws IOException {
+    if (this.limit == this.buf.length) {
+      byte[] bigger = new byte[this.buf.length * 2];
+      System.arraycopy(this.buf, 0, bigger, 0, this.limit);
+      this.buf = bigger;
+    }
+    int n = this.channel.read(ByteBuffer.wrap(this.buf, this.limit, this.buf.length - this.limit));
+    if (n < 0) {
+      this.eof = true;
+    } else {
+      this.limit += n;
+    }
+  }
+
+  /**
+   * Returns the current line as a String (e.g., for error messages)
+   *
+   * @return the current line
+   */
+  public String line() {
+    return new String(this.buf, this.start, this.end - this.start, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns true if the current line has only whitespace or control characters (like {@link
+   * String#trim()} would remove)
+   *
+   * @return true if the line is blank
+   */
+  public boolean isBlank() {
+    for (int i = this.start; i < this.end; i++) {
+      if ((this.buf[i] & 0xff) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the current line has only whitespace (regular expression <code>\s*</code>)
+   *
+   * @return true if the line is empty or whitespace
+   */
+  public boolean isWhitespace() {
+    for (int i = this.start; i < this.end; i++) {
+      if (!isWhitespace(this.buf[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the current line starts with the character
+   *
+   * @param c An ASCII character
+   * @return true if the first character of the line is c
+   */
+  public boolean startsWith(char c) {
+    return this.start < this.end && this.buf[this.start] == c;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+  }
+
+  /** Whitespace between tokens, like Character.isWhitespace for ASCII */
+  private static boolean isDelimiter(byte b) {
+    return isWhitespace(b) || (b >= 0x1C && b <= 0x1F);
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  /**
+   * Returns true if the current line has more tokens
+   *
+   * @return true if there is a next token
+   */
+  public boolean hasNext() {
+    while (this.pos < this.end && isDelimiter(this.buf[this.pos])) {
+      this.pos++;
+    }
+    return this.pos < this.end;
+  }
+
+  /**
+   * Moves to the next token of the line
+   *
+   * @return true if there was a token, false at the end of the line
+   */
+  public boolean nextToken() {
+    if (!this.hasNext()) {
+      return false;
+    }
+    this.tokStart = this.pos;
+    while (this.pos < this.end && !isDelimiter(this.buf[this.pos])) {
+      this.pos++;
+    }
+    this.tokEnd = this.pos;
+    return true;
+  }
+
+  private void requireToken() {
+    if (!this.nextToken()) {
+      throw new NoSuchElementException("Missing field in '" + this.line() + "'");
+    }
+  }
+
+  /**
+   * Returns the current token as a String
+   *
+   * @return the token
+   */
+  public String token() {
+    return new String(this.buf, this.tokStart, this.tokEnd - this.tokStart,
+        StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns true if the current token equals the string
+   *
+   * @param s An ASCII string
+   * @return true if the token is s
+   */
+  public boolean tokenEquals(String s) {
+    if (this.tokEnd - this.tokStart != s.length()) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (this.buf[this.tokStart + i] != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the current token equals the string, ignoring the case of ASCII letters
+   *
+   * @param s An ASCII string
+   * @return true if the token is s in any case
+   */
+  public boolean tokenEqualsIgnoreCase(String s) {
+    if (this.tokEnd - this.tokStart != s.length()) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      int b = this.buf[this.tokStart + i];
+      int c = s.charAt(i);
+      int lower = b | 0x20;
+      if (b != c && (lower != (c | 0x20) || lower < 'a' || lower > 'z')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the next token as a String
+   *
+   * @return the token
+   * @throws NoSuchElementException if there are no more tokens on the line
+   */
+  public String next() {
+    this.requireToken();
+    return this.token();
+  }
+
+  /**
+   * Reads the next token as a decimal number
+   *
+   * @return the number
+   * @throws NoSuchElementException if there are no more tokens on the line
+   * @throws NumberFormatException if the token is not a number
+   */
+  public double nextDouble() {
+    this.requireToken();
+    return this.tokenDouble();
+  }
+
+  /**
+   * Parses the current token as a decimal number. Numbers with at most 18 significant digits and
+   * small exponents are converted exactly with one multiplication or division, others by {@link
+   * Double#parseDouble(String)}.
+   *
+   * @return the number
+   * @throws NumberFormatException if the token is not a number
+   */
+  public double tokenDouble() {
+    int i = this.tokStart;
+    boolean negative = false;
+    if (i < this.tokEnd && (this.buf[i] == '-' || this.buf[i] == '+')) {
+      negative = this.buf[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean any = false;
+    boolean fraction = false;
+    for (; i < this.tokEnd; i++) {
+      byte b = this.buf[i];
+      if (isDigit(b)) {
+        any = true;
+        if (mantissa != 0 || b != '0') {
+          if (++digits > 18) {
+            return Double.parseDouble(this.token());
+          }
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        if (fraction) {
+          scale++;
+        }
+      } else if (b == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    int exponent = 0;
+    if (any && i < this.tokEnd && (this.buf[i] == 'e' || this.buf[i] == 'E')) {
+      i++;
+      boolean negExp = false;
+      if (i < this.tokEnd && (this.buf[i] == '-' || this.buf[i] == '+')) {
+        negExp = this.buf[i] == '-';
+        i++;
+      }
+      int expStart = i;
+      for (; i < this.tokEnd && isDigit(this.buf[i]) && exponent < 1000; i++) {
+        exponent = exponent * 10 + (this.buf[i] - '0');
+      }
+      if (i == expStart) {
+        any = false;
+      }
+      exponent = negExp ? -exponent : exponent;
+    }
+    int e10 = exponent - scale;
+    if (!any || i != this.tokEnd || mantissa >= MAX_EXACT || e10 < -22 || e10 > 22) {
+      return Double.parseDouble(this.token());
+    }
+    double value = e10 >= 0 ? mantissa * POW10[e10] : mantissa / POW10[-e10];
+    return negative ? -value : value;
+  }
+
+  /**
+   * Returns true if the current token is a decimal integer that fits in an int
+   *
+   * @return true if {@link #tokenInt()} can parse the token
+   */
+  public boolean tokenIsInt() {
+    int i = this.tokStart;
+    if (i < this.tokEnd && (this.buf[i] == '-' || this.buf[i] == '+')) {
+      i++;
+    }
+    if (i == this.tokEnd || this.tokEnd - i > 10) {
+      return false;
+    }
+    for (int j = i; j < this.tokEnd; j++) {
+      if (!isDigit(this.buf[j])) {
+        return false;
+      }
+    }
+    long value = this.parseLong(i, this.tokEnd);
+    if (this.buf[this.tokStart] == '-') {
+      value = -value;
+    }
+    return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Parses the current token as an int. Check the token first with {@link #tokenIsInt()}.
+   *
+   * @return the value
+   */
+  public int tokenInt() {
+    int i = this.tokStart;
+    boolean negative = this.buf[i] == '-';
+    if (negative || this.buf[i] == '+') {
+      i++;
+    }
+    long value = this.parseLong(i, this.tokEnd);
+    return (int) (negative ? -value : value);
+  }
+
+  private long parseLong(int from, int to) {
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      value = value * 10 + (this.buf[i] - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Reads the next token as a host ID and returns the address in it. The ID must be an address or
+   * a non-numeric prefix followed by the address (e.g., "p12").
+   *
+   * @return the address
+   * @throws NoSuchElementException if there are no more tokens on the line
+   * @throws NumberFormatException if the ID is not valid
+   */
+  public int nextHostAddress() {
+    this.requireToken();
+    int digitsStart = this.tokEnd;
+    while (digitsStart > this.tokStart && isDigit(this.buf[digitsStart - 1])) {
+      digitsStart--;
+    }
+    boolean valid = digitsStart < this.tokEnd && this.tokEnd - digitsStart <= 10;
+    for (int i = this.tokStart; valid && i < digitsStart; i++) {
+      valid = !isDigit(this.buf[i]);
+    }
+    long address = valid ? this.parseLong(digitsStart, this.tokEnd) : -1;
+    if (address < 0 || address > Integer.MAX_VALUE) {
+      throw new NumberFormatException("Invalid host ID '" + this.token() + "'");
+    }
+    return (int) address;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
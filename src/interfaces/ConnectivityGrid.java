@@ -4,15 +4,20 @@
  */
 package interfaces;
 
+import core.Connection;
 import core.Coord;
 import core.DTNSim;
+import core.HostWorkers;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
 import core.World;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import movement.MovementModel;
 
 /**
@@ -28,6 +33,11 @@ import movement.MovementModel;
  * chance of being close enough for connection. Then only that subset of interfaces is checked for
  * possible connectivity.
  *
+ * <p>With the {@link #BATCH_UPDATE_S} setting the grid updates the connections of all its
+ * interfaces at once in the beginning of every update round (see {@link
+ * #updateConnections(HostWorkers)}) instead of every interface updating its own location and
+ * checking the interfaces near it.
+ *
  * <p><strong>Note:</strong> this class does NOT support negative coordinates. Also, it makes sense
  * to normalize the coordinates to start from zero to conserve memory.
  */
@@ -42,10 +52,24 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
   public static final String CELL_SIZE_MULT_S = "cellSizeMult";
   /** default value for cell size multiplier ({@value}) */
   public static final int DEF_CON_CELL_SIZE_MULT = 5;
+
+  /**
+   * Should the connections be updated in one batch per update round -setting id ({@value}).
+   * Boolean (true/false) variable used in {@link World#OPTIMIZATION_SETTINGS_NS} name space. If
+   * true, the interfaces' locations are read to primitive arrays once per round, every pair of
+   * interfaces in neighboring cells is checked only once and the connections that went out of range
+   * are torn down and the new ones created before any host is updated. Only grids whose interfaces
+   * are all {@link SimpleBroadcastInterface}s are updated this way. Changes the results since the
+   * connections no longer change between the updates of two hosts of the same round. Default =
+   * false.
+   */
+  public static final String BATCH_UPDATE_S = "batchConnectivity";
+
   static HashMap<Integer, ConnectivityGrid> gridobjects;
   private static int worldSizeX;
   private static int worldSizeY;
   private static int cellSizeMultiplier;
+  private static boolean batchUpdate;
 
   static {
     DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
@@ -58,6 +82,30 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
   private final int rows;
   private final int cols;
 
+  /** interfaces in the order they were added */
+  private final List<NetworkInterface> members;
+  /** indexes of the interfaces in {@link #members} */
+  private final HashMap<NetworkInterface, Integer> indexes;
+  /** are the connections updated in batches */
+  private boolean batched;
+
+  /* state of the batch update, indexed by member */
+  private double[] xs = new double[0];
+  private double[] ys = new double[0];
+  private double[] ranges = new double[0];
+  private boolean[] active = new boolean[0];
+  /** members sorted by cell; members of a cell start at cellStart[cell] */
+  private int[] cellMembers = new int[0];
+  private final int[] cellStart;
+  /** pairs in range found by every stripe of rows */
+  private long[][] stripePairs = new long[0][];
+  private int[] stripeSizes = new int[0];
+  /** sorted keys of all the pairs in range and of the connected pairs */
+  private long[] inRange = new long[0];
+  private int nrofInRange;
+  private long[] connected = new long[0];
+  private int nrofConnected;
+
   /**
    * Creates a new overlay connectivity grid
    *
@@ -77,10 +125,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
       }
     }
     ginterfaces = new HashMap<NetworkInterface, GridCell>();
+    this.members = new ArrayList<NetworkInterface>();
+    this.indexes = new HashMap<NetworkInterface, Integer>();
+    this.cellStart = new int[(rows + 2) * (cols + 2) + 1];
+    this.batched = batchUpdate;
   }
 
   public static void reset() {
-    gridobjects = new HashMap<Integer, ConnectivityGrid>();
+    gridobjects = new LinkedHashMap<Integer, ConnectivityGrid>();
 
     Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
     int[] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE, 2);
@@ -102,6 +154,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
               + "."
               + CELL_SIZE_MULT_S);
     }
+    batchUpdate = s.getBoolean(BATCH_UPDATE_S, false);
   }
 
   /**
@@ -131,6 +184,11 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
     GridCell c = cellFromCoord(ni.getLocation());
     c.addInterface(ni);
     ginterfaces.put(ni, c);
+    this.indexes.put(ni, this.members.size());
+    this.members.add(ni);
+    if (!(ni instanceof SimpleBroadcastInterface)) {
+      this.batched = false;
+    }
   }
 
   /**
@@ -144,6 +202,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
       c.removeInterface(ni);
     }
     ginterfaces.remove(ni);
+    if (this.members.remove(ni)) {
+      this.indexes.clear();
+      for (int i = 0, n = this.members.size(); i < n; i++) {
+        this.indexes.put(this.members.get(i), i);
+      }
+    }
   }
 
   /**
@@ -172,34 +236,6 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
     }
   }
 
-  /**
-   * Finds all neighboring cells and the cell itself based on the coordinates
-   *
-   * @param c The coordinates
-   * @return Array of neighboring cells
-   */
-  private GridCell[] getNeighborCellsByCoord(Coord c) {
-    // +1 due empty cells on both sides of the matrix
-    int row = (int) (c.getY() / cellSize) + 1;
-    int col = (int) (c.getX() / cellSize) + 1;
-    return getNeighborCells(row, col);
-  }
-
-  /**
-   * Returns an array of Cells that contains the neighbors of a certain cell and the cell itself.
-   *
-   * @param row Row index of the cell
-   * @param col Column index of the cell
-   * @return Array of neighboring Cells
-   */
-  private GridCell[] getNeighborCells(int row, int col) {
-    return new GridCell[] {
-      cells[row - 1][col - 1], cells[row - 1][col], cells[row - 1][col + 1], // 1st row
-      cells[row][col - 1], cells[row][col], cells[row][col + 1], // 2nd row
-      cells[row + 1][col - 1], cells[row + 1][col], cells[row + 1][col + 1] // 3rd row
-    };
-  }
-
   /**
    * Get the cell having the specific coordinates
    *
@@ -234,15 +270,245 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
     GridCell loc = ginterfaces.get(ni);
 
     if (loc != null) {
-      GridCell[] neighbors = getNeighborCellsByCoord(ni.getLocation());
-      for (int i = 0; i < neighbors.length; i++) {
-        niList.addAll(neighbors[i].getInterfaces());
+      // +1 due empty cells on both sides of the matrix
+      Coord c = ni.getLocation();
+      int row = (int) (c.getY() / cellSize) + 1;
+      int col = (int) (c.getX() / cellSize) + 1;
+      for (int i = row - 1; i <= row + 1; i++) {
+        for (int j = col - 1; j <= col + 1; j++) {
+          niList.addAll(this.cells[i][j].getInterfaces());
+        }
       }
     }
 
     return niList;
   }
 
+  /**
+   * Returns true if the connections of this grid's interfaces are updated in batches by {@link
+   * #updateConnections(HostWorkers)} (and not by the interfaces themselves)
+   */
+  @Override
+  public boolean isBatchUpdated() {
+    return this.batched;
+  }
+
+  /**
+   * Updates the connections of the interfaces of all grids that are updated in batches. Does
+   * nothing if batch updates are not enabled.
+   *
+   * @param workers Workers that find the interfaces in range in stripes of grid rows
+   */
+  public static void updateConnections(HostWorkers workers) {
+    if (!batchUpdate) {
+      return;
+    }
+    for (ConnectivityGrid grid : gridobjects.values()) {
+      if (grid.batched) {
+        grid.updateBatch(workers);
+      }
+    }
+  }
+
+  /**
+   * Moves all interfaces to their current cells, finds all pairs of interfaces in range, tears down
+   * the connections of the pairs that are no longer in range and tries to connect the new pairs.
+   */
+  private void updateBatch(HostWorkers workers) {
+    int n = this.members.size();
+    if (this.xs.length < n) {
+      int capacity = Math.max(n, this.xs.length * 2);
+      this.xs = new double[capacity];
+      this.ys = new double[capacity];
+      this.ranges = new double[capacity];
+      this.active = new boolean[capacity];
+      this.cellMembers = new int[capacity];
+    }
+
+    /* locations and cells; members are sorted by cell with a counting sort */
+    int stride = this.cols + 2;
+    Arrays.fill(this.cellStart, 0);
+    for (int i = 0; i < n; i++) {
+      NetworkInterface ni = this.members.get(i);
+      Coord c = ni.getLocation();
+      this.xs[i] = c.getX();
+      this.ys[i] = c.getY();
+      this.ranges[i] = ni.getTransmitRange();
+      this.active[i] = ni.getHost().isRadioActive();
+      GridCell cell = cellFromCoord(c);
+      GridCell oldCell = ginterfaces.get(ni);
+      if (cell != oldCell) {
+        oldCell.moveInterface(ni, cell);
+        ginterfaces.put(ni, cell);
+      }
+      this.cellStart[cellIndex(c, stride) + 1]++;
+    }
+    for (int i = 1; i < this.cellStart.length; i++) {
+      this.cellStart[i] += this.cellStart[i - 1];
+    }
+    for (int i = 0; i < n; i++) {
+      this.cellMembers[this.cellStart[cellIndex(this.xs[i], this.ys[i], stride)]++] = i;
+    }
+    /* the fill moved the starts to the ends of the cells */
+    for (int i = this.cellStart.length - 1; i > 0; i--) {
+      this.cellStart[i] = this.cellStart[i - 1];
+    }
+    this.cellStart[0] = 0;
+
+    /* pairs in range, stripe by stripe */
+    int nrofStripes = Math.max(1, Math.min(workers.getNrofThreads(), this.rows));
+    if (this.stripePairs.length != nrofStripes) {
+      this.stripePairs = new long[nrofStripes][16];
+      this.stripeSizes = new int[nrofStripes];
+    }
+    workers.forEach(
+        nrofStripes,
+        s ->
+            this.findPairs(
+                s,
+                1 + (int) ((long) this.rows * s / nrofStripes),
+                1 + (int) ((long) this.rows * (s + 1) / nrofStripes)));
+    this.nrofInRange = 0;
+    for (int s = 0; s < nrofStripes; s++) {
+      this.inRange = ensureCapacity(this.inRange, this.nrofInRange + this.stripeSizes[s]);
+      System.arraycopy(
+          this.stripePairs[s], 0, this.inRange, this.nrofInRange, this.stripeSizes[s]);
+      this.nrofInRange += this.stripeSizes[s];
+    }
+    Arrays.sort(this.inRange, 0, this.nrofInRange);
+
+    /* links down: the connections of the pairs that are no longer in range */
+    this.nrofConnected = 0;
+    for (int i = 0; i < n; i++) {
+      if (!this.active[i]) {
+        continue; /* the host tears down its connections itself */
+      }
+      SimpleBroadcastInterface ni = (SimpleBroadcastInterface) this.members.get(i);
+      ni.disconnectOutOfRange(this);
+      List<Connection> cons = ni.getConnections();
+      for (int k = 0, m = cons.size(); k < m; k++) {
+        Integer j = this.indexes.get(cons.get(k).getOtherInterface(ni));
+        if (j != null) {
+          this.connected = ensureCapacity(this.connected, this.nrofConnected + 1);
+          this.connected[this.nrofConnected++] = pairKey(i, j);
+        }
+      }
+    }
+    Arrays.sort(this.connected, 0, this.nrofConnected);
+
+    /* links up: the pairs in range that are not connected yet */
+    for (int k = 0, c = 0; k < this.nrofInRange; k++) {
+      long key = this.inRange[k];
+      while (c < this.nrofConnected && this.connected[c] < key) {
+        c++;
+      }
+      if (c < this.nrofConnected && this.connected[c] == key) {
+        continue;
+      }
+      int i = (int) (key >>> 32);
+      int j = (int) key;
+      NetworkInterface a = this.members.get(i);
+      NetworkInterface b = this.members.get(j);
+      /* connecting is not always symmetric, so both ends try like in their own updates */
+      if (this.active[i]) {
+        a.connect(b);
+      }
+      if (this.active[j]) {
+        b.connect(a);
+      }
+    }
+  }
+
+  /** Finds the pairs in range whose first interface is on the given rows */
+  private void findPairs(int stripe, int fromRow, int toRow) {
+    int stride = this.cols + 2;
+    this.stripeSizes[stripe] = 0;
+    for (int row = fromRow; row < toRow; row++) {
+      for (int col = 1; col <= this.cols; col++) {
+        int cell = row * stride + col;
+        int from = this.cellStart[cell];
+        int to = this.cellStart[cell + 1];
+        for (int a = from; a < to; a++) {
+          int i = this.cellMembers[a];
+          /* the rest of the same cell and the cells after this one; every pair only once */
+          for (int b = a + 1; b < to; b++) {
+            this.checkPair(stripe, i, this.cellMembers[b]);
+          }
+          this.checkCell(stripe, i, cell + 1);
+          this.checkCell(stripe, i, cell + stride - 1);
+          this.checkCell(stripe, i, cell + stride);
+          this.checkCell(stripe, i, cell + stride + 1);
+        }
+      }
+    }
+  }
+
+  private void checkCell(int stripe, int i, int cell) {
+    for (int b = this.cellStart[cell], to = this.cellStart[cell + 1]; b < to; b++) {
+      this.checkPair(stripe, i, this.cellMembers[b]);
+    }
+  }
+
+  private void checkPair(int stripe, int i, int j) {
+    double dx = this.xs[i] - this.xs[j];
+    double dy = this.ys[i] - this.ys[j];
+    /* the same test as NetworkInterface.isWithinRange */
+    if (Math.sqrt(dx * dx + dy * dy) <= Math.max(this.ranges[i], this.ranges[j])) {
+      long[] pairs = this.stripePairs[stripe];
+      int size = this.stripeSizes[stripe];
+      if (size == pairs.length) {
+        pairs = Arrays.copyOf(pairs, size * 2);
+        this.stripePairs[stripe] = pairs;
+      }
+      pairs[size] = pairKey(i, j);
+      this.stripeSizes[stripe] = size + 1;
+    }
+  }
+
+  /**
+   * Returns true if two interfaces were in range in the latest batch update. Interfaces that are
+   * not in this grid are checked by their current locations.
+   *
+   * @param ni An interface of this grid
+   * @param other The other interface
+   * @return True if the interfaces are in range of each other
+   */
+  boolean isInRange(NetworkInterface ni, NetworkInterface other) {
+    Integer i = this.indexes.get(ni);
+    Integer j = this.indexes.get(other);
+    if (i == null || j == null) {
+      return ni.getLocation().distance(other.getLocation())
+          <= Math.max(ni.getTransmitRange(), other.getTransmitRange());
+    }
+    return Arrays.binarySearch(this.inRange, 0, this.nrofInRange, pairKey(i, j)) >= 0;
+  }
+
+  /**
+   * Returns the number of interface pairs that were in range in the latest batch update
+   *
+   * @return the number of pairs
+   */
+  public int getNrofPairsInRange() {
+    return this.nrofInRange;
+  }
+
+  private int cellIndex(Coord c, int stride) {
+    return cellIndex(c.getX(), c.getY(), stride);
+  }
+
+  private int cellIndex(double x, double y, int stride) {
+    // +1 due empty cells on both sides of the matrix
+    return ((int) (y / cellSize) + 1) * stride + (int) (x / cellSize) + 1;
+  }
+
+  private static long pairKey(int i, int j) {
+    return i < j ? ((long) i << 32) | j : ((long) j << 32) | i;
+  }
+
+  private static long[] ensureCapacity(long[] a, int size) {
+    return size <= a.length ? a : Arrays.copyOf(a, Math.max(size, a.length * 2));
+  }
+
   /**
    * Returns a string representation of the ConnectivityCells object
    *
@@ -149,7 +149,7 @@ public class ConnectivityGridRouter extends ConnectivityOptimizer {
     netinterf.clear();
     nearInterfaces.clear();
     Coord routerLocation = ni.getHost().getLocation();
-    String interfaceType = ni.getInterfaceType();
+    int interfaceType = ni.getInterfaceTypeId();
     int areaNo = getAreaBelong(routerLocation);
     conveyAreaNo = areaNo;
     /** neighbor areas .No*/
@@ -174,7 +174,7 @@ public class ConnectivityGridRouter extends ConnectivityOptimizer {
 
 				for (int c = 0, cn = filterNI.size(); c < cn; c++)
 				/** find interface using the same technology and channel*/ {
-					if (filterNI.get(c).getInterfaceType().equals(interfaceType)) {
+					if (filterNI.get(c).getInterfaceTypeId() == interfaceType) {
 						netinterf.add(filterNI.get(c));
 						List<NetworkInterface> tmpInterface = new ArrayList<NetworkInterface>();
 
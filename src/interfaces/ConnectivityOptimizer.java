@@ -33,4 +33,12 @@ public abstract class ConnectivityOptimizer {
 
   /** Finds all other interfaces that are registered to the ConnectivityOptimizer */
   public abstract Collection<NetworkInterface> getAllInterfaces();
+
+  /**
+   * Returns true if the optimizer updates the connections of its interfaces itself, so the
+   * interfaces should not do it in their update
+   */
+  public boolean isBatchUpdated() {
+    return false;
+  }
 }
@@ -65,7 +65,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
    * creates new ones).
    */
   public void update() {
-    if (optimizer == null) {
+    if (optimizer == null || optimizer.isBatchUpdated()) {
       return; /* nothing to do */
     }
 
@@ -92,6 +92,29 @@ public class SimpleBroadcastInterface extends NetworkInterface {
     }
   }
 
+  /**
+   * Tears down the connections to interfaces that are no longer in range. Used by the batch update
+   * of the connectivity grid.
+   *
+   * @param grid The grid that knows which interfaces are in range
+   */
+  void disconnectOutOfRange(ConnectivityGrid grid) {
+    for (int i = 0; i < this.connections.size(); ) {
+      Connection con = this.connections.get(i);
+      NetworkInterface anotherInterface = con.getOtherInterface(this);
+
+      // all connections should be up at this stage
+      assert con.isUp() : "Connection " + con + " was down!";
+
+      if (!grid.isInRange(this, anotherInterface)) {
+        disconnect(con, anotherInterface);
+        connections.remove(i);
+      } else {
+        i++;
+      }
+    }
+  }
+
   /**
    * Creates a connection to another host. This method does not do any checks on whether the other
    * node is in range or active
@@ -8,7 +8,12 @@ import core.Coord;
 import core.DTNSim;
 import core.Settings;
 import core.SimClock;
+import input.BinaryTrace;
+import input.BinaryTraceMovementReader;
 import input.ExternalMovementReader;
+import input.MovementTraceReader;
+import input.PrefetchingMovementReader;
+import java.io.File;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -24,12 +29,17 @@ public class ExternalMovement extends MovementModel {
   public static final String MOVEMENT_FILE_S = "file";
   /** number of preloaded intervals per preload run -setting id ({@value}) */
   public static final String NROF_PRELOAD_S = "nrofPreload";
+  /**
+   * read the locations file on a background thread -setting id ({@value}). Boolean; default is
+   * false. See {@link PrefetchingMovementReader}.
+   */
+  public static final String PREFETCH_S = "prefetch";
 
   /** default initial location for excess nodes */
   private static final Coord DEF_INIT_LOC = new Coord(0, 0);
   /** minimum number intervals that should be preloaded ahead of sim time */
   private static final double MIN_AHEAD_INTERVALS = 2;
-  private static ExternalMovementReader reader;
+  private static MovementTraceReader reader;
   private static String inputFileName;
   /** mapping of external id to movement model */
   private static Map<String, ExternalMovement> idMapping;
@@ -75,7 +85,16 @@ public class ExternalMovement extends MovementModel {
       Settings s = new Settings(ExternalMovement.EXTERNAL_MOVEMENT_NS);
       ExternalMovement.idMapping = new HashMap<>();
       ExternalMovement.inputFileName = s.getSetting(ExternalMovement.MOVEMENT_FILE_S);
-      ExternalMovement.reader = new ExternalMovementReader(ExternalMovement.inputFileName);
+      File inputFile = new File(ExternalMovement.inputFileName);
+      if (BinaryTrace.isBinaryTrace(inputFile)) {
+        ExternalMovement.reader = new BinaryTraceMovementReader(inputFile);
+      } else {
+        ExternalMovement.reader = new ExternalMovementReader(ExternalMovement.inputFileName);
+      }
+      if (s.getBoolean(ExternalMovement.PREFETCH_S, false)) {
+        ExternalMovement.reader = new PrefetchingMovementReader(ExternalMovement.reader,
+            PrefetchingMovementReader.DEFAULT_BATCH_SIZE);
+      }
 
       ExternalMovement.initLocations = ExternalMovement.reader.readNextMovements();
       ExternalMovement.initTime = ExternalMovement.reader.getLastTimeStamp();
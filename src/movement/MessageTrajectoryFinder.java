@@ -1,7 +1,7 @@
 package movement;
 
-import core.Coord;
 import core.DTNHost;
+import core.InterfaceTypes;
 import core.NetworkInterface;
 import core.Settings;
 import core.SimScenario;
@@ -21,6 +21,7 @@ import java.util.List;
  */
 public class MessageTrajectoryFinder extends MapBasedMovement implements SwitchableMovement {
 
+  private static final int PRE_ROUTER_INTERFACE = InterfaceTypes.idOf("preRouterInterface");
   private DijkstraPathFinder pathFinder;
   private List<DTNHost> trl;
 
@@ -68,7 +69,7 @@ public class MessageTrajectoryFinder extends MapBasedMovement implements Switcha
       NetworkInterface ni = null;
       //			System.out.println(tr.get(trCount).getNets());
       for (NetworkInterface nii : tr.get(trCount).getNets()) {
-				if (nii.getInterfaceType().equals("preRouterInterface")) {
+				if (nii.getInterfaceTypeId() == PRE_ROUTER_INTERFACE) {
 					ni = nii;
 				}
       }
@@ -81,13 +82,11 @@ public class MessageTrajectoryFinder extends MapBasedMovement implements Switcha
 
   public List<DTNHost> findTrajectoryRouters(List<MapNode> mp, List<DTNHost> hosts) {
     List<DTNHost> routers = new ArrayList<DTNHost>();
+    RouterSpatialIndex index = RouterSpatialIndex.getInstance();
     for (MapNode n : mp) {
-      Coord c = n.getLocation();
-      for (DTNHost h : hosts) {
-        if (h.name.startsWith("R") && c.getX() == h.getLocation().getX() && c.getY() == h.getLocation().getY()) {
-          routers.add(h);
-          break;
-        }
+      DTNHost h = index.getRouterAt(n.getLocation());
+      if (h != null) {
+        routers.add(h);
       }
     }
     return routers;
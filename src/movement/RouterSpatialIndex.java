@@ -0,0 +1,231 @@
+package movement;
+
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.SimScenario;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable spatial index (2-d tree) over the locations of the static routers (hosts whose name
+ * starts with "R"). Answers exact location, nearest router and k nearest routers queries in
+ * logarithmic time instead of scanning all routers. The router locations are read when the index
+ * is created, so the routers must not move afterwards. Ties (routers at the same distance) are
+ * resolved in favor of the router that comes first in the host list, i.e., the results are the
+ * same as with a linear scan over the hosts. The index can be shared between threads.
+ */
+public class RouterSpatialIndex {
+  private static RouterSpatialIndex index;
+
+  static {
+    DTNSim.registerForReset(RouterSpatialIndex.class.getCanonicalName());
+    RouterSpatialIndex.reset();
+  }
+
+  /** tree nodes: the median of every index range is the root of the subtree of that range */
+  private final DTNHost[] routers;
+  private final double[] xs;
+  private final double[] ys;
+  /** position of each router in the original list, used for resolving ties */
+  private final int[] ranks;
+
+  /**
+   * Returns the index of the current scenario's routers. The index is created at the first call,
+   * when the routers must already be placed.
+   *
+   * @return The index
+   */
+  public static synchronized RouterSpatialIndex getInstance() {
+    if (RouterSpatialIndex.index == null) {
+      List<DTNHost> routers = new ArrayList<DTNHost>();
+      for (DTNHost h : SimScenario.getInstance().getHosts()) {
+        if (h.name.startsWith("R")) {
+          routers.add(h);
+        }
+      }
+      RouterSpatialIndex.index = new RouterSpatialIndex(routers);
+    }
+    return RouterSpatialIndex.index;
+  }
+
+  /** Drops the index of the previous run */
+  public static synchronized void reset() {
+    RouterSpatialIndex.index = null;
+  }
+
+  /**
+   * Creates an index over the given routers
+   *
+   * @param routers The routers to index. The order of the list resolves ties.
+   */
+  public RouterSpatialIndex(List<DTNHost> routers) {
+    int n = routers.size();
+    Integer[] order = new Integer[n];
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+      x[i] = routers.get(i).getLocation().getX();
+      y[i] = routers.get(i).getLocation().getY();
+    }
+    build(order, x, y, 0, n, 0);
+
+    this.routers = new DTNHost[n];
+    this.xs = new double[n];
+    this.ys = new double[n];
+    this.ranks = new int[n];
+    for (int i = 0; i < n; i++) {
+      int r = order[i];
+      this.routers[i] = routers.get(r);
+      this.xs[i] = x[r];
+      this.ys[i] = y[r];
+      this.ranks[i] = r;
+    }
+  }
+
+  private static void build(Integer[] order, double[] x, double[] y, int lo, int hi, int depth) {
+    if (hi - lo < 2) {
+      return;
+    }
+    double[] axis = (depth & 1) == 0 ? x : y;
+    Arrays.sort(order, lo, hi, (a, b) -> Double.compare(axis[a], axis[b]));
+    int mid = (lo + hi) >>> 1;
+    build(order, x, y, lo, mid, depth + 1);
+    build(order, x, y, mid + 1, hi, depth + 1);
+  }
+
+  /**
+   * Returns the number of indexed routers
+   *
+   * @return the number of indexed routers
+   */
+  public int size() {
+    return this.routers.length;
+  }
+
+  /**
+   * Returns the router at exactly the given location
+   *
+   * @param c The location
+   * @return The router or null if there's no router at the location
+   */
+  public DTNHost getRouterAt(Coord c) {
+    int i = this.findExact(c.getX(), c.getY(), 0, this.routers.length, 0, -1);
+    return i < 0 ? null : this.routers[i];
+  }
+
+  private int findExact(double x, double y, int lo, int hi, int depth, int best) {
+    if (lo >= hi) {
+      return best;
+    }
+    int mid = (lo + hi) >>> 1;
+    if (this.xs[mid] == x
+        && this.ys[mid] == y
+        && (best < 0 || this.ranks[mid] < this.ranks[best])) {
+      best = mid;
+    }
+    double diff = (depth & 1) == 0 ? x - this.xs[mid] : y - this.ys[mid];
+    if (diff <= 0) {
+      best = this.findExact(x, y, lo, mid, depth + 1, best);
+    }
+    if (diff >= 0) {
+      best = this.findExact(x, y, mid + 1, hi, depth + 1, best);
+    }
+    return best;
+  }
+
+  /**
+   * Returns the router nearest to the given location
+   *
+   * @param c The location
+   * @return The nearest router or null if the index is empty
+   */
+  public DTNHost getNearest(Coord c) {
+    Neighbors best = new Neighbors(1);
+    this.findNearest(c.getX(), c.getY(), 0, this.routers.length, 0, best);
+    return best.size == 0 ? null : this.routers[best.nodes[0]];
+  }
+
+  /**
+   * Returns the routers nearest to the given location
+   *
+   * @param c The location
+   * @param k Maximum number of routers to return
+   * @return Up to k routers, the nearest first
+   */
+  public List<DTNHost> getNearest(Coord c, int k) {
+    Neighbors best = new Neighbors(Math.min(k, this.routers.length));
+    if (best.nodes.length > 0) {
+      this.findNearest(c.getX(), c.getY(), 0, this.routers.length, 0, best);
+    }
+    List<DTNHost> result = new ArrayList<DTNHost>(best.size);
+    for (int i = 0; i < best.size; i++) {
+      result.add(this.routers[best.nodes[i]]);
+    }
+    return result;
+  }
+
+  private void findNearest(double x, double y, int lo, int hi, int depth, Neighbors best) {
+    if (lo >= hi) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    double dx = this.xs[mid] - x;
+    double dy = this.ys[mid] - y;
+    best.offer(mid, Math.sqrt(dx * dx + dy * dy), this.ranks[mid]);
+
+    double diff = (depth & 1) == 0 ? x - this.xs[mid] : y - this.ys[mid];
+    if (diff < 0) {
+      this.findNearest(x, y, lo, mid, depth + 1, best);
+      if (-diff <= best.limit()) {
+        this.findNearest(x, y, mid + 1, hi, depth + 1, best);
+      }
+    } else {
+      this.findNearest(x, y, mid + 1, hi, depth + 1, best);
+      if (diff <= best.limit()) {
+        this.findNearest(x, y, lo, mid, depth + 1, best);
+      }
+    }
+  }
+
+  /** The k best candidates of a query, sorted by distance and rank */
+  private static class Neighbors {
+    private final int[] nodes;
+    private final double[] distances;
+    private final int[] ranks;
+    private int size;
+
+    private Neighbors(int k) {
+      this.nodes = new int[k];
+      this.distances = new double[k];
+      this.ranks = new int[k];
+    }
+
+    /** Returns the distance a candidate must not exceed to be accepted */
+    private double limit() {
+      return this.size < this.nodes.length ? Double.MAX_VALUE : this.distances[this.size - 1];
+    }
+
+    private void offer(int node, double distance, int rank) {
+      int i = this.size;
+      while (i > 0
+          && (distance < this.distances[i - 1]
+              || (distance == this.distances[i - 1] && rank < this.ranks[i - 1]))) {
+        i--;
+      }
+      if (i >= this.nodes.length) {
+        return;
+      }
+      int last = Math.min(this.size, this.nodes.length - 1);
+      System.arraycopy(this.nodes, i, this.nodes, i + 1, last - i);
+      System.arraycopy(this.distances, i, this.distances, i + 1, last - i);
+      System.arraycopy(this.ranks, i, this.ranks, i + 1, last - i);
+      this.nodes[i] = node;
+      this.distances[i] = distance;
+      this.ranks[i] = rank;
+      this.size = Math.min(this.size + 1, this.nodes.length);
+    }
+  }
+}
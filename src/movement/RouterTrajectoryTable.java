@@ -0,0 +1,315 @@
+package movement;
+
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.InterfaceTypes;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimError;
+import core.SimScenario;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+
+/**
+ * Shortest trajectory paths between the routers of the static router mesh built by {@link
+ * interfaces.RouterPreConnEngine1}. Returns the same paths as {@link MessageTrajectoryFinder}, but
+ * every router pair is searched only once: the result is stored as an array of router indexes and
+ * a later request for the same pair only copies it. By default paths are searched when first
+ * requested and kept for the whole run; all pairs can be searched at startup instead, or the
+ * number of stored paths can be bounded, in which case the least recently used paths are dropped.
+ */
+public class RouterTrajectoryTable {
+  /**
+   * Search all router pairs when the table is created -setting id ({@value}). Boolean. Default =
+   * false (paths are searched when first requested).
+   */
+  public static final String PRECOMPUTE_S = "trajectoryPrecompute";
+
+  /**
+   * Maximum number of stored paths -setting id ({@value}). Integer. If more paths are needed, the
+   * least recently used ones are dropped and searched again when requested. Default = 0 (no
+   * limit).
+   */
+  public static final String CACHE_SIZE_S = "trajectoryCacheSize";
+
+  /** Interface type whose transmit speed is used for the path's waypoints */
+  private static final int PRE_ROUTER_INTERFACE = InterfaceTypes.idOf("preRouterInterface");
+
+  private static RouterTrajectoryTable table;
+
+  static {
+    DTNSim.registerForReset(RouterTrajectoryTable.class.getCanonicalName());
+    RouterTrajectoryTable.reset();
+  }
+
+  /** router mesh nodes and the router host at each node (null if none) */
+  private final MapNode[] nodes;
+  private final DTNHost[] routers;
+  private final Map<MapNode, Integer> nodeIndexes;
+  private final Map<Coord, Integer> nodesAt;
+  private final Map<DTNHost, Integer> routerIndexes;
+  private final DijkstraPathFinder pathFinder;
+
+  /** stored paths when the table is not bounded: [from][to] */
+  private final int[][][] paths;
+  /** stored paths when the table is bounded, key is from * nrofNodes + to */
+  private final LinkedHashMap<Integer, int[]> lruPaths;
+  private final int maxPaths;
+
+  private int nrofPaths;
+  private long nrofStoredNodes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Returns the trajectory table of the current run. The table is created at the first call, when
+   * the router mesh must already be complete.
+   *
+   * @param s Settings where the {@link #PRECOMPUTE_S} and {@link #CACHE_SIZE_S} settings are read
+   *     from
+   * @return The table
+   */
+  public static synchronized RouterTrajectoryTable getInstance(Settings s) {
+    if (RouterTrajectoryTable.table == null) {
+      RouterTrajectoryTable.table =
+          new RouterTrajectoryTable(
+              new ArrayList<>(RouterPlacementMovement1.getRoutersLocForMap()),
+              SimScenario.getOHosts(),
+              s.getInt(CACHE_SIZE_S, 0));
+      if (s.getBoolean(PRECOMPUTE_S, false)) {
+        RouterTrajectoryTable.table.precompute();
+      }
+    }
+    return RouterTrajectoryTable.table;
+  }
+
+  /**
+   * Returns the table of the current run or null if it hasn't been created
+   *
+   * @return The table or null
+   */
+  public static RouterTrajectoryTable getCreated() {
+    return RouterTrajectoryTable.table;
+  }
+
+  /** Drops the table of the previous run */
+  public static synchronized void reset() {
+    RouterTrajectoryTable.table = null;
+  }
+
+  /**
+   * Creates a table for the given mesh
+   *
+   * @param meshNodes The nodes of the router mesh
+   * @param hosts All hosts; routers are the hosts whose name starts with "R"
+   * @param maxPaths Maximum number of stored paths or 0 for no limit
+   */
+  public RouterTrajectoryTable(List<MapNode> meshNodes, List<DTNHost> hosts, int maxPaths) {
+    if (maxPaths < 0) {
+      throw new SimError("Invalid trajectory cache size " + maxPaths);
+    }
+    int n = meshNodes.size();
+    this.nodes = meshNodes.toArray(new MapNode[0]);
+    this.routers = new DTNHost[n];
+    this.nodeIndexes = new HashMap<>();
+    this.nodesAt = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      this.nodeIndexes.put(this.nodes[i], i);
+      this.nodesAt.put(this.nodes[i].getLocation(), i);
+    }
+    this.routerIndexes = new HashMap<>();
+    for (DTNHost h : hosts) {
+      Integer i = this.nodesAt.get(h.getLocation());
+      if (h.name.startsWith("R") && i != null && this.routers[i] == null) {
+        this.routers[i] = h;
+        this.routerIndexes.put(h, i);
+      }
+    }
+    this.pathFinder = new DijkstraPathFinder(null);
+
+    this.maxPaths = maxPaths;
+    if (maxPaths == 0) {
+      this.paths = new int[n][][];
+      this.lruPaths = null;
+    } else {
+      this.paths = null;
+      this.lruPaths = new LinkedHashMap<>(16, 0.75f, true);
+    }
+  }
+
+  /**
+   * Searches and stores the paths between all router pairs (up to the size limit). The searches
+   * are not counted as hits or misses.
+   */
+  public synchronized void precompute() {
+    int n = this.nodes.length;
+    long misses = this.misses;
+    for (int from = 0; from < n; from++) {
+      for (int to = 0; to < n; to++) {
+        if (this.maxPaths > 0 && this.nrofPaths >= this.maxPaths) {
+          this.misses = misses;
+          return;
+        }
+        this.lookup(from, to);
+      }
+    }
+    this.misses = misses;
+  }
+
+  /**
+   * Returns the shortest trajectory path between two routers.
+   *
+   * @param from The router where the path starts
+   * @param to The router where the path ends
+   * @param pathRouters List where the routers along the path are added to
+   * @return The path through the router locations
+   * @throws SimError if either host is not at a router location
+   */
+  public Path getPath(DTNHost from, DTNHost to, List<DTNHost> pathRouters) {
+    int[] path;
+    synchronized (this) {
+      path = this.lookup(this.indexOf(from), this.indexOf(to));
+    }
+
+    Path p = new Path();
+    if (path.length == 0) {
+      return p;
+    }
+    double speed = 0;
+    DTNHost first = this.routers[path[0]];
+    if (first != null) {
+      for (NetworkInterface ni : first.getNets()) {
+        if (ni.getInterfaceTypeId() == PRE_ROUTER_INTERFACE) {
+          speed = ni.getTransmitSpeed();
+        }
+      }
+    }
+    for (int i : path) {
+      p.addWaypoint(this.nodes[i].getLocation(), speed);
+      if (this.routers[i] != null) {
+        pathRouters.add(this.routers[i]);
+      }
+    }
+    return p;
+  }
+
+  private int indexOf(DTNHost h) {
+    Integer i = this.routerIndexes.get(h);
+    if (i == null) {
+      i = this.nodesAt.get(h.getLocation());
+    }
+    if (i == null) {
+      throw new SimError("No router mesh node at the location of " + h);
+    }
+    return i;
+  }
+
+  private int[] lookup(int from, int to) {
+    int[] path;
+    if (this.paths != null) {
+      if (this.paths[from] == null) {
+        this.paths[from] = new int[this.nodes.length][];
+      }
+      path = this.paths[from][to];
+    } else {
+      path = this.lruPaths.get(from * this.nodes.length + to);
+    }
+    if (path != null) {
+      this.hits++;
+      return path;
+    }
+
+    this.misses++;
+    List<MapNode> nodePath = this.pathFinder.getShortestPath(this.nodes[from], this.nodes[to]);
+    path = new int[nodePath.size()];
+    int i = 0;
+    for (MapNode node : nodePath) {
+      path[i++] = this.nodeIndexes.get(node);
+    }
+
+    this.nrofPaths++;
+    this.nrofStoredNodes += path.length;
+    if (this.paths != null) {
+      this.paths[from][to] = path;
+    } else {
+      this.lruPaths.put(from * this.nodes.length + to, path);
+      if (this.lruPaths.size() > this.maxPaths) {
+        Map.Entry<Integer, int[]> eldest = this.lruPaths.entrySet().iterator().next();
+        this.lruPaths.remove(eldest.getKey());
+        this.nrofPaths--;
+        this.nrofStoredNodes -= eldest.getValue().length;
+        this.evictions++;
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Returns the number of routers in the mesh
+   *
+   * @return the number of routers in the mesh
+   */
+  public int getNrofRouters() {
+    return this.nodes.length;
+  }
+
+  /**
+   * Returns the number of currently stored paths
+   *
+   * @return the number of stored paths
+   */
+  public synchronized int getNrofPaths() {
+    return this.nrofPaths;
+  }
+
+  /**
+   * Returns an estimate of the memory used by the stored paths and the table itself
+   *
+   * @return estimated memory use in bytes
+   */
+  public synchronized long getMemoryUse() {
+    long bytes = 16L * this.nrofPaths + 4 * this.nrofStoredNodes; // array headers + indexes
+    if (this.paths != null) {
+      for (int[][] row : this.paths) {
+        bytes += 8 + (row == null ? 0 : 16 + 8L * row.length);
+      }
+    } else {
+      bytes += 48L * this.nrofPaths; // map entry with a boxed key
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the number of requests answered from the table
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of requests that required a path search
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Returns the number of paths dropped because of the size limit
+   *
+   * @return the number of evictions
+   */
+  public synchronized long getEvictions() {
+    return this.evictions;
+  }
+}
@@ -18,8 +18,10 @@ package report;
 import core.DTNHost;
 import core.Settings;
 import core.SimClock;
+import core.SimScenario;
 import core.UpdateListener;
 import java.util.List;
+import routing.util.BufferOccupancy;
 
 public class BufferOccupancyReport extends Report implements UpdateListener {
 
@@ -66,9 +68,10 @@ public class BufferOccupancyReport extends Report implements UpdateListener {
   private void printLine(List<DTNHost> hosts) {
     double bufferOccupancy = 0.0;
     double bo2 = 0.0;
+    BufferOccupancy snapshot = SimScenario.getInstance().getWorld().getBufferOccupancy();
 
     for (DTNHost h : hosts) {
-      double tmp = h.getBufferOccupancy();
+      double tmp = snapshot.getOccupancy(h);
       tmp = (tmp <= 100.0) ? (tmp) : (100.0);
       bufferOccupancy += tmp;
       bo2 += (tmp * tmp) / 100.0;
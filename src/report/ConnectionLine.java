@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+/** A connection up or down line of the connectivity reports */
+final class ConnectionLine implements ReportLine {
+  private final String timeFormat;
+  private final double time;
+  private final String infix;
+  private final Object first;
+  private final String separator;
+  private final Object second;
+  private final boolean up;
+
+  /**
+   * Creates a line "(time formatted with timeFormat)(infix)(first)(separator)(second) up|down".
+   */
+  ConnectionLine(
+      String timeFormat,
+      double time,
+      String infix,
+      Object first,
+      String separator,
+      Object second,
+      boolean up) {
+    this.timeFormat = timeFormat;
+    this.time = time;
+    this.infix = infix;
+    this.first = first;
+    this.separator = separator;
+    this.second = second;
+    this.up = up;
+  }
+
+  @Override
+  public void appendTo(StringBuilder sb) {
+    sb.append(String.format(this.timeFormat, this.time))
+        .append(this.infix)
+        .append(this.first)
+        .append(this.separator)
+        .append(this.second)
+        .append(this.up ? " up" : " down");
+  }
+}
@@ -25,28 +25,31 @@ public class ConnectivityDtnsim2Report extends Report implements ConnectionListe
     }
 
     newEvent();
-    write(createTimeStamp() + " " + connectionString(h1, h2) + " up");
+    write(connectionLine(h1, h2, true));
   }
 
   public void hostsDisconnected(DTNHost h1, DTNHost h2) {
-    String conString = connectionString(h1, h2);
-
-    if (isWarmup() || isWarmupID(conString)) {
-      removeWarmupID(conString);
-      return;
+    if (isWarmup() || this.warmupIDs != null) {
+      String conString = connectionString(h1, h2);
+      if (isWarmup() || isWarmupID(conString)) {
+        removeWarmupID(conString);
+        return;
+      }
     }
 
     newEvent();
-    write(createTimeStamp() + " " + conString + " down");
+    write(connectionLine(h1, h2, false));
   }
 
   /**
-   * Creates and returns a "@" prefixed time stamp of the current simulation time
-   *
-   * @return time stamp of the current simulation time
+   * Creates a "@" prefixed time stamped line of the connection at the current simulation time, the
+   * node with the lower network address first
    */
-  private String createTimeStamp() {
-    return String.format("@%.2f", getSimTime());
+  private ReportLine connectionLine(DTNHost h1, DTNHost h2, boolean up) {
+    DTNHost first = h1.getAddress() < h2.getAddress() ? h1 : h2;
+    DTNHost second = first == h1 ? h2 : h1;
+    return new ConnectionLine(
+        "@%.2f", getSimTime(), " ", first.toString(), " <-> ", second.toString(), up);
   }
 
   /**
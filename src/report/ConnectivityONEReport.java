@@ -24,27 +24,29 @@ public class ConnectivityONEReport extends Report implements ConnectionListener
       return;
     }
     newEvent();
-    write(createTimeStamp() + " CONN " + connectionString(h1, h2) + " up");
+    write(connectionLine(h1, h2, true));
   }
 
   public void hostsDisconnected(DTNHost h1, DTNHost h2) {
-    String conString = connectionString(h1, h2);
-
-    if (isWarmup() || isWarmupID(conString)) {
-      removeWarmupID(conString);
-      return;
+    if (isWarmup() || this.warmupIDs != null) {
+      String conString = connectionString(h1, h2);
+      if (isWarmup() || isWarmupID(conString)) {
+        removeWarmupID(conString);
+        return;
+      }
     }
 
-    write(createTimeStamp() + " CONN " + conString + " down");
+    write(connectionLine(h1, h2, false));
   }
 
   /**
-   * Creates and returns a "@" prefixed time stamp of the current simulation time
-   *
-   * @return time stamp of the current simulation time
+   * Creates a line of the connection at the current simulation time, the node with the lower
+   * network address first
    */
-  private String createTimeStamp() {
-    return String.format("%.2f", getSimTime());
+  private ReportLine connectionLine(DTNHost h1, DTNHost h2, boolean up) {
+    int a1 = Math.min(h1.getAddress(), h2.getAddress());
+    int a2 = Math.max(h1.getAddress(), h2.getAddress());
+    return new ConnectionLine("%.2f", getSimTime(), " CONN ", a1, " ", a2, up);
   }
 
   /**
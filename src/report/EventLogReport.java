@@ -41,14 +41,13 @@ public class EventLogReport extends Report implements ConnectionListener, Messag
       final Message message,
       final String extra) {
     write(
-        getSimTime()
-            + " "
-            + action
-            + " "
-            + (host1 != null ? host1 : "")
-            + (host2 != null ? (" " + host2) : "")
-            + (message != null ? " " + message : "")
-            + (extra != null ? " " + extra : ""));
+        new EventLine(
+            getSimTime(),
+            action,
+            host1 != null ? host1.toString() : null,
+            host2 != null ? host2.toString() : null,
+            message != null ? message.toString() : null,
+            extra));
   }
 
   public void hostsConnected(DTNHost host1, DTNHost host2) {
@@ -90,4 +89,41 @@ public class EventLogReport extends Report implements ConnectionListener, Messag
   public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
     processEvent(StandardEventsReader.SEND, from, to, m, null);
   }
+
+  /** A log line; the hosts and the message are stored by their names */
+  private static final class EventLine implements ReportLine {
+    private final double time;
+    private final String action;
+    private final String host1;
+    private final String host2;
+    private final String message;
+    private final String extra;
+
+    private EventLine(
+        double time, String action, String host1, String host2, String message, String extra) {
+      this.time = time;
+      this.action = action;
+      this.host1 = host1;
+      this.host2 = host2;
+      this.message = message;
+      this.extra = extra;
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb) {
+      sb.append(this.time).append(' ').append(this.action).append(' ');
+      if (this.host1 != null) {
+        sb.append(this.host1);
+      }
+      if (this.host2 != null) {
+        sb.append(' ').append(this.host2);
+      }
+      if (this.message != null) {
+        sb.append(' ').append(this.message);
+      }
+      if (this.extra != null) {
+        sb.append(' ').append(this.extra);
+      }
+    }
+  }
 }
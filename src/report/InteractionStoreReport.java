@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import core.DTNHost;
+import core.InteractionStore;
+import core.SimScenario;
+
+/**
+ * Reports the size of the hosts' interaction histories ({@link InteractionStore}) at the end of the
+ * run: the number of recorded contacts, the number of per-peer aggregates and raw records that are
+ * kept and an estimate of the memory they use.
+ */
+public class InteractionStoreReport extends Report {
+  /** estimated sizes (bytes) of a raw record and a per-peer aggregate with its map entry */
+  private static final int RECORD_BYTES = 56 + 8;
+
+  private static final int AGGREGATE_BYTES = 56 + 48;
+
+  public InteractionStoreReport() {
+    init();
+  }
+
+  @Override
+  public void done() {
+    long contacts = 0;
+    long peers = 0;
+    long records = 0;
+    int maxPeers = 0;
+    int nrofHosts = 0;
+    for (DTNHost h : SimScenario.getInstance().getHosts()) {
+      InteractionStore s = h.getInteractionStore();
+      contacts += s.getTotals().getNrofContacts();
+      peers += s.getPeers().size();
+      records += s.getNrofRecent();
+      maxPeers = Math.max(maxPeers, s.getPeers().size());
+      nrofHosts++;
+    }
+
+    write("Interaction stores for scenario " + getScenarioName());
+    write("hosts: " + nrofHosts);
+    write("contacts: " + contacts);
+    write("peer_aggregates: " + peers);
+    write("peer_aggregates_max: " + maxPeers);
+    write("raw_records: " + records);
+    write("memory_bytes: " + (peers * AGGREGATE_BYTES + records * RECORD_BYTES));
+    write("unbounded_memory_bytes: " + contacts * RECORD_BYTES);
+    super.done();
+  }
+}
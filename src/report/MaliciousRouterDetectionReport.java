@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import applications.MaliciousRouterDetector;
+import core.SimScenario;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports the results and the latency of every malicious router detection period at the end of
+ * the run. The latency is the real time the model evaluation took and the blocked time is how long
+ * the simulation waited for the detection (both in milliseconds). Prints nothing but a note if no
+ * detection model is configured.
+ */
+public class MaliciousRouterDetectionReport extends Report {
+
+  public MaliciousRouterDetectionReport() {
+    init();
+  }
+
+  @Override
+  public void done() {
+    MaliciousRouterDetector detector = SimScenario.getInstance().getWorld().getDetector();
+    if (detector == null) {
+      write("No malicious router detection configured");
+      super.done();
+      return;
+    }
+
+    write("Malicious router detection for scenario " + getScenarioName());
+    write("overlapping: " + detector.isOverlapping());
+    write("# time routers malicious latency_ms blocked_ms");
+    List<Double> latencies = new ArrayList<Double>();
+    List<Double> blocked = new ArrayList<Double>();
+    for (MaliciousRouterDetector.Period p : detector.getPeriods()) {
+      double latency = p.getLatencyNanos() / 1e6;
+      double block = p.getBlockedNanos() / 1e6;
+      latencies.add(latency);
+      blocked.add(block);
+      write(
+          p.getTime()
+              + " "
+              + p.getNrofRouters()
+              + " "
+              + p.getNrofMalicious()
+              + " "
+              + format(latency)
+              + " "
+              + format(block));
+    }
+    write("periods: " + latencies.size());
+    write("latency_avg: " + getAverage(latencies));
+    write("latency_med: " + getMedian(latencies));
+    write("blocked_avg: " + getAverage(blocked));
+    write("blocked_med: " + getMedian(blocked));
+    super.done();
+  }
+}
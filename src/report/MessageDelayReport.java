@@ -9,16 +9,25 @@ import core.Message;
 import core.MessageListener;
 import java.util.ArrayList;
 import java.util.List;
+import util.QuantileSketch;
 
 /**
  * Reports delivered messages' delays (one line per delivered message) and cumulative delivery
  * probability sorted by message delays. Ignores the messages that were created during the warm up
  * period.
+ *
+ * <p>With {@link Report#STREAMING_STATS_S streaming statistics} the delays are added to a {@link
+ * QuantileSketch} and the distribution is written from the items the sketch keeps, each item's
+ * probability being the number of delays it stands for. The output is the same until the sketch
+ * first compacts its items; after that a comment line with the normalized rank error follows the
+ * header.
  */
 public class MessageDelayReport extends Report implements MessageListener {
   public static final String HEADER = "# messageDelay  cumulativeProbability";
   /** all message delays */
   private List<Double> delays;
+  /** sketch of the delays used instead of the list with streaming statistics */
+  private QuantileSketch delaySketch;
 
   private int nrofCreated;
 
@@ -31,7 +40,11 @@ public class MessageDelayReport extends Report implements MessageListener {
   public void init() {
     super.init();
     write(HEADER);
-    this.delays = new ArrayList<Double>();
+    if (isStreamingStats()) {
+      this.delaySketch = new QuantileSketch();
+    } else {
+      this.delays = new ArrayList<Double>();
+    }
     this.nrofCreated = 0;
   }
 
@@ -45,12 +58,20 @@ public class MessageDelayReport extends Report implements MessageListener {
 
   public void messageTransferred(Message m, DTNHost from, DTNHost to, boolean firstDelivery) {
     if (firstDelivery && !isWarmupID(m.getId())) {
-      this.delays.add(getSimTime() - m.getCreationTime());
+      if (this.delaySketch != null) {
+        this.delaySketch.add(getSimTime() - m.getCreationTime());
+      } else {
+        this.delays.add(getSimTime() - m.getCreationTime());
+      }
     }
   }
 
   @Override
   public void done() {
+    if (this.delaySketch != null) {
+      writeSketch();
+      return;
+    }
     if (delays.size() == 0) {
       write("# no messages delivered in sim time " + format(getSimTime()));
       super.done();
@@ -67,6 +88,27 @@ public class MessageDelayReport extends Report implements MessageListener {
     super.done();
   }
 
+  private void writeSketch() {
+    if (this.delaySketch.getCount() == 0) {
+      write("# no messages delivered in sim time " + format(getSimTime()));
+      super.done();
+      return;
+    }
+    if (this.delaySketch.getRankError() > 0) {
+      write("# normalized rank error " + format(this.delaySketch.getRankError()));
+    }
+    double[] cumProb = {0}; // cumulative probability
+    this.delaySketch.forEachSorted(
+        (delay, weight) -> {
+          /* one delay at a time, like the list output, so that exact sketches give the same lines */
+          for (long i = 0; i < weight; i++) {
+            cumProb[0] += 1.0 / nrofCreated;
+          }
+          write(format(delay) + " " + format(cumProb[0]));
+        });
+    super.done();
+  }
+
   // nothing to implement for the rest
   public void messageDeleted(Message m, DTNHost where, boolean dropped) {}
 
@@ -12,6 +12,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import util.QuantileSketch;
+import util.RunningStats;
 
 /**
  * Report for generating different kind of total statistics about message relaying performance.
@@ -19,6 +21,13 @@ import java.util.Map;
  *
  * <p><strong>Note:</strong> if some statistics could not be created (e.g. overhead ratio if no
  * messages were delivered) "NaN" is reported for double values and zero for integer median(s).
+ *
+ * <p>With {@link Report#STREAMING_STATS_S streaming statistics} the latencies, hop counts, buffer
+ * times and round trip times are not stored: their means and variances are computed on the fly
+ * and the medians are estimated with {@link QuantileSketch}es, and the latencies are computed from
+ * the creation times the messages carry instead of a table of all created messages. The variance
+ * ("_var") and the normalized rank error of the median ("_med_rank_err", 0 if the median is exact)
+ * are reported after each average and median.
  */
 public class MessageStatsReport extends Report implements MessageListener {
   private Map<String, Double> creationTimes;
@@ -26,6 +35,11 @@ public class MessageStatsReport extends Report implements MessageListener {
   private List<Integer> hopCounts;
   private List<Double> msgBufferTime;
   private List<Double> rtt; // round trip times
+  /** streaming versions of the value lists (if {@link #isStreamingStats()}) */
+  private Summary latencySummary;
+  private Summary hopCountSummary;
+  private Summary bufferTimeSummary;
+  private Summary rttSummary;
 
   private int nrofDropped;
   private int nrofRemoved;
@@ -45,11 +59,18 @@ public class MessageStatsReport extends Report implements MessageListener {
   @Override
   protected void init() {
     super.init();
-    this.creationTimes = new HashMap<String, Double>();
-    this.latencies = new ArrayList<Double>();
-    this.msgBufferTime = new ArrayList<Double>();
-    this.hopCounts = new ArrayList<Integer>();
-    this.rtt = new ArrayList<Double>();
+    if (isStreamingStats()) {
+      this.latencySummary = new Summary();
+      this.hopCountSummary = new Summary();
+      this.bufferTimeSummary = new Summary();
+      this.rttSummary = new Summary();
+    } else {
+      this.creationTimes = new HashMap<String, Double>();
+      this.latencies = new ArrayList<Double>();
+      this.msgBufferTime = new ArrayList<Double>();
+      this.hopCounts = new ArrayList<Integer>();
+      this.rtt = new ArrayList<Double>();
+    }
 
     this.nrofDropped = 0;
     this.nrofRemoved = 0;
@@ -73,7 +94,7 @@ public class MessageStatsReport extends Report implements MessageListener {
       this.nrofRemoved++;
     }
 
-    this.msgBufferTime.add(getSimTime() - m.getReceiveTime());
+    add(this.msgBufferTime, this.bufferTimeSummary, getSimTime() - m.getReceiveTime());
   }
 
   public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
@@ -95,12 +116,18 @@ public class MessageStatsReport extends Report implements MessageListener {
 
     this.nrofRelayed++;
     if (finalTarget) {
-      this.latencies.add(getSimTime() - this.creationTimes.get(m.getId()));
+      double created =
+          this.creationTimes != null ? this.creationTimes.get(m.getId()) : m.getCreationTime();
+      add(this.latencies, this.latencySummary, getSimTime() - created);
       this.nrofDelivered++;
-      this.hopCounts.add(m.getHops().size() - 1);
+      if (this.hopCountSummary != null) {
+        this.hopCountSummary.add(m.getHops().size() - 1);
+      } else {
+        this.hopCounts.add(m.getHops().size() - 1);
+      }
 
       if (m.isResponse()) {
-        this.rtt.add(getSimTime() - m.getRequest().getCreationTime());
+        add(this.rtt, this.rttSummary, getSimTime() - m.getRequest().getCreationTime());
         this.nrofResponseDelivered++;
       }
     }
@@ -112,7 +139,9 @@ public class MessageStatsReport extends Report implements MessageListener {
       return;
     }
 
-    this.creationTimes.put(m.getId(), getSimTime());
+    if (this.creationTimes != null) {
+      this.creationTimes.put(m.getId(), getSimTime());
+    }
     this.nrofCreated++;
     if (m.getResponseSize() > 0) {
       this.nrofResponseReqCreated++;
@@ -167,24 +196,89 @@ public class MessageStatsReport extends Report implements MessageListener {
             + format(responseProb)
             + "\noverhead_ratio: "
             + format(overHead)
-            + "\nlatency_avg: "
-            + getAverage(this.latencies)
-            + "\nlatency_med: "
-            + getMedian(this.latencies)
-            + "\nhopcount_avg: "
-            + getIntAverage(this.hopCounts)
-            + "\nhopcount_med: "
-            + getIntMedian(this.hopCounts)
-            + "\nbuffertime_avg: "
-            + getAverage(this.msgBufferTime)
-            + "\nbuffertime_med: "
-            + getMedian(this.msgBufferTime)
-            + "\nrtt_avg: "
-            + getAverage(this.rtt)
-            + "\nrtt_med: "
-            + getMedian(this.rtt);
+            + "\n";
+
+    if (this.latencySummary != null) {
+      statsText +=
+          summaryText("latency", this.latencySummary, false)
+              + "\n"
+              + summaryText("hopcount", this.hopCountSummary, true)
+              + "\n"
+              + summaryText("buffertime", this.bufferTimeSummary, false)
+              + "\n"
+              + summaryText("rtt", this.rttSummary, false);
+    } else {
+      statsText +=
+          "latency_avg: "
+              + getAverage(this.latencies)
+              + "\nlatency_med: "
+              + getMedian(this.latencies)
+              + "\nhopcount_avg: "
+              + getIntAverage(this.hopCounts)
+              + "\nhopcount_med: "
+              + getIntMedian(this.hopCounts)
+              + "\nbuffertime_avg: "
+              + getAverage(this.msgBufferTime)
+              + "\nbuffertime_med: "
+              + getMedian(this.msgBufferTime)
+              + "\nrtt_avg: "
+              + getAverage(this.rtt)
+              + "\nrtt_med: "
+              + getMedian(this.rtt);
+    }
 
     write(statsText);
     super.done();
   }
+
+  /** Adds a value to the list, or to the summary in the streaming mode */
+  private static void add(List<Double> values, Summary summary, double value) {
+    if (summary != null) {
+      summary.add(value);
+    } else {
+      values.add(value);
+    }
+  }
+
+  /**
+   * Returns the average, variance, median and the median's rank error lines of a streamed
+   * statistic. Empty statistics are reported like {@link #getAverage(List)} and {@link
+   * #getIntMedian(List)} report empty lists.
+   */
+  private String summaryText(String name, Summary summary, boolean integer) {
+    boolean empty = summary.stats.getCount() == 0;
+    double median = summary.sketch.getQuantile(0.5);
+    String medianText;
+    if (integer) {
+      medianText = "" + (empty ? 0 : (int) median);
+    } else {
+      medianText = empty ? NAN : format(median);
+    }
+    return name
+        + "_avg: "
+        + (empty ? NAN : format(summary.stats.getMean()))
+        + "\n"
+        + name
+        + "_var: "
+        + (summary.stats.getCount() < 2 ? NAN : format(summary.stats.getVariance()))
+        + "\n"
+        + name
+        + "_med: "
+        + medianText
+        + "\n"
+        + name
+        + "_med_rank_err: "
+        + format(summary.sketch.getRankError());
+  }
+
+  /** Running mean and variance and a quantile sketch of one statistic */
+  private static class Summary {
+    private final RunningStats stats = new RunningStats();
+    private final QuantileSketch sketch = new QuantileSketch();
+
+    private void add(double value) {
+      this.stats.add(value);
+      this.sketch.add(value);
+    }
+  }
 }
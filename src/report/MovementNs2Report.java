@@ -62,25 +62,15 @@ public class MovementNs2Report extends Report implements MovementListener {
   }
 
   public void newDestination(DTNHost host, Coord dst, double speed) {
-    int index = host.getAddress();
-    double time = getSimTime();
-
     write(
-        nsCmd
-            + " at "
-            + time
-            + " \"\\"
-            + nodeArray
-            + "("
-            + index
-            + ")"
-            + " setdest "
-            + fix(dst.getX())
-            + " "
-            + fix(dst.getY())
-            + " "
-            + speed
-            + "\"");
+        new DestinationLine(
+            this.nsCmd,
+            this.nodeArray,
+            host.getAddress(),
+            getSimTime(),
+            dst.getX(),
+            dst.getY(),
+            speed));
   }
 
   /**
@@ -90,8 +80,48 @@ public class MovementNs2Report extends Report implements MovementListener {
    * @param val The value to fix
    * @return The fixed value
    */
-  private String fix(double val) {
+  private static String fix(double val) {
     val = val == 0 ? EPSILON : val;
     return String.format(COORD_FORMAT, val);
   }
+
+  /** A setdest command line */
+  private static final class DestinationLine implements ReportLine {
+    private final String nsCmd;
+    private final String nodeArray;
+    private final int index;
+    private final double time;
+    private final double x;
+    private final double y;
+    private final double speed;
+
+    private DestinationLine(
+        String nsCmd, String nodeArray, int index, double time, double x, double y, double speed) {
+      this.nsCmd = nsCmd;
+      this.nodeArray = nodeArray;
+      this.index = index;
+      this.time = time;
+      this.x = x;
+      this.y = y;
+      this.speed = speed;
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb) {
+      sb.append(this.nsCmd)
+          .append(" at ")
+          .append(this.time)
+          .append(" \"\\")
+          .append(this.nodeArray)
+          .append('(')
+          .append(this.index)
+          .append(") setdest ")
+          .append(fix(this.x))
+          .append(' ')
+          .append(fix(this.y))
+          .append(' ')
+          .append(this.speed)
+          .append('"');
+    }
+  }
 }
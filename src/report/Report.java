@@ -52,6 +52,27 @@ public abstract class Report {
    * positive integer or 0.
    */
   public static final String WARMUP_S = "warmup";
+  /**
+   * Asynchronous output -setting id ({@value}). Boolean (true/false) variable. If true, the report
+   * lines are formatted and written on a background thread in large batches (see {@link
+   * ReportSink}). The output is the same. Default = false.
+   */
+  public static final String ASYNC_OUTPUT_S = "asyncOutput";
+  /**
+   * Compression of the report output -setting id ({@value}). One of {@value ReportSink#NONE},
+   * {@value ReportSink#GZIP} and {@value ReportSink#DEFLATE}; ".gz" or ".deflate" is appended to the
+   * output file name. Default = {@value ReportSink#NONE}.
+   */
+  public static final String COMPRESSION_S = "compression";
+  /**
+   * Streaming statistics -setting id ({@value}). Boolean (true/false) variable. If true, reports
+   * that compute averages and medians of per message values (e.g. {@link MessageStatsReport} and
+   * {@link MessageDelayReport}) use running statistics and quantile sketches (see {@link
+   * util.QuantileSketch}) instead of keeping every value, so their memory use doesn't grow with the
+   * number of messages. The medians are then estimates and their rank errors are reported too.
+   * Default = false.
+   */
+  public static final String STREAMING_STATS_S = "streamingStats";
   /** Suffix of report files without explicit output */
   public static final String OUT_SUFFIX = ".txt";
   /** Suffix for reports that are created on n second intervals */
@@ -60,6 +81,11 @@ public abstract class Report {
   public static final String NAN = "NaN";
   /** The print writer used to write output. See {@link #write(String)} */
   protected PrintWriter out;
+  /** batched output used instead of {@link #out} if asynchronous output or compression is on */
+  private ReportSink sink;
+  private boolean asyncOutput;
+  private String compression;
+  private boolean streamingStats;
   protected int warmupTime;
   protected Set<String> warmupIDs;
   private String prefix = "";
@@ -96,6 +122,10 @@ public abstract class Report {
       this.warmupTime = 0;
     }
 
+    this.asyncOutput = settings.getBoolean(ASYNC_OUTPUT_S, false);
+    this.compression = settings.getSetting(COMPRESSION_S, ReportSink.NONE);
+    this.streamingStats = settings.getBoolean(STREAMING_STATS_S, false);
+
     if (settings.contains(PRECISION_SETTING)) {
       precision = settings.getInt(PRECISION_SETTING);
       if (precision < 0) {
@@ -181,6 +211,14 @@ public abstract class Report {
    * @param outFileName Name (&path) of the file to create
    */
   private void createOutput(String outFileName) {
+    if (this.asyncOutput || !this.compression.equals(ReportSink.NONE)) {
+      this.sink =
+          new ReportSink(
+              new File(outFileName + ReportSink.suffix(this.compression)),
+              this.compression,
+              this.asyncOutput);
+      return;
+    }
     try {
       this.out = new PrintWriter(new FileWriter(outFileName));
     } catch (IOException e) {
@@ -223,12 +261,33 @@ public abstract class Report {
    * @see #setPrefix(String)
    */
   protected void write(String txt) {
-    if (out == null) {
+    if (out == null && sink == null) {
       init();
     }
+    if (sink != null) {
+      sink.add(prefix.isEmpty() ? txt : prefix + txt);
+      return;
+    }
     out.println(prefix + txt);
   }
 
+  /**
+   * Writes a line to report using defined prefix. The text of the line is built only when it is
+   * written, on the writer thread if the output is asynchronous (see {@link #ASYNC_OUTPUT_S}).
+   *
+   * @param line Line to write
+   * @see #write(String)
+   */
+  protected void write(ReportLine line) {
+    if (sink != null && prefix.isEmpty()) {
+      sink.add(line);
+      return;
+    }
+    StringBuilder sb = new StringBuilder();
+    line.appendTo(sb);
+    write(sb.toString());
+  }
+
   /**
    * Formats a double value according to current precision setting (see {@link #PRECISION_SETTING})
    * and returns it in a string.
@@ -312,6 +371,15 @@ public abstract class Report {
     return this.warmupIDs.contains(id);
   }
 
+  /**
+   * Returns true if streaming statistics are on (see {@link #STREAMING_STATS_S})
+   *
+   * @return true if the report should not keep every value
+   */
+  protected boolean isStreamingStats() {
+    return this.streamingStats;
+  }
+
   /**
    * Returns true if the given message has been attacked
    */
@@ -338,6 +406,9 @@ public abstract class Report {
     if (out != null) {
       out.close();
     }
+    if (sink != null) {
+      sink.close();
+    }
   }
 
   /**
@@ -0,0 +1,21 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+/**
+ * A report line that is turned into text only when it is written (see {@link
+ * Report#write(ReportLine)}). With asynchronous report output the text is built on the report
+ * writer thread, so a line must only hold values that don't change afterwards (numbers, strings),
+ * not references to hosts, messages or other simulation objects.
+ */
+public interface ReportLine {
+
+  /**
+   * Appends the text of the line, without the line separator, to the given builder
+   *
+   * @param sb The builder to append to
+   */
+  void appendTo(StringBuilder sb);
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import core.SimError;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Batched output of report lines. The lines (strings or {@link ReportLine}s) are turned into text
+ * in large batches that are encoded with the default charset and written through a FileChannel,
+ * optionally compressed. The text is the same {@link Report#write(String)} produces with a
+ * PrintWriter.
+ *
+ * <p>An asynchronous sink passes the lines to a shared writer thread through a single producer
+ * ring buffer; the simulation thread only stores a reference and advances a counter, and waits
+ * only if the ring is full. A synchronous sink formats and writes the lines on the calling thread.
+ */
+public final class ReportSink {
+  /** No compression ({@value}) */
+  public static final String NONE = "none";
+  /** gzip compression; ".gz" is appended to the file name ({@value}) */
+  public static final String GZIP = "gzip";
+  /** zlib (deflate) compression; ".deflate" is appended to the file name ({@value}) */
+  public static final String DEFLATE = "deflate";
+
+  /** number of lines in the ring buffer; a power of two */
+  private static final int RING_SIZE = 1 << 14;
+  /** number of characters formatted before they are encoded and written */
+  private static final int BATCH_CHARS = 1 << 18;
+  /** number of lines drained before the ring space is released to the producer */
+  private static final int RELEASE_INTERVAL = RING_SIZE / 4;
+  /** how long the writer thread sleeps when there's nothing to write */
+  private static final long IDLE_PARK_NANOS = 10_000_000L;
+
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+  /** sinks served by the writer thread */
+  private static final List<ReportSink> ACTIVE = new CopyOnWriteArrayList<>();
+  private static Thread writerThread;
+
+  private final String fileName;
+  private final FileChannel channel;
+  private final OutputStream compressed;
+  private final Charset charset = Charset.defaultCharset();
+  private final StringBuilder text = new StringBuilder(BATCH_CHARS + 1024);
+
+  private final boolean async;
+  private final Object[] ring;
+  /** number of lines taken by the writer thread */
+  private final AtomicLong head = new AtomicLong();
+  /** number of lines added */
+  private final AtomicLong tail = new AtomicLong();
+  /** producer's copies of the counters */
+  private long added;
+  private long knownHead;
+  private volatile boolean closing;
+  private volatile Exception error;
+  private final CountDownLatch closed = new CountDownLatch(1);
+  private boolean finished;
+
+  private long stalls;
+
+  /**
+   * Creates a sink writing to the given file.
+   *
+   * @param file The file to write to (the compression suffix is not added)
+   * @param compression One of {@link #NONE}, {@link #GZIP} or {@link #DEFLATE}
+   * @param async If true, the lines are formatted and written on the writer thread
+   * @throws SimError if the file can't be created or the compression is unknown
+   */
+  public ReportSink(File file, String compression, boolean async) {
+    this.fileName = file.getPath();
+    try {
+      this.channel =
+          FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+      OutputStream channelOut = Channels.newOutputStream(this.channel);
+      switch (compression) {
+        case NONE:
+          this.compressed = null;
+          break;
+        case GZIP:
+          this.compressed = new GZIPOutputStream(channelOut, 1 << 16);
+          break;
+        case DEFLATE:
+          this.compressed = new DeflaterOutputStream(channelOut, new Deflater(), 1 << 16);
+          break;
+        default:
+          this.channel.close();
+          throw new SimError("Unknown report compression '" + compression + "'");
+      }
+    } catch (IOException e) {
+      throw new SimError(
+          "Couldn't open file '" + this.fileName + "' for report output\n" + e.getMessage(), e);
+    }
+
+    this.async = async;
+    this.ring = async ? new Object[RING_SIZE] : null;
+    if (async) {
+      ReportSink.ACTIVE.add(this);
+      ReportSink.startWriter();
+    }
+  }
+
+  /**
+   * Returns the suffix the given compression adds to file names
+   *
+   * @param compression The compression
+   * @return the suffix, or an empty string if there's no compression
+   */
+  public static String suffix(String compression) {
+    switch (compression) {
+      case GZIP:
+        return ".gz";
+      case DEFLATE:
+        return ".deflate";
+      default:
+        return "";
+    }
+  }
+
+  private static synchronized void startWriter() {
+    if (ReportSink.writerThread == null) {
+      ReportSink.writerThread = new Thread(ReportSink::runWriter, "ReportWriter");
+      ReportSink.writerThread.setDaemon(true);
+      ReportSink.writerThread.start();
+    }
+  }
+
+  private static void runWriter() {
+    while (true) {
+      long written = 0;
+      for (ReportSink sink : ReportSink.ACTIVE) {
+        written += sink.service();
+      }
+      if (written == 0) {
+        LockSupport.parkNanos(ReportSink.class, IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  private static void wakeWriter() {
+    LockSupport.unpark(ReportSink.writerThread);
+  }
+
+  /**
+   * Adds a line to the report.
+   *
+   * @param line The line, a String or a {@link ReportLine}
+   * @throws SimError if writing the report has failed
+   */
+  public void add(Object line) {
+    this.checkError();
+    if (!this.async) {
+      if (!this.finished) {
+        this.format(line);
+      }
+      return;
+    }
+    if (this.closing) {
+      return;
+    }
+
+    long t = this.added;
+    if (t - this.knownHead >= RING_SIZE) {
+      this.waitForSpace(t);
+    }
+    this.ring[(int) t & (RING_SIZE - 1)] = line;
+    this.added = t + 1;
+    this.tail.lazySet(t + 1);
+    if ((this.added & (RING_SIZE / 2 - 1)) == 0) {
+      ReportSink.wakeWriter(); // half of the ring filled since the last wake up
+    }
+  }
+
+  private void waitForSpace(long t) {
+    this.knownHead = this.head.get();
+    if (t - this.knownHead < RING_SIZE) {
+      return;
+    }
+    this.stalls++;
+    do {
+      ReportSink.wakeWriter();
+      LockSupport.parkNanos(this, 10_000L);
+      this.checkError();
+      this.knownHead = this.head.get();
+    } while (t - this.knownHead >= RING_SIZE);
+  }
+
+  /**
+   * Writes all lines to the file and closes it. For asynchronous sinks waits until the writer
+   * thread is done. Lines added after closing are ignored.
+   *
+   * @throws SimError if writing the report failed
+   */
+  public void close() {
+    if (!this.async) {
+      if (!this.finished) {
+        this.finish();
+      }
+      this.checkError();
+      return;
+    }
+    if (!this.closing) {
+      this.closing = true;
+      ReportSink.wakeWriter();
+    }
+    try {
+      this.closed.await();
+    } catch (InterruptedException e) {
+      throw new SimError("Interrupted while closing report '" + this.fileName + "'");
+    }
+    this.checkError();
+  }
+
+  /**
+   * Returns how many times adding a line had to wait for the writer thread
+   *
+   * @return the number of times the ring buffer was full
+   */
+  public long getStalls() {
+    return this.stalls;
+  }
+
+  /**
+   * Writes the lines added so far (called from the writer thread).
+   *
+   * @return the number of lines written
+   */
+  private long service() {
+    boolean wasClosing = this.closing;
+    long h = this.head.get();
+    long t = this.tail.get();
+    for (long i = h; i < t; i++) {
+      int index = (int) i & (RING_SIZE - 1);
+      Object line = this.ring[index];
+      this.ring[index] = null;
+      if (this.error == null) {
+        this.format(line);
+      }
+      if (((i + 1) & (RELEASE_INTERVAL - 1)) == 0) {
+        this.head.lazySet(i + 1);
+      }
+    }
+    this.head.lazySet(t);
+    if (wasClosing && t == this.tail.get()) {
+      this.finish();
+      ReportSink.ACTIVE.remove(this);
+      this.closed.countDown();
+    }
+    return t - h;
+  }
+
+  private void format(Object line) {
+    try {
+      if (line instanceof ReportLine) {
+        ((ReportLine) line).appendTo(this.text);
+      } else {
+        this.text.append((String) line);
+      }
+      this.text.append(LINE_SEPARATOR);
+      if (this.text.length() >= BATCH_CHARS) {
+        this.writeText();
+      }
+    } catch (IOException | RuntimeException e) {
+      this.fail(e);
+    }
+  }
+
+  private void writeText() throws IOException {
+    byte[] bytes = this.text.toString().getBytes(this.charset);
+    this.text.setLength(0);
+    if (this.compressed != null) {
+      this.compressed.write(bytes);
+    } else {
+      ByteBuffer b = ByteBuffer.wrap(bytes);
+      while (b.hasRemaining()) {
+        this.channel.write(b);
+      }
+    }
+  }
+
+  private void finish() {
+    this.finished = true;
+    try {
+      if (this.error == null) {
+        this.writeText();
+      }
+      if (this.compressed != null) {
+        this.compressed.close();
+      }
+    } catch (IOException | RuntimeException e) {
+      this.fail(e);
+    } finally {
+      try {
+        this.channel.close();
+      } catch (IOException e) {
+        this.fail(e);
+      }
+    }
+  }
+
+  private void fail(Exception e) {
+    if (this.error == null) {
+      this.error = e;
+    }
+  }
+
+  private void checkError() {
+    Exception e = this.error;
+    if (e != null) {
+      throw new SimError("Couldn't write report '" + this.fileName + "'\n" + e.getMessage(), e);
+    }
+  }
+}
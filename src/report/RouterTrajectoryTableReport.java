@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import movement.RouterTrajectoryTable;
+
+/**
+ * Reports the size and hit rate of the {@link RouterTrajectoryTable} at the end of the run. Prints
+ * nothing but a note if no trajectory paths were requested.
+ */
+public class RouterTrajectoryTableReport extends Report {
+
+  public RouterTrajectoryTableReport() {
+    init();
+  }
+
+  @Override
+  public void done() {
+    RouterTrajectoryTable table = RouterTrajectoryTable.getCreated();
+    if (table == null) {
+      write("No trajectory table created");
+      super.done();
+      return;
+    }
+
+    long requests = table.getHits() + table.getMisses();
+    write("Router trajectory table for scenario " + getScenarioName());
+    write("routers: " + table.getNrofRouters());
+    write("stored_paths: " + table.getNrofPaths());
+    write("memory_bytes: " + table.getMemoryUse());
+    write("requests: " + requests);
+    write("hits: " + table.getHits());
+    write("misses: " + table.getMisses());
+    write("evictions: " + table.getEvictions());
+    write("hit_rate: " + format(requests == 0 ? 0 : (double) table.getHits() / requests));
+    super.done();
+  }
+}
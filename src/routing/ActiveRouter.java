@@ -178,6 +178,16 @@ public abstract class ActiveRouter extends MessageRouter {
     return this.getHost().getConnectionsByInterface(connecttype);
   }
 
+  /**
+   * Returns the connections of the host's interface of a connect type
+   *
+   * @param connectTypeId {@link core.InterfaceTypes} ID of the interface's name
+   * @return the connections of the interface
+   */
+  protected List<Connection> getConnectionsByInterface(int connectTypeId) {
+    return this.getHost().getConnectionsByInterface(connectTypeId);
+  }
+
   /**
    * Tries to start a transfer of message using a connection. Is starting succeeds, the connection
    * is added to the watch list of active connections
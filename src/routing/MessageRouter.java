@@ -14,6 +14,9 @@ import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.SimScenario;
+import core.TrustStore;
+import core.World;
+import routing.util.MaliciousRouters;
 import routing.util.RoutingInfo;
 import util.Tuple;
 
@@ -21,12 +24,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 /** Superclass for message routers. */
 public abstract class MessageRouter {
@@ -47,6 +47,15 @@ public abstract class MessageRouter {
    */
   public static final String SEND_QUEUE_MODE_S = "sendQueue";
 
+  /**
+   * Check buffer occupancy -setting id ({@value}). Boolean variable in the {@link
+   * World#OPTIMIZATION_SETTINGS_NS} name space. If true, the incrementally maintained buffer
+   * occupancy is compared with the sum of the buffered messages' sizes whenever the buffer changes
+   * or the free space is asked and an error is thrown if they differ. For debugging; default is
+   * false.
+   */
+  public static final String CHECK_OCCUPANCY_S = "checkBufferOccupancy";
+
   /** Setting value for random queue mode */
   public static final int Q_MODE_RANDOM = 1;
   /** Setting value for FIFO queue mode */
@@ -88,8 +97,17 @@ public abstract class MessageRouter {
   protected List<MessageListener> mListeners;
   /** The messages being transferred with msgID_hostName keys */
   private HashMap<String, Message> incomingMessages;
-  /** The messages this router is carrying */
+  /**
+   * The messages this router is carrying. Must be modified only via {@link #putToMessages} and
+   * {@link #removeFromMessages} that keep the buffer occupancy up to date.
+   */
   protected HashMap<String, Message> messages;
+  /** unmodifiable view to the messages' values */
+  private Collection<Message> messageView;
+  /** sum of the sizes of the messages in the buffer */
+  private long occupancy;
+  /** should the occupancy be checked against the buffer contents */
+  private boolean checkOccupancy;
   /** The messages this router has received as the final recipient */
   public HashMap<String, Message> deliveredMessages;
   /** The messages that Applications on this router have blacklisted */
@@ -121,6 +139,9 @@ public abstract class MessageRouter {
     if (s.contains(MessageRouter.B_SIZE_S)) {
       this.bufferSize = s.getLong(MessageRouter.B_SIZE_S);
     }
+    this.checkOccupancy =
+        new Settings(World.OPTIMIZATION_SETTINGS_NS)
+            .getBoolean(MessageRouter.CHECK_OCCUPANCY_S, false);
 
     if (s.contains(MessageRouter.MSG_TTL_S)) {
       this.msgTtl = s.getInt(MessageRouter.MSG_TTL_S);
@@ -161,6 +182,7 @@ public abstract class MessageRouter {
    */
   protected MessageRouter(MessageRouter r) {
     this.bufferSize = r.bufferSize;
+    this.checkOccupancy = r.checkOccupancy;
     this.msgTtl = r.msgTtl;
     this.sendQueueMode = r.sendQueueMode;
 
@@ -182,6 +204,8 @@ public abstract class MessageRouter {
   public void init(DTNHost host, List<MessageListener> mListeners) {
     this.incomingMessages = new HashMap<>();
     this.messages = new HashMap<>();
+    this.messageView = Collections.unmodifiableCollection(this.messages.values());
+    this.occupancy = 0;
     this.deliveredMessages = new HashMap<>();
     this.blacklistedMessages = new HashMap<>();
     this.mListeners = mListeners;
@@ -269,10 +293,10 @@ public abstract class MessageRouter {
    * through the collection, a copy of the collection should be made to avoid concurrent
    * modification exceptions.
    *
-   * @return a reference to the messages of this router in collection
+   * @return an unmodifiable view to the messages of this router
    */
   public Collection<Message> getMessageCollection() {
-    return this.messages.values();
+    return this.messageView;
   }
 
   /**
@@ -300,17 +324,47 @@ public abstract class MessageRouter {
    * @return The amount of free space (Integer.MAX_VALUE if the buffer size isn't defined)
    */
   public long getFreeBufferSize() {
-    long occupancy = 0;
-
     if (this.getBufferSize() == Integer.MAX_VALUE) {
       return Integer.MAX_VALUE;
     }
-
-    for (Message m : this.getMessageCollection()) {
-      occupancy += m.getSize();
+    if (this.checkOccupancy) {
+      this.checkOccupancy();
     }
 
-    return this.getBufferSize() - occupancy;
+    return this.getBufferSize() - this.occupancy;
+  }
+
+  /**
+   * Returns the sum of the sizes of the messages in the buffer. Kept up to date when messages are
+   * added and removed, so this is a constant time operation.
+   *
+   * @return The number of occupied bytes
+   */
+  public long getOccupiedBufferSize() {
+    return this.occupancy;
+  }
+
+  /**
+   * Compares the buffer occupancy with the sum of the buffered messages' sizes
+   *
+   * @throws SimError if they differ
+   */
+  public void checkOccupancy() {
+    long sum = 0;
+    for (Message m : this.messages.values()) {
+      sum += m.getSize();
+    }
+    if (sum != this.occupancy) {
+      throw new SimError(
+          "Buffer occupancy of "
+              + this.host
+              + " is "
+              + this.occupancy
+              + " but the messages take "
+              + sum
+              + " bytes at "
+              + SimClock.getTime());
+    }
   }
 
   /**
@@ -471,7 +525,7 @@ public abstract class MessageRouter {
    *     nothing is informed.
    */
   protected void addToMessages(Message m, boolean newMessage) {
-    this.messages.put(m.getId(), m);
+    this.putToMessages(m.getId(), m);
 
     if (newMessage) {
       for (MessageListener ml : this.mListeners) {
@@ -488,9 +542,30 @@ public abstract class MessageRouter {
    */
   protected Message removeFromMessages(String id) {
     Message m = this.messages.remove(id);
+    if (m != null) {
+      this.occupancy -= m.getSize();
+      if (this.checkOccupancy) {
+        this.checkOccupancy();
+      }
+    }
     return m;
   }
 
+  /**
+   * Puts a message to the message buffer with the given key and updates the buffer occupancy.
+   * Replaces the message with the same key, if any.
+   *
+   * @param key The key of the message
+   * @param m The message
+   */
+  protected void putToMessages(String key, Message m) {
+    Message old = this.messages.put(key, m);
+    this.occupancy += m.getSize() - (old == null ? 0 : old.getSize());
+    if (this.checkOccupancy) {
+      this.checkOccupancy();
+    }
+  }
+
   /**
    * This method should be called (on the receiving host) when a message transfer was aborted.
    *
@@ -632,21 +707,22 @@ public abstract class MessageRouter {
 
     RoutingInfo cons = new RoutingInfo(this.host.getConnections().size() + " connection(s)");
 
-    var opinions =
-        host.getTrusts().entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .collect(Collectors.toList());
+    TrustStore opinions = host.getTrusts();
 
     var threshold = SimScenario.getInstance().getDynamicThreshold();
     var updTime = SimScenario.getInstance().getThresUpdTime();
-    var belowThreshold =
-        opinions.stream().filter(e -> e.getValue().getLeft() < threshold).collect(Collectors.toList());
+    int belowThreshold = 0;
+    for (int i = 0; i < opinions.size(); i++) {
+      if (opinions.trustAt(i) < threshold) {
+        belowThreshold++;
+      }
+    }
 
     RoutingInfo thres = new RoutingInfo("Current trust threshold: " + threshold + " @ " + updTime);
     RoutingInfo trusts = new RoutingInfo(opinions.size() + " evaluated host(s)");
 
     RoutingInfo detections =
-        new RoutingInfo(belowThreshold.size() + " host(s) considered malicious");
+        new RoutingInfo(belowThreshold + " host(s) considered malicious");
 
     ri.addMoreInfo(incoming);
     ri.addMoreInfo(delivered);
@@ -667,16 +743,14 @@ public abstract class MessageRouter {
       cons.addMoreInfo(new RoutingInfo(c));
     }
 
-    for (var o : opinions) {
-      trusts.addMoreInfo(
-          new RoutingInfo(
-              o.getKey() + ": " + o.getValue().getLeft() + " @ " + o.getValue().getRight()));
-    }
-
-    for (var o : belowThreshold) {
-      detections.addMoreInfo(
-          new RoutingInfo(
-              o.getKey() + ": " + o.getValue().getLeft() + " @ " + o.getValue().getRight()));
+    for (int i = 0; i < opinions.size(); i++) {
+      RoutingInfo o =
+          new RoutingInfo(opinions.hostAt(i) + ": " + opinions.trustAt(i) + " @ "
+              + opinions.timeAt(i));
+      trusts.addMoreInfo(o);
+      if (opinions.trustAt(i) < threshold) {
+        detections.addMoreInfo(o);
+      }
     }
 
     return ri;
@@ -725,6 +799,27 @@ public abstract class MessageRouter {
     return apps;
   }
 
+  /**
+   * Returns true if any applications are attached to this router.
+   *
+   * @return True if there is at least one application, false if not
+   */
+  protected boolean hasApplications() {
+    return !this.applications.isEmpty();
+  }
+
+  /**
+   * Returns true if {@link #update()} of this router only reads and modifies the state of this
+   * router (e.g. its own message buffer) and is not affected by connection changes made by other
+   * hosts during the same update round. Such routers can be updated concurrently with the routers
+   * of other hosts (see {@link core.World#PARALLEL_HOSTS_S}). Default implementation returns false.
+   *
+   * @return True if the router is host-local, false if not
+   */
+  public boolean isHostLocal() {
+    return false;
+  }
+
   /**
    * Creates a replicate of this router. The replicate has the same settings as this router but
    * empty buffers and routing tables.
@@ -750,7 +845,7 @@ public abstract class MessageRouter {
   }
   public String getCategoryMark() {return null;}
   public void callRouterAddDeliveredCount() {};
-  public void setMaliciousRouters(HashSet<DTNHost> maliciousRouters) {};
+  public void setMaliciousRouters(MaliciousRouters maliciousRouters) {};
   public HashMap<String,Object> forAIModel(DTNHost from,Integer count,Double input,Double output, 
 			Double relayRatio,Double overhead,Double time,Double space){return null;};
 }
@@ -1,9 +1,15 @@
 package routing;
 
 import core.*;
-import movement.MessageTrajectoryFinder;
 import movement.Path;
 import movement.RouterPlacementMovement;
+import movement.RouterSpatialIndex;
+import movement.RouterTrajectoryTable;
+import routing.util.MaliciousRouters;
+import routing.util.NeighborhoodSnapshot;
+import routing.util.RouterStatusHistory;
+import util.LongHashMap;
+import util.LongHashSet;
 import util.Tuple;
 
 import java.util.*;
@@ -23,23 +29,36 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   public static final String GAMMA = "gammma";
   public static final String STATUSTHRESHOLD = "statusThreshold";
   public static final String RHO = "rho";
+  /**
+   * Number of router status snapshots kept per router -setting id ({@value}). Default and minimum
+   * is {@link RouterStatusHistory#DEF_CAPACITY}, which is all the routing decisions look at.
+   */
+  public static final String STATUS_HISTORY_S = "statusHistorySize";
   //for cybersapce race
   public static final String CATEGORY_MARK = "categoryMark";
   public static final String MALICIOUS_MARK = "maliciousType";
+  /** type (settings name space) of the router-to-router interfaces */
+  private static final String PRE_ROUTER_INTERFACE = "preRouterInterface";
+  private static final int PRE_ROUTER_INTERFACE_ID = InterfaceTypes.idOf(PRE_ROUTER_INTERFACE);
 
   protected int initialNrofCopies;
-  private Settings set;
+  /** the shared trajectory table of the run, looked up on first use */
+  private RouterTrajectoryTable trajectoryTable;
   private List<Tuple<Double, Connection>> routerScore;
-  private HashMap<String, List<Tuple<Double, Connection>>> msgScoreRouter;
-  private HashMap<String, Message> msgSRM;
+  /** next hop candidates and messages, keyed by {@link MessageKey} */
+  private LongHashMap<List<Tuple<Double, Connection>>> msgScoreRouter;
+  private LongHashMap<Message> msgSRM;
   private Collection<Message> cMessages;
-  private HashMap<String, Message> vehicleMessages;
-  private Set<String> willDeletedMessages;
+  /** buffers and connections of the neighborhood during one findNextHopRouter round */
+  private NeighborhoodSnapshot neighborhood;
+  private LongHashMap<Message> vehicleMessages;
+  /** ID indexes ({@link Message#getIdIndex()}) of messages that have arrived */
+  private LongHashSet willDeletedMessages;
 
   //a threshold for judging the router status
   private double statusThreshold;
   //	private HashMap<String,Boolean> messagesFinded;
-  private Set<String> messagesFinded;
+  private LongHashSet messagesFinded;
 
   //determine whether router need to find the next hop for messages
   private boolean findNextPointFlag = false;
@@ -77,15 +96,16 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   private String categoryMark;
   private String maliciousMark;
 
-  public HashSet<DTNHost> identifyMaliciousRouter;
+  public MaliciousRouters identifyMaliciousRouter;
 
-  private List<routerStatus> allStatus = new ArrayList<routerStatus>();
+  private int statusHistorySize;
+  private RouterStatusHistory allStatus;
 
   //output parameter for reporter to get data
   private static double rcv; //rearCongestionValue
   private static double Orho;//for output rho.
-  private static List<routerStatus> OallStatus = new ArrayList<routerStatus>();
-  private static HashMap<String, List<Tuple<Double, Connection>>> msgSR = new HashMap<String, List<Tuple<Double, Connection>>>();
+  private static RouterStatusHistory OallStatus;
+  private static LongHashMap<List<Tuple<Double, Connection>>> msgSR = new LongHashMap<List<Tuple<Double, Connection>>>();
 
   //count which message is arrived at destination
   private static HashMap<String, Boolean> OarrivedM = new HashMap<String, Boolean>();
@@ -99,7 +119,6 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
 
   public MultipahTrajectoryTimeSpaceRouter(Settings s) {
     super(s);
-    this.set = s;
     Settings setting = new Settings(MultipahTrajectoryTimeSpace_NS);
     initialNrofCopies = setting.getInt(NROF_COPIES);
     if (setting.contains(ALPHA))
@@ -122,6 +141,9 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       this.statusThreshold = setting.getDouble(STATUSTHRESHOLD);
     else
       this.statusThreshold = 0.75;
+    this.statusHistorySize = Math.max(RouterStatusHistory.DEF_CAPACITY,
+        setting.getInt(STATUS_HISTORY_S, RouterStatusHistory.DEF_CAPACITY));
+    this.allStatus = new RouterStatusHistory(this.statusHistorySize);
     this.congestion = false;
     this.rearCongestion = false;
     this.isFirstStart = true;
@@ -130,13 +152,13 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     this.rearCongestionValue = 0.0;
     this.lastCongestionValue = 1.0;
     this.averageVar = 0.0;
-    this.msgScoreRouter = new HashMap<String, List<Tuple<Double, Connection>>>();
-    this.msgSRM = new HashMap<String, Message>();
+    this.msgScoreRouter = new LongHashMap<List<Tuple<Double, Connection>>>();
+    this.msgSRM = new LongHashMap<Message>();
     this.routerScore = new ArrayList<Tuple<Double, Connection>>();
 //		this.messagesFinded = new HashMap<String,Boolean>();
-    this.messagesFinded = new HashSet<String>();
-    this.vehicleMessages = new HashMap<String, Message>();
-    this.willDeletedMessages = new HashSet<String>();
+    this.messagesFinded = new LongHashSet();
+    this.vehicleMessages = new LongHashMap<Message>();
+    this.willDeletedMessages = new LongHashSet();
     this.Max_bufferScore = Double.MIN_VALUE;
     this.Max_closenessScore = Double.MIN_VALUE;
     this.Max_waitingTime = Double.MIN_VALUE;
@@ -145,13 +167,13 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     this.categoryMark = s.getSetting(CATEGORY_MARK);
     this.maliciousMark = s.getSetting(MALICIOUS_MARK);
     this.overheadRecord = new HashMap<DTNHost, Integer>();
-    this.identifyMaliciousRouter = new HashSet<DTNHost>();
+    this.identifyMaliciousRouter = MaliciousRouters.EMPTY;
     this.modelArgs = new HashMap<>();
   }
 
   protected MultipahTrajectoryTimeSpaceRouter(MultipahTrajectoryTimeSpaceRouter r) {
     super(r);
-    this.set = r.set;
+    this.trajectoryTable = r.trajectoryTable;
     this.initialNrofCopies = r.initialNrofCopies;
     this.routerScore = new ArrayList<Tuple<Double, Connection>>();
     this.congestion = false;
@@ -161,6 +183,8 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     this.beta = r.beta;
     this.rho = r.rho;
     this.statusThreshold = r.statusThreshold;
+    this.statusHistorySize = r.statusHistorySize;
+    this.allStatus = new RouterStatusHistory(this.statusHistorySize);
     this.congestion = false;
     this.rearCongestion = false;
     this.statusId = 1;
@@ -168,13 +192,13 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     this.rearCongestionValue = 0.0;
     this.averageVar = 0.0;
     this.lastCongestionValue = 1.0;
-    this.msgScoreRouter = new HashMap<String, List<Tuple<Double, Connection>>>();
-    this.msgSRM = new HashMap<String, Message>();
+    this.msgScoreRouter = new LongHashMap<List<Tuple<Double, Connection>>>();
+    this.msgSRM = new LongHashMap<Message>();
     this.routerScore = new ArrayList<Tuple<Double, Connection>>();
 //		this.messagesFinded = new HashMap<String,Boolean>();
-    this.messagesFinded = new HashSet<String>();
-    this.vehicleMessages = new HashMap<String, Message>();
-    this.willDeletedMessages = new HashSet<String>();
+    this.messagesFinded = new LongHashSet();
+    this.vehicleMessages = new LongHashMap<Message>();
+    this.willDeletedMessages = new LongHashSet();
     this.Max_bufferScore = Double.MIN_VALUE;
     this.Max_closenessScore = Double.MIN_VALUE;
     this.Max_waitingTime = Double.MIN_VALUE;
@@ -182,7 +206,7 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     this.maliciousMark = r.maliciousMark;
     this.updateInterval = r.updateInterval;
     this.overheadRecord = new HashMap<DTNHost, Integer>();
-    this.identifyMaliciousRouter = new HashSet<DTNHost>();
+    this.identifyMaliciousRouter = MaliciousRouters.EMPTY;
     this.modelArgs = new HashMap<>();
   }
 
@@ -190,7 +214,7 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   @Override
   public boolean createNewMessage(Message msg) {
     makeRoomForNewMessage(msg.getSize());
-    msg.trajectoryPath = setTrajectoryPath(this.set, msg);
+    msg.trajectoryPath = setTrajectoryPath(msg);
     msg.setTtl(this.msgTtl);
     addToMessages(msg, true);
     msg.addProperty(MSG_COUNT_PROPERTY, initialNrofCopies);
@@ -200,8 +224,8 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
 
   private static void reset() {
     rcv = 0.0; //rearCongestionValue
-    OallStatus = new ArrayList<routerStatus>();
-    msgSR = new HashMap<String, List<Tuple<Double, Connection>>>();
+    OallStatus = new RouterStatusHistory(RouterStatusHistory.DEF_CAPACITY);
+    msgSR = new LongHashMap<List<Tuple<Double, Connection>>>();
     OarrivedM = new HashMap<String, Boolean>();
   }
 
@@ -241,24 +265,19 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   }
 
   public void dropMessages() {
-    Collection<Message> Ms = this.getMessageCollection();
-    Iterator<Message> its = Ms.iterator();
-    while (its.hasNext()) {
-      Message m = its.next();
+    for (Message m : this.getMessageCollection().toArray(new Message[0])) {
       if (!m.getFrom().name.equals(this.getHost().name))
-        its.remove();
+        this.removeFromMessages(m.getCopyId());
     }
   }
 
   public void clearMessage() {
-    Set<String> msgIDs = new HashSet<String>(this.messages.keySet());
-
-    Iterator<String> ite = msgIDs.iterator();
-    while (ite.hasNext()) {
-      String s = ite.next();
-      String id = s.split("_", 2)[0];
-      if (this.willDeletedMessages.contains(id)) {
-        this.deleteMessage(s, false);
+    if (this.willDeletedMessages.isEmpty()) {
+      return;
+    }
+    for (Message m : getMessageCollection().toArray(new Message[0])) {
+      if (this.willDeletedMessages.contains(m.getIdIndex())) {
+        this.deleteMessage(m.getCopyId(), false);
       }
     }
   }
@@ -266,17 +285,17 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   public Tuple<Message, Connection> tryOtherMessages() {
     // send to vehicles, try direct delivery
     List<Tuple<Message, Connection>> msgNextVehicle = new ArrayList<Tuple<Message, Connection>>();
-    for (Message m : this.vehicleMessages.values()) {
+    this.vehicleMessages.forEach((key, m) -> {
       for (Connection c : getConnections()) {
         DTNHost otherNode = c.getOtherNode(getHost());
         if (m.getTo().equals(otherNode)) {
           msgNextVehicle.add(new Tuple<>(m, c));
         }
       }
-    }
+    });
     tryMessagesForConnected(msgNextVehicle);
     // send to routers
-    List<Connection> cs = this.getConnections();
+    List<Connection> cs = new ArrayList<Connection>(this.getConnections());
     Iterator<Connection> iTs = cs.iterator();
     while (iTs.hasNext()) {
       DTNHost h = iTs.next().getOtherNode(this.getHost());
@@ -344,13 +363,8 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       return true;
     }
     if (!msCollection.isEmpty() && this.statusId >= 2) {
-      routerStatus<Integer, Boolean, Boolean, Double, Double, Double, HashSet<String>> lastRs = allStatus.get(this.statusId - 2);
-      Set<String> lstMsg = new HashSet<String>(lastRs.getMs());
-      List<Message> nowMsg = new ArrayList<Message>(msCollection);
-
-      for (Message m : nowMsg) {
-        String msgId = m.getId() + "_" + m.getCopyVersion();
-        if (!lstMsg.contains(msgId))
+      for (Message m : msCollection) {
+        if (!allStatus.contains(0, m))
           return true;
       }
     }
@@ -362,7 +376,7 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     boolean flag = false;
     for (Message m : msCollection) {
       if (m.gettHPath().isEmpty()) {
-        m.trajectoryPath = setTrajectoryPath(this.set, m);
+        m.trajectoryPath = setTrajectoryPath(m);
         flag = true;
       }
     }
@@ -373,6 +387,7 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     int movingWindowSize = 3;
     Collection<Message> msgCollection = getMessageCollection();
     List<Connection> connections = getConnections();
+    this.neighborhood = new NeighborhoodSnapshot(this::getToConnections);
     /***���������Ԥ�������뱻ʶ��Ķ���router***/
 //    Iterator<Connection> iTs = connections.iterator();
 //    while (iTs.hasNext()) {
@@ -387,18 +402,16 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       if (m.getCorrectPathCount() > this.nrofCorrect)
         m.resetCorrectPathCount();
       if (MultipahTrajectoryTimeSpaceRouter.OarrivedM.containsKey(m.getId())) {
-        if (!this.willDeletedMessages.contains(m.getId())) {
-          this.willDeletedMessages.add(m.getId());
-        }
+        this.willDeletedMessages.add(m.getIdIndex());
         continue;
       }
 
       if (m.gettHPath().isEmpty())
-        m.trajectoryPath = setTrajectoryPath(this.set, m);
+        m.trajectoryPath = setTrajectoryPath(m);
       if (followShortestPath(m, connections))
         continue;
 
-      if (this.messagesFinded.contains(m.getId() + "_" + m.getCopyVersion()))
+      if (this.messagesFinded.contains(m.getKey()))
         continue;
 
 
@@ -464,14 +477,14 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       }
       if (overPath) {
         m.trajectoryPath.clearpath();
-        m.trajectoryPath = setTrajectoryPath(this.set, m);
+        m.trajectoryPath = setTrajectoryPath(m);
         m.setCloseToDes(true);
         followShortestPath(m, connections);
         continue;
       }
       if (cvC.isEmpty()) {
         m.trajectoryPath.clearpath();
-        m.trajectoryPath = setTrajectoryPath(this.set, m);
+        m.trajectoryPath = setTrajectoryPath(m);
         m.resetCorrectPathCount();
         Connection cn = getConnectionByCoord(connections, m.gettHPath().get(1).getLocation());
         addToFindedAndMsgSR(m, cn);
@@ -481,13 +494,12 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
         this.routerScore.clear();
         this.routerScore = new ArrayList<Tuple<Double, Connection>>();
         this.routerScore = calculateRouterScore(candidateVector, cvC, m, orientationVectorLength, orientationVector);
-        this.msgScoreRouter.put(m.getId() + "_" + m.getCopyVersion(), routerScore);
-        this.msgSRM.put(m.getId() + "_" + m.getCopyVersion(), m);
-        if (!this.messagesFinded.contains(m.getId() + "_" + m.getCopyVersion())) {
-          this.messagesFinded.add(m.getId() + "_" + m.getCopyVersion());
-        }
+        this.msgScoreRouter.put(m.getKey(), routerScore);
+        this.msgSRM.put(m.getKey(), m);
+        this.messagesFinded.add(m.getKey());
       }
     }
+    this.neighborhood = null;
     updateRouterStatus();
   }
 
@@ -507,64 +519,31 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       castScores.add(closenessScore);
     }
 
-    sortMessages();
-    List<Message> ms = new ArrayList<Message>(this.cMessages);
-    int mIndex = -1;
-    for (int i = 0; !ms.get(i).getId().equals(m.getId()); i++) {
-      mIndex = i;
+    NeighborhoodSnapshot snapshot = this.neighborhood;
+    if (snapshot == null) {
+      snapshot = new NeighborhoodSnapshot(this::getToConnections);
     }
-    mIndex++;
-    List<Double> transSpeeds = new ArrayList<Double>();
+    NeighborhoodSnapshot.Queue ms = snapshot.getQueue(this.getHost());
+    int mIndex = ms.positionOf(m);
     double sumVelocity = 0;
     for (Connection c : cns) {
-      transSpeeds.add(c.getSpeed());
       sumVelocity += c.getSpeed();
     }
     double waitTimeA = 0, waitTimeB = 0;
 
-    double sumMsSize = 0;
-    for (int i = 0; i <= mIndex; i++)
-      sumMsSize += ms.get(i).getSize();
-    waitTimeA += (sumMsSize) / (sumVelocity / transSpeeds.size());
+    double sumMsSize = ms.getSizeSum(mIndex + 1);
+    waitTimeA += (sumMsSize) / (sumVelocity / cns.size());
     for (Connection c : cns) {
       DTNHost to = c.getOtherNode(this.getHost());
-      Collection<Connection> toCs = getToConnections(to);
-      toCs.remove(c);
-      List<Message> willArrivalTo = new ArrayList<Message>();
-      List<Double> willArrivalToSpeeds = new ArrayList<Double>();
-      for (Connection con : toCs) {
-        DTNHost other = con.getOtherNode(to);
-        List<Message> otherMs = new ArrayList<Message>();
-        otherMs.addAll(sortMessages(other));
-        int sumMSize = 0;
-        List<Message> tmpMs = new ArrayList<Message>(otherMs);
-        double ts = con.getSpeed();
-        for (int i = 0, n = tmpMs.size(); i < n; i++) {
-          if ((sumMSize + tmpMs.get(i).getSize()) / ts < waitTimeA) {
-            sumMSize += tmpMs.get(i).getSize();
-            willArrivalTo.add(tmpMs.get(i));
-            willArrivalToSpeeds.add(ts);
-          } else
-            break;
-        }
-      }
-      willArrivalTo.sort(new TTLComparator());
-      boolean isMeetM = false;
-      for (int i = 0, n = willArrivalTo.size(); i < n; i++) {
-        Message tmpM = willArrivalTo.get(i);
-        double MS = willArrivalToSpeeds.get(i);
-        if (tmpM.getId().equals(m.getId()))
-          isMeetM = true;
-        waitTimeB += tmpM.getSize() / MS;
-        if (isMeetM)
-          break;
-      }
+      /* messages the other neighbors of "to" send before m; note that the time accumulates over
+         the candidates */
+      waitTimeB += snapshot.getArrivalDelay(to, c, m, waitTimeA);
       double delayTime = waitTimeA + waitTimeB;
       if (delayTime > this.Max_waitingTime)
         this.Max_waitingTime = delayTime;
       delayTimeScores.add(delayTime);
 
-      double toBuffer = (double) to.getRouter().getFreeBufferSize() / (double) to.getRouter().getBufferSize();
+      double toBuffer = snapshot.getFreeBufferRatio(to);
 
       if (toBuffer > this.Max_bufferScore)
         this.Max_bufferScore = toBuffer;
@@ -596,9 +575,6 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       }
       Connection cn = getConnectionByCoord(connections, m.gettHPath().get(count + 1).getLocation());
       addToFindedAndMsgSR(m, cn);
-      if (!this.messagesFinded.contains(m.getId() + "_" + m.getCopyVersion())) {
-        this.messagesFinded.add(m.getId() + "_" + m.getCopyVersion());
-      }
 
       return true;
     }
@@ -617,15 +593,21 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     Tuple<Double, Connection> tmpTup = new Tuple<Double, Connection>(1.0, cn);
     List<Tuple<Double, Connection>> mt = new ArrayList<Tuple<Double, Connection>>();
     mt.add(tmpTup);
-    this.msgScoreRouter.put(m.getId() + "_" + m.getCopyVersion(), mt);
-    this.msgSRM.put(m.getId() + "_" + m.getCopyVersion(), m);
-    if (!this.messagesFinded.contains(m.getId() + "_" + m.getCopyVersion())) {
-      this.messagesFinded.add(m.getId() + "_" + m.getCopyVersion());
-    }
+    this.msgScoreRouter.put(m.getKey(), mt);
+    this.msgSRM.put(m.getKey(), m);
+    this.messagesFinded.add(m.getKey());
 
   }
 
   public Connection getConnectionByCoord(List<Connection> cns, Coord coord) {
+    DTNHost router = RouterSpatialIndex.getInstance().getRouterAt(coord);
+    if (router != null) {
+      for (int i = 0, n = cns.size(); i < n; i++) {
+        if (cns.get(i).getOtherNode(this.getHost()) == router) {
+          return cns.get(i);
+        }
+      }
+    }
     Connection c = null;
     for (int i = 0, n = cns.size(); i < n; i++) {
       Coord tmpC = cns.get(i).getOtherNode(this.getHost()).getLocation();
@@ -657,14 +639,8 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       }
       this.congestionValue = (double) (this.getFreeBufferSize() / 1000000.0) / (this.getBufferSize() / 1000000.0);
       this.congestion = this.congestionValue > this.statusThreshold ? true : false;
-      ArrayList<Message> Ms = new ArrayList<Message>(getMessageCollection());
-      Set<String> cms = new HashSet<String>();
-      for (Message m : Ms) {
-        String msgId = m.getId() + "_" + m.getCopyVersion();
-        cms.add(msgId);
-      }
-      allStatus.add(new routerStatus<Integer, Boolean, Boolean, Double, Double, Double, HashSet<String>>
-              (this.statusId, this.congestion, this.rearCongestion, this.congestionValue, this.rearCongestionValue, this.averageVar, (HashSet<String>) cms));
+      allStatus.add(this.statusId, this.congestion, this.rearCongestion, this.congestionValue,
+          this.rearCongestionValue, this.averageVar, getMessageCollection());
       if (adjrho)
         adjustRHO();
       this.lastCongestionValue = this.congestionValue;
@@ -682,14 +658,14 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   }
 
   public double MES() {
-    routerStatus<Integer, Boolean, Boolean, Double, Double, Double, HashSet<String>> rs = allStatus.get(this.statusId - 2);
+    RouterStatusHistory.Status rs = allStatus.get(0); // status this.statusId - 1
     double mes = rs.getAverageVar();
     double var = rs.getPreBuffer() - this.congestionValue;
     return (mes * (this.statusId - 3) + var * var) / (this.statusId - 2);
   }
 
   public void adjustRHO() {
-    routerStatus<Integer, Boolean, Boolean, Double, Double, Double, HashSet<String>> rs = allStatus.get(this.statusId - 2);
+    RouterStatusHistory.Status rs = allStatus.get(1); // status this.statusId - 1
     double var = rs.getBuffer() - this.congestionValue;
     if (var != 0) {
       this.rho += this.averageVar / var;
@@ -752,16 +728,21 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     List<DTNHost> hosts = new ArrayList<DTNHost>(movingWindowSize);
     for (int i = 0; i < movingWindowSize; i++)
       hosts.add(null);
-    DTNHost recentlyHost = null;
-    double distance = Double.MAX_VALUE;
     DTNHost nowHost = this.getHost();
-    for (DTNHost h : tHPath) {
-      if (nowHost.getLocation().distance(h.getLocation()) < distance) {
-        distance = nowHost.getLocation().distance(h.getLocation());
-        recentlyHost = h;
+    // routers don't share locations, so a router on the path is the closest one to itself
+    int count = tHPath.indexOf(nowHost);
+    if (count < 0) {
+      DTNHost recentlyHost = null;
+      double distance = Double.MAX_VALUE;
+      for (DTNHost h : tHPath) {
+        double d = nowHost.getLocation().distance(h.getLocation());
+        if (d < distance) {
+          distance = d;
+          recentlyHost = h;
+        }
       }
+      count = tHPath.indexOf(recentlyHost);
     }
-    int count = tHPath.indexOf(recentlyHost);
     for (int i = 0; i < movingWindowSize; i++) {
       if (count + i < tHPath.size() && count + i >= 0)
         hosts.set(i, tHPath.get(count + i));
@@ -771,25 +752,24 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     return hosts;
   }
 
+  /**
+   * Returns the router-to-router connections of a host
+   *
+   * @param to The host
+   * @return read-only view of the connections
+   */
   public List<Connection> getToConnections(DTNHost to) {
-    List<Connection> cs = new ArrayList<Connection>();
-    List<NetworkInterface> nis = to.getNets();
-    for (NetworkInterface ni : nis) {
-      if (ni.getInterfaceType().equals("preRouterInterface"))
-        cs.addAll(ni.getConnections());
-    }
-    return cs;
+    return to.getConnectionsByInterfaceType(PRE_ROUTER_INTERFACE_ID);
   }
 
+  /**
+   * Returns the router-to-router connections of this router's host
+   *
+   * @return read-only view of the connections
+   */
   @Override
   public List<Connection> getConnections() {
-    List<Connection> cs = new ArrayList<Connection>();
-    List<NetworkInterface> nis = this.getHost().getNets();
-    for (NetworkInterface ni : nis) {
-      if (ni.getInterfaceType().equals("preRouterInterface"))
-        cs.addAll(ni.getConnections());
-    }
-    return cs;
+    return this.getHost().getConnectionsByInterfaceType(PRE_ROUTER_INTERFACE_ID);
   }
 
   @Override
@@ -835,7 +815,8 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   @Override
   protected void transferDone(Connection con) {
     Message msg = con.getMessage();
-    String id = msg.getId() + "_" + msg.getCopyVersion();
+    String id = msg.getCopyId();
+    long key = msg.getKey();
     //for cyberspace race
     Message m = this.messages.get(id);
     if (m == null)
@@ -849,9 +830,9 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
       this.overheadRecord.put(from, 1);
     if (this.overheadRecord.get(from) > this.maxOverhead)
       this.maxOverhead = this.overheadRecord.get(from);
-    this.messagesFinded.remove(id);
-    this.msgScoreRouter.remove(id);
-    this.msgSRM.remove(id);
+    this.messagesFinded.remove(key);
+    this.msgScoreRouter.remove(key);
+    this.msgSRM.remove(key);
     if (this.messages.containsKey(id))
       this.deleteMessage(id, false);
   }
@@ -859,9 +840,9 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   @Override
   protected void addToMessages(Message m, boolean newMessage) {
     if (m.getTo().toString().startsWith("R")) {
-      this.messages.put(m.getId() + "_" + m.getCopyVersion(), m);
+      this.putToMessages(m.getCopyId(), m);
     } else {
-      this.vehicleMessages.put(m.getId() + "_" + m.getCopyVersion(), m);
+      this.vehicleMessages.put(m.getKey(), m);
     }
     if (newMessage) {
       for (MessageListener ml : this.mListeners) {
@@ -877,7 +858,7 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     isFinalRecipient = msg.getTo() == this.getHost();
     if (isFinalRecipient) {
       MultipahTrajectoryTimeSpaceRouter.OarrivedM.put(msg.getId(), true);
-      this.willDeletedMessages.add(msg.getId());
+      this.willDeletedMessages.add(msg.getIdIndex());
       List<DTNHost> tPath = msg.getPassedPath();
       for (DTNHost h : tPath) {
         h.getRouter().callRouterAddDeliveredCount();
@@ -930,7 +911,7 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
   }
 
   /***method is called when a model outputs identification results of routers***/
-  public void setMaliciousRouters(HashSet<DTNHost> maliciousRouters) {
+  public void setMaliciousRouters(MaliciousRouters maliciousRouters) {
     this.identifyMaliciousRouter = maliciousRouters;
   }
 
@@ -956,7 +937,7 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
         return false; // couldn't remove any more messages
       }
       /* delete message from the buffer as "drop" */
-      deleteMessage(m.getId() + "_" + m.getCopyVersion(), true);
+      deleteMessage(m.getCopyId(), true);
       freeBuffer += m.getSize();
     }
 
@@ -968,17 +949,19 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     Message[] messages = getMessageCollection().toArray(new Message[0]);
     for (int i = 0; i < messages.length; i++) {
       int ttl = messages[i].getTtl();
-      if (ttl <= 0 && this.messages.containsKey(messages[i].getId() + "_" + messages[i].getCopyVersion())) {
-        deleteMessage(messages[i].getId() + "_" + messages[i].getCopyVersion(), true);
+      if (ttl <= 0 && this.messages.containsKey(messages[i].getCopyId())) {
+        deleteMessage(messages[i].getCopyId(), true);
       }
     }
   }
 
-  public Path setTrajectoryPath(Settings s, Message m) {
-    MessageTrajectoryFinder mtf = new MessageTrajectoryFinder(s);
-    boolean isOld = false;
-    Path pf = mtf.getPath(this.getHost(), m.getTo(), isOld);
-    List<DTNHost> trl = new ArrayList<DTNHost>(mtf.getTRList());
+  public Path setTrajectoryPath(Message m) {
+    if (this.trajectoryTable == null) {
+      this.trajectoryTable =
+          RouterTrajectoryTable.getInstance(new Settings(MultipahTrajectoryTimeSpace_NS));
+    }
+    List<DTNHost> trl = new ArrayList<DTNHost>();
+    Path pf = this.trajectoryTable.getPath(this.getHost(), m.getTo(), trl);
     m.tHPath = trl;
     return pf;
   }
@@ -1007,11 +990,17 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     return rcv;
   }
 
-  public static List<routerStatus> getOallStatus() {
+  /**
+   * Returns the status history of the router that updated its status last. Only the newest
+   * snapshots are kept; see {@link #STATUS_HISTORY_S}.
+   *
+   * @return the status history
+   */
+  public static RouterStatusHistory getOallStatus() {
     return OallStatus;
   }
 
-  public static HashMap<String, List<Tuple<Double, Connection>>> getMSR() {
+  public static LongHashMap<List<Tuple<Double, Connection>>> getMSR() {
     return msgSR;
   }
 
@@ -1048,55 +1037,6 @@ public class MultipahTrajectoryTimeSpaceRouter extends ActiveRouter {
     }
   }
 
-  public class routerStatus<Id, Status, PreStatus, Buffer, PreBuffer, AverageVar, Ms> {
-    public Id id; // status id
-    public Status status; // router status
-    public PreStatus preStatus; //prediction of status
-    public Buffer buffer;// free buffer size/all buffer
-    public PreBuffer preBuffer; // prediction buffer
-    public AverageVar averageVar; //MES
-    public Set<String> ms = new HashSet<String>();
-
-    //		public List<Message> ms = new ArrayList<Message>(); // the list of messages in 'id' status
-    public routerStatus(Id id, Status status, PreStatus preStatus, Buffer buffer, PreBuffer preBuffer, AverageVar averageVar, Ms ms) {
-      this.id = id;
-      this.status = status;
-      this.preStatus = preStatus;
-      this.buffer = buffer;
-      this.preBuffer = preBuffer;
-      this.averageVar = averageVar;
-      this.ms = (HashSet<String>) ms;
-    }
-
-    public Id getId() {
-      return this.id;
-    }
-
-    public Status getStatus() {
-      return this.status;
-    }
-
-    public PreStatus getPreStatus() {
-      return this.preStatus;
-    }
-
-    public Buffer getBuffer() {
-      return this.buffer;
-    }
-
-    public PreBuffer getPreBuffer() {
-      return this.preBuffer;
-    }
-
-    public AverageVar getAverageVar() {
-      return this.averageVar;
-    }
-
-    public HashSet<String> getMs() {
-      return (HashSet<String>) this.ms;
-    }
-  }
-
   @Override
   public String getCategoryMark() {
     return this.categoryMark;
@@ -15,6 +15,9 @@ public class MultipathTrajectoryVehicleToRouterRouter extends SourceSprayAndWait
 
   public static final String STATUSTHRESHOLD = "loadFactor";
   public static final String CATEGORY_MARK = "categoryMark";
+  /** {@link InterfaceTypes} IDs of the vehicle-to-vehicle and vehicle-to-router interfaces */
+  protected static final int V2V = InterfaceTypes.idOf("V2V");
+  protected static final int V2R = InterfaceTypes.idOf("V2R");
   private Set<String> ackedMessageIds;
   private HashMap<String, List<String>> sendRSU;
   private Map<DTNHost, Double> arriveTime;
@@ -87,7 +90,7 @@ public class MultipathTrajectoryVehicleToRouterRouter extends SourceSprayAndWait
     Collection<Message> msgToVehicle = getMessageCollection().stream().filter(
             m -> !m.getTo().toString().startsWith("R")
     ).collect(Collectors.toList());
-    for (Connection c : getConnectionsByInterface("V2V")) {
+    for (Connection c : getConnectionsByInterface(V2V)) {
       for (Message m : msgToVehicle) {
         Integer nrofCopies = (Integer) m.getProperty(MSG_COUNT_PROPERTY);
         if (nrofCopies > 1) {
@@ -114,7 +117,7 @@ public class MultipathTrajectoryVehicleToRouterRouter extends SourceSprayAndWait
     //     m -> m.getTo().toString().startsWith("R")
     // ).collect(Collectors.toList());
     Collection<Message> msgCollection = getMessageCollection();
-    for (Connection c : getConnectionsByInterface("V2R")) {
+    for (Connection c : getConnectionsByInterface(V2R)) {
       DTNHost other = c.getOtherNode(getHost());
       MultipahTrajectoryTimeSpaceRouter otherRouter = (MultipahTrajectoryTimeSpaceRouter) other.getRouter();
       //			VRCRouter otherRouter = (VRCRouter)other.getRouter();
@@ -156,7 +159,7 @@ public class MultipathTrajectoryVehicleToRouterRouter extends SourceSprayAndWait
    */
   public List<Tuple<Connection, Double>> getMinDistanceRouter(Message m) {
     List<Tuple<Connection, Double>> ans = new ArrayList<Tuple<Connection, Double>>();
-    List<Connection> cs = this.getConnectionsByInterface("V2R");
+    List<Connection> cs = this.getConnectionsByInterface(V2R);
     Coord to = m.getTo().getLocation();
     for (Connection c : cs) {
       ans.add(
@@ -12,10 +12,10 @@ import core.MessageListener;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
-import net.sourceforge.jFuzzyLogic.FIS;
-import net.sourceforge.jFuzzyLogic.FunctionBlock;
 import net.sourceforge.jFuzzyLogic.Gpr;
 import net.sourceforge.jFuzzyLogic.rule.Variable;
+import routing.util.FuzzyRuleEngine;
+import routing.util.PredictabilityTable;
 import util.Tuple;
 
 import java.util.ArrayList;
@@ -35,20 +35,33 @@ public class MyRouter extends ProphetRouter {
   protected double energyThs = 0.9;  //能源阈值
 
   /** 贡献表和消费表 */
-  public Map<DTNHost, Double> contributionTab;   //贡献表
-  public Map<DTNHost, Double> comsumptionTab;    //消费表
-  protected Map<DTNHost, Double> reputationTab;  //声誉表
+  public PredictabilityTable contributionTab;   //贡献表
+  public PredictabilityTable comsumptionTab;    //消费表
+  protected PredictabilityTable reputationTab;  //声誉表
   protected Map<DTNHost, Double> preRepsTab;     //综合度量
   protected boolean initRep;
   /** 初始preRep */
   private final double preRepInit = 1;
 
+  /** 模糊规则文件, 采样点数和校验容差 (设置项同 {@link V2xRouter}) */
+  protected String fuzzyRules;
+  protected int fuzzyPoints;
+  protected double fuzzyTolerance;
+  /** 编译后的模糊规则求值器 (每个路由器一个, 首次使用时创建) */
+  private FuzzyRuleEngine.Evaluator fuzzyRank;
+  private int repInput;
+  private int otherInput;
+  private int probInput;
+
   public MyRouter(Settings s) {
     super(s);
     Settings MyRoutings = new Settings("MyRouter");
-    comsumptionTab = new HashMap<DTNHost, Double>();
-    contributionTab = new HashMap<DTNHost, Double>();
-    reputationTab = new HashMap<DTNHost, Double>();
+    fuzzyRules = MyRoutings.getSetting(V2xRouter.FUZZY_RULES_S, V2xRouter.DEF_FUZZY_RULES);
+    fuzzyPoints = MyRoutings.getInt(V2xRouter.FUZZY_POINTS_S, FuzzyRuleEngine.DEF_NROF_POINTS);
+    fuzzyTolerance = MyRoutings.getDouble(V2xRouter.FUZZY_TOLERANCE_S, -1);
+    comsumptionTab = new PredictabilityTable();
+    contributionTab = new PredictabilityTable();
+    reputationTab = new PredictabilityTable();
     preRepsTab = new HashMap<>();
     initRep = false;
   }
@@ -58,12 +71,15 @@ public class MyRouter extends ProphetRouter {
     //各种表
     this.comsumptionTab = r.comsumptionTab;
     this.contributionTab = r.contributionTab;
-    this.reputationTab = new HashMap<>();
+    this.reputationTab = new PredictabilityTable();
     this.preRepsTab = new HashMap<>();
     initRep = r.initRep;
 
     //能量阈值
     this.energyThs = r.energyThs;
+    this.fuzzyRules = r.fuzzyRules;
+    this.fuzzyPoints = r.fuzzyPoints;
+    this.fuzzyTolerance = r.fuzzyTolerance;
   }
 
   @Override
@@ -177,14 +193,15 @@ public class MyRouter extends ProphetRouter {
     assert otherRouter instanceof MyRouter
         : "MyRouter only works " + " with other routers of same type";
     double pRForHost = this.getRep(host);
-    Map<DTNHost, Double> othersPreds = ((MyRouter) otherRouter).getReputationTab();
-    for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-      if (e.getKey() == this.getHost()) {
+    PredictabilityTable othersPreds = ((MyRouter) otherRouter).getReputationTab();
+    for (int i = othersPreds.next(0); i >= 0; i = othersPreds.next(i + 1)) {
+      DTNHost c = othersPreds.hostAt(i);
+      if (c == this.getHost()) {
         continue; // don't add yourself
       }
-      double pOld = this.getRep(e.getKey());
-      double pNew = pOld + (1 - pOld) * pRForHost * e.getValue() * this.beta;
-      this.reputationTab.put(e.getKey(), pNew);
+      double pOld = this.getRep(c);
+      double pNew = pOld + (1 - pOld) * pRForHost * othersPreds.valueAt(i) * this.beta;
+      this.reputationTab.put(c, pNew);
     }
   }
 
@@ -194,9 +211,9 @@ public class MyRouter extends ProphetRouter {
    * @return 声誉值
    */
   protected double getRep(DTNHost host) {
-    if(reputationTab.containsKey(host))
+    if(reputationTab.contains(host))
       return reputationTab.get(host);
-    if(comsumptionTab.containsKey(host) && contributionTab.containsKey(host)) {
+    if(comsumptionTab.contains(host) && contributionTab.contains(host)) {
       double t = contributionTab.get(host) / (contributionTab.get(host) + comsumptionTab.get(host));
       reputationTab.put(host, t);
       return t;
@@ -206,7 +223,7 @@ public class MyRouter extends ProphetRouter {
     return contributionTab.get(host) / (contributionTab.get(host) + comsumptionTab.get(host));
   }
 
-  protected Map<DTNHost, Double> getReputationTab() {
+  protected PredictabilityTable getReputationTab() {
     return this.reputationTab;
   }
 
@@ -222,12 +239,12 @@ public class MyRouter extends ProphetRouter {
     double aContribution = 1;
     double aComsumption = 1;
     for (var mHost : neighbourHost) {
-      if (contributionTab.containsKey(mHost))
+      if (contributionTab.contains(mHost))
         aContribution = contributionTab.get(mHost);
       else {
         contributionTab.put(mHost, ((MyRouter) mHost.getRouter()).getSelfCon());
       }
-      if (comsumptionTab.containsKey(mHost))
+      if (comsumptionTab.contains(mHost))
         aComsumption = comsumptionTab.get(mHost);
       else
         comsumptionTab.put(mHost, ((MyRouter)mHost.getRouter()).getSelfCon());
@@ -242,18 +259,18 @@ public class MyRouter extends ProphetRouter {
     boolean isDelivered = this.isDeliveredMessage(m);
     for(var mHost : this.getHost().getNeighbors()) {
       if(isDelivered) {
-        ((MyRouter)mHost.getRouter()).comsumptionTab.computeIfPresent(this.getHost(), (key, value) -> value = value + m.getHopCount());
-        ((MyRouter)mHost.getRouter()).comsumptionTab.computeIfPresent(m.getFrom(), (key, value) -> value = value + m.getHopCount());
+        ((MyRouter)mHost.getRouter()).comsumptionTab.addIfPresent(this.getHost(), m.getHopCount());
+        ((MyRouter)mHost.getRouter()).comsumptionTab.addIfPresent(m.getFrom(), m.getHopCount());
       } else {
-        ((MyRouter)mHost.getRouter()).contributionTab.computeIfPresent(this.getHost(), (key, value) -> value + 1);
-        ((MyRouter)mHost.getRouter()).contributionTab.computeIfPresent(from, (key, value) -> value + 1);
-        ((MyRouter)mHost.getRouter()).comsumptionTab.computeIfPresent(m.getFrom(), (key, value) -> value + 2);
+        ((MyRouter)mHost.getRouter()).contributionTab.addIfPresent(this.getHost(), 1);
+        ((MyRouter)mHost.getRouter()).contributionTab.addIfPresent(from, 1);
+        ((MyRouter)mHost.getRouter()).comsumptionTab.addIfPresent(m.getFrom(), 2);
       }
     }
     if(isDelivered)
-      comsumptionTab.computeIfPresent(m.getFrom(), (key, value) -> value = value + m.getHopCount());
+      comsumptionTab.addIfPresent(m.getFrom(), m.getHopCount());
     else
-      contributionTab.computeIfPresent(from, (key, value) -> value + 1);
+      contributionTab.addIfPresent(from, 1);
     return m;
   }
 
@@ -283,29 +300,34 @@ public class MyRouter extends ProphetRouter {
   }
 
   public double fuzzyLogic(double repFactor, double otherfactor, double probabilityFactor) {
-    String fileName = "repPro.fcl";
-    FIS fis = FIS.load(fileName, true);
-    if (fis == null) { // Error while loading?
-      System.err.println("Can't load file: '" + fileName + "'");
-      return 0;
+    if (fuzzyRank == null) {
+      FuzzyRuleEngine engine = FuzzyRuleEngine.load(fuzzyRules, fuzzyPoints);
+      repInput = engine.getInputIndex("ReputationScore");
+      otherInput = engine.getInputIndex("TransmissionCapacity");
+      probInput = engine.getInputIndex("SocialSimilarity");
+      fuzzyRank = engine.newEvaluator();
     }
 
-    FunctionBlock functionBlock = fis.getFunctionBlock(null);
-
-    // Set inputs
-    functionBlock.setVariable("repFactor", repFactor);
-    functionBlock.setVariable("otherFactor", otherfactor);
-    functionBlock.setVariable("socialSimilarity", probabilityFactor);
-
-    // begin
-    functionBlock.evaluate();
-    return functionBlock.getVariable("rank").getValue();
+    fuzzyRank.setInput(repInput, repFactor);
+    fuzzyRank.setInput(otherInput, otherfactor);
+    fuzzyRank.setInput(probInput, probabilityFactor);
+    double rank = fuzzyRank.evaluate();
+
+    if (fuzzyTolerance >= 0) {
+      double expected = V2xRouter.fisLogic(fuzzyRules, repFactor, otherfactor, probabilityFactor);
+      if (!(Math.abs(rank - expected) <= fuzzyTolerance)) {
+        throw new SimError("Compiled fuzzy rank " + rank + " differs from jFuzzyLogic's "
+            + expected + " for (" + repFactor + ", " + otherfactor + ", "
+            + probabilityFactor + ")");
+      }
+    }
+    return rank;
   }
 
   @Override
   public boolean createNewMessage(Message m) {
-    this.comsumptionTab.computeIfPresent(this.getHost(), (key, value) -> value = value + 2);
-    System.out.println("DTN"+ getHost().toString() + " con"+contributionTab.get(getHost())+" com"+comsumptionTab.get(getHost())+" rep"+getRep(getHost()));
+    this.comsumptionTab.addIfPresent(this.getHost(), 2);
+    System.out.println("DTN"+ getHost().toString() + " con"+V2xRouter.valueOf(contributionTab, getHost())+" com"+V2xRouter.valueOf(comsumptionTab, getHost())+" rep"+getRep(getHost()));
     return super.createNewMessage(m);
   }
 }
@@ -26,6 +26,15 @@ public class PassiveRouter extends MessageRouter {
     super(r);
   }
 
+  /**
+   * Returns true if no applications are attached to this router: update() does nothing else than
+   * updates the applications.
+   */
+  @Override
+  public boolean isHostLocal() {
+    return !this.hasApplications();
+  }
+
   @Override
   public MessageRouter replicate() {
     return new PassiveRouter(this);
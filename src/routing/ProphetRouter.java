@@ -8,14 +8,12 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
-import core.SimClock;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 import util.Tuple;
 
@@ -58,10 +56,8 @@ public class ProphetRouter extends ActiveRouter {
   /** value of gamma setting */
   private final double gamma;
 
-  /** delivery predictabilities */
-  protected Map<DTNHost, Double> preds;
-  /** last delivery predictability update (sim)time */
-  private double lastAgeUpdate;
+  /** delivery predictabilities, aged when read */
+  protected PredictabilityTable preds;
 
   /**
    * Constructor. Creates a new message router based on the settings in the given Settings object.
@@ -104,9 +100,9 @@ public class ProphetRouter extends ActiveRouter {
     this.initPreds();
   }
 
-  /** Initializes predictability hash */
+  /** Initializes predictability table */
   private void initPreds() {
-    this.preds = new HashMap<>();
+    this.preds = new PredictabilityTable(this.gamma, this.secondsInTimeUnit);
   }
 
   @Override
@@ -134,17 +130,14 @@ public class ProphetRouter extends ActiveRouter {
 
   /**
    * Returns the current prediction (P) value for a host or 0 if entry for the host doesn't exist.
+   * The value is aged when read: <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number
+   * of time units that have elapsed since the entry was last updated.
    *
    * @param host The host to look the P for
    * @return the current P value
    */
   public double getPredFor(DTNHost host) {
-    this.ageDeliveryPreds(); // make sure preds are updated before getting
-    if (this.preds.containsKey(host)) {
-      return this.preds.get(host);
-    } else {
-      return 0;
-    }
+    return this.preds.get(host); // aged when read
   }
 
   /**
@@ -160,47 +153,16 @@ public class ProphetRouter extends ActiveRouter {
         : "PRoPHET only works " + " with other routers of same type";
 
     double pForHost = this.getPredFor(host); // P(a,b)
-    Map<DTNHost, Double> othersPreds = ((ProphetRouter) otherRouter).getDeliveryPreds();
-
-    for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-      if (e.getKey() == this.getHost()) {
-        continue; // don't add yourself
-      }
-
-      double pOld = this.getPredFor(e.getKey()); // P(a,c)_old
-      double pNew = pOld + (1 - pOld) * pForHost * e.getValue() * this.beta;
-      this.preds.put(e.getKey(), pNew);
-    }
-  }
-
-  /**
-   * Ages all entries in the delivery predictions. <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>,
-   * where k is number of time units that have elapsed since the last time the metric was aged.
-   *
-   * @see #SECONDS_IN_UNIT_S
-   */
-  private void ageDeliveryPreds() {
-    double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) / this.secondsInTimeUnit;
-
-    if (timeDiff == 0) {
-      return;
-    }
-
-    double mult = Math.pow(this.gamma, timeDiff);
-    for (Map.Entry<DTNHost, Double> e : this.preds.entrySet()) {
-      e.setValue(e.getValue() * mult);
-    }
-
-    this.lastAgeUpdate = SimClock.getTime();
+    PredictabilityTable othersPreds = ((ProphetRouter) otherRouter).getDeliveryPreds();
+    this.preds.updateTransitive(othersPreds, this.getHost(), pForHost, this.beta);
   }
 
   /**
-   * Returns a map of this router's delivery predictions
+   * Returns this router's delivery predictions
    *
-   * @return a map of this router's delivery predictions
+   * @return this router's delivery predictions
    */
-  private Map<DTNHost, Double> getDeliveryPreds() {
-    this.ageDeliveryPreds(); // make sure the aging is done
+  private PredictabilityTable getDeliveryPreds() {
     return this.preds;
   }
 
@@ -261,13 +223,12 @@ public class ProphetRouter extends ActiveRouter {
 
   @Override
   public RoutingInfo getRoutingInfo() {
-    this.ageDeliveryPreds();
     RoutingInfo top = super.getRoutingInfo();
     RoutingInfo ri = new RoutingInfo(this.preds.size() + " delivery prediction(s)");
 
-    for (Map.Entry<DTNHost, Double> e : this.preds.entrySet()) {
-      DTNHost host = e.getKey();
-      Double value = e.getValue();
+    for (int i = this.preds.next(0); i >= 0; i = this.preds.next(i + 1)) {
+      DTNHost host = this.preds.hostAt(i);
+      double value = this.preds.valueAt(i);
 
       ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", host, value)));
     }
@@ -16,6 +16,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 import util.Tuple;
 
@@ -61,8 +62,8 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
   private final double ptavg;
 
-  /** delivery predictabilities */
-  private Map<DTNHost, Double> preds;
+  /** delivery predictabilities, aged when read */
+  private PredictabilityTable preds;
 
   /** last meeting time with a node */
   private Map<DTNHost, Double> meetings;
@@ -70,9 +71,6 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
   private int nrofSamples;
   private double meanIET;
 
-  /** last delivery predictability update (sim)time */
-  private double lastAgeUpdate;
-
   /**
    * Constructor. Creates a new message router based on the settings in the given Settings object.
    *
@@ -113,9 +111,9 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
     this.initMeetings();
   }
 
-  /** Initializes predictability hash */
+  /** Initializes predictability table */
   private void initPreds() {
-    this.preds = new HashMap<>();
+    this.preds = new PredictabilityTable(this.gamma, 1);
   }
 
   /** Initializes inter-encounter time estimator */
@@ -302,6 +300,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
       }
     }
     this.gamma = Math.exp(-b);
+    this.preds.setGamma(this.gamma);
     this.pinit = 1 - zeta;
   }
 
@@ -324,12 +323,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
    * @return the current P value
    */
   public double getPredFor(DTNHost host) {
-    this.ageDeliveryPreds(); // make sure preds are updated before getting
-    if (this.preds.containsKey(host)) {
-      return this.preds.get(host);
-    } else {
-      return 0;
-    }
+    return this.preds.get(host); // aged when read
   }
 
   /**
@@ -345,46 +339,17 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
         : "PRoPHET only works " + " with other routers of same type";
 
     double pForHost = this.getPredFor(host); // P(a,b)
-    Map<DTNHost, Double> othersPreds =
+    PredictabilityTable othersPreds =
         ((ProphetRouterWithEstimation) otherRouter).getDeliveryPreds();
-
-    for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-      if (e.getKey() == this.getHost()) {
-        continue; // don't add yourself
-      }
-
-      double pOld = this.getPredFor(e.getKey()); // P(a,c)_old
-      double pNew = pOld + (1 - pOld) * pForHost * e.getValue() * this.beta;
-      this.preds.put(e.getKey(), pNew);
-    }
-  }
-
-  /**
-   * Ages all entries in the delivery predictions. <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>,
-   * where k is number of time units that have elapsed since the last time the metric was aged.
-   */
-  private void ageDeliveryPreds() {
-    double timeDiff = (SimClock.getTime() - this.lastAgeUpdate);
-
-    if (timeDiff == 0) {
-      return;
-    }
-
-    double mult = Math.pow(this.gamma, timeDiff);
-    for (Map.Entry<DTNHost, Double> e : this.preds.entrySet()) {
-      e.setValue(e.getValue() * mult);
-    }
-
-    this.lastAgeUpdate = SimClock.getTime();
+    this.preds.updateTransitive(othersPreds, this.getHost(), pForHost, this.beta);
   }
 
   /**
-   * Returns a map of this router's delivery predictions
+   * Returns this router's delivery predictions
    *
-   * @return a map of this router's delivery predictions
+   * @return this router's delivery predictions
    */
-  private Map<DTNHost, Double> getDeliveryPreds() {
-    this.ageDeliveryPreds(); // make sure the aging is done
+  private PredictabilityTable getDeliveryPreds() {
     return this.preds;
   }
 
@@ -445,13 +410,12 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
   @Override
   public RoutingInfo getRoutingInfo() {
-    this.ageDeliveryPreds();
     RoutingInfo top = super.getRoutingInfo();
     RoutingInfo ri = new RoutingInfo(this.preds.size() + " delivery prediction(s)");
 
-    for (Map.Entry<DTNHost, Double> e : this.preds.entrySet()) {
-      DTNHost host = e.getKey();
-      Double value = e.getValue();
+    for (int i = this.preds.next(0); i >= 0; i = this.preds.next(i + 1)) {
+      DTNHost host = this.preds.hostAt(i);
+      double value = this.preds.valueAt(i);
 
       ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", host, value)));
     }
@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 import util.Tuple;
 
@@ -60,15 +61,12 @@ public class ProphetV2Router extends ActiveRouter {
   /** value of gamma setting */
   private final double gamma;
 
-  /** delivery predictabilities */
-  private Map<DTNHost, Double> preds;
+  /** delivery predictabilities, aged when read */
+  private PredictabilityTable preds;
 
   /** last encouter timestamp (sim)time */
   private Map<DTNHost, Double> lastEncouterTime;
 
-  /** last delivery predictability update (sim)time */
-  private double lastAgeUpdate;
-
   /**
    * Constructor. Creates a new message router based on the settings in the given Settings object.
    *
@@ -112,9 +110,9 @@ public class ProphetV2Router extends ActiveRouter {
     this.lastEncouterTime = new HashMap<>();
   }
 
-  /** Initializes predictability hash */
+  /** Initializes predictability table */
   private void initPreds() {
-    this.preds = new HashMap<>();
+    this.preds = new PredictabilityTable(this.gamma, this.secondsInTimeUnit);
   }
 
   @Override
@@ -174,12 +172,7 @@ public class ProphetV2Router extends ActiveRouter {
    * @return the current P value
    */
   public double getPredFor(DTNHost host) {
-    this.ageDeliveryPreds(); // make sure preds are updated before getting
-    if (this.preds.containsKey(host)) {
-      return this.preds.get(host);
-    } else {
-      return 0;
-    }
+    return this.preds.get(host); // aged when read
   }
 
   /**
@@ -195,50 +188,17 @@ public class ProphetV2Router extends ActiveRouter {
         : "PRoPHETv2 only works with other routers of same type";
 
     double pForHost = this.getPredFor(host); // P(a,b)
-    Map<DTNHost, Double> othersPreds = ((ProphetV2Router) otherRouter).getDeliveryPreds();
-
-    for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-      if (e.getKey() == this.getHost()) {
-        continue; // don't add yourself
-      }
-
-      // ProphetV2 max(old,new)
-      double pOld = this.getPredFor(e.getKey()); // P(a,c)_old
-      double pNew = pForHost * e.getValue() * this.beta;
-      if (pNew > pOld) {
-        this.preds.put(e.getKey(), pNew);
-      }
-    }
-  }
-
-  /**
-   * Ages all entries in the delivery predictions. <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>,
-   * where k is number of time units that have elapsed since the last time the metric was aged.
-   *
-   * @see #SECONDS_IN_UNIT_S
-   */
-  private void ageDeliveryPreds() {
-    double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) / this.secondsInTimeUnit;
-
-    if (timeDiff == 0) {
-      return;
-    }
-
-    double mult = Math.pow(this.gamma, timeDiff);
-    for (Map.Entry<DTNHost, Double> e : this.preds.entrySet()) {
-      e.setValue(e.getValue() * mult);
-    }
-
-    this.lastAgeUpdate = SimClock.getTime();
+    PredictabilityTable othersPreds = ((ProphetV2Router) otherRouter).getDeliveryPreds();
+    // ProphetV2 max(old,new)
+    this.preds.updateTransitiveMax(othersPreds, this.getHost(), pForHost, this.beta);
   }
 
   /**
-   * Returns a map of this router's delivery predictions
+   * Returns this router's delivery predictions
    *
-   * @return a map of this router's delivery predictions
+   * @return this router's delivery predictions
    */
-  private Map<DTNHost, Double> getDeliveryPreds() {
-    this.ageDeliveryPreds(); // make sure the aging is done
+  private PredictabilityTable getDeliveryPreds() {
     return this.preds;
   }
 
@@ -299,13 +259,12 @@ public class ProphetV2Router extends ActiveRouter {
 
   @Override
   public RoutingInfo getRoutingInfo() {
-    this.ageDeliveryPreds();
     RoutingInfo top = super.getRoutingInfo();
     RoutingInfo ri = new RoutingInfo(this.preds.size() + " delivery prediction(s)");
 
-    for (Map.Entry<DTNHost, Double> e : this.preds.entrySet()) {
-      DTNHost host = e.getKey();
-      Double value = e.getValue();
+    for (int i = this.preds.next(0); i >= 0; i = this.preds.next(i + 1)) {
+      DTNHost host = this.preds.hostAt(i);
+      double value = this.preds.valueAt(i);
 
       ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", host, value)));
     }
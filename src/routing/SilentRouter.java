@@ -23,6 +23,15 @@ public class SilentRouter extends MessageRouter {
     return MessageRouter.DENIED_POLICY;
   }
 
+  /**
+   * Returns true if no applications are attached to this router: update() does nothing else than
+   * updates the applications.
+   */
+  @Override
+  public boolean isHostLocal() {
+    return !this.hasApplications();
+  }
+
   @Override
   public MessageRouter replicate() {
     return new SilentRouter(this);
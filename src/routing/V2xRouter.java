@@ -4,6 +4,8 @@ import core.*;
 import movement.RouterPlacementMovement;
 import net.sourceforge.jFuzzyLogic.FIS;
 import net.sourceforge.jFuzzyLogic.FunctionBlock;
+import routing.util.FuzzyRuleEngine;
+import routing.util.PredictabilityTable;
 import util.Tuple;
 
 import java.util.*;
@@ -11,14 +13,29 @@ import java.util.stream.Collectors;
 
 public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
     public static final String ENERGY_THS = "EnergyThs";
+    /** 模糊规则文件 -setting id ({@value}). Default {@link #DEF_FUZZY_RULES} */
+    public static final String FUZZY_RULES_S = "fuzzyRules";
+    /** 默认模糊规则文件 ({@value}) */
+    public static final String DEF_FUZZY_RULES = "./src/routing/repPro.fcl";
+    /**
+     * 去模糊化采样点数 -setting id ({@value}).
+     * Default {@link FuzzyRuleEngine#DEF_NROF_POINTS}
+     */
+    public static final String FUZZY_POINTS_S = "fuzzyPoints";
+    /**
+     * 模糊逻辑校验容差 -setting id ({@value}). 设置后每次评估都会与
+     * jFuzzyLogic(FIS.load)的结果比较, 差值超过容差时抛出 SimError. 默认不校验
+     */
+    public static final String FUZZY_TOLERANCE_S = "fuzzyTolerance";
 
     protected double energyThs = 0.8;  //能源阈值
     /** 贡献表和消费表 */
-    public Map<DTNHost, Double> contributionTab;   //贡献表
-    public Map<DTNHost, Double> consumptionTab;    //消费表
-    protected Map<DTNHost, Double> reputationTab;  //声誉表
+    public PredictabilityTable contributionTab;   //贡献表
+    public PredictabilityTable consumptionTab;    //消费表
+    protected PredictabilityTable reputationTab;  //声誉表
     protected Map<DTNHost, Double> finalScoreTab;     //综合度量
-    protected Map<DTNHost, Double> preds;          //碰撞因素
+    /** 碰撞因素 (同一原型复制出的路由器共用, 各自按自己的lastAgeUpdate老化) */
+    protected PredictabilityTable preds;          //碰撞因素
     protected boolean initRep;      //声誉是否初始化
     protected double lastAgeUpdate; //上一次碰撞更新
 
@@ -29,26 +46,43 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
     private final double gamma = 0.98;
     private static final double P_INIT = 0.25;
 
+    /** 模糊规则文件和采样点数 */
+    protected String fuzzyRules;
+    protected int fuzzyPoints;
+    /** 校验容差, 负数表示不校验 */
+    protected double fuzzyTolerance;
+    /** 编译后的模糊规则求值器 (每个路由器一个, 首次使用时创建) */
+    private FuzzyRuleEngine.Evaluator fuzzyRank;
+    private int repInput;
+    private int otherInput;
+    private int probInput;
+
    public V2xRouter(Settings s) {
         super(s);
         Settings V2xRouterSetting = new Settings("V2xRouter");
-        consumptionTab = new HashMap<DTNHost, Double>();
-        contributionTab = new HashMap<DTNHost, Double>();
-        reputationTab = new HashMap<DTNHost, Double>();
+        fuzzyRules = V2xRouterSetting.getSetting(FUZZY_RULES_S, DEF_FUZZY_RULES);
+        fuzzyPoints = V2xRouterSetting.getInt(FUZZY_POINTS_S, FuzzyRuleEngine.DEF_NROF_POINTS);
+        fuzzyTolerance = V2xRouterSetting.getDouble(FUZZY_TOLERANCE_S, -1);
+        consumptionTab = new PredictabilityTable();
+        contributionTab = new PredictabilityTable();
+        reputationTab = new PredictabilityTable();
         finalScoreTab = new HashMap<>();
-        this.preds = new HashMap<>();
+        this.preds = new PredictabilityTable();
         initRep = false;
     }
     public V2xRouter(V2xRouter r) {
         super(r);
-        consumptionTab = new HashMap<DTNHost, Double>();
-        contributionTab = new HashMap<DTNHost, Double>();
-        reputationTab = new HashMap<DTNHost, Double>();
+        consumptionTab = new PredictabilityTable();
+        contributionTab = new PredictabilityTable();
+        reputationTab = new PredictabilityTable();
         finalScoreTab = new HashMap<>();
         energyThs = r.energyThs;
         preds = r.preds;
         lastAgeUpdate = r.lastAgeUpdate;
         initRep = r.initRep;
+        fuzzyRules = r.fuzzyRules;
+        fuzzyPoints = r.fuzzyPoints;
+        fuzzyTolerance = r.fuzzyTolerance;
     }
 
     /***
@@ -67,7 +101,7 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
 
         Collection<Message> msgToVehicle = msgToAll.stream().filter(
                 m -> !m.getTo().toString().startsWith("R")).collect(Collectors.toList());
-        for (Connection c : getConnectionsByInterface("V2V")) {
+        for (Connection c : getConnectionsByInterface(V2V)) {
             DTNHost otherHost = c.getOtherNode(this.getHost());
             var otherRouter = (V2xRouter) otherHost.getRouter();
             for (Message m : msgToVehicle) {
@@ -204,11 +238,7 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
 
     public double getPredFor(DTNHost host) {
         this.ageDeliveryPreds(); // make sure preds are updated before getting
-        if (this.preds.containsKey(host)) {
-            return this.preds.get(host);
-        } else {
-            return 0;
-        }
+        return this.preds.get(host);
     }
 
     /**
@@ -232,17 +262,8 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
                 : "V2xRouter only works " + " with other routers of same type";
 
         double pForHost = this.getPredFor(host); // P(a,b)
-        Map<DTNHost, Double> othersPreds = ((V2xRouter) otherRouter).getDeliveryPreds();
-
-        for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-            if (e.getKey() == this.getHost()) {
-                continue; // don't add yourself
-            }
-
-            double pOld = this.getPredFor(e.getKey()); // P(a,c)_old
-            double pNew = pOld + (1 - pOld) * pForHost * e.getValue() * this.beta;
-            this.preds.put(e.getKey(), pNew);
-        }
+        PredictabilityTable othersPreds = ((V2xRouter) otherRouter).getDeliveryPreds();
+        this.preds.updateTransitive(othersPreds, this.getHost(), pForHost, this.beta);
     }
 
     /***
@@ -254,20 +275,21 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
         assert otherRouter instanceof V2xRouter
                 : "V2xRouter only works " + " with other routers of same type";
         double pRForHost = this.getRep(host);
-        Map<DTNHost, Double> othersPreds = ((V2xRouter) otherRouter).getReputationTab();
-        for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-            if (e.getKey() == this.getHost()) {
+        PredictabilityTable othersPreds = ((V2xRouter) otherRouter).getReputationTab();
+        for (int i = othersPreds.next(0); i >= 0; i = othersPreds.next(i + 1)) {
+            DTNHost c = othersPreds.hostAt(i);
+            if (c == this.getHost()) {
                 continue; // don't add yourself
             }
-            double pOld = this.getRep(e.getKey());
-            double pNew = pOld + (1 - pOld) * pRForHost * e.getValue() * this.beta;
-            this.reputationTab.put(e.getKey(), pNew);
+            double pOld = this.getRep(c);
+            double pNew = pOld + (1 - pOld) * pRForHost * othersPreds.valueAt(i) * this.beta;
+            this.reputationTab.put(c, pNew);
         }
     }
-    private Map<DTNHost, Double> getReputationTab() {
+    private PredictabilityTable getReputationTab() {
         return reputationTab;
     }
-    private Map<DTNHost, Double> getDeliveryPreds() {
+    private PredictabilityTable getDeliveryPreds() {
         this.ageDeliveryPreds(); // make sure the aging is done
         return this.preds;
     }
@@ -280,10 +302,7 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
         if (timeDiff == 0) {
             return;
         }
-        double mult = Math.pow(this.gamma, timeDiff);
-        for (Map.Entry<DTNHost, Double> e : this.preds.entrySet()) {
-            e.setValue(e.getValue() * mult);
-        }
+        this.preds.scale(Math.pow(this.gamma, timeDiff));
         this.lastAgeUpdate = SimClock.getTime();
     }
 
@@ -294,7 +313,7 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
     protected void updateRep(DTNHost host) {
         double cont = 1.0;
         double cons = 1.0;
-        if(contributionTab.containsKey(host) && consumptionTab.containsKey(host)) {
+        if(contributionTab.contains(host) && consumptionTab.contains(host)) {
             cont = contributionTab.get(host);
             cons = consumptionTab.get(host);
             reputationTab.put(host, cont/(cons + cont));
@@ -304,15 +323,15 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
             reputationTab.put(host, 0.5);
         }
 
-        for (DTNHost otherHost : getHost().getNeighborsByInterface("V2V")) {
+        for (DTNHost otherHost : getHost().getNeighborsByInterface(V2V)) {
             cont = 1.0;
             cons = 1.0;
-            if (((V2xRouter)otherHost.getRouter()).contributionTab.containsKey(host))
+            if (((V2xRouter)otherHost.getRouter()).contributionTab.contains(host))
                 cont = ((V2xRouter)otherHost.getRouter()).contributionTab.get(host);
             else {
                 ((V2xRouter)otherHost.getRouter()).contributionTab.put(host, contributionTab.get(host));
             }
-            if (((V2xRouter)otherHost.getRouter()).consumptionTab.containsKey(host))
+            if (((V2xRouter)otherHost.getRouter()).consumptionTab.contains(host))
                 cons = ((V2xRouter)otherHost.getRouter()).consumptionTab.get(host);
             else
                 ((V2xRouter)otherHost.getRouter()).consumptionTab.put(otherHost, consumptionTab.get(host));
@@ -336,14 +355,47 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
     }
 
     /***
-     * 模糊逻辑获取finalScore
+     * 模糊逻辑获取finalScore. 规则文件每次运行只解析一次 (见 {@link FuzzyRuleEngine})
      * @param repFactor 声音值
      * @param otherfactor 其它因素
      * @param probabilityFactor 碰撞因素
      * @return finalSCore
      */
     public double fuzzyLogic(double repFactor, double otherfactor, double probabilityFactor) {
-        String fileName = "./src/routing/repPro.fcl";
+        if (fuzzyRank == null) {
+            FuzzyRuleEngine engine = FuzzyRuleEngine.load(fuzzyRules, fuzzyPoints);
+            repInput = engine.getInputIndex("ReputationScore");
+            otherInput = engine.getInputIndex("TransmissionCapacity");
+            probInput = engine.getInputIndex("SocialSimilarity");
+            fuzzyRank = engine.newEvaluator();
+        }
+
+        fuzzyRank.setInput(repInput, repFactor);
+        fuzzyRank.setInput(otherInput, otherfactor);
+        fuzzyRank.setInput(probInput, probabilityFactor);
+        double rank = fuzzyRank.evaluate();
+
+        if (fuzzyTolerance >= 0) {
+            double expected = fisLogic(fuzzyRules, repFactor, otherfactor, probabilityFactor);
+            if (!(Math.abs(rank - expected) <= fuzzyTolerance)) {
+                throw new SimError("Compiled fuzzy rank " + rank + " differs from jFuzzyLogic's "
+                        + expected + " for (" + repFactor + ", " + otherfactor + ", "
+                        + probabilityFactor + ")");
+            }
+        }
+        return rank;
+    }
+
+    /***
+     * 用jFuzzyLogic加载规则文件并求值 (每次调用都会重新解析文件, 仅用于校验和对比)
+     * @param fileName 规则文件
+     * @param repFactor 声音值
+     * @param otherfactor 其它因素
+     * @param probabilityFactor 碰撞因素
+     * @return finalSCore
+     */
+    public static double fisLogic(String fileName, double repFactor, double otherfactor,
+                                  double probabilityFactor) {
         FIS fis = FIS.load(fileName, true);
         if (fis == null) { // Error while loading?
             System.err.println("Can't load file: '" + fileName + "'");
@@ -365,27 +417,32 @@ public class V2xRouter extends MultipathTrajectoryVehicleToRouterRouter{
     @Override
     public Message messageTransferred(String id, DTNHost from) {
         Message msg =  super.messageTransferred(id, from);
-        System.out.println("DTN"+ getHost().toString() + " cont"+contributionTab.get(getHost())+
-                " cons"+consumptionTab.get(getHost())+" rep"+getRep(getHost()));
+        System.out.println("DTN"+ getHost().toString() + " cont"+valueOf(contributionTab, getHost())+
+                " cons"+valueOf(consumptionTab, getHost())+" rep"+getRep(getHost()));
         boolean isDelivered = this.isDeliveredMessage(msg);
-        for(var mHost : this.getHost().getNeighborsByInterface("V2V")) {
+        for(var mHost : this.getHost().getNeighborsByInterface(V2V)) {
             if(isDelivered) {
                 int vehicleHop = VehicleHopCount(msg) - 1;
-                ((V2xRouter)mHost.getRouter()).consumptionTab.computeIfPresent(this.getHost(), (key, value) -> value = value + vehicleHop);
-                ((V2xRouter)mHost.getRouter()).consumptionTab.computeIfPresent(msg.getFrom(), (key, value) -> value = value + vehicleHop);
-                ((V2xRouter)mHost.getRouter()).contributionTab.computeIfPresent(from, (key, value) -> value + 1);
+                ((V2xRouter)mHost.getRouter()).consumptionTab.addIfPresent(this.getHost(), vehicleHop);
+                ((V2xRouter)mHost.getRouter()).consumptionTab.addIfPresent(msg.getFrom(), vehicleHop);
+                ((V2xRouter)mHost.getRouter()).contributionTab.addIfPresent(from, 1);
             } else {
-                ((V2xRouter)mHost.getRouter()).contributionTab.computeIfPresent(this.getHost(), (key, value) -> value + 1);
+                ((V2xRouter)mHost.getRouter()).contributionTab.addIfPresent(this.getHost(), 1);
             }
         }
         if(isDelivered){
             int vehicleHop = VehicleHopCount(msg);
-            consumptionTab.computeIfPresent(msg.getFrom(), (key, value) -> value = value + vehicleHop);
+            consumptionTab.addIfPresent(msg.getFrom(), vehicleHop);
         }
-        contributionTab.computeIfPresent(from, (key, value) -> value + 1);
+        contributionTab.addIfPresent(from, 1);
         return msg;
     }
 
+    /** 表中节点的值, 没有时为"null" */
+    static String valueOf(PredictabilityTable tab, DTNHost host) {
+        return tab.contains(host) ? String.valueOf(tab.get(host)) : "null";
+    }
+
     private int VehicleHopCount(Message msg) {
         int count = 0;
         for(var mHost : msg.getPassedPath()) {
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.DTNHost;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the message buffers of a set of hosts. The World takes a snapshot after
+ * every update round once somebody has asked for one, so reports and routers can read the buffer
+ * states of all hosts without asking every router.
+ */
+public final class BufferOccupancy {
+  private final double time;
+  /** occupied bytes by host address (-1 if the host is not in the snapshot) */
+  private final long[] occupied;
+  /** buffer sizes by host address */
+  private final long[] sizes;
+  private final int nrofHosts;
+
+  /**
+   * Takes a snapshot of the hosts' current buffer states
+   *
+   * @param time Simulation time of the snapshot
+   * @param hosts The hosts
+   */
+  public BufferOccupancy(double time, List<DTNHost> hosts) {
+    int maxAddress = -1;
+    for (DTNHost h : hosts) {
+      maxAddress = Math.max(maxAddress, h.getAddress());
+    }
+    this.time = time;
+    this.occupied = new long[maxAddress + 1];
+    this.sizes = new long[maxAddress + 1];
+    Arrays.fill(this.occupied, -1);
+    for (DTNHost h : hosts) {
+      this.occupied[h.getAddress()] = h.getRouter().getOccupiedBufferSize();
+      this.sizes[h.getAddress()] = h.getRouter().getBufferSize();
+    }
+    this.nrofHosts = hosts.size();
+  }
+
+  /**
+   * Returns the simulation time when the snapshot was taken
+   *
+   * @return the time
+   */
+  public double getTime() {
+    return this.time;
+  }
+
+  /**
+   * Returns the number of hosts in the snapshot
+   *
+   * @return the number of hosts
+   */
+  public int size() {
+    return this.nrofHosts;
+  }
+
+  /**
+   * Returns true if the host is in the snapshot
+   *
+   * @param host The host
+   * @return true if the snapshot has the buffer state of the host
+   */
+  public boolean contains(DTNHost host) {
+    int a = host.getAddress();
+    return a < this.occupied.length && this.occupied[a] >= 0;
+  }
+
+  /**
+   * Returns the number of bytes the host's messages took
+   *
+   * @param host The host
+   * @return occupied bytes
+   */
+  public long getOccupied(DTNHost host) {
+    return this.occupied[this.index(host)];
+  }
+
+  /**
+   * Returns the size of the host's buffer
+   *
+   * @param host The host
+   * @return The size or Integer.MAX_VALUE if the size isn't defined
+   */
+  public long getBufferSize(DTNHost host) {
+    return this.sizes[this.index(host)];
+  }
+
+  /**
+   * Returns the amount of free space in the host's buffer, like {@link
+   * routing.MessageRouter#getFreeBufferSize()}
+   *
+   * @param host The host
+   * @return The amount of free space (Integer.MAX_VALUE if the buffer size isn't defined)
+   */
+  public long getFree(DTNHost host) {
+    int i = this.index(host);
+    if (this.sizes[i] == Integer.MAX_VALUE) {
+      return Integer.MAX_VALUE;
+    }
+    return this.sizes[i] - this.occupied[i];
+  }
+
+  /**
+   * Returns the buffer occupancy percentage of the host, like {@link
+   * DTNHost#getBufferOccupancy()}
+   *
+   * @param host The host
+   * @return Buffer occupancy percentage
+   */
+  public double getOccupancy(DTNHost host) {
+    int i = this.index(host);
+    return 100 * ((this.sizes[i] - this.getFree(host)) / (this.sizes[i] * 1.0));
+  }
+
+  private int index(DTNHost host) {
+    if (!this.contains(host)) {
+      throw new IllegalArgumentException(host + " is not in the buffer snapshot");
+    }
+    return host.getAddress();
+  }
+}
@@ -0,0 +1,522 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.DTNSim;
+import core.SettingsError;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled fuzzy inference system for the routers that rank their neighbors with fuzzy rules
+ * (e.g. {@code repPro.fcl}). An FCL file is parsed only once per run and kept in a shared cache;
+ * the membership functions are compiled to breakpoint arrays and the output terms are sampled to a
+ * table, so an evaluation does not touch the disk or allocate any objects.
+ *
+ * <p>Supported is the FCL subset the rule files use: one function block with piecewise linear
+ * terms, one output variable defuzzified with center of gravity, and rules of form "IF a IS x AND b
+ * IS y THEN out IS z" using MIN for AND and activation, and MAX for accumulation. The result
+ * matches jFuzzyLogic's evaluation of the same file.
+ *
+ * <p>An engine is immutable and can be shared between hosts and threads; the scratch space needed
+ * for an evaluation is in the {@link Evaluator} objects, of which every router should have its own.
+ */
+public class FuzzyRuleEngine {
+  /** Default number of points the output variable's universe is sampled with ({@value}) */
+  public static final int DEF_NROF_POINTS = 1000;
+
+  private static final Pattern TOKEN = Pattern.compile(":=|[():;,]|[^\\s():;,]+");
+  private static Map<String, FuzzyRuleEngine> engines;
+
+  static {
+    DTNSim.registerForReset(FuzzyRuleEngine.class.getCanonicalName());
+    FuzzyRuleEngine.reset();
+  }
+
+  private final String[] inputNames;
+  /** breakpoints of the input terms: [input][term][point] */
+  private final double[][][] inX;
+  private final double[][][] inY;
+  private final String outputName;
+  /** output variable's universe start and sampling step */
+  private final double outMin;
+  private final double outStep;
+  /** output terms' membership values at the sampling points: [term][point] */
+  private final double[][] outSamples;
+  private final double defaultValue;
+  /** antecedent term index per input for each rule (-1 = input not used) */
+  private final int[][] ruleTerms;
+  /** consequent output term of each rule */
+  private final int[] ruleOutput;
+
+  /**
+   * Returns the compiled engine for the given FCL file. The file is parsed and compiled at the
+   * first request and the same engine is returned for all later requests during the run.
+   *
+   * @param fileName Path of the FCL file
+   * @param nrofPoints Number of points the output universe is sampled with
+   * @return The engine
+   * @throws SettingsError if the file can't be read or it isn't valid
+   */
+  public static synchronized FuzzyRuleEngine load(String fileName, int nrofPoints) {
+    String key = fileName + "@" + nrofPoints;
+    FuzzyRuleEngine engine = FuzzyRuleEngine.engines.get(key);
+    if (engine == null) {
+      String text;
+      try {
+        text = new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        throw new SettingsError("Can't read fuzzy rule file '" + fileName + "': " + e.getMessage());
+      }
+      engine = FuzzyRuleEngine.parse(text, nrofPoints);
+      FuzzyRuleEngine.engines.put(key, engine);
+    }
+    return engine;
+  }
+
+  /**
+   * Parses and compiles the given FCL text
+   *
+   * @param fcl The FCL function block definition
+   * @param nrofPoints Number of points the output universe is sampled with
+   * @return The engine
+   * @throws SettingsError if the text isn't valid or uses unsupported features
+   */
+  public static FuzzyRuleEngine parse(String fcl, int nrofPoints) {
+    if (nrofPoints < 1) {
+      throw new SettingsError("Invalid number of fuzzy defuzzifier points: " + nrofPoints);
+    }
+    return new Parser(fcl).parse(nrofPoints);
+  }
+
+  /** Clears the cache of compiled engines */
+  public static synchronized void reset() {
+    FuzzyRuleEngine.engines = new HashMap<>();
+  }
+
+  private FuzzyRuleEngine(Parser p, int nrofPoints) {
+    int nrofInputs = p.inputs.size();
+    this.inputNames = p.inputs.toArray(new String[0]);
+    this.inX = new double[nrofInputs][][];
+    this.inY = new double[nrofInputs][][];
+    for (int i = 0; i < nrofInputs; i++) {
+      Variable v = p.variables.get(this.inputNames[i]);
+      if (v.terms.isEmpty()) {
+        throw new SettingsError("No terms for fuzzy input variable " + this.inputNames[i]);
+      }
+      this.inX[i] = new double[v.terms.size()][];
+      this.inY[i] = new double[v.terms.size()][];
+      for (int t = 0; t < v.terms.size(); t++) {
+        this.inX[i][t] = v.termX.get(t);
+        this.inY[i][t] = v.termY.get(t);
+      }
+    }
+
+    this.outputName = p.output;
+    Variable out = p.variables.get(this.outputName);
+    if (out.terms.isEmpty()) {
+      throw new SettingsError("No terms for fuzzy output variable " + this.outputName);
+    }
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int t = 0; t < out.terms.size(); t++) {
+      double[] x = out.termX.get(t);
+      min = Math.min(min, x[0]);
+      max = Math.max(max, x[x.length - 1]);
+    }
+    this.outMin = min;
+    this.outStep = (max - min) / nrofPoints;
+    this.outSamples = new double[out.terms.size()][nrofPoints];
+    for (int t = 0; t < out.terms.size(); t++) {
+      double x = min;
+      for (int i = 0; i < nrofPoints; i++, x += this.outStep) {
+        this.outSamples[t][i] = membership(out.termX.get(t), out.termY.get(t), x);
+      }
+    }
+    this.defaultValue = out.defaultValue;
+
+    this.ruleTerms = p.ruleTerms.toArray(new int[0][]);
+    this.ruleOutput = new int[p.ruleOutput.size()];
+    for (int r = 0; r < this.ruleOutput.length; r++) {
+      this.ruleOutput[r] = p.ruleOutput.get(r);
+    }
+  }
+
+  /**
+   * Returns the membership value of a piecewise linear function
+   *
+   * @param xs Breakpoint x values (in ascending order)
+   * @param ys Breakpoint membership values
+   * @param x The value whose membership is requested
+   * @return The membership value (first/last breakpoint's value outside of the defined range)
+   */
+  private static double membership(double[] xs, double[] ys, double x) {
+    if (x <= xs[0]) {
+      return ys[0];
+    }
+    int last = xs.length - 1;
+    if (x >= xs[last]) {
+      return ys[last];
+    }
+    int i = 1;
+    while (xs[i] < x) {
+      i++;
+    }
+    if (xs[i] == x) {
+      return ys[i];
+    }
+    return ys[i - 1] + (ys[i] - ys[i - 1]) * (x - xs[i - 1]) / (xs[i] - xs[i - 1]);
+  }
+
+  /**
+   * Returns the index of an input variable, to be used with {@link Evaluator#setInput(int,
+   * double)}
+   *
+   * @param name Name of the input variable
+   * @return The index
+   * @throws SettingsError if there is no such input variable
+   */
+  public int getInputIndex(String name) {
+    for (int i = 0; i < this.inputNames.length; i++) {
+      if (this.inputNames[i].equals(name)) {
+        return i;
+      }
+    }
+    throw new SettingsError("No fuzzy input variable '" + name + "' in the rule set");
+  }
+
+  /**
+   * Returns the name of the output variable
+   *
+   * @return the name of the output variable
+   */
+  public String getOutputName() {
+    return this.outputName;
+  }
+
+  /**
+   * Creates a new evaluator with its own scratch space for this engine
+   *
+   * @return A new evaluator
+   */
+  public Evaluator newEvaluator() {
+    return new Evaluator();
+  }
+
+  /**
+   * Evaluation context of an engine. Not thread safe; every router (thread) should have its own
+   * evaluator. Input values are kept between evaluations.
+   */
+  public class Evaluator {
+    private final double[] inputs;
+    private final double[][] degrees;
+    private final double[] activation;
+
+    private Evaluator() {
+      FuzzyRuleEngine e = FuzzyRuleEngine.this;
+      this.inputs = new double[e.inputNames.length];
+      this.degrees = new double[e.inputNames.length][];
+      for (int i = 0; i < this.degrees.length; i++) {
+        this.degrees[i] = new double[e.inX[i].length];
+      }
+      this.activation = new double[e.outSamples.length];
+    }
+
+    /**
+     * Returns the engine this evaluator evaluates
+     *
+     * @return the engine
+     */
+    public FuzzyRuleEngine getEngine() {
+      return FuzzyRuleEngine.this;
+    }
+
+    /**
+     * Sets the value of an input variable
+     *
+     * @param index Index of the variable (see {@link FuzzyRuleEngine#getInputIndex(String)})
+     * @param value The value
+     */
+    public void setInput(int index, double value) {
+      this.inputs[index] = value;
+    }
+
+    /**
+     * Evaluates the rules with the current input values
+     *
+     * @return The defuzzified value of the output variable, or the variable's default value if no
+     *     rule activated
+     */
+    public double evaluate() {
+      FuzzyRuleEngine e = FuzzyRuleEngine.this;
+      for (int i = 0; i < this.inputs.length; i++) {
+        for (int t = 0; t < this.degrees[i].length; t++) {
+          this.degrees[i][t] = membership(e.inX[i][t], e.inY[i][t], this.inputs[i]);
+        }
+      }
+
+      Arrays.fill(this.activation, 0);
+      for (int r = 0; r < e.ruleTerms.length; r++) {
+        double support = 1;
+        int[] terms = e.ruleTerms[r];
+        for (int i = 0; i < terms.length; i++) {
+          if (terms[i] >= 0) {
+            support = Math.min(support, this.degrees[i][terms[i]]);
+          }
+        }
+        int out = e.ruleOutput[r];
+        this.activation[out] = Math.max(this.activation[out], support);
+      }
+
+      double sum = 0;
+      double weightedSum = 0;
+      double x = e.outMin;
+      int nrofPoints = e.outSamples[0].length;
+      for (int i = 0; i < nrofPoints; i++, x += e.outStep) {
+        double y = 0;
+        for (int t = 0; t < this.activation.length; t++) {
+          if (this.activation[t] > 0) {
+            y = Math.max(y, Math.min(this.activation[t], e.outSamples[t][i]));
+          }
+        }
+        sum += y;
+        weightedSum += x * y;
+      }
+
+      if (sum <= 0) {
+        return e.defaultValue;
+      }
+      return weightedSum / sum;
+    }
+  }
+
+  /** Fuzzy variable definition collected by the parser */
+  private static class Variable {
+    private final List<String> terms = new ArrayList<>();
+    private final List<double[]> termX = new ArrayList<>();
+    private final List<double[]> termY = new ArrayList<>();
+    private double defaultValue = Double.NaN;
+  }
+
+  /** Recursive descent parser for the supported FCL subset */
+  private static class Parser {
+    private final List<String> tokens = new ArrayList<>();
+    private int pos;
+    private final List<String> inputs = new ArrayList<>();
+    private String output;
+    private final Map<String, Variable> variables = new HashMap<>();
+    private final List<int[]> ruleTerms = new ArrayList<>();
+    private final List<Integer> ruleOutput = new ArrayList<>();
+
+    private Parser(String fcl) {
+      String text = fcl.replaceAll("(?s)/\\*.*?\\*/", " ").replaceAll("//[^\\n]*", " ");
+      Matcher m = TOKEN.matcher(text);
+      while (m.find()) {
+        this.tokens.add(m.group());
+      }
+    }
+
+    private FuzzyRuleEngine parse(int nrofPoints) {
+      expect("FUNCTION_BLOCK");
+      if (!peekIs("VAR_INPUT") && !peekIs("VAR_OUTPUT")) {
+        next(); // optional block name
+      }
+      while (!peekIs("END_FUNCTION_BLOCK")) {
+        String section = next();
+        if (section.equalsIgnoreCase("VAR_INPUT") || section.equalsIgnoreCase("VAR_OUTPUT")) {
+          parseVars(section.equalsIgnoreCase("VAR_INPUT"));
+        } else if (section.equalsIgnoreCase("FUZZIFY") || section.equalsIgnoreCase("DEFUZZIFY")) {
+          parseTerms(section.equalsIgnoreCase("DEFUZZIFY"));
+        } else if (section.equalsIgnoreCase("RULEBLOCK")) {
+          parseRules();
+        } else {
+          throw error("Unsupported section '" + section + "'");
+        }
+      }
+      if (this.output == null) {
+        throw error("No output variable");
+      }
+      return new FuzzyRuleEngine(this, nrofPoints);
+    }
+
+    private void parseVars(boolean input) {
+      while (!peekIs("END_VAR")) {
+        String name = next();
+        expect(":");
+        expect("REAL");
+        expect(";");
+        if (this.variables.put(name, new Variable()) != null) {
+          throw error("Variable '" + name + "' defined twice");
+        }
+        if (input) {
+          this.inputs.add(name);
+        } else if (this.output == null) {
+          this.output = name;
+        } else {
+          throw error("Only one output variable is supported");
+        }
+      }
+      next();
+    }
+
+    private void parseTerms(boolean output) {
+      String name = next();
+      if (output != name.equals(this.output)) {
+        throw error("'" + name + "' is not an " + (output ? "output" : "input") + " variable");
+      }
+      Variable v = variable(name);
+      String end = output ? "END_DEFUZZIFY" : "END_FUZZIFY";
+      while (!peekIs(end)) {
+        String key = next();
+        if (key.equalsIgnoreCase("TERM")) {
+          v.terms.add(next());
+          expect(":=");
+          List<Double> points = new ArrayList<>();
+          while (!peekIs(";")) {
+            expect("(");
+            points.add(number());
+            expect(",");
+            points.add(number());
+            expect(")");
+          }
+          next();
+          if (points.isEmpty()) {
+            throw error("Term " + name + "." + v.terms.get(v.terms.size() - 1) + " has no points");
+          }
+          double[] x = new double[points.size() / 2];
+          double[] y = new double[x.length];
+          for (int i = 0; i < x.length; i++) {
+            x[i] = points.get(2 * i);
+            y[i] = points.get(2 * i + 1);
+            if (i > 0 && x[i] < x[i - 1]) {
+              throw error("Term points of " + name + " are not in ascending order");
+            }
+          }
+          v.termX.add(x);
+          v.termY.add(y);
+        } else if (output && key.equalsIgnoreCase("METHOD")) {
+          expect(":");
+          expect("COG");
+          expect(";");
+        } else if (output && key.equalsIgnoreCase("DEFAULT")) {
+          expect(":=");
+          v.defaultValue = number();
+          expect(";");
+        } else {
+          throw error("Unsupported definition '" + key + "' for " + name);
+        }
+      }
+      next();
+    }
+
+    private void parseRules() {
+      if (!peekIs("AND") && !peekIs("ACT") && !peekIs("ACCU") && !peekIs("RULE")) {
+        next(); // optional block name
+      }
+      while (!peekIs("END_RULEBLOCK")) {
+        String key = next();
+        if (key.equalsIgnoreCase("AND") || key.equalsIgnoreCase("ACT")) {
+          expect(":");
+          expect("MIN");
+          expect(";");
+        } else if (key.equalsIgnoreCase("ACCU")) {
+          expect(":");
+          expect("MAX");
+          expect(";");
+        } else if (key.equalsIgnoreCase("RULE")) {
+          next(); // rule number
+          expect(":");
+          expect("IF");
+          int[] terms = new int[this.inputs.size()];
+          Arrays.fill(terms, -1);
+          do {
+            int input = this.inputs.indexOf(next());
+            if (input < 0) {
+              throw error("Rule condition on an unknown input variable");
+            }
+            expect("IS");
+            terms[input] = termIndex(this.inputs.get(input), next());
+          } while (accept("AND"));
+          expect("THEN");
+          String out = next();
+          if (!out.equals(this.output)) {
+            throw error("Rule consequent on an unknown output variable '" + out + "'");
+          }
+          expect("IS");
+          this.ruleOutput.add(termIndex(out, next()));
+          expect(";");
+          this.ruleTerms.add(terms);
+        } else {
+          throw error("Unsupported rule block definition '" + key + "'");
+        }
+      }
+      next();
+    }
+
+    private Variable variable(String name) {
+      Variable v = this.variables.get(name);
+      if (v == null) {
+        throw error("Undefined variable '" + name + "'");
+      }
+      return v;
+    }
+
+    private int termIndex(String var, String term) {
+      int index = variable(var).terms.indexOf(term);
+      if (index < 0) {
+        throw error("Undefined term '" + term + "' for variable " + var);
+      }
+      return index;
+    }
+
+    private double number() {
+      String t = next();
+      try {
+        return Double.parseDouble(t);
+      } catch (NumberFormatException e) {
+        throw error("Expected a number but found '" + t + "'");
+      }
+    }
+
+    private boolean peekIs(String token) {
+      return this.pos < this.tokens.size() && this.tokens.get(this.pos).equalsIgnoreCase(token);
+    }
+
+    private boolean accept(String token) {
+      if (peekIs(token)) {
+        this.pos++;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(String token) {
+      String t = next();
+      if (!t.equalsIgnoreCase(token)) {
+        throw error("Expected '" + token + "' but found '" + t + "'");
+      }
+    }
+
+    private String next() {
+      if (this.pos >= this.tokens.size()) {
+        throw error("Unexpected end of file");
+      }
+      return this.tokens.get(this.pos++);
+    }
+
+    private SettingsError error(String msg) {
+      return new SettingsError("Invalid fuzzy rule file (token " + this.pos + "): " + msg);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.DTNHost;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the routers a detection model has identified as malicious. A new snapshot
+ * is published for every detection period and the same instance is shared by all routers, so
+ * reading it requires no copying or locking.
+ */
+public final class MaliciousRouters {
+  /** Snapshot used before the first detection result is available */
+  public static final MaliciousRouters EMPTY =
+      new MaliciousRouters(0, -1, Collections.<DTNHost>emptySet());
+
+  private final long version;
+  private final int time;
+  private final Set<DTNHost> routers;
+
+  /**
+   * Creates a new snapshot
+   *
+   * @param version Version number of the snapshot; increases with every published snapshot
+   * @param time Simulation time (seconds) when the model's input features were collected
+   * @param routers The malicious routers (copied)
+   */
+  public MaliciousRouters(long version, int time, Collection<DTNHost> routers) {
+    this.version = version;
+    this.time = time;
+    this.routers = Collections.unmodifiableSet(new HashSet<DTNHost>(routers));
+  }
+
+  /**
+   * Returns true if the host was identified as malicious
+   *
+   * @param host The host
+   * @return true if the host is in the snapshot
+   */
+  public boolean contains(DTNHost host) {
+    return this.routers.contains(host);
+  }
+
+  /**
+   * Returns the version number of the snapshot
+   *
+   * @return the version number
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Returns the simulation time when the input features of the detection were collected
+   *
+   * @return the time (seconds) or -1 for the {@link #EMPTY} snapshot
+   */
+  public int getTime() {
+    return this.time;
+  }
+
+  /**
+   * Returns the number of malicious routers
+   *
+   * @return the number of malicious routers
+   */
+  public int size() {
+    return this.routers.size();
+  }
+
+  /**
+   * Returns the malicious routers
+   *
+   * @return an unmodifiable view of the routers
+   */
+  public Set<DTNHost> getRouters() {
+    return this.routers;
+  }
+
+  @Override
+  public String toString() {
+    return this.routers.toString();
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.SimError;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Buffer states of a router's neighborhood, computed once and then reused for every message the
+ * router scores. Every host's buffer is sorted by TTL (shortest first) only once and kept with the
+ * prefix sums of the message sizes, so the number of messages a neighbor can send within a time is
+ * a binary search. The snapshot is valid as long as the buffers, connections and the simulation
+ * time don't change, i.e., during one router update.
+ */
+public class NeighborhoodSnapshot {
+  private final Function<DTNHost, List<Connection>> connectionsOf;
+  private final Map<DTNHost, Queue> queues;
+  private final Map<DTNHost, List<Connection>> connections;
+
+  /**
+   * Creates an empty snapshot that is filled lazily
+   *
+   * @param connectionsOf Returns the connections of a host that the scoring considers
+   */
+  public NeighborhoodSnapshot(Function<DTNHost, List<Connection>> connectionsOf) {
+    this.connectionsOf = connectionsOf;
+    this.queues = new HashMap<>();
+    this.connections = new HashMap<>();
+  }
+
+  /**
+   * Returns the host's buffer in TTL order
+   *
+   * @param host The host
+   * @return the queue
+   */
+  public Queue getQueue(DTNHost host) {
+    Queue q = this.queues.get(host);
+    if (q == null) {
+      q = new Queue(host.getRouter().getMessageCollection());
+      this.queues.put(host, q);
+    }
+    return q;
+  }
+
+  /**
+   * Returns the connections of a host
+   *
+   * @param host The host
+   * @return the connections (not to be modified)
+   */
+  public List<Connection> getConnections(DTNHost host) {
+    List<Connection> cs = this.connections.get(host);
+    if (cs == null) {
+      cs = this.connectionsOf.apply(host);
+      this.connections.put(host, cs);
+    }
+    return cs;
+  }
+
+  /**
+   * Returns the ratio of the free and total buffer space of a host
+   *
+   * @param host The host
+   * @return the free buffer ratio
+   */
+  public double getFreeBufferRatio(DTNHost host) {
+    return (double) host.getRouter().getFreeBufferSize() / (double) host.getRouter().getBufferSize();
+  }
+
+  /**
+   * Returns the time a candidate next hop spends receiving messages from its other neighbors
+   * before the given message. Every other neighbor sends the messages from the head of its TTL
+   * ordered queue that it can send within the wait time over the connection. Of these messages, in
+   * TTL order (ties in connection order), the sending times up to and including the first copy of
+   * the message are counted; all of them if the message isn't among them.
+   *
+   * @param to The candidate next hop
+   * @param from The connection to the candidate, not counted
+   * @param m The message
+   * @param waitTime Time the neighbors have for sending
+   * @return Sum of the sending times
+   */
+  public double getArrivalDelay(DTNHost to, Connection from, Message m, double waitTime) {
+    List<Connection> cs = this.getConnections(to);
+    int n = cs.size();
+    Queue[] qs = new Queue[n];
+    int[] counts = new int[n];
+    boolean skipped = false;
+    boolean sameSpeed = true;
+    double speed = -1;
+    int first = -1;
+    int firstTtl = 0;
+    for (int j = 0; j < n; j++) {
+      Connection con = cs.get(j);
+      if (con == from && !skipped) {
+        skipped = true;
+        continue;
+      }
+      Queue q = this.getQueue(con.getOtherNode(to));
+      int k = q.countSendable(con.getSpeed(), waitTime);
+      qs[j] = q;
+      counts[j] = k;
+      if (speed >= 0 && con.getSpeed() != speed) {
+        sameSpeed = false;
+      }
+      speed = con.getSpeed();
+      int p = q.indexOf(m);
+      if (p >= 0 && p < k && (first < 0 || q.getTtl(p) < firstTtl)) {
+        first = j;
+        firstTtl = q.getTtl(p);
+      }
+    }
+
+    if (!sameSpeed) {
+      return mergedDelay(cs, qs, counts, m);
+    }
+
+    double delay = 0;
+    for (int j = 0; j < n; j++) {
+      Queue q = qs[j];
+      if (q == null) {
+        continue;
+      }
+      int count = counts[j];
+      if (first >= 0) {
+        if (j < first) {
+          count = Math.min(count, q.upperBound(firstTtl));
+        } else if (j == first) {
+          count = q.indexOf(m) + 1;
+        } else {
+          count = Math.min(count, q.lowerBound(firstTtl));
+        }
+      }
+      delay += q.getSendTime(cs.get(j).getSpeed(), count);
+    }
+    return delay;
+  }
+
+  /**
+   * Sums the sending times message by message over the TTL ordered union of the sendable messages.
+   * The scoring has always paired the i:th message in TTL order with the speed of the i:th message
+   * in connection order, which matters only when the connections' speeds differ.
+   */
+  private static double mergedDelay(List<Connection> cs, Queue[] qs, int[] counts, Message m) {
+    List<Message> merged = new ArrayList<>();
+    List<Double> speeds = new ArrayList<>();
+    for (int j = 0; j < qs.length; j++) {
+      for (int i = 0; i < counts[j]; i++) {
+        merged.add(qs[j].get(i));
+        speeds.add(cs.get(j).getSpeed());
+      }
+    }
+    merged.sort((m1, m2) -> Integer.compare(m1.getTtl(), m2.getTtl()));
+    double delay = 0;
+    for (int i = 0, n = merged.size(); i < n; i++) {
+      delay += merged.get(i).getSize() / speeds.get(i);
+      if (merged.get(i).getIdIndex() == m.getIdIndex()) {
+        break;
+      }
+    }
+    return delay;
+  }
+
+  /** Messages of a buffer in TTL order (stable), with prefix sums of their sizes */
+  public static class Queue {
+    private final Message[] messages;
+    private final int[] ttls;
+    private final long[] sizeSums;
+    /** (ID index, position) pairs sorted, for finding the first copy of a message */
+    private final long[] idPositions;
+    /** prefix sums of the sending times at the speed used last */
+    private double[] sendTimes;
+    private double sendSpeed;
+
+    /**
+     * Sorts the messages by TTL. Messages with the same TTL stay in the collection's order.
+     *
+     * @param buffer The messages
+     */
+    public Queue(java.util.Collection<Message> buffer) {
+      List<Message> ms = new ArrayList<>(buffer);
+      ms.sort((m1, m2) -> Integer.compare(m1.getTtl(), m2.getTtl()));
+      int n = ms.size();
+      this.messages = ms.toArray(new Message[n]);
+      this.ttls = new int[n];
+      this.sizeSums = new long[n + 1];
+      this.idPositions = new long[n];
+      for (int i = 0; i < n; i++) {
+        Message m = this.messages[i];
+        this.ttls[i] = m.getTtl();
+        this.sizeSums[i + 1] = this.sizeSums[i] + m.getSize();
+        this.idPositions[i] = ((long) m.getIdIndex() << 32) | i;
+      }
+      Arrays.sort(this.idPositions);
+    }
+
+    public int size() {
+      return this.messages.length;
+    }
+
+    public Message get(int i) {
+      return this.messages[i];
+    }
+
+    public int getTtl(int i) {
+      return this.ttls[i];
+    }
+
+    /**
+     * Returns the sum of the sizes of the first messages
+     *
+     * @param count Number of messages
+     * @return the sum of their sizes
+     */
+    public long getSizeSum(int count) {
+      return this.sizeSums[count];
+    }
+
+    /**
+     * Returns the time it takes to send the first messages one by one
+     *
+     * @param speed The transmission speed
+     * @param count Number of messages
+     * @return the sum of the messages' sending times
+     */
+    public double getSendTime(double speed, int count) {
+      if (this.sendTimes == null || this.sendSpeed != speed) {
+        this.sendTimes = new double[this.messages.length + 1];
+        for (int i = 0; i < this.messages.length; i++) {
+          this.sendTimes[i + 1] = this.sendTimes[i] + this.messages[i].getSize() / speed;
+        }
+        this.sendSpeed = speed;
+      }
+      return this.sendTimes[count];
+    }
+
+    /**
+     * Returns the position of the first message with the same ID
+     *
+     * @param m The message
+     * @return the position or -1 if there is no such message
+     */
+    public int indexOf(Message m) {
+      long key = (long) m.getIdIndex() << 32;
+      int i = Arrays.binarySearch(this.idPositions, key);
+      if (i < 0) {
+        i = -i - 1;
+      }
+      if (i < this.idPositions.length && (this.idPositions[i] >>> 32) == m.getIdIndex()) {
+        return (int) this.idPositions[i];
+      }
+      return -1;
+    }
+
+    /**
+     * Returns the number of messages from the head of the queue that can be sent within a time.
+     * The sizes are summed in <code>int</code> arithmetic like the original scoring does.
+     *
+     * @param speed The transmission speed
+     * @param time The time limit
+     * @return Number of messages whose cumulative size divided by speed is less than the time
+     */
+    public int countSendable(double speed, double time) {
+      int n = this.messages.length;
+      if (this.sizeSums[n] > Integer.MAX_VALUE) {
+        /* int sum would overflow, count like the original loop */
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+          if ((sum + this.messages[i].getSize()) / speed < time) {
+            sum += this.messages[i].getSize();
+          } else {
+            return i;
+          }
+        }
+        return n;
+      }
+      int lo = 0;
+      int hi = n;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if ((int) this.sizeSums[mid + 1] / speed < time) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /** Returns the number of messages with TTL less than the given */
+    public int lowerBound(int ttl) {
+      int lo = 0;
+      int hi = this.ttls.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (this.ttls[mid] < ttl) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /** Returns the number of messages with TTL less than or equal to the given */
+    public int upperBound(int ttl) {
+      return ttl == Integer.MAX_VALUE ? this.ttls.length : this.lowerBound(ttl + 1);
+    }
+
+    /**
+     * Returns the position of the first copy of a message that must be in the queue
+     *
+     * @param m The message
+     * @return the position
+     * @throws SimError if there is no copy of the message in the queue
+     */
+    public int positionOf(Message m) {
+      int i = this.indexOf(m);
+      if (i < 0) {
+        throw new SimError("Message " + m + " not in the queue");
+      }
+      return i;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.DTNHost;
+import core.SimClock;
+import java.util.Arrays;
+
+/**
+ * Per-host values of a router (e.g., delivery predictabilities) in dense arrays indexed by the
+ * host's address. An aging table ages the entries lazily: every entry remembers when it was last
+ * updated and is multiplied by <CODE>GAMMA ^ k</CODE>, where k is the number of time units elapsed
+ * since then, when it is read. A table without aging only stores the values. Iterate over the
+ * entries with {@link #next(int)}, e.g., <code>for (int i = t.next(0); i >= 0; i = t.next(i + 1))
+ * </code>. The table grows to the largest address put to it.
+ */
+public class PredictabilityTable {
+  private static final int MIN_CAPACITY = 16;
+
+  private double gamma;
+  private final double secondsInTimeUnit;
+  private final boolean aging;
+
+  /** the hosts of the entries by address, null if there is no entry */
+  private DTNHost[] hosts;
+  private double[] values;
+  /** times of the last update (or aging) of the entries */
+  private double[] times;
+  private int size;
+  /** time of the latest read (hit or miss) or update of the table */
+  private double lastReadTime;
+
+  /** Creates a table without aging */
+  public PredictabilityTable() {
+    this(1, 1, false);
+  }
+
+  /**
+   * Creates an aging table
+   *
+   * @param gamma The aging constant
+   * @param secondsInTimeUnit Number of seconds in one time unit of aging
+   */
+  public PredictabilityTable(double gamma, double secondsInTimeUnit) {
+    this(gamma, secondsInTimeUnit, true);
+  }
+
+  private PredictabilityTable(double gamma, double secondsInTimeUnit, boolean aging) {
+    this.gamma = gamma;
+    this.secondsInTimeUnit = secondsInTimeUnit;
+    this.aging = aging;
+    this.hosts = new DTNHost[MIN_CAPACITY];
+    this.values = new double[MIN_CAPACITY];
+    this.times = new double[MIN_CAPACITY];
+  }
+
+  /**
+   * Returns true if the table has an entry for the host
+   *
+   * @param host The host
+   * @return true if there is an entry
+   */
+  public boolean contains(DTNHost host) {
+    int a = host.getAddress();
+    return a < this.hosts.length && this.hosts[a] != null;
+  }
+
+  /**
+   * Returns the current (aged) value for a host
+   *
+   * @param host The host
+   * @return the value or 0 if there is no entry for the host
+   */
+  public double get(DTNHost host) {
+    int a = host.getAddress();
+    if (a >= this.hosts.length || this.hosts[a] == null) {
+      this.lastReadTime = SimClock.getTime();
+      return 0;
+    }
+    return this.valueAt(a);
+  }
+
+  /**
+   * Sets the value for a host
+   *
+   * @param host The host
+   * @param value The new value
+   */
+  public void put(DTNHost host, double value) {
+    int a = host.getAddress();
+    if (a >= this.hosts.length) {
+      int capacity = Math.max(a + 1, this.hosts.length * 2);
+      this.hosts = Arrays.copyOf(this.hosts, capacity);
+      this.values = Arrays.copyOf(this.values, capacity);
+      this.times = Arrays.copyOf(this.times, capacity);
+    }
+    if (this.hosts[a] == null) {
+      this.hosts[a] = host;
+      this.size++;
+    }
+    this.values[a] = value;
+    this.times[a] = SimClock.getTime();
+    this.lastReadTime = this.times[a];
+  }
+
+  /**
+   * Adds to the value of a host if the table has an entry for it
+   *
+   * @param host The host
+   * @param delta The amount to add
+   * @return true if there was an entry
+   */
+  public boolean addIfPresent(DTNHost host, double delta) {
+    if (!this.contains(host)) {
+      return false;
+    }
+    this.put(host, this.get(host) + delta);
+    return true;
+  }
+
+  /**
+   * Changes the aging constant. The entries are first aged with the old constant up to the latest
+   * read (also of a host without an entry) or update of the table; the time after that is aged with
+   * the new constant. This gives the same values as aging the whole table with the current constant
+   * whenever it is read (as routers did before the tables aged lazily), where a new constant also
+   * applies to the time since the previous read.
+   *
+   * @param gamma The new aging constant
+   */
+  public void setGamma(double gamma) {
+    if (this.aging && gamma != this.gamma) {
+      for (int i = this.next(0); i >= 0; i = this.next(i + 1)) {
+        this.age(i, this.lastReadTime);
+      }
+    }
+    this.gamma = gamma;
+  }
+
+  /**
+   * Multiplies all entries' values. For routers that age their tables themselves.
+   *
+   * @param mult The multiplier
+   */
+  public void scale(double mult) {
+    for (int i = 0; i < this.hosts.length; i++) {
+      if (this.hosts[i] != null) {
+        this.values[i] *= mult;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of entries
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the index (host address) of the next entry
+   *
+   * @param from The index to start from
+   * @return the index of the first entry at or after <code>from</code> or -1 if there is none
+   */
+  public int next(int from) {
+    for (int i = from; i < this.hosts.length; i++) {
+      if (this.hosts[i] != null) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the host of an entry
+   *
+   * @param i Index of the entry
+   * @return the host
+   */
+  public DTNHost hostAt(int i) {
+    return this.hosts[i];
+  }
+
+  /**
+   * Returns the current (aged) value of an entry
+   *
+   * @param i Index of the entry
+   * @return the value
+   */
+  public double valueAt(int i) {
+    if (this.aging) {
+      this.lastReadTime = SimClock.getTime();
+      this.age(i, this.lastReadTime);
+    }
+    return this.values[i];
+  }
+
+  /** Ages an entry up to the given time (if it hasn't been aged that far yet) */
+  private void age(int i, double time) {
+    if (this.times[i] < time) {
+      this.values[i] *= Math.pow(this.gamma, (time - this.times[i]) / this.secondsInTimeUnit);
+      this.times[i] = time;
+    }
+  }
+
+  /**
+   * Updates transitive (A->B->C) values from B's table. <CODE>
+   * P(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) * BETA</CODE> for every C in B's
+   * table, except for A itself.
+   *
+   * @param other B's table
+   * @param self A, i.e., the owner of this table
+   * @param pForHost <CODE>P(a,b)</CODE>
+   * @param beta The transitivity scaling constant
+   */
+  public void updateTransitive(PredictabilityTable other, DTNHost self, double pForHost,
+      double beta) {
+    for (int i = other.next(0); i >= 0; i = other.next(i + 1)) {
+      DTNHost c = other.hosts[i];
+      if (c == self) {
+        continue;
+      }
+      double pOld = this.get(c);
+      this.put(c, pOld + (1 - pOld) * pForHost * other.valueAt(i) * beta);
+    }
+  }
+
+  /**
+   * Updates transitive values from B's table like PRoPHETv2: <CODE>
+   * P(a,c) = max(P(a,c)_old, P(a,b) * P(b,c) * BETA)</CODE>
+   *
+   * @param other B's table
+   * @param self A, i.e., the owner of this table
+   * @param pForHost <CODE>P(a,b)</CODE>
+   * @param beta The transitivity scaling constant
+   */
+  public void updateTransitiveMax(PredictabilityTable other, DTNHost self, double pForHost,
+      double beta) {
+    for (int i = other.next(0); i >= 0; i = other.next(i + 1)) {
+      DTNHost c = other.hosts[i];
+      if (c == self) {
+        continue;
+      }
+      double pOld = this.get(c);
+      double pNew = pForHost * other.valueAt(i) * beta;
+      if (pNew > pOld) {
+        this.put(c, pNew);
+      }
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Message;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Fixed-capacity history of a router's congestion status snapshots. The newest snapshots are kept
+ * in a ring of primitive arrays and older ones are overwritten, so the memory use doesn't grow
+ * with the simulation time. Instead of the message IDs, a snapshot stores a sorted array of
+ * message fingerprints (see {@link #messageKey(Message)}) that can be searched for a message.
+ */
+public class RouterStatusHistory implements Iterable<RouterStatusHistory.Status> {
+  /** Default (and minimum) number of stored snapshots ({@value}) */
+  public static final int DEF_CAPACITY = 2;
+
+  private final int[] ids;
+  private final boolean[] congestion;
+  private final boolean[] rearCongestion;
+  private final double[] buffer;
+  private final double[] rearBuffer;
+  private final double[] averageVar;
+  private final long[][] messages;
+  private final int[] nrofMessages;
+
+  /** index where the next snapshot is written to */
+  private int next;
+  private int size;
+  private long nrofAdded;
+
+  /**
+   * Creates a new history
+   *
+   * @param capacity Number of snapshots to keep
+   */
+  public RouterStatusHistory(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid history capacity " + capacity);
+    }
+    this.ids = new int[capacity];
+    this.congestion = new boolean[capacity];
+    this.rearCongestion = new boolean[capacity];
+    this.buffer = new double[capacity];
+    this.rearBuffer = new double[capacity];
+    this.averageVar = new double[capacity];
+    this.messages = new long[capacity][];
+    this.nrofMessages = new int[capacity];
+    for (int i = 0; i < capacity; i++) {
+      this.messages[i] = new long[0];
+    }
+  }
+
+  /**
+   * Returns the fingerprint of a message copy: its {@link Message#getKey() key}. Different copies of
+   * the same message have different fingerprints and different messages never share one.
+   *
+   * @param m The message
+   * @return The message's fingerprint
+   */
+  public static long messageKey(Message m) {
+    return m.getKey();
+  }
+
+  /**
+   * Adds a new snapshot, overwriting the oldest one if the history is full
+   *
+   * @param id Status ID
+   * @param congestion Router's status
+   * @param rearCongestion Prediction of the router's status
+   * @param buffer Free buffer ratio
+   * @param rearBuffer Prediction of the free buffer ratio
+   * @param averageVar Mean square error of the prediction
+   * @param msgs The messages in the router's buffer
+   */
+  public void add(
+      int id,
+      boolean congestion,
+      boolean rearCongestion,
+      double buffer,
+      double rearBuffer,
+      double averageVar,
+      Collection<Message> msgs) {
+    int i = this.next;
+    this.ids[i] = id;
+    this.congestion[i] = congestion;
+    this.rearCongestion[i] = rearCongestion;
+    this.buffer[i] = buffer;
+    this.rearBuffer[i] = rearBuffer;
+    this.averageVar[i] = averageVar;
+
+    long[] keys = this.messages[i];
+    if (keys.length < msgs.size()) {
+      keys = new long[Math.max(msgs.size(), 2 * keys.length)];
+      this.messages[i] = keys;
+    }
+    int n = 0;
+    for (Message m : msgs) {
+      keys[n++] = messageKey(m);
+    }
+    Arrays.sort(keys, 0, n);
+    this.nrofMessages[i] = n;
+
+    this.next = (i + 1) % this.ids.length;
+    this.size = Math.min(this.size + 1, this.ids.length);
+    this.nrofAdded++;
+  }
+
+  /**
+   * Returns the number of stored snapshots
+   *
+   * @return the number of stored snapshots
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the number of snapshots added during the history's lifetime
+   *
+   * @return the number of snapshots added
+   */
+  public long getNrofAdded() {
+    return this.nrofAdded;
+  }
+
+  /**
+   * Returns the ring index of a stored snapshot
+   *
+   * @param back How many snapshots back from the newest one (0 = newest)
+   * @return The index
+   */
+  private int index(int back) {
+    if (back < 0 || back >= this.size) {
+      throw new IndexOutOfBoundsException(
+          "Snapshot " + back + " back requested, " + this.size + " stored");
+    }
+    int i = this.next - 1 - back;
+    return i < 0 ? i + this.ids.length : i;
+  }
+
+  /**
+   * Returns a stored snapshot
+   *
+   * @param back How many snapshots back from the newest one (0 = newest)
+   * @return A view to the snapshot; valid until the snapshot is overwritten
+   */
+  public Status get(int back) {
+    return new Status(index(back));
+  }
+
+  /**
+   * Returns true if the message was in the router's buffer at a stored snapshot
+   *
+   * @param back How many snapshots back from the newest one (0 = newest)
+   * @param m The message
+   * @return True if the snapshot contains the message's fingerprint
+   */
+  public boolean contains(int back, Message m) {
+    int i = index(back);
+    return Arrays.binarySearch(this.messages[i], 0, this.nrofMessages[i], messageKey(m)) >= 0;
+  }
+
+  /** Iterates the stored snapshots from the oldest to the newest */
+  @Override
+  public Iterator<Status> iterator() {
+    return new Iterator<Status>() {
+      private int back = RouterStatusHistory.this.size - 1;
+
+      @Override
+      public boolean hasNext() {
+        return this.back >= 0;
+      }
+
+      @Override
+      public Status next() {
+        if (this.back < 0) {
+          throw new NoSuchElementException();
+        }
+        return get(this.back--);
+      }
+    };
+  }
+
+  /** View to a stored snapshot */
+  public class Status {
+    private final int i;
+
+    private Status(int i) {
+      this.i = i;
+    }
+
+    public int getId() {
+      return RouterStatusHistory.this.ids[this.i];
+    }
+
+    public boolean getStatus() {
+      return RouterStatusHistory.this.congestion[this.i];
+    }
+
+    public boolean getPreStatus() {
+      return RouterStatusHistory.this.rearCongestion[this.i];
+    }
+
+    public double getBuffer() {
+      return RouterStatusHistory.this.buffer[this.i];
+    }
+
+    public double getPreBuffer() {
+      return RouterStatusHistory.this.rearBuffer[this.i];
+    }
+
+    public double getAverageVar() {
+      return RouterStatusHistory.this.averageVar[this.i];
+    }
+
+    public int getNrofMessages() {
+      return RouterStatusHistory.this.nrofMessages[this.i];
+    }
+  }
+}
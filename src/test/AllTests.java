@@ -50,6 +50,29 @@ public class AllTests {
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(FuzzyRuleEngineTest.class);
+		suite.addTestSuite(RouterTrajectoryTableTest.class);
+		suite.addTestSuite(RouterStatusHistoryTest.class);
+		suite.addTestSuite(LongHashMapTest.class);
+		suite.addTestSuite(RouterSpatialIndexTest.class);
+		suite.addTestSuite(MaliciousRouterDetectorTest.class);
+		suite.addTestSuite(InteractionStoreTest.class);
+		suite.addTestSuite(WeightedAdjacencyTest.class);
+		suite.addTestSuite(PathDistanceTest.class);
+		suite.addTestSuite(BufferOccupancyTest.class);
+		suite.addTestSuite(NeighborhoodSnapshotTest.class);
+		suite.addTestSuite(ConnectivityGridTest.class);
+		suite.addTestSuite(HostWorkersTest.class);
+		suite.addTestSuite(PositionStoreTest.class);
+		suite.addTestSuite(InterfaceTypesTest.class);
+		suite.addTestSuite(PredictabilityTableTest.class);
+		suite.addTestSuite(TrustStoreTest.class);
+		suite.addTestSuite(TraceTokenizerTest.class);
+		suite.addTestSuite(BinaryTraceTest.class);
+		suite.addTestSuite(PrefetchTest.class);
+		suite.addTestSuite(MergedEventQueueTest.class);
+		suite.addTestSuite(ReportSinkTest.class);
+		suite.addTestSuite(QuantileSketchTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BinaryEventsReader;
+import input.BinaryTrace;
+import input.BinaryTraceEventsReader;
+import input.BinaryTraceMovementReader;
+import input.ExternalEvent;
+import input.ExternalEventsReader;
+import input.ExternalMovementReader;
+import input.MovementTraceReader;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures converting generated text event and movement traces to binary traces and reading the
+ * text traces, the old ObjectOutputStream based binary events (BinaryEventsReader) and the binary
+ * traces. Prints the file sizes, conversion times, records read per second and the time of a seek
+ * to the middle of the binary event trace. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.BinaryTraceBenchmark [records]
+ */
+public class BinaryTraceBenchmark {
+	private static final int PRELOAD = 500;
+
+	public static void main(String[] args) throws IOException {
+		int records = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+		File events = tmp(".txt");
+		TraceReaderBenchmark.writeEvents(events, records);
+		File eventsBin = tmp(".bin");
+		long start = System.nanoTime();
+		BinaryTrace.convertEvents(events, eventsBin, BinaryTrace.DEFAULT_CHUNK_SIZE);
+		System.out.printf("events: converted %d records in %.2f s%n", records,
+				(System.nanoTime() - start) / 1e9);
+
+		File binee = tmp(BinaryEventsReader.BINARY_EXT);
+		List<ExternalEvent> all = new ArrayList<ExternalEvent>();
+		readEvents(new StandardEventsReader(events), all);
+		BinaryEventsReader.storeToBinaryFile(binee.getPath(), all);
+		all = null;
+		System.out.printf("events: text %d bytes, ObjectOutputStream %d bytes, binary trace %d"
+				+ " bytes%n", events.length(), binee.length(), eventsBin.length());
+
+		for (int round = 0; round < 2; round++) {
+			String[] names = {"text", "ObjectOutputStream", "binary trace"};
+			String[] result = new String[names.length];
+			for (int impl = 0; impl < names.length; impl++) {
+				ExternalEventsReader r = impl == 0 ? new StandardEventsReader(events)
+						: impl == 1 ? new BinaryEventsReader(binee)
+						: new BinaryTraceEventsReader(eventsBin);
+				List<ExternalEvent> read = new ArrayList<ExternalEvent>();
+				start = System.nanoTime();
+				int n = readEvents(r, read);
+				long ns = System.nanoTime() - start;
+				result[impl] = read.get(n - 1).toString() + n;
+				if (round > 0) {
+					System.out.printf("events: %s %.0f records/s%n", names[impl], n / (ns / 1e9));
+				}
+			}
+			if (!result[0].equals(result[1]) || !result[0].equals(result[2])) {
+				throw new AssertionError("The readers produced different events");
+			}
+		}
+
+		BinaryTraceEventsReader r = new BinaryTraceEventsReader(eventsBin);
+		start = System.nanoTime();
+		r.seek(records * 0.45 / 2);
+		double time = r.readEvents(1).get(0).getTime();
+		System.out.printf("events: seek to %.1f in %.1f us%n", time,
+				(System.nanoTime() - start) / 1e3);
+		r.close();
+
+		File moves = tmp(".txt");
+		TraceReaderBenchmark.writeMoves(moves, records);
+		File movesBin = tmp(".bin");
+		start = System.nanoTime();
+		BinaryTrace.convertMovement(moves, movesBin, BinaryTrace.DEFAULT_CHUNK_SIZE);
+		System.out.printf("movement: converted %d records in %.2f s, text %d bytes, binary"
+				+ " trace %d bytes%n", records, (System.nanoTime() - start) / 1e9,
+				moves.length(), movesBin.length());
+		for (int round = 0; round < 2; round++) {
+			for (int impl = 0; impl < 2; impl++) {
+				MovementTraceReader m = impl == 0 ? new ExternalMovementReader(moves.getPath())
+						: new BinaryTraceMovementReader(movesBin);
+				start = System.nanoTime();
+				int n = 0;
+				int size;
+				while ((size = m.readNextMovements().size()) > 0) {
+					n += size;
+				}
+				long ns = System.nanoTime() - start;
+				if (round > 0) {
+					System.out.printf("movement: %s %.0f records/s%n",
+							impl == 0 ? "text" : "binary trace", n / (ns / 1e9));
+				}
+			}
+		}
+	}
+
+	private static File tmp(String ext) throws IOException {
+		File f = File.createTempFile("btBench", ext);
+		f.deleteOnExit();
+		return f;
+	}
+
+	private static int readEvents(ExternalEventsReader r, List<ExternalEvent> out) {
+		List<ExternalEvent> events;
+		while ((events = r.readEvents(PRELOAD)).size() > 0) {
+			out.addAll(events);
+		}
+		r.close();
+		return out.size();
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BinaryTrace;
+import input.BinaryTraceEventsReader;
+import input.BinaryTraceMovementReader;
+import input.EventQueue;
+import input.EventQueueHandler;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.MessageCreateEvent;
+import input.ExternalMovementReader;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import junit.framework.TestCase;
+import util.Tuple;
+import core.Coord;
+import core.SimError;
+
+/**
+ * Tests for the binary trace format, its converters and readers
+ */
+public class BinaryTraceTest extends TestCase {
+	private static final String EVENTS =
+		"1.5\tC\tM1\tp1\tp2\t10k\t20\n" +
+		"2 S M1 1 2\n" +
+		"3 DE M1 1 2\n" +
+		"4 A M1 1 2\n" +
+		"# comment\n" +
+		"5 DR M1 2\n" +
+		"6 R * 2\n" +
+		"7 CONN 3 4 up V2V\n" +
+		"8 CONN 3 4 down\n" +
+		"9 C M2 4 3 100\n";
+	private static final String MOVES =
+		"0 40 0 50 5 60\n" +
+		"10 1 10 10\n" +
+		"10 2 10 20\n" +
+		"# comment\n" +
+		"20 1 20 10\n" +
+		"20 2 20 20\n" +
+		"\n" +
+		"30 1 30 20\n" +
+		"30 2 30 30\n" +
+		"40 2 40 40";
+
+	private File write(String contents) throws IOException {
+		File f = File.createTempFile("btTest", ".txt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		out.print(contents);
+		out.close();
+		return f;
+	}
+
+	private File binary() throws IOException {
+		File f = File.createTempFile("btTest", ".bin");
+		f.deleteOnExit();
+		return f;
+	}
+
+	public void testEvents() throws IOException {
+		File text = write(EVENTS);
+		File bin = binary();
+		assertFalse(BinaryTrace.isBinaryTrace(text));
+		assertEquals(9, BinaryTrace.convertEvents(text, bin, 4));
+		assertTrue(BinaryTrace.isBinaryTrace(bin));
+
+		StandardEventsReader expected = new StandardEventsReader(text);
+		BinaryTraceEventsReader r = new BinaryTraceEventsReader(bin);
+		for (int batch : new int[] {3, 5, 10}) {
+			List<ExternalEvent> e = expected.readEvents(batch);
+			List<ExternalEvent> b = r.readEvents(batch);
+			assertEquals(e.size(), b.size());
+			for (int i = 0; i < e.size(); i++) {
+				assertEquals(e.get(i).toString(), b.get(i).toString());
+				assertEquals(e.get(i).getClass(), b.get(i).getClass());
+			}
+		}
+		assertEquals(0, r.readEvents(10).size());
+
+		r.seek(5.5);
+		assertEquals(6.0, r.readEvents(1).get(0).getTime());
+		r.seek(0);
+		assertEquals(1.5, r.readEvents(1).get(0).getTime());
+		r.seek(100);
+		assertEquals(0, r.readEvents(1).size());
+		r.close();
+		expected.close();
+
+		/* seeking past a creation inside a chunk */
+		BinaryTrace.convertEvents(text, bin, 100);
+		r = new BinaryTraceEventsReader(bin);
+		r.seek(8.5);
+		MessageCreateEvent c = (MessageCreateEvent) r.readEvents(1).get(0);
+		assertEquals(100, c.getSize());
+		assertEquals(0, c.getResponseSize());
+		r.close();
+	}
+
+	public void testQueue() throws IOException {
+		File bin = binary();
+		BinaryTrace.convertEvents(write(EVENTS), bin, 2);
+		ExternalEventsQueue q = new ExternalEventsQueue(bin.getPath(), 2);
+		assertEquals(1.5, q.nextEventsTime());
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(ExternalEventsQueue.PATH_SETTING, bin.getPath());
+		ts.putSetting(ExternalEventsQueue.PRELOAD_SETTING, "2");
+		ts.putSetting(ExternalEventsQueue.START_TIME_SETTING, "4");
+		q = new ExternalEventsQueue(ts);
+		for (double time = 4; time <= 9; time++) {
+			assertEquals(time, q.nextEvent().getTime());
+		}
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+
+		/* text traces skip the events before the start time */
+		ts.putSetting(ExternalEventsQueue.PATH_SETTING, write(EVENTS).getPath());
+		q = new ExternalEventsQueue(ts);
+		assertEquals(4.0, q.nextEventsTime());
+
+		/* without a start time, events with negative times are kept */
+		q = new ExternalEventsQueue(write("-1 C M0 1 2 10\n" + EVENTS).getPath(), 2);
+		assertEquals(-1.0, q.nextEventsTime());
+	}
+
+	public void testQueueFromHandler() throws IOException {
+		File bin = binary();
+		BinaryTrace.convertEvents(write(EVENTS), bin, 2);
+		TestSettings ts = new TestSettings();
+		String ns = EventQueueHandler.SETTINGS_NAMESPACE;
+		ts.putSetting(ns + "." + EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting(ns + "1." + EventQueueHandler.PATH_SETTING, bin.getPath());
+		ts.putSetting(ns + "1." + EventQueueHandler.PRELOAD_SETTING, "2");
+		ts.putSetting(ns + "1." + EventQueueHandler.START_TIME_SETTING, "4");
+
+		List<EventQueue> queues = new EventQueueHandler().getEventQueues();
+		assertEquals(1, queues.size());
+		EventQueue q = queues.get(0);
+		for (double time = 4; time <= 9; time++) {
+			assertEquals(time, q.nextEvent().getTime());
+		}
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+
+		ts.putSetting(ns + "1." + EventQueueHandler.START_TIME_SETTING, "0");
+		assertEquals(1.5, new EventQueueHandler().getEventQueues().get(0).nextEventsTime());
+		ts.putSetting(ns + "." + EventQueueHandler.NROF_SETTING, "0");
+	}
+
+	public void testMovement() throws IOException {
+		File text = write(MOVES);
+		File bin = binary();
+		assertEquals(7, BinaryTrace.convertMovement(text, bin, 3));
+
+		ExternalMovementReader expected = new ExternalMovementReader(text.getPath());
+		BinaryTraceMovementReader r = new BinaryTraceMovementReader(bin);
+		assertEquals(expected.getMaxX(), r.getMaxX());
+		assertEquals(expected.getMinY(), r.getMinY());
+		List<Tuple<String, Coord>> e;
+		do {
+			e = expected.readNextMovements();
+			List<Tuple<String, Coord>> b = r.readNextMovements();
+			assertEquals(e.size(), b.size());
+			for (int i = 0; i < e.size(); i++) {
+				assertEquals(e.get(i).getKey(), b.get(i).getKey());
+				assertEquals(e.get(i).getValue(), b.get(i).getValue());
+			}
+			assertEquals(expected.getLastTimeStamp(), r.getLastTimeStamp());
+		} while (e.size() > 0);
+
+		r = new BinaryTraceMovementReader(bin);
+		r.seek(15);
+		assertEquals(2, r.readNextMovements().size());
+		assertEquals(20.0, r.getLastTimeStamp());
+		r.setNormalize(false);
+		assertEquals(new Coord(30, 20), r.readNextMovements().get(0).getValue());
+	}
+
+	public void testInvalid() throws IOException {
+		File bin = binary();
+		BinaryTrace.convertEvents(write(EVENTS), bin, 4);
+		try {
+			new BinaryTraceMovementReader(bin);
+			fail("No error for a trace of the wrong kind");
+		} catch (SimError e) {
+			// expected
+		}
+		RandomAccessFile raf = new RandomAccessFile(bin, "rw");
+		raf.seek(8);
+		raf.writeShort(BinaryTrace.VERSION + 1);
+		raf.close();
+		try {
+			new BinaryTraceEventsReader(bin);
+			fail("No error for an unknown version");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import routing.util.BufferOccupancy;
+import core.Message;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the buffer occupancy accounting of MessageRouter
+ */
+public class BufferOccupancyTest extends AbstractRouterTest {
+
+	@Override
+	public void setUp() throws Exception {
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		setRouterProto(new EpidemicRouter(ts));
+		super.setUp();
+	}
+
+	public void testBufferOccupancy() {
+		MessageRouter r1 = h1.getRouter();
+		h1.createNewMessage(new Message(h1, h3, msgId1, 10));
+		h1.createNewMessage(new Message(h1, h3, msgId2, 20));
+		assertEquals(30, r1.getOccupiedBufferSize());
+		assertEquals(BUFFER_SIZE - 30, r1.getFreeBufferSize());
+		r1.checkOccupancy();
+
+		try {
+			r1.getMessageCollection().clear();
+			fail("Message collection should be unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		h1.connect(h2);
+		updateAllNodes();
+		clock.advance(10);
+		updateAllNodes();
+		assertEquals(30, r1.getOccupiedBufferSize());
+		assertTrue(h2.getRouter().getOccupiedBufferSize() > 0);
+		h2.getRouter().checkOccupancy();
+
+		r1.deleteMessage(msgId1, true);
+		assertEquals(20, r1.getOccupiedBufferSize());
+		r1.deleteMessage(msgId2, false);
+		assertEquals(0, r1.getOccupiedBufferSize());
+		r1.checkOccupancy();
+
+		BufferOccupancy snapshot = new BufferOccupancy(SimClock.getTime(),
+				utils.getAllHosts());
+		assertEquals(0, snapshot.getOccupied(h1));
+		assertEquals(h2.getRouter().getOccupiedBufferSize(),
+				snapshot.getOccupied(h2));
+		assertEquals(h2.getBufferOccupancy(), snapshot.getOccupancy(h2));
+		assertEquals(h2.getRouter().getFreeBufferSize(), snapshot.getFree(h2));
+		assertEquals(utils.getAllHosts().size(), snapshot.size());
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import routing.PassiveRouter;
+import core.Connection;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Measures the garbage and time of the connection and neighbor lookups routers do in their update
+ * loops, with the cached views of DTNHost and with copying the lists on every call as DTNHost did
+ * before. Every host of a clique asks for its connections once per message (like
+ * ActiveRouter.getMessagesForConnected) and for every neighbor's neighbors twice (like
+ * V2xRouter.stableScore). Allocated bytes are read from the JVM's per thread counter. Run from
+ * the project root, e.g.:
+ * java -cp target/classes:lib/* test.ConnectionViewBenchmark [hosts] [messages] [ticks]
+ */
+public class ConnectionViewBenchmark {
+
+	public static void main(String[] args) {
+		int nrofHosts = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+		int nrofMessages = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "V2V");
+		ts.setNameSpace(null);
+		DTNHost.reset();
+		NetworkInterface.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setMessageRouterProto(new PassiveRouter(ts));
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < nrofHosts; i++) {
+			hosts.add(utils.createHost());
+		}
+		for (int i = 0; i < nrofHosts; i++) {
+			for (int j = i + 1; j < nrofHosts; j++) {
+				hosts.get(i).connect(hosts.get(j));
+			}
+		}
+
+		com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean)
+				ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		for (int round = 0; round < 3; round++) { // first rounds are warmup
+			long[] bytes = new long[2];
+			long[] ns = new long[2];
+			long[] sums = new long[2];
+			for (int impl = 0; impl < 2; impl++) {
+				long b = mx.getThreadAllocatedBytes(tid);
+				long start = System.nanoTime();
+				for (int t = 0; t < ticks; t++) {
+					for (DTNHost h : hosts) {
+						sums[impl] += impl == 0 ? copying(h, nrofMessages)
+								: views(h, nrofMessages);
+					}
+				}
+				ns[impl] = System.nanoTime() - start;
+				bytes[impl] = mx.getThreadAllocatedBytes(tid) - b;
+			}
+			System.out.printf("round %d: copying %.0f bytes/tick %.1f us/tick, " +
+					"views %.0f bytes/tick %.1f us/tick (checks %d / %d)%n", round,
+					(double) bytes[0] / ticks, ns[0] / 1e3 / ticks,
+					(double) bytes[1] / ticks, ns[1] / 1e3 / ticks, sums[0], sums[1]);
+		}
+	}
+
+	private static long views(DTNHost h, int nrofMessages) {
+		long sum = 0;
+		for (int m = 0; m < nrofMessages; m++) {
+			sum += h.getConnections().size();
+		}
+		for (DTNHost n : h.getNeighborsByInterface("V2V")) {
+			sum += n.getNeighbors().size();
+			for (DTNHost nn : n.getNeighbors()) {
+				sum += nn.getAddress();
+			}
+		}
+		return sum;
+	}
+
+	private static long copying(DTNHost h, int nrofMessages) {
+		long sum = 0;
+		for (int m = 0; m < nrofMessages; m++) {
+			sum += copyConnections(h).size();
+		}
+		for (DTNHost n : copyNeighbors(h, h.getConnectionsByInterface("V2V"))) {
+			sum += copyNeighbors(n, copyConnections(n)).size();
+			for (DTNHost nn : copyNeighbors(n, copyConnections(n))) {
+				sum += nn.getAddress();
+			}
+		}
+		return sum;
+	}
+
+	private static List<Connection> copyConnections(DTNHost h) {
+		List<Connection> lc = new ArrayList<Connection>();
+		for (NetworkInterface i : h.getInterfaces()) {
+			lc.addAll(i.getConnections());
+		}
+		return lc;
+	}
+
+	private static List<DTNHost> copyNeighbors(DTNHost h, List<Connection> lc) {
+		List<DTNHost> neighbors = new ArrayList<DTNHost>();
+		for (Connection c : lc) {
+			neighbors.add(c.getOtherNode(h));
+		}
+		return neighbors;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import routing.PassiveRouter;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.HostWorkers;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+/**
+ * Compares updating the connections with the batch update of ConnectivityGrid to every interface
+ * updating its own connections, for an increasing number of hosts in the same area. The hosts
+ * move a random step every round. Prints the time per round and the connections set up and torn
+ * down per second. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.ConnectivityGridBenchmark [rounds] [threads]
+ */
+public class ConnectivityGridBenchmark {
+	private static final int WORLD_SIZE = 2000;
+	private static final double RANGE = 50;
+	private static final double STEP = 10;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		HostWorkers workers = new HostWorkers(threads);
+
+		for (int nrofHosts : new int[] {500, 1000, 2000, 4000, 8000}) {
+			double[] ms = new double[2];
+			long[] events = new long[2];
+			for (int impl = 0; impl < 2; impl++) {
+				SimClock.reset();
+				DTNHost.reset();
+				NetworkInterface.reset();
+				TestSettings ts = new TestSettings();
+				ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+						ConnectivityGrid.BATCH_UPDATE_S, impl == 1 ? "true" : "false");
+				ts.putSetting(movementModelSize(), WORLD_SIZE + "," + WORLD_SIZE);
+				ConnectivityGrid.reset();
+
+				Counter counter = new Counter();
+				List<DTNHost> hosts = createHosts(ts, nrofHosts, counter);
+				Random rng = new Random(nrofHosts);
+				long start = 0;
+				for (int r = -rounds / 10; r < rounds; r++) { // first rounds are warmup
+					if (r == 0) {
+						start = System.nanoTime();
+						counter.events = 0;
+					}
+					for (DTNHost h : hosts) {
+						Coord c = h.getLocation();
+						h.setLocation(new Coord(
+								step(c.getX(), rng), step(c.getY(), rng)));
+					}
+					ConnectivityGrid.updateConnections(workers);
+					for (DTNHost h : hosts) {
+						h.update(true);
+					}
+				}
+				ms[impl] = (System.nanoTime() - start) / 1e6 / rounds;
+				events[impl] = counter.events;
+			}
+			System.out.printf("%d hosts: per interface %.2f ms/round, %.0f " +
+					"connection changes/s; batch %.2f ms/round, %.0f " +
+					"connection changes/s (%d / %d changes)%n", nrofHosts,
+					ms[0], events[0] / (ms[0] * rounds / 1e3), ms[1],
+					events[1] / (ms[1] * rounds / 1e3), events[0], events[1]);
+		}
+		HostWorkers.reset();
+	}
+
+	private static String movementModelSize() {
+		return movement.MovementModel.MOVEMENT_MODEL_NS + "." +
+				movement.MovementModel.WORLD_SIZE;
+	}
+
+	private static double step(double v, Random rng) {
+		v += (rng.nextDouble() * 2 - 1) * STEP;
+		return Math.min(WORLD_SIZE, Math.max(0, v));
+	}
+
+	private static List<DTNHost> createHosts(TestSettings ts, int nrofHosts,
+			Counter counter) {
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(NetworkInterface.NAME_S, "bench");
+		ts.setNameSpace(null);
+		SimpleBroadcastInterface proto = new SimpleBroadcastInterface(
+				new TestSettings(TestUtils.IFACE_NS));
+		List<ConnectionListener> cls = new ArrayList<ConnectionListener>();
+		cls.add(counter);
+		proto.setClisteners(cls);
+		Random rng = new Random(1);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < nrofHosts; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(proto);
+			hosts.add(new DTNHost(new ArrayList<MessageListener>(), null, "h",
+					li, new ModuleCommunicationBus(),
+					new StationaryMovement(new Coord(rng.nextDouble() * WORLD_SIZE,
+							rng.nextDouble() * WORLD_SIZE)), new PassiveRouter(ts)));
+		}
+		return hosts;
+	}
+
+	private static class Counter implements ConnectionListener {
+		private long events;
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			events++;
+		}
+
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			events++;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.HostWorkers;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+import core.World;
+
+/**
+ * Tests for the batch connectivity update of ConnectivityGrid
+ */
+public class ConnectivityGridTest extends TestCase {
+	private static final double RANGE = 30;
+	private static final int NROF_HOSTS = 150;
+	private static final int WORLD_SIZE = 1000;
+
+	private TestSettings ts;
+	private List<DTNHost> hosts;
+	private Random rng;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				ConnectivityGrid.BATCH_UPDATE_S, "true");
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				ConnectivityGrid.CELL_SIZE_MULT_S, "1");
+		ConnectivityGrid.reset();
+		rng = new Random(7);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		HostWorkers.reset();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				ConnectivityGrid.BATCH_UPDATE_S, "false");
+		ConnectivityGrid.reset();
+		super.tearDown();
+	}
+
+	private void createHosts(String name) {
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(NetworkInterface.NAME_S, name);
+		ts.setNameSpace(null);
+		SimpleBroadcastInterface proto = new SimpleBroadcastInterface(
+				new TestSettings(TestUtils.IFACE_NS));
+		hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(proto);
+			hosts.add(new DTNHost(new ArrayList<MessageListener>(), null, "h",
+					li, new ModuleCommunicationBus(),
+					new StationaryMovement(randomCoord()), new PassiveRouter(ts)));
+		}
+	}
+
+	private Coord randomCoord() {
+		/* small world corner so that many hosts are in range */
+		return new Coord(rng.nextDouble() * WORLD_SIZE / 5,
+				rng.nextDouble() * WORLD_SIZE / 5);
+	}
+
+	public void testBatchUpdate() {
+		createHosts("batch");
+		HostWorkers workers = new HostWorkers(1);
+		checkRounds(workers);
+	}
+
+	public void testStripes() {
+		createHosts("stripes");
+		HostWorkers workers = new HostWorkers(3);
+		checkRounds(workers);
+	}
+
+	public void testNoBatchUpdate() {
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				ConnectivityGrid.BATCH_UPDATE_S, "false");
+		ConnectivityGrid.reset();
+		createHosts("serial");
+		ConnectivityGrid.updateConnections(new HostWorkers(1));
+		assertEquals(0, countConnections());
+
+		for (DTNHost h : hosts) {
+			h.update(true);
+		}
+		assertConnectedInRange();
+	}
+
+	private void checkRounds(HostWorkers workers) {
+		ConnectivityGrid grid = ConnectivityGrid.ConnectivityGridFactory(
+				hosts.get(0).getInterfaces().get(0).getConnectType().hashCode(),
+				RANGE);
+		assertTrue(grid.isBatchUpdated());
+
+		for (int round = 0; round < 10; round++) {
+			for (DTNHost h : hosts) {
+				if (rng.nextInt(3) == 0) {
+					h.setLocation(randomCoord());
+				}
+			}
+			ConnectivityGrid.updateConnections(workers);
+			/* hosts' own updates don't change the connections */
+			int nrofConnections = countConnections();
+			for (DTNHost h : hosts) {
+				h.update(true);
+			}
+			assertEquals(nrofConnections, countConnections());
+
+			assertConnectedInRange();
+			assertEquals(nrofConnections, grid.getNrofPairsInRange());
+		}
+	}
+
+	private int countConnections() {
+		int count = 0;
+		for (DTNHost h : hosts) {
+			count += h.getConnections().size();
+		}
+		return count / 2;
+	}
+
+	private void assertConnectedInRange() {
+		for (DTNHost a : hosts) {
+			for (DTNHost b : hosts) {
+				if (a == b) {
+					continue;
+				}
+				boolean inRange = a.getLocation().distance(b.getLocation()) <= RANGE;
+				boolean connected = false;
+				for (Connection c : a.getConnections()) {
+					connected |= c.getOtherNode(a) == b;
+				}
+				assertEquals(a + " - " + b, inRange, connected);
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package test;
 
 
+import core.Connection;
 import core.Coord;
 import core.DTNHost;
 import core.MessageListener;
@@ -18,6 +19,7 @@ import routing.MessageRouter;
 import routing.PassiveRouter;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -67,6 +69,67 @@ public class DTNHostTest extends TestCase {
     assertFalse("Radio reported as active.", host.isRadioActive());
   }
 
+  /**
+   * Tests that the connection view follows connections going up and down,
+   * also when it is read inside the connection callbacks and when a
+   * connection is replaced without changing the number of connections.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConnectionView()
+  throws Exception {
+    final TestSettings ts = new TestSettings();
+    ts.setNameSpace(TestUtils.IFACE_NS);
+    ts.putSetting(NetworkInterface.NAME_S, "test");
+    ts.setNameSpace(null);
+    final TestUtils utils = new TestUtils(null, null, ts);
+    utils.setMessageRouterProto(new ViewReadingRouter(ts));
+    final DTNHost h1 = utils.createHost(new Coord(0, 0));
+    final DTNHost h2 = utils.createHost(new Coord(0.5, 0));
+    final DTNHost h3 = utils.createHost(new Coord(0, 0.5));
+    final NetworkInterface i1 = h1.getInterfaces().get(0);
+    final NetworkInterface i2 = h2.getInterfaces().get(0);
+    final NetworkInterface i3 = h3.getInterfaces().get(0);
+
+    final List<Connection> kept = h1.getConnections();
+    assertViews(h1, h2, h3);
+    i1.connect(i2);
+    assertEquals(0, kept.size());
+    assertEquals(1, h1.getConnections().size());
+    assertViews(h1, h2, h3);
+
+    // torn down by the update; the callbacks read the view while the
+    // connection is still in h1's list
+    h2.setLocation(new Coord(5, 0));
+    i1.update();
+    assertEquals(0, h1.getConnections().size());
+    assertViews(h1, h2, h3);
+
+    // replace h1's connection to h2 with one to h3 (same count)
+    h2.setLocation(new Coord(0.5, 0));
+    i1.connect(i2);
+    assertViews(h1, h2, h3);
+    i1.destroyConnection(i2);
+    i1.connect(i3);
+    assertEquals(h3, h1.getConnections().get(0).getOtherNode(h1));
+    assertViews(h1, h2, h3);
+
+    final ViewReadingRouter router = (ViewReadingRouter) h1.getRouter();
+    assertTrue(router.nrofReads > 0);
+
+    // the same without the callbacks reading the views
+    for (DTNHost h : utils.getAllHosts()) {
+      ((ViewReadingRouter) h.getRouter()).reading = false;
+    }
+    final int nrofReads = router.nrofReads;
+    i1.destroyConnection(i3);
+    i1.connect(i2);
+    assertEquals(h2, h1.getConnections().get(0).getOtherNode(h1));
+    assertViews(h1, h2, h3);
+    assertEquals(nrofReads, router.nrofReads);
+  }
+
   private static MovementModel makeMovementModel() {
     return new MovementModel() {
       @Override
@@ -96,5 +159,53 @@ public class DTNHostTest extends TestCase {
   // Private
   //==========================================================================//
 
+  /**
+   * Asserts that the connection views of the hosts match the connections of
+   * their interfaces.
+   */
+  private static void assertViews(DTNHost... hosts) {
+    for (DTNHost h : hosts) {
+      List<Connection> expected = new ArrayList<Connection>();
+      for (NetworkInterface ni : h.getInterfaces()) {
+        expected.addAll(ni.getConnections());
+      }
+      assertEquals("Connections of " + h, expected, h.getConnections());
+      List<DTNHost> neighbors = new ArrayList<DTNHost>();
+      for (Connection con : expected) {
+        neighbors.add(con.getOtherNode(h));
+      }
+      assertEquals("Neighbors of " + h, neighbors, h.getNeighbors());
+    }
+  }
+
+  /** Router that checks the host's connection view on every connection change */
+  private static class ViewReadingRouter extends PassiveRouter {
+    private boolean reading = true;
+    private int nrofReads;
+
+    public ViewReadingRouter(Settings s) {
+      super(s);
+    }
+
+    protected ViewReadingRouter(ViewReadingRouter r) {
+      super(r);
+      this.reading = r.reading;
+    }
+
+    @Override
+    public void changedConnection(Connection con) {
+      super.changedConnection(con);
+      if (this.reading) {
+        assertViews(getHost());
+        this.nrofReads++;
+      }
+    }
+
+    @Override
+    public MessageRouter replicate() {
+      return new ViewReadingRouter(this);
+    }
+  }
+
   //==========================================================================//
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MergedEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares picking the next event from 1, 10 and 100 generator-like queues (plus the scheduled
+ * updates queue) by scanning all queues after every event, like World did before, and with the
+ * heap of MergedEventQueue. Prints nanoseconds per event. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.EventQueueMergeBenchmark [events]
+ */
+public class EventQueueMergeBenchmark {
+	private static final int[] NROF_QUEUES = {1, 10, 100};
+	private static final int ROUNDS = 5;
+
+	private static long sink;
+
+	public static void main(String[] args) {
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		for (int queues : NROF_QUEUES) {
+			double[] best = {Double.MAX_VALUE, Double.MAX_VALUE};
+			for (int round = 0; round < ROUNDS; round++) {
+				for (int impl = 0; impl < 2; impl++) {
+					List<EventQueue> list = queues(queues);
+					long start = System.nanoTime();
+					if (impl == 0) {
+						scan(list, events);
+					} else {
+						merge(list, events);
+					}
+					best[impl] = Math.min(best[impl],
+							(System.nanoTime() - start) / (double) events);
+				}
+			}
+			System.out.printf("%3d queues: scan %.1f ns/event, heap %.1f ns/event%n",
+					queues, best[0], best[1]);
+		}
+	}
+
+	private static List<EventQueue> queues(int n) {
+		List<EventQueue> list = new ArrayList<EventQueue>(n + 1);
+		list.add(new ScheduledUpdatesQueue());
+		Random rng = new Random(n);
+		for (int i = 0; i < n; i++) {
+			list.add(new GeneratorQueue(rng.nextLong(), 1 + rng.nextInt(100)));
+		}
+		return list;
+	}
+
+	private static void scan(List<EventQueue> queues, int events) {
+		for (int i = 0; i < events; i++) {
+			EventQueue next = queues.get(0);
+			double earliest = next.nextEventsTime();
+			for (EventQueue eq : queues) {
+				if (eq.nextEventsTime() < earliest) {
+					next = eq;
+					earliest = eq.nextEventsTime();
+				}
+			}
+			sink += (long) next.nextEvent().getTime();
+		}
+	}
+
+	private static void merge(List<EventQueue> queues, int events) {
+		MergedEventQueue merged = new MergedEventQueue(queues);
+		for (int i = 0; i < events; i++) {
+			merged.nextEventsTime();
+			sink += (long) merged.nextEvent().getTime();
+		}
+	}
+
+	/** Endless queue of events with random intervals, like a message generator */
+	private static class GeneratorQueue implements EventQueue {
+		private final Random rng;
+		private final int maxInterval;
+		private double next;
+
+		private GeneratorQueue(long seed, int maxInterval) {
+			this.rng = new Random(seed);
+			this.maxInterval = maxInterval;
+			this.next = this.rng.nextInt(maxInterval);
+		}
+
+		public ExternalEvent nextEvent() {
+			ExternalEvent e = new ExternalEvent(this.next);
+			this.next += 1 + this.rng.nextInt(this.maxInterval);
+			return e;
+		}
+
+		public double nextEventsTime() {
+			return this.next;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+import routing.V2xRouter;
+import routing.util.FuzzyRuleEngine;
+
+/**
+ * Compares the compiled {@link FuzzyRuleEngine} with jFuzzyLogic's per-call {@code FIS.load}
+ * evaluation that V2xRouter used before. Run from the project root, e.g.: java -cp
+ * target/classes:lib/* test.FuzzyRuleEngineBenchmark [nrofEvaluations] [fclFile]
+ */
+public class FuzzyRuleEngineBenchmark {
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		String file = args.length > 1 ? args[1] : V2xRouter.DEF_FUZZY_RULES;
+		double[][] inputs = new double[n][3];
+		Random rng = new Random(0);
+		for (double[] in : inputs) {
+			for (int i = 0; i < in.length; i++) {
+				in[i] = rng.nextDouble();
+			}
+		}
+
+		FuzzyRuleEngine engine = FuzzyRuleEngine.load(file,
+				FuzzyRuleEngine.DEF_NROF_POINTS);
+		FuzzyRuleEngine.Evaluator eval = engine.newEvaluator();
+		int rep = engine.getInputIndex("ReputationScore");
+		int cap = engine.getInputIndex("TransmissionCapacity");
+		int soc = engine.getInputIndex("SocialSimilarity");
+		double[] compiled = new double[n];
+
+		for (int round = 0; round < 3; round++) { // first rounds are warmup
+			long start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				eval.setInput(rep, inputs[i][0]);
+				eval.setInput(cap, inputs[i][1]);
+				eval.setInput(soc, inputs[i][2]);
+				compiled[i] = eval.evaluate();
+			}
+			long compiledNs = System.nanoTime() - start;
+
+			double maxDiff = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < n; i++) {
+				double fis = V2xRouter.fisLogic(file, inputs[i][0], inputs[i][1],
+						inputs[i][2]);
+				maxDiff = Math.max(maxDiff, Math.abs(fis - compiled[i]));
+			}
+			long fisNs = System.nanoTime() - start;
+
+			System.out.printf("round %d: compiled %.3f us/op, FIS.load %.3f us/op, " +
+					"max difference %g%n", round, compiledNs / 1e3 / n,
+					fisNs / 1e3 / n, maxDiff);
+		}
+	}
+}
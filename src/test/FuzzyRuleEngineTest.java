@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import core.SettingsError;
+import junit.framework.TestCase;
+import routing.V2xRouter;
+import routing.util.FuzzyRuleEngine;
+
+public class FuzzyRuleEngineTest extends TestCase {
+	private static final double DELTA = 0.005;
+
+	private FuzzyRuleEngine engine;
+	private FuzzyRuleEngine.Evaluator eval;
+	private int rep;
+	private int cap;
+	private int soc;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		FuzzyRuleEngine.reset();
+		engine = FuzzyRuleEngine.load(V2xRouter.DEF_FUZZY_RULES,
+				FuzzyRuleEngine.DEF_NROF_POINTS);
+		eval = engine.newEvaluator();
+		rep = engine.getInputIndex("ReputationScore");
+		cap = engine.getInputIndex("TransmissionCapacity");
+		soc = engine.getInputIndex("SocialSimilarity");
+	}
+
+	private double rank(double r, double c, double s) {
+		eval.setInput(rep, r);
+		eval.setInput(cap, c);
+		eval.setInput(soc, s);
+		return eval.evaluate();
+	}
+
+	public void testCache() {
+		assertSame(engine, FuzzyRuleEngine.load(V2xRouter.DEF_FUZZY_RULES,
+				FuzzyRuleEngine.DEF_NROF_POINTS));
+		assertEquals("rank", engine.getOutputName());
+	}
+
+	public void testSingleRule() {
+		/* only "Low AND Low THEN VeryBad" fires: triangle (0,1)-(0.2,0) */
+		assertEquals(0.2 / 3, rank(0, 0, 0), DELTA);
+		/* only "High, High, High THEN Perfect": triangle (0.8,0)-(1,1) */
+		assertEquals(0.8 + 0.4 / 3, rank(1, 1, 1), DELTA);
+		/* only "Medium, Medium, Medium THEN Unpreferable" */
+		assertEquals(0.4, rank(0.5, 0.2, 0.5), DELTA);
+	}
+
+	public void testOutOfRangeInputsAreClamped() {
+		assertEquals(rank(0, 0, 0), rank(-5, -1, -0.1), 0);
+		assertEquals(rank(1, 1, 1), rank(3, 2, 1.5), 0);
+	}
+
+	public void testMonotonicInReputation() {
+		double prev = -1;
+		for (double r = 0; r <= 1; r += 0.05) {
+			double v = rank(r, 0.5, 0.7);
+			assertTrue(v >= prev - 1e-9);
+			prev = v;
+		}
+	}
+
+	public void testEvaluatorsAreIndependent() {
+		FuzzyRuleEngine.Evaluator other = engine.newEvaluator();
+		other.setInput(rep, 1);
+		other.setInput(cap, 1);
+		other.setInput(soc, 1);
+		double low = rank(0, 0, 0);
+		assertEquals(0.8 + 0.4 / 3, other.evaluate(), DELTA);
+		assertEquals(low, eval.evaluate(), 0);
+	}
+
+	public void testDefaultValue() {
+		FuzzyRuleEngine e = FuzzyRuleEngine.parse(
+				"FUNCTION_BLOCK f VAR_INPUT a : REAL; END_VAR " +
+				"VAR_OUTPUT o : REAL; END_VAR " +
+				"FUZZIFY a TERM L := (0,1) (1,0); TERM H := (0,0) (1,1); " +
+				"END_FUZZIFY " +
+				"DEFUZZIFY o TERM Y := (0,0) (1,1); METHOD : COG; " +
+				"DEFAULT := 0.25; END_DEFUZZIFY " +
+				"RULEBLOCK r RULE 1 : IF a IS H THEN o IS Y; END_RULEBLOCK " +
+				"END_FUNCTION_BLOCK", 100);
+		FuzzyRuleEngine.Evaluator ev = e.newEvaluator();
+		ev.setInput(0, 0);
+		assertEquals(0.25, ev.evaluate(), 0);
+		ev.setInput(0, 1);
+		assertEquals(2.0 / 3, ev.evaluate(), 0.01);
+	}
+
+	public void testUnsupported() {
+		String head = "FUNCTION_BLOCK f VAR_INPUT a : REAL; END_VAR " +
+				"VAR_OUTPUT o : REAL; END_VAR " +
+				"FUZZIFY a TERM L := (0,1) (1,0); END_FUZZIFY " +
+				"DEFUZZIFY o TERM Y := (0,0) (1,1); METHOD : COG; " +
+				"END_DEFUZZIFY ";
+		assertInvalid(head + "RULEBLOCK r OR : MAX; END_RULEBLOCK " +
+				"END_FUNCTION_BLOCK");
+		assertInvalid(head + "RULEBLOCK r RULE 1 : IF a IS X THEN o IS Y; " +
+				"END_RULEBLOCK END_FUNCTION_BLOCK");
+		assertInvalid(head);
+		try {
+			engine.getInputIndex("foo");
+			fail("Unknown input accepted");
+		} catch (SettingsError e) {
+			// ok
+		}
+	}
+
+	private void assertInvalid(String fcl) {
+		try {
+			FuzzyRuleEngine.parse(fcl, 100);
+			fail("Invalid FCL accepted: " + fcl);
+		} catch (SettingsError e) {
+			// ok
+		}
+	}
+}
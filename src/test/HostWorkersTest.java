@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+import junit.framework.TestCase;
+import core.HostWorkers;
+import core.SimError;
+
+/**
+ * Tests for the HostWorkers class
+ */
+public class HostWorkersTest extends TestCase {
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		HostWorkers.reset();
+	}
+
+	public void testAllIndexesOnce() {
+		for (int threads : new int[] {1, 3, 8}) {
+			HostWorkers workers = new HostWorkers(threads);
+			for (int n : new int[] {0, 1, 5, 100}) {
+				final AtomicIntegerArray visits = new AtomicIntegerArray(n);
+				workers.forEach(n, new IntConsumer() {
+					public void accept(int i) {
+						visits.incrementAndGet(i);
+					}
+				});
+				for (int i = 0; i < n; i++) {
+					assertEquals(threads + " threads, index " + i, 1,
+							visits.get(i));
+				}
+			}
+		}
+	}
+
+	public void testRuntimeExceptionPropagates() {
+		final IllegalStateException thrown = new IllegalStateException("42");
+		for (int threads : new int[] {1, 4}) {
+			try {
+				new HostWorkers(threads).forEach(10, failAt(7, thrown));
+				fail("No exception with " + threads + " threads");
+			} catch (IllegalStateException e) {
+				assertSame(thrown, e);
+			}
+		}
+	}
+
+	public void testErrorPropagates() {
+		final SimError thrown = new SimError("42");
+		for (int threads : new int[] {1, 4}) {
+			try {
+				new HostWorkers(threads).forEach(10, failAt(2, thrown));
+				fail("No error with " + threads + " threads");
+			} catch (SimError e) {
+				assertSame(thrown, e);
+			}
+		}
+	}
+
+	public void testCheckedExceptionIsWrapped() {
+		try {
+			new HostWorkers(4).forEach(10, failAt(9, new IOException("42")));
+			fail("No error");
+		} catch (SimError e) {
+			assertTrue(e.getMessage().contains("IOException: 42"));
+		}
+	}
+
+	/** Returns work that throws the given throwable at one index */
+	private static IntConsumer failAt(final int index, final Throwable t) {
+		return new IntConsumer() {
+			public void accept(int i) {
+				if (i == index) {
+					HostWorkersTest.<RuntimeException>sneakyThrow(t);
+				}
+			}
+		};
+	}
+
+	/** Throws also checked exceptions without declaring them */
+	@SuppressWarnings("unchecked")
+	private static <T extends Throwable> void sneakyThrow(Throwable t) throws T {
+		throw (T) t;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import core.DTNHost;
+import core.InteractionRecord;
+import core.InteractionStore;
+import core.NetworkInterface;
+
+public class InteractionStoreTest extends TestCase {
+	private DTNHost a, b;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		a = new TestDTNHost(new ArrayList<NetworkInterface>(), null, null);
+		b = new TestDTNHost(new ArrayList<NetworkInterface>(), null, null);
+	}
+
+	private InteractionRecord record(DTNHost target, int send, int receive,
+			double up, double down) {
+		return new InteractionRecord(target, send, receive, 1, 2, up, down);
+	}
+
+	public void testAggregates() {
+		InteractionStore s = new InteractionStore(2);
+		s.add(record(b, 1, 2, 0, 10));
+		s.add(record(a, 3, 4, 5, 20));
+		s.add(record(b, 5, 6, 30, 35));
+
+		InteractionStore.Aggregate t = s.getTotals();
+		assertNull(t.getTarget());
+		assertEquals(3, t.getNrofContacts());
+		assertEquals(9, t.getSend());
+		assertEquals(12, t.getReceive());
+		assertEquals(3, t.getCreatedByMe());
+		assertEquals(6, t.getCreatedByTarget());
+		assertEquals(30.0, t.getContactTime());
+
+		InteractionStore.Aggregate ab = s.getAggregate(b);
+		assertEquals(2, ab.getNrofContacts());
+		assertEquals(6, ab.getSend());
+		assertEquals(8, ab.getReceive());
+		assertEquals(15.0, ab.getContactTime());
+		assertEquals(2, s.getContactGraph().size());
+		assertEquals(15.0, s.getContactGraph().getWeight(b.getAddress()));
+		assertEquals(8.0, s.getContactGraph().getWeight(a.getAddress()));
+
+		/* peers in the order of their first contact */
+		Iterator<InteractionStore.Aggregate> i = s.getPeers().iterator();
+		assertSame(b, i.next().getTarget());
+		assertSame(a, i.next().getTarget());
+		assertFalse(i.hasNext());
+	}
+
+	public void testWindow() {
+		InteractionStore s = new InteractionStore(2);
+		for (int i = 0; i < 5; i++) {
+			s.add(record(a, i, 0, i, i + 1));
+		}
+		assertEquals(2, s.getNrofRecent());
+		assertEquals(3, s.getRecent().get(0).getSend());
+		assertEquals(4, s.getRecent().get(1).getSend());
+		assertEquals(10, s.getTotals().getSend());
+
+		InteractionStore none = new InteractionStore(0);
+		none.add(record(a, 1, 1, 0, 1));
+		assertTrue(none.getRecent().isEmpty());
+		assertEquals(1, none.getAggregate(a).getSend());
+
+		InteractionStore all = new InteractionStore(-1);
+		for (int i = 0; i < 500; i++) {
+			all.add(record(b, 1, 1, 0, 1));
+		}
+		assertEquals(500, all.getNrofRecent());
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.InterfaceTypes;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimError;
+
+/**
+ * Tests for the interface type IDs and the host's lookups by them
+ */
+public class InterfaceTypesTest extends TestCase {
+	private TestSettings ts;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		ts = new TestSettings();
+	}
+
+	public void testRegistry() {
+		int a = InterfaceTypes.idOf("typesTestA");
+		int b = InterfaceTypes.idOf("typesTestB");
+		assertTrue(a != b);
+		assertEquals(a, InterfaceTypes.idOf("typesTestA"));
+		assertEquals(a, InterfaceTypes.find("typesTestA"));
+		assertEquals(-1, InterfaceTypes.find("typesTestNotRegistered"));
+		assertEquals("typesTestB", InterfaceTypes.nameOf(b));
+		assertTrue(InterfaceTypes.size() > Math.max(a, b));
+		try {
+			InterfaceTypes.nameOf(InterfaceTypes.size());
+			fail("No error for an unknown ID");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testHostLookups() {
+		NetworkInterface protoA = createInterface("typesTestIfA", "typesTestV2V");
+		NetworkInterface protoB = createInterface("typesTestIfB", "typesTestV2R");
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < 3; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(protoA);
+			li.add(protoB);
+			hosts.add(new DTNHost(new ArrayList<MessageListener>(), null, "h",
+					li, new ModuleCommunicationBus(),
+					new StationaryMovement(new Coord(i, 0)), new PassiveRouter(ts)));
+		}
+		DTNHost h0 = hosts.get(0);
+		DTNHost h1 = hosts.get(1);
+		DTNHost h2 = hosts.get(2);
+		int v2v = InterfaceTypes.find("typesTestV2V");
+		int v2r = InterfaceTypes.find("typesTestV2R");
+		int ifA = InterfaceTypes.find("typesTestIfA");
+		int ifB = InterfaceTypes.find("typesTestIfB");
+		assertEquals(v2v, h0.getInterfaces().get(0).getConnectTypeId());
+		assertEquals(ifB, h0.getInterfaces().get(1).getInterfaceTypeId());
+
+		h0.forceConnection(h1, "typesTestIfA", true);
+		h0.forceConnection(h2, "typesTestIfB", true);
+
+		List<Connection> lc = h0.getConnectionsByInterface(v2v);
+		assertEquals(1, lc.size());
+		assertEquals(h1, lc.get(0).getOtherNode(h0));
+		assertEquals(lc, h0.getConnectionsByInterface("typesTestV2V"));
+		assertEquals(h2, h0.getNeighborsByInterface(v2r).get(0));
+		assertEquals(h0.getNeighborsByInterface(v2r),
+				h0.getNeighborsByInterface("typesTestV2R"));
+		assertEquals(1, h0.getConnectionsByInterfaceType(ifA).size());
+		assertEquals(h0.getConnectionsByInterfaceType(ifB),
+				h0.getConnectionsByInterfaceType("typesTestIfB"));
+		assertEquals(0, h1.getConnectionsByInterfaceType(ifB).size());
+
+		/* types the hosts have no interfaces for */
+		int other = InterfaceTypes.idOf("typesTestOther");
+		assertEquals(0, h0.getConnectionsByInterfaceType(other).size());
+		assertEquals(0, h0.getConnectionsByInterfaceType("typesTestNotRegistered").size());
+
+		h0.forceConnection(h2, "typesTestIfB", false);
+		assertEquals(0, h0.getNeighborsByInterface(v2r).size());
+		assertEquals(0, h0.getConnectionsByInterfaceType(ifB).size());
+		assertEquals(1, h0.getNeighborsByInterface(v2v).size());
+	}
+
+	private NetworkInterface createInterface(String type, String name) {
+		ts.setNameSpace(type);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(NetworkInterface.NAME_S, name);
+		ts.setNameSpace(null);
+		return new SimpleBroadcastInterface(new TestSettings(type));
+	}
+}
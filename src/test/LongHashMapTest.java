@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongHashMap;
+import util.LongHashSet;
+import core.Message;
+import core.MessageKey;
+
+public class LongHashMapTest extends TestCase {
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		MessageKey.reset();
+	}
+
+	public void testPutGetRemove() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		assertTrue(map.isEmpty());
+		assertNull(map.put(1L, "a"));
+		assertNull(map.put(-1L, "b"));
+		assertEquals("a", map.put(1L, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1L));
+		assertEquals("b", map.get(-1L));
+		assertNull(map.get(2L));
+		assertEquals("b", map.remove(-1L));
+		assertNull(map.remove(-1L));
+		assertFalse(map.containsKey(-1L));
+		assertEquals(1, map.size());
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(1L));
+	}
+
+	public void testAgainstHashMap() {
+		LongHashMap<Long> map = new LongHashMap<Long>();
+		Map<Long, Long> ref = new HashMap<Long, Long>();
+		Random r = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			long key = r.nextInt(500) << 32 | r.nextInt(4);
+			if (r.nextInt(3) == 0) {
+				assertEquals(ref.remove(key), map.remove(key));
+			} else {
+				assertEquals(ref.put(key, (long) i), map.put(key, (long) i));
+			}
+			assertEquals(ref.size(), map.size());
+		}
+		for (Map.Entry<Long, Long> e : ref.entrySet()) {
+			assertEquals(e.getValue(), map.get(e.getKey()));
+		}
+		final Map<Long, Long> seen = new HashMap<Long, Long>();
+		map.forEach((k, v) -> seen.put(k, v));
+		assertEquals(ref, seen);
+	}
+
+	public void testModificationDuringForEach() {
+		final LongHashMap<String> map = new LongHashMap<String>();
+		map.put(1, "a");
+		map.put(2, "b");
+		try {
+			map.forEach((k, v) -> map.put(k + 10, v));
+			fail("Modification during forEach not detected");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	public void testSet() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(5));
+		assertFalse(set.add(5));
+		assertTrue(set.contains(5));
+		assertTrue(set.remove(5));
+		assertFalse(set.remove(5));
+		assertTrue(set.isEmpty());
+	}
+
+	public void testMessageKeys() {
+		Message m1 = new Message(null, null, "M1", 100);
+		Message m2 = new Message(null, null, "M2", 100);
+		Message m1copy = m1.replicate();
+		assertEquals(m1.getKey(), m1copy.getKey());
+		assertEquals(m1.getIdIndex(), m1copy.getIdIndex());
+		assertFalse(m1.getKey() == m2.getKey());
+
+		m1copy.updateCopyVersion(m1.getCopyVersion() + 1);
+		assertFalse(m1.getKey() == m1copy.getKey());
+		assertEquals(m1.getIdIndex(), MessageKey.idIndexOf(m1copy.getKey()));
+		assertEquals(m1copy.getCopyVersion(), MessageKey.copyVersionOf(m1copy.getKey()));
+		assertEquals("M1_" + m1copy.getCopyVersion(), m1copy.getCopyId());
+		assertEquals("M1_" + m1.getCopyVersion(), m1.getCopyId());
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import routing.util.MaliciousRouters;
+import applications.MaliciousRouterDetector;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+
+public class MaliciousRouterDetectorTest extends TestCase {
+	private List<DTNHost> routers;
+	private Map<DTNHost, Map<String, Object>> features;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		routers = new ArrayList<DTNHost>();
+		features = new HashMap<DTNHost, Map<String, Object>>();
+		for (int i = 0; i < 50; i++) {
+			DTNHost h = new TestDTNHost(new ArrayList<NetworkInterface>(),
+					null, null);
+			routers.add(h);
+			features.put(h, new HashMap<String, Object>());
+			setFeatures(h, i % 3 == 0 ? 1 : 0, "x");
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		MaliciousRouterDetector.reset();
+		super.tearDown();
+	}
+
+	private void setFeatures(DTNHost h, int a, Object b) {
+		features.get(h).put("a", a);
+		features.get(h).put("b", b);
+	}
+
+	/** Malicious if a is 1 and b is missing (non-numeric) */
+	private MaliciousRouterDetector detector(int threads, boolean overlap) {
+		return new MaliciousRouterDetector(new String[] {"b", "a"},
+				() -> row -> (row[1] == 1.0 && Double.isNaN(row[0])) ? 1.0 : 0.0,
+				threads, overlap);
+	}
+
+	private MaliciousRouters detect(MaliciousRouterDetector d, int time) {
+		SimClock.getInstance().setTime(time);
+		return d.detect(routers, h -> features.get(h));
+	}
+
+	public void testSerialAndParallelMatch() {
+		MaliciousRouters serial = detect(detector(1, false), 101);
+		MaliciousRouters parallel = detect(detector(4, false), 101);
+		assertEquals(17, serial.size());
+		assertEquals(serial.getRouters(), parallel.getRouters());
+		assertTrue(serial.contains(routers.get(0)));
+		assertFalse(serial.contains(routers.get(1)));
+		assertEquals(1, serial.getVersion());
+		assertEquals(101, serial.getTime());
+	}
+
+	public void testOverlapIsOnePeriodLate() {
+		MaliciousRouterDetector d = detector(2, true);
+		assertSame(MaliciousRouters.EMPTY, detect(d, 101));
+		assertTrue(d.getPeriods().isEmpty());
+
+		setFeatures(routers.get(0), 0, "x");
+		MaliciousRouters first = detect(d, 202);
+		assertEquals(101, first.getTime());
+		assertTrue(first.contains(routers.get(0)));
+
+		MaliciousRouters second = detect(d, 303);
+		assertEquals(202, second.getTime());
+		assertFalse(second.contains(routers.get(0)));
+		assertEquals(first.getVersion() + 1, second.getVersion());
+		assertEquals(2, d.getPeriods().size());
+		assertEquals(16, d.getPeriods().get(1).getNrofMalicious());
+	}
+
+	public void testNumericFeatureIsNotMissing() {
+		setFeatures(routers.get(0), 1, 2.0);
+		MaliciousRouters result = detect(detector(1, false), 101);
+		assertFalse(result.contains(routers.get(0)));
+		assertEquals(16, result.size());
+	}
+}
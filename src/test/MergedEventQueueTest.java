@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MergedEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the k-way merge of event queues
+ */
+public class MergedEventQueueTest extends TestCase {
+
+	/** Queue of events with the given times; the events remember their queue */
+	private static class TimesQueue implements EventQueue {
+		private final double[] times;
+		private final int id;
+		private int next;
+
+		private TimesQueue(int id, double... times) {
+			this.id = id;
+			this.times = times;
+		}
+
+		public ExternalEvent nextEvent() {
+			if (this.next >= this.times.length) {
+				return new ExternalEvent(Double.MAX_VALUE);
+			}
+			return new IdEvent(this.times[this.next++], this.id);
+		}
+
+		public double nextEventsTime() {
+			return this.next < this.times.length ? this.times[this.next]
+					: Double.MAX_VALUE;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class IdEvent extends ExternalEvent {
+		private final int id;
+
+		private IdEvent(double time, int id) {
+			super(time);
+			this.id = id;
+		}
+	}
+
+	private List<EventQueue> randomQueues(Random rng, int n) {
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		for (int q = 0; q < n; q++) {
+			double[] times = new double[rng.nextInt(20)];
+			double t = 0;
+			for (int i = 0; i < times.length; i++) {
+				t += rng.nextInt(3); // plenty of ties
+				times[i] = t;
+			}
+			queues.add(new TimesQueue(q, times));
+		}
+		return queues;
+	}
+
+	/** Takes the next event like World did before, by scanning the queues */
+	private ExternalEvent scanNext(List<EventQueue> queues) {
+		EventQueue next = queues.get(0);
+		for (EventQueue eq : queues) {
+			if (eq.nextEventsTime() < next.nextEventsTime()) {
+				next = eq;
+			}
+		}
+		return next.nextEvent();
+	}
+
+	public void testSameOrderAsScan() {
+		Random rng = new Random(1);
+		for (int round = 0; round < 50; round++) {
+			int n = 1 + rng.nextInt(30);
+			long seed = rng.nextLong();
+			List<EventQueue> expected = randomQueues(new Random(seed), n);
+			MergedEventQueue merged =
+				new MergedEventQueue(randomQueues(new Random(seed), n));
+			while (true) {
+				ExternalEvent e = scanNext(expected);
+				assertEquals(e.getTime(), merged.nextEventsTime());
+				ExternalEvent m = merged.nextEvent();
+				assertEquals(e.getTime(), m.getTime());
+				if (e.getTime() == Double.MAX_VALUE) {
+					break;
+				}
+				assertEquals(((IdEvent) e).id, ((IdEvent) m).id);
+			}
+		}
+	}
+
+	public void testTies() {
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(new TimesQueue(0, 2));
+		queues.add(new TimesQueue(1, 1, 2));
+		queues.add(new TimesQueue(2, 1));
+		MergedEventQueue merged = new MergedEventQueue(queues);
+		int[] expected = {1, 2, 0, 1};
+		for (int id : expected) {
+			assertEquals(id, ((IdEvent) merged.nextEvent()).id);
+		}
+		assertEquals(Double.MAX_VALUE, merged.nextEventsTime());
+	}
+
+	public void testRefresh() {
+		ScheduledUpdatesQueue updates = new ScheduledUpdatesQueue();
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(updates);
+		queues.add(new TimesQueue(1, 5, 10));
+		MergedEventQueue merged = new MergedEventQueue(queues);
+		assertEquals(5.0, merged.nextEventsTime());
+
+		updates.addUpdate(3);
+		merged.refresh(0);
+		assertEquals(3.0, merged.nextEventsTime());
+		merged.nextEvent();
+		assertEquals(5.0, merged.nextEventsTime());
+
+		updates.addUpdate(10);
+		merged.refresh(0);
+		assertEquals(5.0, merged.nextEvent().getTime());
+		assertEquals(10.0, merged.nextEventsTime());
+		assertFalse(merged.nextEvent() instanceof IdEvent); // update wins the tie
+		assertEquals(10.0, merged.nextEvent().getTime());
+		assertEquals(Double.MAX_VALUE, merged.nextEventsTime());
+	}
+
+	public void testEmpty() {
+		MergedEventQueue merged = new MergedEventQueue(new ArrayList<EventQueue>());
+		assertEquals(Double.MAX_VALUE, merged.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, merged.nextEvent().getTime());
+	}
+}
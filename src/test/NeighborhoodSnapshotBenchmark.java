@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimClock;
+import routing.MessageRouter;
+import routing.util.NeighborhoodSnapshot;
+
+/**
+ * Compares the waiting time part of the STALB router score computed with a neighborhood snapshot
+ * with sorting the neighbors' buffers for every message and candidate, as
+ * MultipahTrajectoryTimeSpaceRouter did before. The routers are in a ring where every router is
+ * connected to the routers next to it, and every router scores its messages for all its
+ * neighbors. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.NeighborhoodSnapshotBenchmark [nrofRouters] [nrofMessages]
+ * [neighbors] [scoredMessages]
+ */
+public class NeighborhoodSnapshotBenchmark {
+
+	public static void main(String[] args) {
+		int nrofRouters = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int nrofMessages = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int neighbors = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		/* the old way is too slow for scoring every message of every router */
+		int scored = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "250000");
+		ts.setNameSpace(null);
+		ts.putSetting(MessageRouter.B_SIZE_S, "" + Integer.MAX_VALUE);
+		SimClock.getInstance().setTime(0);
+		TestUtils utils = new TestUtils(null, new ArrayList<MessageListener>(), ts);
+		NetworkInterface.reset();
+		DTNHost.reset();
+
+		Random rng = new Random(1);
+		DTNHost[] routers = new DTNHost[nrofRouters];
+		for (int i = 0; i < nrofRouters; i++) {
+			routers[i] = utils.createHost(new Coord(0, 0), "r" + i);
+			for (int j = 0; j < nrofMessages; j++) {
+				Message m = new Message(routers[i], routers[(i + 1) % nrofRouters],
+						"M" + rng.nextInt(nrofRouters * nrofMessages),
+						1000 + rng.nextInt(100000));
+				routers[i].createNewMessage(m);
+				m.setTtl(1 + rng.nextInt(300));
+			}
+		}
+		for (int i = 0; i < nrofRouters; i++) {
+			for (int d = 1; d <= neighbors; d++) {
+				routers[i].connect(routers[(i + d) % nrofRouters]);
+			}
+		}
+
+		for (int round = 0; round < 3; round++) { // first rounds are warmup
+			double[] sums = new double[2];
+			long[] ns = new long[2];
+			for (int impl = 0; impl < 2; impl++) {
+				long start = System.nanoTime();
+				for (DTNHost r : routers) {
+					sums[impl] += impl == 0 ? sorting(r, scored) : snapshot(r, scored);
+				}
+				ns[impl] = System.nanoTime() - start;
+			}
+			int n = nrofRouters * scored;
+			System.out.printf("round %d: sorting %.1f us/message, snapshot " +
+					"%.1f us/message, delay sums %s / %s%n", round,
+					ns[0] / 1e3 / n, ns[1] / 1e3 / n, sums[0], sums[1]);
+		}
+	}
+
+	/** Scores the router's first messages with one snapshot */
+	private static double snapshot(DTNHost r, int scored) {
+		NeighborhoodSnapshot s = new NeighborhoodSnapshot(h -> h.getConnections());
+		NeighborhoodSnapshot.Queue own = s.getQueue(r);
+		List<Connection> cns = s.getConnections(r);
+		double sum = 0;
+		for (int i = 0; i < scored; i++) {
+			Message m = own.get(i);
+			double waitTimeA = own.getSizeSum(own.positionOf(m) + 1) /
+					cns.get(0).getSpeed();
+			double waitTimeB = 0;
+			for (Connection c : cns) {
+				waitTimeB += s.getArrivalDelay(c.getOtherNode(r), c, m, waitTimeA);
+				sum += waitTimeA + waitTimeB;
+			}
+		}
+		return sum;
+	}
+
+	/** Scores the router's first messages sorting the buffers every time */
+	private static double sorting(DTNHost r, int scored) {
+		double sum = 0;
+		for (int i = 0; i < scored; i++) {
+			List<Message> ms = sort(r);
+			Message m = ms.get(i);
+			int mIndex = -1;
+			for (int j = 0; !ms.get(j).getId().equals(m.getId()); j++) {
+				mIndex = j;
+			}
+			mIndex++;
+			List<Connection> cns = r.getConnections();
+			double sumMsSize = 0;
+			for (int j = 0; j <= mIndex; j++) {
+				sumMsSize += ms.get(j).getSize();
+			}
+			double waitTimeA = sumMsSize / cns.get(0).getSpeed();
+			double waitTimeB = 0;
+			for (Connection c : cns) {
+				DTNHost to = c.getOtherNode(r);
+				List<Connection> toCs = new ArrayList<Connection>(to.getConnections());
+				toCs.remove(c);
+				List<Message> willArrivalTo = new ArrayList<Message>();
+				List<Double> willArrivalToSpeeds = new ArrayList<Double>();
+				for (Connection con : toCs) {
+					int sumMSize = 0;
+					double ts = con.getSpeed();
+					for (Message tmp : sort(con.getOtherNode(to))) {
+						if ((sumMSize + tmp.getSize()) / ts < waitTimeA) {
+							sumMSize += tmp.getSize();
+							willArrivalTo.add(tmp);
+							willArrivalToSpeeds.add(ts);
+						} else {
+							break;
+						}
+					}
+				}
+				willArrivalTo.sort((m1, m2) -> Integer.compare(m1.getTtl(),
+						m2.getTtl()));
+				for (int j = 0; j < willArrivalTo.size(); j++) {
+					Message tmp = willArrivalTo.get(j);
+					waitTimeB += tmp.getSize() / willArrivalToSpeeds.get(j);
+					if (tmp.getId().equals(m.getId())) {
+						break;
+					}
+				}
+				sum += waitTimeA + waitTimeB;
+			}
+		}
+		return sum;
+	}
+
+	private static List<Message> sort(DTNHost h) {
+		List<Message> ms = new ArrayList<Message>(h.getRouter().getMessageCollection());
+		ms.sort((m1, m2) -> Integer.compare(m1.getTtl(), m2.getTtl()));
+		return ms;
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import routing.util.NeighborhoodSnapshot;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+
+/**
+ * Tests for the neighborhood snapshot the STALB router scores its
+ * candidate next hops with
+ */
+public class NeighborhoodSnapshotTest extends AbstractRouterTest {
+	private static final double DELTA = 1e-9;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		ts.putSetting(MessageRouter.B_SIZE_S, "100000");
+		setRouterProto(new PassiveRouter(ts));
+		super.setUp();
+	}
+
+	public void testQueue() {
+		addMessage(h1, "a", 20, 5);
+		addMessage(h1, "b", 10, 7);
+		addMessage(h1, "c", 20, 3);
+		addMessage(h1, "d", 30, 1);
+
+		NeighborhoodSnapshot.Queue q = new NeighborhoodSnapshot.Queue(
+				h1.getRouter().getMessageCollection());
+		assertEquals(4, q.size());
+		assertEquals("b", q.get(0).getId());
+		assertEquals("a", q.get(1).getId());
+		assertEquals("c", q.get(2).getId());
+		assertEquals("d", q.get(3).getId());
+		assertEquals(7 + 5 + 3, q.getSizeSum(3));
+		assertEquals(2, q.indexOf(q.get(2)));
+		assertEquals(-1, q.indexOf(new Message(h1, h2, "x", 1)));
+		assertEquals(1, q.lowerBound(20));
+		assertEquals(3, q.upperBound(20));
+
+		/* sizes 7, 12, 15, 16 at speed 1 */
+		assertEquals(0, q.countSendable(1, 7));
+		assertEquals(1, q.countSendable(1, 7.5));
+		assertEquals(3, q.countSendable(1, 16));
+		assertEquals(4, q.countSendable(1, 100));
+	}
+
+	public void testArrivalDelay() {
+		Random rng = new Random(13);
+		DTNHost[] others = {h3, h4, h5, h6};
+		String[] ids = new String[30];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = "M" + i;
+		}
+		for (DTNHost h : others) {
+			for (int i = 0; i < 40; i++) {
+				/* the same ids in many buffers and TTL ties */
+				addMessage(h, ids[rng.nextInt(ids.length)], 1 + rng.nextInt(20),
+						1 + rng.nextInt(50));
+			}
+			h2.connect(h);
+		}
+		h1.connect(h2);
+		h3.connect(h4);
+		Connection from = h1.getConnections().get(0);
+		/* the connection to h1 in the middle of h2's connection list */
+		List<Connection> cs = new ArrayList<Connection>(h2.getConnections());
+		cs.remove(from);
+		cs.add(2, from);
+
+		NeighborhoodSnapshot snapshot = new NeighborhoodSnapshot(
+				h -> h == h2 ? cs : h.getConnections());
+		for (int i = 0; i < 200; i++) {
+			Message m = new Message(h1, h2, ids[rng.nextInt(ids.length)], 1);
+			double waitTime = rng.nextDouble() * 100;
+			assertEquals(referenceDelay(h2, cs, from, m, waitTime),
+					snapshot.getArrivalDelay(h2, from, m, waitTime), DELTA);
+			/* h3 and h4 see their connection from both ends */
+			Connection c = h3.getConnections().get(0);
+			assertEquals(referenceDelay(h3, h3.getConnections(), c, m, waitTime),
+					snapshot.getArrivalDelay(h3, c, m, waitTime), DELTA);
+			assertEquals(referenceDelay(h4, h4.getConnections(), from, m,
+					waitTime), snapshot.getArrivalDelay(h4, from, m, waitTime),
+					DELTA);
+		}
+		assertEquals(1.0, snapshot.getFreeBufferRatio(h1), DELTA);
+	}
+
+	private void addMessage(DTNHost h, String id, int ttl, int size) {
+		Message m = new Message(h, h0, id, size);
+		h.createNewMessage(m);
+		m.setTtl(ttl); // the router sets the default TTL
+	}
+
+	/**
+	 * The sending time computation of the STALB router before the snapshot
+	 */
+	private static double referenceDelay(DTNHost to, List<Connection> cs,
+			Connection c, Message m, double waitTimeA) {
+		List<Connection> toCs = new ArrayList<Connection>(cs);
+		toCs.remove(c);
+		List<Message> willArrivalTo = new ArrayList<Message>();
+		List<Double> willArrivalToSpeeds = new ArrayList<Double>();
+		for (Connection con : toCs) {
+			DTNHost other = con.getOtherNode(to);
+			List<Message> otherMs = new ArrayList<Message>(
+					other.getRouter().getMessageCollection());
+			otherMs.sort((m1, m2) -> Integer.compare(m1.getTtl(), m2.getTtl()));
+			int sumMSize = 0;
+			double ts = con.getSpeed();
+			for (Message tmp : otherMs) {
+				if ((sumMSize + tmp.getSize()) / ts < waitTimeA) {
+					sumMSize += tmp.getSize();
+					willArrivalTo.add(tmp);
+					willArrivalToSpeeds.add(ts);
+				} else {
+					break;
+				}
+			}
+		}
+		willArrivalTo.sort((m1, m2) -> Integer.compare(m1.getTtl(), m2.getTtl()));
+		double waitTimeB = 0;
+		for (int i = 0; i < willArrivalTo.size(); i++) {
+			Message tmp = willArrivalTo.get(i);
+			waitTimeB += tmp.getSize() / willArrivalToSpeeds.get(i);
+			if (tmp.getId().equals(m.getId())) {
+				break;
+			}
+		}
+		return waitTimeB;
+	}
+}
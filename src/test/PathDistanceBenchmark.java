@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.Path;
+import movement.ShortestPathMapBasedMovement;
+import util.PathDistance;
+import core.Coord;
+import core.Settings;
+
+/**
+ * Compares path similarity implementations on paths of {@link ShortestPathMapBasedMovement} with
+ * the map and group settings of a settings file (default_settings.txt if no file is given): the
+ * original full table with sqrt distances, {@link PathDistance#lcs(List, List)}, a grid based
+ * {@link PathDistance} instance without and with a band, and repeated calls with unchanged paths
+ * that hit the cache. Consecutive paths can be joined to get longer ones. Run from the project
+ * root, e.g.: java -cp target/classes:lib/* test.PathDistanceBenchmark [nrofPaths] [band]
+ * [pathsPerJoin] [settingsFile]
+ */
+public class PathDistanceBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int nrofPaths = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+		int band = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int join = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		Settings.init(args.length > 3 ? args[3] : null);
+
+		ShortestPathMapBasedMovement mm =
+			new ShortestPathMapBasedMovement(new Settings("Group"));
+		mm.getInitialLocation();
+		List<List<Coord>> paths = new ArrayList<List<Coord>>();
+		long total = 0;
+		int max = 0;
+		while (paths.size() < nrofPaths) {
+			List<Coord> joined = new ArrayList<Coord>();
+			for (int i = 0; i < join; i++) {
+				Path p = mm.getPath();
+				if (p != null) {
+					joined.addAll(p.getCoords());
+				}
+			}
+			if (joined.size() > 1) {
+				paths.add(joined);
+				total += joined.size();
+				max = Math.max(max, joined.size());
+			}
+		}
+		System.out.printf("%d paths, %.1f coordinates on average, max %d%n",
+				nrofPaths, (double) total / nrofPaths, max);
+
+		int pairs = nrofPaths * (nrofPaths - 1);
+		for (int round = 0; round < 3; round++) { // first rounds are warmup
+			double[] sums = new double[5];
+			long[] ns = new long[5];
+			for (int impl = 0; impl < sums.length; impl++) {
+				PathDistance pd = new PathDistance(PathDistance.DEF_NEARBY,
+						impl == 3 ? band : -1);
+				if (impl == 4) { // fill the cache, the timed calls hit it
+					for (List<Coord> b : paths) {
+						if (b != paths.get(0)) {
+							pd.similarity(paths.get(0), b);
+						}
+					}
+				}
+				long start = System.nanoTime();
+				for (List<Coord> path : paths) {
+					/* cached: the same first path over and over */
+					List<Coord> a = impl == 4 ? paths.get(0) : path;
+					for (List<Coord> b : paths) {
+						if (a == b) {
+							continue;
+						}
+						double s;
+						switch (impl) {
+						case 0: s = fullTable(a, b); break;
+						case 1: s = PathDistance.lcs(a, b); break;
+						default: s = pd.similarity(a, b);
+						}
+						sums[impl] += s;
+					}
+				}
+				ns[impl] = System.nanoTime() - start;
+			}
+			System.out.printf("round %d (us/pair): full table %.2f, two rows %.2f, " +
+					"grid %.2f, grid with band %d %.2f, cache hit %.2f%n", round,
+					ns[0] / 1e3 / pairs, ns[1] / 1e3 / pairs, ns[2] / 1e3 / pairs,
+					band, ns[3] / 1e3 / pairs, ns[4] / 1e3 / pairs);
+			System.out.printf("  similarity sums: %s %s %s %s%n", sums[0],
+					sums[1], sums[2], sums[3]);
+		}
+	}
+
+	/** The original implementation */
+	private static double fullTable(List<Coord> l1, List<Coord> l2) {
+		int len1 = l1.size();
+		int len2 = l2.size();
+		int[][] c = new int[len1 + 1][len2 + 1];
+		for (int i = 1; i <= len1; i++) {
+			for (int j = 1; j <= len2; j++) {
+				if (l1.get(i - 1).distance(l2.get(j - 1)) < PathDistance.DEF_NEARBY) {
+					c[i][j] = c[i - 1][j - 1] + 1;
+				} else {
+					c[i][j] = Math.max(c[i][j - 1], c[i - 1][j]);
+				}
+			}
+		}
+		return (double) c[len1][len2] / Math.min(len1, len2);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.PathDistance;
+import core.Coord;
+
+public class PathDistanceTest extends TestCase {
+
+	private static List<Coord> path(double... xy) {
+		List<Coord> l = new ArrayList<Coord>();
+		for (int i = 0; i < xy.length; i += 2) {
+			l.add(new Coord(xy[i], xy[i + 1]));
+		}
+		return l;
+	}
+
+	/** Random walk with steps of about the matching distance */
+	private static List<Coord> walk(Random rng, int n) {
+		List<Coord> l = new ArrayList<Coord>();
+		double x = rng.nextDouble() * 1000;
+		double y = rng.nextDouble() * 1000;
+		for (int i = 0; i < n; i++) {
+			x += (rng.nextDouble() - 0.5) * 200;
+			y += (rng.nextDouble() - 0.5) * 200;
+			l.add(new Coord(x, y));
+		}
+		return l;
+	}
+
+	/** The original implementation with the full table and sqrt distances */
+	private static double fullTable(List<Coord> l1, List<Coord> l2) {
+		return fullTable(l1, l2, -1);
+	}
+
+	private static double fullTable(List<Coord> l1, List<Coord> l2, int band) {
+		int len1 = l1.size();
+		int len2 = l2.size();
+		int[][] c = new int[len1 + 1][len2 + 1];
+		for (int i = 1; i <= len1; i++) {
+			for (int j = 1; j <= len2; j++) {
+				double diagonal = (i - 1) * (double) len2 / len1;
+				if ((band < 0 || Math.abs(j - 1 - diagonal) <= band) &&
+						l1.get(i - 1).distance(l2.get(j - 1)) < 100) {
+					c[i][j] = c[i - 1][j - 1] + 1;
+				} else {
+					c[i][j] = Math.max(c[i][j - 1], c[i - 1][j]);
+				}
+			}
+		}
+		return (double) c[len1][len2] / Math.min(len1, len2);
+	}
+
+	public void testSimple() {
+		List<Coord> a = path(0, 0, 500, 0, 1000, 0);
+		List<Coord> b = path(10, 10, 1000, 50, 2000, 2000, 3000, 3000);
+		assertEquals(2.0 / 3, PathDistance.lcs(a, b), 1e-12);
+		assertEquals(2.0 / 3, new PathDistance().similarity(a, b), 1e-12);
+		/* exactly at the limit is not nearby */
+		assertEquals(0.0, PathDistance.lcs(path(0, 0), path(100, 0)));
+		assertEquals(0.0, new PathDistance().similarity(path(0, 0), path(0, -100)));
+		assertTrue(Double.isNaN(new PathDistance().similarity(a, path())));
+	}
+
+	public void testSameAsFullTable() {
+		Random rng = new Random(7);
+		PathDistance pd = new PathDistance();
+		for (int round = 0; round < 200; round++) {
+			List<Coord> a = walk(rng, 1 + rng.nextInt(200));
+			List<Coord> b = walk(rng, 1 + rng.nextInt(200));
+			double expected = fullTable(a, b);
+			assertEquals(expected, PathDistance.lcs(a, b));
+			assertEquals(expected, pd.similarity(a, b));
+			assertEquals(expected, pd.similarity(b, a));
+		}
+	}
+
+	public void testBand() {
+		/* the only matching pair is far from the diagonal */
+		List<Coord> a = path(0, 0, 1000, 0, 2000, 0, 3000, 0);
+		List<Coord> b = path(5000, 0, 6000, 0, 7000, 0, 0, 10);
+		assertEquals(0.25, new PathDistance(100, -1).similarity(a, b));
+		assertEquals(0.25, new PathDistance(100, 3).similarity(a, b));
+		assertEquals(0.0, new PathDistance(100, 2).similarity(a, b));
+
+		/* long paths that use the grid */
+		Random rng = new Random(3);
+		for (int round = 0; round < 50; round++) {
+			int band = rng.nextInt(20);
+			PathDistance pd = new PathDistance(100, band);
+			a = walk(rng, 100 + rng.nextInt(200));
+			b = walk(rng, 100 + rng.nextInt(200));
+			assertEquals(fullTable(a, b, band), pd.similarity(a, b));
+		}
+	}
+
+	public void testCache() {
+		PathDistance pd = new PathDistance();
+		List<Coord> a = path(0, 0, 500, 0);
+		List<Coord> b = path(0, 0, 3000, 0);
+		assertEquals(0.5, pd.similarity(a, b));
+		/* a changed size, the result is recomputed */
+		a.add(new Coord(3000, 10));
+		assertEquals(1.0, pd.similarity(a, b));
+		/* b changed size */
+		b.add(new Coord(9000, 0));
+		b.add(new Coord(9000, 9000));
+		assertEquals(2.0 / 3, pd.similarity(a, b), 1e-12);
+		/* same sizes, but a coordinate replaced or moved */
+		b.set(1, new Coord(500, 0));
+		b.set(2, new Coord(3000, 0));
+		assertEquals(1.0, pd.similarity(a, b));
+		a.get(1).setLocation(-9000, 0);
+		assertEquals(2.0 / 3, pd.similarity(a, b), 1e-12);
+	}
+}
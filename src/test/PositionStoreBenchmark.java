@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.PositionStore;
+import core.SimClock;
+
+/**
+ * Compares moving hosts one by one and checking ranges through their Coord objects with moving
+ * them in a PositionStore and checking ranges from its arrays. Every round moves all hosts and
+ * checks the range of every host to the next hosts in the list. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.PositionStoreBenchmark [rounds]
+ */
+public class PositionStoreBenchmark {
+	private static final double UPDATE_INTERVAL = 0.1;
+	private static final double RANGE = 100;
+	private static final int NEIGHBORS = 16;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "bench");
+		ts.setNameSpace(null);
+
+		for (int nrofHosts : new int[] {500, 2000, 10000}) {
+			for (int round = 0; round < 3; round++) { // first rounds are warmup
+				double[] ns = new double[2];
+				long[] inRange = new long[2];
+				for (int impl = 0; impl < 2; impl++) {
+					SimClock.reset();
+					DTNHost.reset();
+					List<DTNHost> hosts = new ArrayList<DTNHost>();
+					for (int i = 0; i < nrofHosts; i++) {
+						hosts.add(new DTNHost(new ArrayList<MessageListener>(), null,
+								"h", new ArrayList<NetworkInterface>(),
+								new ModuleCommunicationBus(), new LineMovement(i),
+								new PassiveRouter(ts)));
+					}
+					PositionStore store = impl == 1 ? new PositionStore(hosts) : null;
+					long start = System.nanoTime();
+					for (int r = 0; r < rounds; r++) {
+						if (store == null) {
+							inRange[impl] += movePlain(hosts);
+						} else {
+							inRange[impl] += moveStore(hosts, store);
+						}
+						SimClock.getInstance().advance(UPDATE_INTERVAL);
+					}
+					ns[impl] = System.nanoTime() - start;
+				}
+				System.out.printf("%d hosts, round %d: hosts %.0f host moves/s, " +
+						"store %.0f host moves/s, pairs in range %d / %d%n",
+						nrofHosts, round, (double) nrofHosts * rounds / (ns[0] / 1e9),
+						(double) nrofHosts * rounds / (ns[1] / 1e9), inRange[0],
+						inRange[1]);
+			}
+		}
+	}
+
+	private static long movePlain(List<DTNHost> hosts) {
+		int n = hosts.size();
+		for (int i = 0; i < n; i++) {
+			hosts.get(i).move(UPDATE_INTERVAL);
+		}
+		long inRange = 0;
+		for (int i = 0; i < n; i++) {
+			Coord c = hosts.get(i).getLocation();
+			for (int k = 1; k <= NEIGHBORS; k++) {
+				if (c.distance(hosts.get((i + k) % n).getLocation()) <= RANGE) {
+					inRange++;
+				}
+			}
+		}
+		return inRange;
+	}
+
+	private static long moveStore(List<DTNHost> hosts, PositionStore store) {
+		int n = hosts.size();
+		double time = SimClock.getTime();
+		for (int i = 0; i < n; i++) {
+			if (!store.moveWithinLeg(i, time, UPDATE_INTERVAL)) {
+				hosts.get(i).move(UPDATE_INTERVAL);
+			}
+		}
+		long inRange = 0;
+		for (int i = 0; i < n; i++) {
+			double x = store.getX(i);
+			double y = store.getY(i);
+			for (int k = 1; k <= NEIGHBORS; k++) {
+				int j = (i + k) % n;
+				double dx = x - store.getX(j);
+				double dy = y - store.getY(j);
+				if (Math.sqrt(dx * dx + dy * dy) <= RANGE) {
+					inRange++;
+				}
+			}
+		}
+		return inRange;
+	}
+
+	/** Moves between random points of a 1000x1000 area */
+	private static class LineMovement extends MovementModel {
+		private final Random rng;
+		private final int seed;
+
+		private LineMovement(int seed) {
+			this.seed = seed;
+			this.rng = new Random(seed);
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(rng.nextDouble() * 1000, rng.nextDouble() * 1000);
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(1 + rng.nextDouble() * 10);
+			for (int i = 0; i < 10; i++) {
+				p.addWaypoint(new Coord(rng.nextDouble() * 1000,
+						rng.nextDouble() * 1000));
+			}
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime();
+		}
+
+		@Override
+		public LineMovement replicate() {
+			return new LineMovement(seed);
+		}
+	}
+}
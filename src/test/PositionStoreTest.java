@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.PositionStore;
+import core.SimClock;
+
+/**
+ * Tests for moving hosts with the PositionStore
+ */
+public class PositionStoreTest extends TestCase {
+	private static final int NROF_HOSTS = 20;
+	private static final double UPDATE_INTERVAL = 0.5;
+
+	private TestSettings ts;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+	}
+
+	private List<DTNHost> createHosts() {
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			hosts.add(new DTNHost(new ArrayList<MessageListener>(), null, "h",
+					new ArrayList<NetworkInterface>(), new ModuleCommunicationBus(),
+					new ZigzagMovement(i), new PassiveRouter(ts)));
+		}
+		return hosts;
+	}
+
+	public void testMoveLikeHosts() {
+		List<DTNHost> plain = createHosts();
+		List<DTNHost> stored = createHosts();
+		PositionStore store = new PositionStore(stored);
+		assertEquals(NROF_HOSTS, store.size());
+
+		int storeMoves = 0;
+		for (int round = 0; round < 200; round++) {
+			double time = SimClock.getTime();
+			for (int i = 0; i < NROF_HOSTS; i++) {
+				plain.get(i).move(UPDATE_INTERVAL);
+				if (store.moveWithinLeg(i, time, UPDATE_INTERVAL)) {
+					storeMoves++;
+				} else {
+					stored.get(i).move(UPDATE_INTERVAL);
+				}
+			}
+			SimClock.getInstance().advance(UPDATE_INTERVAL);
+
+			for (int i = 0; i < NROF_HOSTS; i++) {
+				Coord c = plain.get(i).getLocation();
+				/* the host's location object is a view of the store */
+				Coord s = stored.get(i).getLocation();
+				assertEquals(c.getX(), s.getX());
+				assertEquals(c.getY(), s.getY());
+				assertEquals(c.getX(), store.getX(i));
+				assertEquals(c.getY(), store.getY(i));
+			}
+		}
+		assertTrue(storeMoves > NROF_HOSTS * 100);
+	}
+
+	public void testSetLocation() {
+		List<DTNHost> hosts = createHosts();
+		PositionStore store = new PositionStore(hosts);
+		hosts.get(3).setLocation(new Coord(12, 34));
+		assertEquals(12.0, store.getX(3));
+		assertEquals(34.0, store.getY(3));
+
+		/* moves in the store update the new location object */
+		if (!store.moveWithinLeg(3, SimClock.getTime(), UPDATE_INTERVAL)) {
+			hosts.get(3).move(UPDATE_INTERVAL);
+		}
+		assertEquals(hosts.get(3).getLocation().getX(), store.getX(3));
+		assertEquals(hosts.get(3).getLocation().getY(), store.getY(3));
+	}
+
+	/** Moves along random zigzag paths with pauses between them */
+	private static class ZigzagMovement extends MovementModel {
+		private final Random rng;
+		private final int seed;
+
+		private ZigzagMovement(int seed) {
+			this.seed = seed;
+			this.rng = new Random(seed);
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(rng.nextDouble() * 100, rng.nextDouble() * 100);
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(0.5 + rng.nextDouble() * 10);
+			for (int i = 0; i < 5; i++) {
+				p.addWaypoint(new Coord(rng.nextDouble() * 100,
+						rng.nextDouble() * 100));
+			}
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + rng.nextDouble() * 5;
+		}
+
+		@Override
+		public ZigzagMovement replicate() {
+			return new ZigzagMovement(seed);
+		}
+	}
+}
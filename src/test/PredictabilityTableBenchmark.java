@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import routing.PassiveRouter;
+import routing.util.PredictabilityTable;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Compares the memory use and update cost of PRoPHET delivery predictabilities kept in boxed
+ * HashMaps that are aged eagerly (like the routers did before) and in PredictabilityTables. Every
+ * encounter updates the direct and transitive predictabilities of both hosts and reads the
+ * predictabilities of both for a few destinations. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.PredictabilityTableBenchmark [hosts] [encounters]
+ */
+public class PredictabilityTableBenchmark {
+	private static final double GAMMA = 0.98;
+	private static final double BETA = 0.25;
+	private static final double P_INIT = 0.75;
+	private static final int UNIT = 30;
+	private static final int READS = 20;
+
+	public static void main(String[] args) {
+		int nrofHosts = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int encounters = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setMessageRouterProto(new PassiveRouter(ts));
+		DTNHost[] hosts = new DTNHost[nrofHosts];
+		for (int i = 0; i < nrofHosts; i++) {
+			hosts[i] = utils.createHost();
+		}
+
+		for (int impl = 0; impl < 2; impl++) {
+			SimClock.reset();
+			Random rng = new Random(42);
+			Object[] tables = new Object[nrofHosts];
+			for (int i = 0; i < nrofHosts; i++) {
+				tables[i] = impl == 0 ? new MapPreds() : new PredictabilityTable(GAMMA, UNIT);
+			}
+			double sum = 0;
+			long start = System.nanoTime();
+			for (int e = 0; e < encounters; e++) {
+				if (e % (nrofHosts / 10) == 0) {
+					SimClock.getInstance().advance(1);
+				}
+				int a = rng.nextInt(nrofHosts);
+				int b = rng.nextInt(nrofHosts - 1);
+				b = b >= a ? b + 1 : b;
+				if (impl == 0) {
+					sum += encounter((MapPreds) tables[a], (MapPreds) tables[b], hosts[a], hosts[b],
+							hosts, rng);
+				} else {
+					sum += encounter((PredictabilityTable) tables[a],
+							(PredictabilityTable) tables[b], hosts[a], hosts[b], hosts, rng);
+				}
+			}
+			long ns = System.nanoTime() - start;
+			long bytes = usedMemory();
+			int entries = 0;
+			for (Object t : tables) {
+				entries += impl == 0 ? ((MapPreds) t).preds.size() : ((PredictabilityTable) t).size();
+			}
+			System.out.printf("%s: %.2f us/encounter, %.1f MB for %d entries (%.1f bytes/entry), "
+					+ "checksum %.6f%n", impl == 0 ? "HashMap" : "PredictabilityTable",
+					ns / 1e3 / encounters, bytes / 1e6, entries, (double) bytes / entries, sum);
+			tables = null;
+			usedMemory();
+		}
+	}
+
+	private static double encounter(MapPreds pa, MapPreds pb, DTNHost a, DTNHost b,
+			DTNHost[] hosts, Random rng) {
+		pa.updateDirect(b);
+		pb.updateDirect(a);
+		pa.updateTransitive(pb, a, b);
+		pb.updateTransitive(pa, b, a);
+		double sum = 0;
+		for (int i = 0; i < READS; i++) {
+			DTNHost d = hosts[rng.nextInt(hosts.length)];
+			sum += pa.get(d) - pb.get(d);
+		}
+		return sum;
+	}
+
+	private static double encounter(PredictabilityTable pa, PredictabilityTable pb, DTNHost a,
+			DTNHost b, DTNHost[] hosts, Random rng) {
+		double old = pa.get(b);
+		pa.put(b, old + (1 - old) * P_INIT);
+		old = pb.get(a);
+		pb.put(a, old + (1 - old) * P_INIT);
+		pa.updateTransitive(pb, a, pa.get(b), BETA);
+		pb.updateTransitive(pa, b, pb.get(a), BETA);
+		double sum = 0;
+		for (int i = 0; i < READS; i++) {
+			DTNHost d = hosts[rng.nextInt(hosts.length)];
+			sum += pa.get(d) - pb.get(d);
+		}
+		return sum;
+	}
+
+	private static long usedMemory() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/** The predictabilities as ProphetRouter kept them before PredictabilityTable */
+	private static class MapPreds {
+		private final Map<DTNHost, Double> preds = new HashMap<DTNHost, Double>();
+		private double lastAgeUpdate;
+
+		private double get(DTNHost host) {
+			age();
+			Double p = preds.get(host);
+			return p == null ? 0 : p;
+		}
+
+		private void updateDirect(DTNHost host) {
+			double old = get(host);
+			preds.put(host, old + (1 - old) * P_INIT);
+		}
+
+		private void updateTransitive(MapPreds other, DTNHost self, DTNHost host) {
+			double pForHost = get(host);
+			other.age();
+			for (Map.Entry<DTNHost, Double> e : other.preds.entrySet()) {
+				if (e.getKey() == self) {
+					continue;
+				}
+				double pOld = get(e.getKey());
+				preds.put(e.getKey(), pOld + (1 - pOld) * pForHost * e.getValue() * BETA);
+			}
+		}
+
+		private void age() {
+			double timeDiff = (SimClock.getTime() - lastAgeUpdate) / UNIT;
+			if (timeDiff == 0) {
+				return;
+			}
+			double mult = Math.pow(GAMMA, timeDiff);
+			for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
+				e.setValue(e.getValue() * mult);
+			}
+			lastAgeUpdate = SimClock.getTime();
+		}
+	}
+}
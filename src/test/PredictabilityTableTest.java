@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import routing.util.PredictabilityTable;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the dense predictability tables
+ */
+public class PredictabilityTableTest extends TestCase {
+	private static final double GAMMA = 0.98;
+	private static final double UNIT = 30;
+	private static final double DELTA = 1e-12;
+
+	private SimClock clock;
+	private DTNHost[] hosts;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		DTNHost.reset();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setMessageRouterProto(new PassiveRouter(ts));
+		hosts = new DTNHost[40];
+		for (int i = 0; i < hosts.length; i++) {
+			hosts[i] = utils.createHost();
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SimClock.reset();
+		super.tearDown();
+	}
+
+	public void testEntries() {
+		PredictabilityTable t = new PredictabilityTable();
+		assertEquals(0, t.size());
+		assertFalse(t.contains(hosts[3]));
+		assertEquals(0.0, t.get(hosts[3]));
+		assertFalse(t.addIfPresent(hosts[3], 1));
+		assertFalse(t.contains(hosts[3]));
+
+		t.put(hosts[3], 0.5);
+		t.put(hosts[35], 0.25); // grows the table
+		clock.setTime(100); // no aging
+		assertEquals(0.5, t.get(hosts[3]));
+		assertTrue(t.addIfPresent(hosts[35], 1));
+		assertEquals(1.25, t.get(hosts[35]));
+		t.put(hosts[3], 0.75);
+		assertEquals(2, t.size());
+
+		int i = t.next(0);
+		assertEquals(hosts[3], t.hostAt(i));
+		assertEquals(0.75, t.valueAt(i));
+		i = t.next(i + 1);
+		assertEquals(hosts[35], t.hostAt(i));
+		assertEquals(-1, t.next(i + 1));
+
+		t.scale(2);
+		assertEquals(1.5, t.get(hosts[3]));
+		assertEquals(2.5, t.get(hosts[35]));
+	}
+
+	public void testAging() {
+		PredictabilityTable t = new PredictabilityTable(GAMMA, UNIT);
+		t.put(hosts[1], 0.75);
+		clock.setTime(10);
+		t.put(hosts[2], 0.5);
+
+		clock.setTime(70);
+		assertEquals(0.75 * Math.pow(GAMMA, 70 / UNIT), t.get(hosts[1]), DELTA);
+		clock.setTime(100);
+		assertEquals(0.75 * Math.pow(GAMMA, 100 / UNIT), t.get(hosts[1]), DELTA);
+		assertEquals(0.5 * Math.pow(GAMMA, 90 / UNIT), t.get(hosts[2]), DELTA);
+
+		/* the old constant is used up to the change */
+		t.setGamma(0.5);
+		clock.setTime(130);
+		assertEquals(0.75 * Math.pow(GAMMA, 100 / UNIT) * 0.5, t.get(hosts[1]), DELTA);
+	}
+
+	/**
+	 * A new aging constant also applies to the time between the latest read and
+	 * the change, like when routers aged the whole table on every read
+	 */
+	public void testGammaChangeAfterRead() {
+		PredictabilityTable t = new PredictabilityTable(GAMMA, UNIT);
+		t.put(hosts[1], 0.75);
+		t.put(hosts[2], 0.5);
+		clock.setTime(60);
+		assertEquals(0.75 * Math.pow(GAMMA, 60 / UNIT), t.get(hosts[1]), DELTA);
+
+		clock.setTime(90);
+		t.setGamma(0.5);
+		clock.setTime(120);
+		/* host 1: old constant up to the read at 60, new one for the 60 s since */
+		assertEquals(0.75 * Math.pow(GAMMA, 60 / UNIT) * 0.25, t.get(hosts[1]), DELTA);
+		/* host 2 wasn't read, but the table was: same split */
+		assertEquals(0.5 * Math.pow(GAMMA, 60 / UNIT) * 0.25, t.get(hosts[2]), DELTA);
+	}
+
+	/** A read of a host without an entry counts as a read of the table */
+	public void testGammaChangeAfterMissedRead() {
+		PredictabilityTable t = new PredictabilityTable(GAMMA, UNIT);
+		t.put(hosts[1], 0.75);
+		clock.setTime(60);
+		assertEquals(0.0, t.get(hosts[3]));
+
+		clock.setTime(90);
+		t.setGamma(0.5);
+		clock.setTime(120);
+		/* old constant up to the missed read at 60, new one for the 60 s since */
+		assertEquals(0.75 * Math.pow(GAMMA, 60 / UNIT) * 0.25, t.get(hosts[1]), DELTA);
+
+		/* an update is a read too */
+		clock.setTime(150);
+		t.put(hosts[2], 0.5);
+		clock.setTime(180);
+		t.setGamma(GAMMA);
+		clock.setTime(210);
+		assertEquals(0.75 * Math.pow(GAMMA, 60 / UNIT) * 0.25 * 0.5 * Math.pow(GAMMA, 2),
+				t.get(hosts[1]), DELTA);
+	}
+
+	public void testTransitive() {
+		PredictabilityTable a = new PredictabilityTable(GAMMA, UNIT);
+		PredictabilityTable b = new PredictabilityTable(GAMMA, UNIT);
+		DTNHost self = hosts[0];
+		a.put(hosts[1], 0.5);
+		a.put(hosts[2], 0.2);
+		b.put(self, 0.9);
+		b.put(hosts[2], 0.4);
+		b.put(hosts[3], 0.6);
+
+		clock.setTime(UNIT);
+		double pAb = a.get(hosts[1]);
+		double pAc = a.get(hosts[2]);
+		double pBc = b.get(hosts[2]);
+		double pBd = b.get(hosts[3]);
+		a.updateTransitive(b, self, pAb, 0.25);
+		assertFalse(a.contains(self));
+		assertEquals(pAc + (1 - pAc) * pAb * pBc * 0.25, a.get(hosts[2]), DELTA);
+		assertEquals(pAb * pBd * 0.25, a.get(hosts[3]), DELTA);
+		assertEquals(pAb, a.get(hosts[1]), DELTA);
+
+		PredictabilityTable c = new PredictabilityTable(GAMMA, UNIT);
+		c.put(hosts[2], 0.3);
+		c.put(hosts[3], 0.01);
+		c.updateTransitiveMax(b, self, 0.5, 0.25);
+		assertFalse(c.contains(self));
+		assertEquals(0.3, c.get(hosts[2]), DELTA);
+		assertEquals(0.5 * pBd * 0.25, c.get(hosts[3]), DELTA);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.PrefetchingEventQueue;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares consuming a generated event trace through ExternalEventsQueue directly and through a
+ * PrefetchingEventQueue, with some work per event like the simulation does. The slow disk runs
+ * wait a while for every batch of events to model reading from a disk that isn't cached. Prints
+ * the run times and the stall and lead statistics of the prefetcher. Run from the project root,
+ * e.g.: java -cp target/classes:lib/* test.PrefetchBenchmark [events] [work per event, ns]
+ */
+public class PrefetchBenchmark {
+	private static final int PRELOAD = 500;
+	private static final long DISK_WAIT_MS = 2;
+
+	private static long sink;
+
+	public static void main(String[] args) throws IOException {
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 400000;
+		long work = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+		File f = File.createTempFile("prefetchBench", ".txt");
+		f.deleteOnExit();
+		TraceReaderBenchmark.writeEvents(f, events);
+
+		for (int round = 0; round < 2; round++) {
+			for (boolean slowDisk : new boolean[] {false, true}) {
+				for (boolean prefetch : new boolean[] {false, true}) {
+					EventQueue q = new ExternalEventsQueue(f.getPath(), PRELOAD);
+					if (slowDisk) {
+						q = new SlowQueue(q);
+					}
+					if (prefetch) {
+						q = new PrefetchingEventQueue(q, PRELOAD);
+					}
+					long start = System.nanoTime();
+					consume(q, work);
+					long ns = System.nanoTime() - start;
+					if (round > 0) {
+						System.out.printf("%s%s: %.3f s%s%n",
+								slowDisk ? "slow disk, " : "", prefetch ? "prefetch" : "direct",
+								ns / 1e9, prefetch ? ", " + ((PrefetchingEventQueue) q)
+										.getPrefetcher() : "");
+					}
+				}
+			}
+		}
+	}
+
+	private static void consume(EventQueue q, long work) {
+		while (q.nextEventsTime() != Double.MAX_VALUE) {
+			ExternalEvent e = q.nextEvent();
+			long end = System.nanoTime() + work;
+			long x = 0;
+			while (System.nanoTime() < end) {
+				x++;
+			}
+			sink += x + (long) e.getTime();
+		}
+	}
+
+	/** Queue that waits {@link #DISK_WAIT_MS} every {@link #PRELOAD} events */
+	private static class SlowQueue implements EventQueue {
+		private final EventQueue queue;
+		private int count;
+
+		private SlowQueue(EventQueue queue) {
+			this.queue = queue;
+		}
+
+		public ExternalEvent nextEvent() {
+			if (this.count++ % PRELOAD == 0) {
+				try {
+					Thread.sleep(DISK_WAIT_MS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return this.queue.nextEvent();
+		}
+
+		public double nextEventsTime() {
+			return this.queue.nextEventsTime();
+		}
+	}
+}
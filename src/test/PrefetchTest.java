@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BatchPrefetcher;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.ExternalMovementReader;
+import input.PrefetchingEventQueue;
+import input.PrefetchingMovementReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import util.Tuple;
+import core.Coord;
+import core.SimError;
+
+/**
+ * Tests for the prefetching event queue and movement reader
+ */
+public class PrefetchTest extends TestCase {
+	private static final int NROF_EVENTS = 1000;
+
+	private File write(String contents) throws IOException {
+		File f = File.createTempFile("prefetchTest", ".txt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		out.print(contents);
+		out.close();
+		return f;
+	}
+
+	private String events() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < NROF_EVENTS; i++) {
+			sb.append(i / 3).append(" CONN ").append(i % 7).append(' ')
+					.append(i % 5 + 7).append(i % 2 == 0 ? " up\n" : " down\n");
+		}
+		return sb.toString();
+	}
+
+	public void testEventOrder() throws IOException {
+		File f = write(events());
+		ExternalEventsQueue expected = new ExternalEventsQueue(f.getPath(), 50);
+		PrefetchingEventQueue q =
+			new PrefetchingEventQueue(new ExternalEventsQueue(f.getPath(), 50), 7);
+		for (int i = 0; i < NROF_EVENTS; i++) {
+			assertEquals(expected.nextEventsTime(), q.nextEventsTime());
+			ExternalEvent e = expected.nextEvent();
+			assertEquals(e.toString(), q.nextEvent().toString());
+		}
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, q.nextEvent().getTime());
+
+		BatchPrefetcher<ExternalEvent> p = q.getPrefetcher();
+		assertEquals(NROF_EVENTS / 7 + 2, p.getBatches()); // + partial and empty
+		assertTrue(p.getStalls() <= p.getBatches());
+		assertTrue(p.getMaxStallNanos() <= p.getStallNanos());
+	}
+
+	public void testEmptyQueue() throws IOException {
+		File f = write("# nothing\n");
+		PrefetchingEventQueue q =
+			new PrefetchingEventQueue(new ExternalEventsQueue(f.getPath(), 10), 10);
+		assertEquals(Double.MAX_VALUE, q.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, q.nextEvent().getTime());
+	}
+
+	public void testMovement() throws IOException {
+		StringBuilder sb = new StringBuilder("0 20 0 100 0 100\n");
+		for (int t = 0; t <= 20; t++) {
+			for (int id = 1; id <= 3; id++) {
+				sb.append(t).append(' ').append(id).append(' ').append(t + id)
+						.append(' ').append(2 * t).append('\n');
+			}
+		}
+		File f = write(sb.toString());
+		ExternalMovementReader expected = new ExternalMovementReader(f.getPath());
+		PrefetchingMovementReader r =
+			new PrefetchingMovementReader(new ExternalMovementReader(f.getPath()), 4);
+		r.setNormalize(true);
+		assertEquals(expected.getMaxX(), r.getMaxX());
+		List<Tuple<String, Coord>> e;
+		do {
+			e = expected.readNextMovements();
+			List<Tuple<String, Coord>> m = r.readNextMovements();
+			assertEquals(e.size(), m.size());
+			for (int i = 0; i < e.size(); i++) {
+				assertEquals(e.get(i).getKey(), m.get(i).getKey());
+				assertEquals(e.get(i).getValue(), m.get(i).getValue());
+			}
+			if (e.size() > 0) {
+				assertEquals(expected.getLastTimeStamp(), r.getLastTimeStamp());
+			}
+		} while (e.size() > 0);
+		assertEquals(0, r.readNextMovements().size());
+
+		try {
+			r.setNormalize(false);
+			fail("Normalizing changed after reading started");
+		} catch (SimError ok) {
+			// expected
+		}
+	}
+
+	public void testSourceError() {
+		final int[] calls = {0};
+		BatchPrefetcher<Integer> p = new BatchPrefetcher<Integer>("test", () -> {
+			if (calls[0]++ > 0) {
+				throw new IllegalStateException("broken");
+			}
+			return new ArrayList<Integer>(Arrays.asList(1, 2));
+		});
+		assertEquals(Arrays.asList(1, 2), p.take());
+		try {
+			p.take();
+			fail("The error of the source wasn't thrown");
+		} catch (IllegalStateException ok) {
+			assertEquals("broken", ok.getMessage());
+		}
+		assertEquals(0, p.take().size());
+	}
+
+	public void testPrefetchersOfRun() throws IOException {
+		BatchPrefetcher.reset();
+		assertEquals(0, BatchPrefetcher.getPrefetchers().size());
+		File f = write(events());
+		PrefetchingEventQueue q =
+			new PrefetchingEventQueue(new ExternalEventsQueue(f.getPath(), 50), 100);
+		while (q.nextEventsTime() != Double.MAX_VALUE) {
+			q.nextEvent();
+		}
+		List<BatchPrefetcher<?>> all = BatchPrefetcher.getPrefetchers();
+		assertEquals(1, all.size());
+		assertSame(q.getPrefetcher(), all.get(0));
+		assertTrue(all.get(0).toString().startsWith("EventPrefetcher: 11 batches"));
+
+		BatchPrefetcher.reset();
+		assertEquals(0, BatchPrefetcher.getPrefetchers().size());
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.MessageDelayReport;
+import report.MessageStatsReport;
+import report.Report;
+import util.QuantileSketch;
+import util.RunningStats;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the streaming statistics (QuantileSketch, RunningStats) and the streaming mode of the
+ * message statistics reports
+ */
+public class QuantileSketchTest extends TestCase {
+	private static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+
+	/** Checks the sketch's quantiles against the true ranks of the sorted values */
+	private void assertRanks(QuantileSketch sketch, double[] sorted) {
+		double error = sketch.getRankError();
+		assertTrue(error > 0 && error < 0.02);
+		for (double q : QUANTILES) {
+			double value = sketch.getQuantile(q);
+			int lo = Arrays.binarySearch(sorted, value);
+			assertTrue("Quantile " + q + " isn't an added value", lo >= 0);
+			double rank = (double) lo / sorted.length;
+			assertEquals("Rank of quantile " + q, q, rank, error);
+		}
+	}
+
+	public void testExactUntilCompaction() {
+		QuantileSketch sketch = new QuantileSketch();
+		List<Double> values = new ArrayList<Double>();
+		Random rng = new Random(1);
+		for (int i = 0; i < 150; i++) {
+			double v = rng.nextInt(1000) / 10.0;
+			sketch.add(v);
+			values.add(v);
+		}
+		Collections.sort(values);
+		assertEquals(0.0, sketch.getRankError());
+		assertEquals(values.get(values.size() / 2), sketch.getQuantile(0.5));
+		assertEquals(values.get(0), sketch.getMin());
+		assertEquals(values.get(149), sketch.getMax());
+
+		final List<Double> sorted = new ArrayList<Double>();
+		sketch.forEachSorted(new QuantileSketch.Consumer() {
+			public void accept(double value, long weight) {
+				assertEquals(1, weight);
+				sorted.add(value);
+			}
+		});
+		assertEquals(values, sorted);
+		assertTrue(Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+	}
+
+	public void testRankError() {
+		int n = 1000000;
+		QuantileSketch sketch = new QuantileSketch();
+		double[] values = new double[n];
+		Random rng = new Random(2);
+		for (int i = 0; i < n; i++) {
+			/* skewed, like message delays */
+			values[i] = -Math.log(1 - rng.nextDouble()) * 1000;
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+		assertEquals(n, sketch.getCount());
+		assertTrue("Too many items kept: " + sketch, sketch.getRetained() < 1000);
+		assertRanks(sketch, values);
+		assertEquals(values[0], sketch.getQuantile(0));
+		assertEquals(values[n - 1], sketch.getQuantile(1));
+
+		final long[] total = {0};
+		sketch.forEachSorted(new QuantileSketch.Consumer() {
+			public void accept(double value, long weight) {
+				total[0] += weight;
+			}
+		});
+		assertEquals(n, total[0]);
+	}
+
+	public void testMerge() {
+		int n = 200000;
+		QuantileSketch merged = new QuantileSketch();
+		double[] values = new double[4 * n];
+		Random rng = new Random(3);
+		for (int s = 0; s < 4; s++) {
+			QuantileSketch part = new QuantileSketch();
+			for (int i = 0; i < n; i++) {
+				double v = s * 100 + rng.nextGaussian() * 50;
+				values[s * n + i] = v;
+				part.add(v);
+			}
+			merged.merge(part);
+			assertEquals(n, part.getCount());
+		}
+		Arrays.sort(values);
+		assertEquals(4 * n, merged.getCount());
+		assertEquals(values[0], merged.getMin());
+		assertEquals(values[4 * n - 1], merged.getMax());
+		assertTrue("Too many items kept: " + merged, merged.getRetained() < 1000);
+		assertRanks(merged, values);
+	}
+
+	public void testRunningStats() {
+		RunningStats all = new RunningStats();
+		RunningStats a = new RunningStats();
+		RunningStats b = new RunningStats();
+		double[] values = {1e6 + 4, 1e6 + 7, 1e6 + 13, 1e6 + 16, 1e6 + 10};
+		for (int i = 0; i < values.length; i++) {
+			all.add(values[i]);
+			(i < 2 ? a : b).add(values[i]);
+		}
+		assertEquals(1e6 + 10, all.getMean(), 1e-9);
+		assertEquals(22.5, all.getVariance(), 1e-6);
+		a.merge(b);
+		assertEquals(5, a.getCount());
+		assertEquals(all.getMean(), a.getMean(), 1e-9);
+		assertEquals(all.getVariance(), a.getVariance(), 1e-6);
+
+		RunningStats empty = new RunningStats();
+		assertTrue(Double.isNaN(empty.getMean()));
+		empty.add(1);
+		assertTrue(Double.isNaN(empty.getVariance()));
+	}
+
+	/**
+	 * Runs the same messages through the message statistics reports and returns
+	 * their outputs
+	 */
+	private String[] runReports(boolean streaming, int nrofMessages) throws IOException {
+		TestSettings ts = new TestSettings();
+		File stats = File.createTempFile("statsTest", ".txt");
+		File delays = File.createTempFile("delayTest", ".txt");
+		stats.deleteOnExit();
+		delays.deleteOnExit();
+		ts.putSetting("MessageStatsReport.output", stats.getPath());
+		ts.putSetting("MessageDelayReport.output", delays.getPath());
+		ts.putSetting(Report.REPORT_NS + "." + Report.STREAMING_STATS_S, "" + streaming);
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		SimClock.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+		DTNHost h1 = utils.createHost(new Coord(0, 0));
+		DTNHost h2 = utils.createHost(new Coord(1, 0));
+
+		MessageStatsReport statsReport = new MessageStatsReport();
+		MessageDelayReport delayReport = new MessageDelayReport();
+		Random rng = new Random(4);
+		for (int i = 0; i < nrofMessages; i++) {
+			SimClock.getInstance().setTime(i);
+			Message m = new Message(h1, h2, "M" + i, 10);
+			statsReport.newMessage(m);
+			delayReport.newMessage(m);
+			SimClock.getInstance().setTime(i + rng.nextInt(100));
+			statsReport.messageTransferStarted(m, h1, h2);
+			if (i % 5 == 0) {
+				statsReport.messageDeleted(m, h1, true);
+			} else {
+				statsReport.messageTransferred(m, h1, h2, true);
+				delayReport.messageTransferred(m, h1, h2, true);
+			}
+		}
+		statsReport.done();
+		delayReport.done();
+		ts.putSetting(Report.REPORT_NS + "." + Report.STREAMING_STATS_S, "false");
+
+		return new String[] {new String(Files.readAllBytes(stats.toPath())),
+				new String(Files.readAllBytes(delays.toPath()))};
+	}
+
+	public void testReportsExactWithFewMessages() throws IOException {
+		String[] lists = runReports(false, 100);
+		String[] streamed = runReports(true, 100);
+
+		/* the streaming report has the same lines and the variances and errors */
+		List<String> listLines = Arrays.asList(lists[0].split("\n"));
+		List<String> streamedLines = new ArrayList<String>();
+		for (String line : streamed[0].split("\n")) {
+			if (line.contains("_var: ")) {
+				continue;
+			}
+			if (line.contains("_med_rank_err: ")) {
+				assertTrue(line.endsWith(": 0.0000"));
+				continue;
+			}
+			streamedLines.add(line);
+		}
+		assertEquals(listLines, streamedLines);
+		assertTrue(streamed[0].contains("latency_var: "));
+		assertEquals(lists[1], streamed[1]);
+	}
+
+	public void testReportsWithManyMessages() throws IOException {
+		String[] streamed = runReports(true, 20000);
+		assertTrue(streamed[0].contains("delivered: 16000"));
+		assertTrue(streamed[0].contains("latency_med_rank_err: 0.0133"));
+		assertTrue(streamed[1].contains("# normalized rank error 0.0133"));
+		String[] lines = streamed[1].trim().split("\n");
+		assertTrue(lines.length < 1000);
+		/* last line: the largest delay and the delivery probability */
+		assertEquals("0.8000", lines[lines.length - 1].split(" ")[1]);
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import junit.framework.TestCase;
+import report.ConnectivityONEReport;
+import report.EventLogReport;
+import report.Report;
+import report.ReportLine;
+import report.ReportSink;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the batched and asynchronous report output
+ */
+public class ReportSinkTest extends TestCase {
+	private static final int NROF_LINES = 100000;
+
+	private File tmp() throws IOException {
+		File f = File.createTempFile("sinkTest", ".txt");
+		f.deleteOnExit();
+		return f;
+	}
+
+	private byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			bytes.write(buf, 0, n);
+		}
+		in.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the lines to the sink and returns what a PrintWriter would write, as
+	 * decoded from the default charset
+	 */
+	private String writeLines(ReportSink sink) {
+		StringWriter expected = new StringWriter();
+		PrintWriter pw = new PrintWriter(expected);
+		for (int i = 0; i < NROF_LINES; i++) {
+			final int n = i;
+			if (i % 2 == 0) {
+				sink.add("line " + i);
+				pw.println("line " + i);
+			} else {
+				sink.add(new ReportLine() {
+					public void appendTo(StringBuilder sb) {
+						sb.append(n * 0.5).append(" \u00e4");
+					}
+				});
+				pw.println((n * 0.5) + " \u00e4");
+			}
+		}
+		sink.close();
+		pw.close();
+		return new String(expected.toString().getBytes());
+	}
+
+	public void testModes() throws IOException {
+		for (boolean async : new boolean[] {false, true}) {
+			File f = tmp();
+			String expected = writeLines(new ReportSink(f, ReportSink.NONE, async));
+			assertEquals(expected, new String(read(new FileInputStream(f))));
+
+			f = tmp();
+			expected = writeLines(new ReportSink(f, ReportSink.GZIP, async));
+			assertEquals(expected,
+					new String(read(new GZIPInputStream(new FileInputStream(f)))));
+
+			f = tmp();
+			expected = writeLines(new ReportSink(f, ReportSink.DEFLATE, async));
+			assertEquals(expected,
+					new String(read(new InflaterInputStream(new FileInputStream(f)))));
+		}
+	}
+
+	public void testAddAfterClose() throws IOException {
+		File f = tmp();
+		ReportSink sink = new ReportSink(f, ReportSink.NONE, true);
+		sink.add("a");
+		sink.close();
+		sink.add("b");
+		sink.close();
+		assertEquals("a" + System.lineSeparator(),
+				new String(read(new FileInputStream(f))));
+	}
+
+	public void testUnknownCompression() throws IOException {
+		try {
+			new ReportSink(tmp(), "zstd", false);
+			fail("No error for an unknown compression");
+		} catch (core.SimError ok) {
+			// expected
+		}
+	}
+
+	/** Runs the same events through the reports with and without async output */
+	private byte[] runReports(boolean async) throws IOException {
+		TestSettings ts = new TestSettings();
+		File events = tmp();
+		File conns = tmp();
+		ts.putSetting("EventLogReport.output", events.getPath());
+		ts.putSetting("ConnectivityONEReport.output", conns.getPath());
+		ts.putSetting(Report.REPORT_NS + "." + Report.ASYNC_OUTPUT_S, "" + async);
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+		DTNHost h1 = utils.createHost(new Coord(0, 0));
+		DTNHost h2 = utils.createHost(new Coord(1, 0));
+
+		EventLogReport log = new EventLogReport();
+		ConnectivityONEReport conn = new ConnectivityONEReport();
+		for (int i = 0; i < 1000; i++) {
+			SimClock.getInstance().setTime(i / 3.0);
+			Message m = new Message(h1, h2, "M" + i, 10);
+			log.newMessage(m);
+			log.hostsConnected(h1, h2);
+			conn.hostsConnected(h2, h1);
+			log.messageTransferStarted(m, h1, h2);
+			log.messageTransferred(m, h1, h2, i % 2 == 0);
+			log.messageDeleted(m, h1, true);
+			log.hostsDisconnected(h2, h1);
+			conn.hostsDisconnected(h1, h2);
+		}
+		log.done();
+		conn.done();
+		ts.putSetting(Report.REPORT_NS + "." + Report.ASYNC_OUTPUT_S, "false");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(read(new FileInputStream(events)));
+		out.write(read(new FileInputStream(conns)));
+		return out.toByteArray();
+	}
+
+	public void testSameOutput() throws IOException {
+		byte[] sync = runReports(false);
+		byte[] async = runReports(true);
+		assertTrue(sync.length > 0);
+		assertEquals(new String(sync), new String(async));
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import core.DTNSim;
+
+/**
+ * Runs a scenario with ten reports enabled, writing the reports synchronously and asynchronously
+ * (see report.Report#ASYNC_OUTPUT_S), prints the run times and checks that the reports are the
+ * same (only for scenarios that are deterministic). The reports replace the ones of the scenario.
+ * Every run is a new JVM. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.ReportWriterBenchmark default_settings.txt [rounds]
+ */
+public class ReportWriterBenchmark {
+	private static final String[] REPORTS = {"EventLogReport", "ConnectivityONEReport",
+		"ConnectivityDtnsim2Report", "MovementNs2Report", "MessageStatsReport",
+		"CreatedMessagesReport", "DeliveredMessagesReport", "MessageDelayReport",
+		"MessageReport", "ContactTimesReport"};
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: ReportWriterBenchmark <settings file> [rounds]");
+			System.exit(1);
+		}
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		File dir = Files.createTempDirectory("reportBench").toFile();
+		String java = System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java";
+
+		double[] best = {Double.MAX_VALUE, Double.MAX_VALUE};
+		for (int round = 0; round < rounds; round++) {
+			for (int async = 0; async < 2; async++) {
+				File overlay = new File(dir, "reports" + async + ".txt");
+				PrintWriter out = new PrintWriter(overlay);
+				out.println("Report.nrofReports = " + REPORTS.length);
+				for (int i = 0; i < REPORTS.length; i++) {
+					out.println("Report.report" + (i + 1) + " = " + REPORTS[i]);
+				}
+				out.println("Report.reportDir = " + new File(dir, "out" + async).getPath() + "/");
+				out.println("Scenario.name = bench");
+				out.println("Report.asyncOutput = " + (async == 1));
+				out.close();
+
+				ProcessBuilder pb = new ProcessBuilder(java, "-cp",
+						System.getProperty("java.class.path"), DTNSim.class.getName(),
+						DTNSim.BATCH_MODE_FLAG, "1", args[0], overlay.getPath());
+				pb.redirectErrorStream(true);
+				pb.redirectOutput(new File(dir, "log" + async + ".txt"));
+				long start = System.nanoTime();
+				if (pb.start().waitFor() != 0) {
+					throw new AssertionError("Simulation failed, see " + dir);
+				}
+				best[async] = Math.min(best[async], (System.nanoTime() - start) / 1e9);
+			}
+		}
+		System.out.printf("%d reports, best of %d: synchronous %.2f s, asynchronous %.2f s%n",
+				REPORTS.length, rounds, best[0], best[1]);
+
+		for (String report : REPORTS) {
+			File sync = new File(dir, "out0/bench_" + report + ".txt");
+			File async = new File(dir, "out1/bench_" + report + ".txt");
+			boolean same = Arrays.equals(Files.readAllBytes(sync.toPath()),
+					Files.readAllBytes(async.toPath()));
+			System.out.printf("%s: %d bytes, %s%n", report, sync.length(),
+					same ? "same" : "DIFFERENT");
+		}
+	}
+}
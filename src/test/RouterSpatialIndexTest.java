@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.RouterSpatialIndex;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+public class RouterSpatialIndexTest extends TestCase {
+	private List<DTNHost> routers;
+	private RouterSpatialIndex index;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		/* coarse grid coordinates so that there are many equal distances */
+		Random r = new Random(7);
+		routers = new ArrayList<DTNHost>();
+		for (int i = 0; i < 300; i++) {
+			routers.add(host(r.nextInt(40) * 25, r.nextInt(40) * 25, "R" + i));
+		}
+		index = new RouterSpatialIndex(routers);
+	}
+
+	private DTNHost host(double x, double y, String name) {
+		DTNHost h = new TestDTNHost(new ArrayList<NetworkInterface>(), null,
+				null);
+		h.setLocation(new Coord(x, y));
+		h.setName(name);
+		return h;
+	}
+
+	/** First router in the list with the smallest distance */
+	private DTNHost scanNearest(Coord c, List<DTNHost> excluded) {
+		DTNHost best = null;
+		double bestDist = Double.MAX_VALUE;
+		for (DTNHost h : routers) {
+			double d = h.getLocation().distance(c);
+			if (d < bestDist && !excluded.contains(h)) {
+				best = h;
+				bestDist = d;
+			}
+		}
+		return best;
+	}
+
+	public void testExact() {
+		assertEquals(300, index.size());
+		for (DTNHost h : routers) {
+			DTNHost found = index.getRouterAt(h.getLocation());
+			assertEquals(h.getLocation(), found.getLocation());
+			assertTrue(routers.indexOf(found) <= routers.indexOf(h));
+		}
+		assertNull(index.getRouterAt(new Coord(12.5, 0)));
+	}
+
+	public void testNearestMatchesScan() {
+		Random r = new Random(11);
+		List<DTNHost> none = new ArrayList<DTNHost>();
+		for (int i = 0; i < 500; i++) {
+			Coord c = new Coord(r.nextInt(1100) - 50, r.nextInt(1100) - 50);
+			assertSame(scanNearest(c, none), index.getNearest(c));
+		}
+	}
+
+	public void testKNearestMatchesScan() {
+		Random r = new Random(13);
+		for (int i = 0; i < 100; i++) {
+			Coord c = new Coord(r.nextDouble() * 1000, r.nextDouble() * 1000);
+			List<DTNHost> expected = new ArrayList<DTNHost>();
+			for (int j = 0; j < 8; j++) {
+				expected.add(scanNearest(c, expected));
+			}
+			assertEquals(expected, index.getNearest(c, 8));
+		}
+	}
+
+	public void testSmallIndexes() {
+		RouterSpatialIndex empty = new RouterSpatialIndex(new ArrayList<DTNHost>());
+		assertNull(empty.getNearest(new Coord(0, 0)));
+		assertNull(empty.getRouterAt(new Coord(0, 0)));
+		assertTrue(empty.getNearest(new Coord(0, 0), 3).isEmpty());
+
+		assertEquals(300, index.getNearest(new Coord(0, 0), 1000).size());
+		assertTrue(index.getNearest(new Coord(0, 0), 0).isEmpty());
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.RouterStatusHistory;
+import core.Message;
+
+public class RouterStatusHistoryTest extends TestCase {
+	private RouterStatusHistory h;
+	private Message m1, m2, m2copy;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		h = new RouterStatusHistory(2);
+		m1 = new Message(null, null, "M1", 100);
+		m2 = new Message(null, null, "M2", 100);
+		m2copy = m2.replicate();
+		m2copy.updateCopyVersion(m2.getCopyVersion() + 1);
+	}
+
+	private void add(int id, Message... msgs) {
+		h.add(id, false, true, id / 10.0, 0.5, 0.1, Arrays.asList(msgs));
+	}
+
+	public void testNewestFirst() {
+		add(1, m1);
+		add(2, m1, m2);
+		assertEquals(2, h.size());
+		assertEquals(2, h.get(0).getId());
+		assertEquals(0.1, h.get(1).getBuffer());
+		assertEquals(2, h.get(0).getNrofMessages());
+		assertTrue(h.get(0).getPreStatus());
+	}
+
+	public void testOldestIsOverwritten() {
+		add(1, m1);
+		add(2, m2);
+		add(3);
+		assertEquals(2, h.size());
+		assertEquals(3, h.getNrofAdded());
+		assertEquals(2, h.get(1).getId());
+		try {
+			h.get(2);
+			fail("Overwritten snapshot returned");
+		} catch (IndexOutOfBoundsException e) {
+			// ok
+		}
+
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Iterator<RouterStatusHistory.Status> i = h.iterator(); i.hasNext();) {
+			ids.add(i.next().getId());
+		}
+		assertEquals(Arrays.asList(2, 3), ids);
+	}
+
+	public void testContains() {
+		add(1, m2, m1);
+		add(2, m1);
+		assertTrue(h.contains(1, m1));
+		assertTrue(h.contains(1, m2));
+		assertFalse(h.contains(1, m2copy));
+		assertTrue(h.contains(0, m1));
+		assertFalse(h.contains(0, m2));
+	}
+
+	public void testContainsWithCollidingIdHashes() {
+		Message aa = new Message(null, null, "Aa", 100);
+		Message bb = new Message(null, null, "BB", 100);
+		assertEquals(aa.getId().hashCode(), bb.getId().hashCode());
+		add(1, aa);
+		assertTrue(h.contains(0, aa));
+		assertFalse(h.contains(0, bb));
+	}
+}
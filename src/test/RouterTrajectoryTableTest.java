@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.Path;
+import movement.RouterTrajectoryTable;
+import movement.map.MapNode;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimError;
+
+public class RouterTrajectoryTableTest extends TestCase {
+	private List<MapNode> nodes;
+	private List<DTNHost> hosts;
+	private DTNHost r0, r1, r2, r3, v;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		/* r0 - r1 - r2 - r3, r0 - r3 is not linked */
+		nodes = new ArrayList<MapNode>();
+		for (int i = 0; i < 4; i++) {
+			nodes.add(new MapNode(new Coord(i * 100, 0)));
+		}
+		for (int i = 0; i < 3; i++) {
+			nodes.get(i).addNeighbor(nodes.get(i + 1));
+			nodes.get(i + 1).addNeighbor(nodes.get(i));
+		}
+
+		v = host(100, 0, "V0");
+		r0 = host(0, 0, "R0");
+		r1 = host(100, 0, "R1");
+		r2 = host(200, 0, "R2");
+		r3 = host(300, 0, "R3");
+		hosts = Arrays.asList(v, r0, r1, r2, r3);
+	}
+
+	private DTNHost host(double x, double y, String name) {
+		DTNHost h = new TestDTNHost(new ArrayList<NetworkInterface>(), null,
+				null);
+		h.setLocation(new Coord(x, y));
+		h.setName(name);
+		return h;
+	}
+
+	public void testPath() {
+		RouterTrajectoryTable t = new RouterTrajectoryTable(nodes, hosts, 0);
+		List<DTNHost> routers = new ArrayList<DTNHost>();
+		Path p = t.getPath(r0, r3, routers);
+
+		assertEquals(Arrays.asList(r0, r1, r2, r3), routers);
+		assertEquals(4, p.getCoords().size());
+		assertEquals(new Coord(200, 0), p.getCoords().get(2));
+
+		routers.clear();
+		t.getPath(r2, r1, routers);
+		assertEquals(Arrays.asList(r2, r1), routers);
+	}
+
+	public void testPathsAreStored() {
+		RouterTrajectoryTable t = new RouterTrajectoryTable(nodes, hosts, 0);
+		Path p1 = t.getPath(r0, r3, new ArrayList<DTNHost>());
+		Path p2 = t.getPath(r0, r3, new ArrayList<DTNHost>());
+
+		assertNotSame(p1, p2);
+		assertEquals(p1.getCoords(), p2.getCoords());
+		assertEquals(1, t.getMisses());
+		assertEquals(1, t.getHits());
+		assertEquals(1, t.getNrofPaths());
+		assertTrue(t.getMemoryUse() > 0);
+	}
+
+	public void testLeastRecentlyUsedIsDropped() {
+		RouterTrajectoryTable t = new RouterTrajectoryTable(nodes, hosts, 2);
+		t.getPath(r0, r3, new ArrayList<DTNHost>());
+		t.getPath(r1, r3, new ArrayList<DTNHost>());
+		t.getPath(r0, r3, new ArrayList<DTNHost>()); // r1->r3 is now eldest
+		t.getPath(r2, r3, new ArrayList<DTNHost>());
+		assertEquals(2, t.getNrofPaths());
+		assertEquals(1, t.getEvictions());
+
+		t.getPath(r0, r3, new ArrayList<DTNHost>());
+		assertEquals(2, t.getHits());
+		t.getPath(r1, r3, new ArrayList<DTNHost>());
+		assertEquals(4, t.getMisses());
+	}
+
+	public void testPrecompute() {
+		RouterTrajectoryTable t = new RouterTrajectoryTable(nodes, hosts, 0);
+		t.precompute();
+		assertEquals(16, t.getNrofPaths());
+		t.getPath(r3, r0, new ArrayList<DTNHost>());
+		assertEquals(0, t.getMisses());
+		assertEquals(1, t.getHits());
+	}
+
+	public void testNotOnMesh() {
+		RouterTrajectoryTable t = new RouterTrajectoryTable(nodes, hosts, 0);
+		DTNHost other = host(50, 50, "R9");
+		try {
+			t.getPath(other, r0, new ArrayList<DTNHost>());
+			fail("Host outside of the mesh accepted");
+		} catch (SimError e) {
+			// ok
+		}
+	}
+}
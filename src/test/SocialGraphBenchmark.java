@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+import core.DTNHost;
+import core.InteractionRecord;
+import core.InteractionStore;
+import core.NetworkInterface;
+import util.WeightedAdjacency;
+import util.WeightedJaccardSimilarity;
+
+/**
+ * Compares the contact rate of SocialApplication's interaction similarity computed from the
+ * incrementally updated contact graph with rebuilding a jgrapht graph from both hosts' histories
+ * for every contact, as SocialApplication did before. Every contact computes the similarity of two
+ * random hosts and records the finished contact to both hosts. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.SocialGraphBenchmark [nrofHosts] [nrofContacts]
+ */
+public class SocialGraphBenchmark {
+
+	public static void main(String[] args) {
+		int nrofHosts = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int nrofContacts = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+		new TestSettings();
+
+		for (int round = 0; round < 3; round++) { // first rounds are warmup
+			double[] sums = new double[2];
+			long[] ns = new long[2];
+			for (int impl = 0; impl < 2; impl++) {
+				Random rng = new Random(round);
+				DTNHost[] hosts = new DTNHost[nrofHosts];
+				for (int i = 0; i < nrofHosts; i++) {
+					hosts[i] = new TestDTNHost(new ArrayList<NetworkInterface>(),
+							null, null);
+				}
+				long start = System.nanoTime();
+				for (int c = 0; c < nrofContacts; c++) {
+					DTNHost a = hosts[rng.nextInt(nrofHosts)];
+					DTNHost b = hosts[rng.nextInt(nrofHosts)];
+					if (a == b) {
+						continue;
+					}
+					sums[impl] += impl == 0 ? rebuild(a, b) : incremental(a, b);
+					int send = rng.nextInt(3);
+					int receive = rng.nextInt(3);
+					a.getInteractionStore().add(
+							new InteractionRecord(b, send, receive, 0, 0, c, c + 1));
+					b.getInteractionStore().add(
+							new InteractionRecord(a, receive, send, 0, 0, c, c + 1));
+				}
+				ns[impl] = System.nanoTime() - start;
+			}
+			System.out.printf("round %d: rebuild %.0f contacts/s, incremental " +
+					"%.0f contacts/s, similarity sums %s / %s%n", round,
+					nrofContacts / (ns[0] / 1e9), nrofContacts / (ns[1] / 1e9),
+					sums[0], sums[1]);
+		}
+	}
+
+	private static double incremental(DTNHost host, DTNHost peer) {
+		return WeightedAdjacency.jaccard(
+				host.getInteractionStore().getContactGraph(),
+				peer.getInteractionStore().getContactGraph());
+	}
+
+	private static double rebuild(DTNHost host, DTNHost peer) {
+		SimpleDirectedWeightedGraph<DTNHost, DefaultWeightedEdge> g =
+			new SimpleDirectedWeightedGraph<DTNHost, DefaultWeightedEdge>(
+					DefaultWeightedEdge.class);
+		populate(host, g);
+		populate(peer, g);
+		return new WeightedJaccardSimilarity<DTNHost, DefaultWeightedEdge>(g)
+				.predict(host, peer);
+	}
+
+	private static void populate(DTNHost host,
+			SimpleDirectedWeightedGraph<DTNHost, DefaultWeightedEdge> g) {
+		g.addVertex(host);
+		for (InteractionStore.Aggregate i :
+				host.getInteractionStore().getPeers()) {
+			DefaultWeightedEdge e = Graphs.addEdgeWithVertices(g, host,
+					i.getTarget());
+			if (e == null) {
+				e = g.getEdge(host, i.getTarget());
+			}
+			g.setEdgeWeight(e, g.getEdgeWeight(e) + i.getSend() + i.getReceive());
+		}
+	}
+}
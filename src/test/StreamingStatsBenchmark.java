@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import util.QuantileSketch;
+import util.RunningStats;
+
+/**
+ * Compares the memory and time MessageStatsReport needs for the latencies of a number of messages
+ * when it keeps all values (creation time table and value lists, sorted at the end) and with
+ * streaming statistics (running mean and variance and a quantile sketch). Prints the heap in use
+ * before the medians are computed, the run time and the median estimate with its true rank. Run
+ * from the project root, e.g.:
+ * java -Xmx2g -cp target/classes:lib/* test.StreamingStatsBenchmark [messages]
+ */
+public class StreamingStatsBenchmark {
+	/** keeps the structures reachable until the heap has been measured */
+	private static Object[] kept;
+
+	public static void main(String[] args) {
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		/* streaming first, so that the garbage of the other run doesn't disturb the measurement */
+		for (int streaming = 1; streaming >= 0; streaming--) {
+			kept = null;
+			long baseline = usedHeap();
+			long start = System.nanoTime();
+			double median = streaming == 0 ? allValues(messages, baseline)
+					: streaming(messages, baseline);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf(", %.2f s, median %.4f (true rank %.4f)%n", seconds, median,
+					rank(median, messages));
+		}
+	}
+
+	private static double allValues(int messages, long baseline) {
+		Random rng = new Random(1);
+		Map<String, Double> creationTimes = new HashMap<String, Double>();
+		List<Double> latencies = new ArrayList<Double>();
+		for (int i = 0; i < messages; i++) {
+			creationTimes.put("M" + i, (double) i);
+			latencies.add(i + delay(rng) - creationTimes.get("M" + i));
+		}
+		kept = new Object[] {creationTimes, latencies};
+		System.out.printf("all values: %,.0f kB", (usedHeap() - baseline) / 1e3);
+		Collections.sort(latencies);
+		return latencies.get(latencies.size() / 2);
+	}
+
+	private static double streaming(int messages, long baseline) {
+		Random rng = new Random(1);
+		RunningStats stats = new RunningStats();
+		QuantileSketch sketch = new QuantileSketch();
+		for (int i = 0; i < messages; i++) {
+			double latency = delay(rng);
+			stats.add(latency);
+			sketch.add(latency);
+		}
+		kept = new Object[] {stats, sketch};
+		System.out.printf("streaming: %,.0f kB", (usedHeap() - baseline) / 1e3);
+		return sketch.getQuantile(0.5);
+	}
+
+	private static double delay(Random rng) {
+		return -Math.log(1 - rng.nextDouble()) * 1000;
+	}
+
+	/** Returns the true normalized rank of a value among the generated delays */
+	private static double rank(double value, int messages) {
+		Random rng = new Random(1);
+		long below = 0;
+		for (int i = 0; i < messages; i++) {
+			if (delay(rng) < value) {
+				below++;
+			}
+		}
+		return (double) below / messages;
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
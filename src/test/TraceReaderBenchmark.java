@@ -0,0 +1,318 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.ExternalEventsReader;
+import input.ExternalMovementReader;
+import input.MessageCreateEvent;
+import input.MessageDeleteEvent;
+import input.MessageRelayEvent;
+import input.StandardEventsReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+
+import util.Tuple;
+import core.Coord;
+
+/**
+ * Compares the throughput of the Scanner based trace readers (like StandardEventsReader and
+ * ExternalMovementReader were before) and the byte-level readers. Reads the event traces in ee/
+ * and a generated event and movement trace, checks that both readers produce the same events
+ * and prints the lines read per second. Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.TraceReaderBenchmark [generated lines]
+ */
+public class TraceReaderBenchmark {
+	private static final int PRELOAD = 500;
+	private static final int EE_ROUNDS = 20;
+
+	public static void main(String[] args) throws IOException {
+		Locale.setDefault(Locale.US);
+		int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+		File[] ee = new File("ee").listFiles();
+		if (ee != null) {
+			Arrays.sort(ee);
+			for (File f : ee) {
+				for (int impl = 0; impl < 2; impl++) {
+					readEvents(f, impl, EE_ROUNDS); // warm up
+				}
+				benchmarkEvents(f, EE_ROUNDS);
+			}
+		}
+
+		File events = File.createTempFile("eventsBench", ".txt");
+		events.deleteOnExit();
+		writeEvents(events, lines);
+		benchmarkEvents(events, 1);
+
+		File moves = File.createTempFile("movesBench", ".txt");
+		moves.deleteOnExit();
+		writeMoves(moves, lines);
+		String[] result = new String[2];
+		for (int impl = 0; impl < 2; impl++) {
+			long start = System.nanoTime();
+			StringBuilder sb = new StringBuilder();
+			int n = readMoves(moves, impl, sb);
+			long ns = System.nanoTime() - start;
+			result[impl] = sb.toString();
+			System.out.printf("%s %s: %d lines, %.0f lines/s%n", moves.getName(),
+					impl == 0 ? "Scanner" : "tokenizer", n, n / (ns / 1e9));
+		}
+		check(result);
+	}
+
+	private static void benchmarkEvents(File f, int rounds) {
+		String[] result = new String[2];
+		for (int impl = 0; impl < 2; impl++) {
+			long start = System.nanoTime();
+			StringBuilder sb = new StringBuilder();
+			int n = 0;
+			for (int r = 0; r < rounds; r++) {
+				sb.setLength(0);
+				n += readEvents(f, impl, sb);
+			}
+			long ns = System.nanoTime() - start;
+			result[impl] = sb.toString();
+			System.out.printf("%s %s: %d events, %.0f lines/s%n", f.getName(),
+					impl == 0 ? "Scanner" : "tokenizer", n / rounds, n / (ns / 1e9));
+		}
+		check(result);
+	}
+
+	private static void check(String[] result) {
+		if (!result[0].equals(result[1])) {
+			throw new AssertionError("The readers produced different events");
+		}
+	}
+
+	private static void readEvents(File f, int impl, int rounds) {
+		for (int r = 0; r < rounds; r++) {
+			readEvents(f, impl, new StringBuilder());
+		}
+	}
+
+	private static int readEvents(File f, int impl, StringBuilder out) {
+		ExternalEventsReader reader = impl == 0 ? new LegacyEventsReader(f)
+				: new StandardEventsReader(f);
+		int n = 0;
+		List<ExternalEvent> events;
+		do {
+			events = reader.readEvents(PRELOAD);
+			for (ExternalEvent e : events) {
+				out.append(e).append('\n');
+			}
+			n += events.size();
+		} while (events.size() > 0);
+		reader.close();
+		return n;
+	}
+
+	private static int readMoves(File f, int impl, StringBuilder out) {
+		int n = 0;
+		List<Tuple<String, Coord>> moves;
+		if (impl == 0) {
+			LegacyMovementReader reader = new LegacyMovementReader(f.getPath());
+			while ((moves = reader.readNextMovements()).size() > 0) {
+				n += append(moves, reader.lastTimeStamp, out);
+			}
+		} else {
+			ExternalMovementReader reader = new ExternalMovementReader(f.getPath());
+			while ((moves = reader.readNextMovements()).size() > 0) {
+				n += append(moves, reader.getLastTimeStamp(), out);
+			}
+		}
+		return n;
+	}
+
+	private static int append(List<Tuple<String, Coord>> moves, double time, StringBuilder out) {
+		out.append(time).append('\n');
+		for (Tuple<String, Coord> t : moves) {
+			out.append(t.getKey()).append(' ').append(t.getValue()).append('\n');
+		}
+		return moves.size();
+	}
+
+	static void writeEvents(File f, int lines) throws IOException {
+		Random rng = new Random(42);
+		PrintWriter out = new PrintWriter(f);
+		double time = 0;
+		for (int i = 0; i < lines; i++) {
+			time += rng.nextInt(10) / 10.0;
+			String t = String.format(Locale.US, "%.1f", time);
+			int a = rng.nextInt(1000);
+			int b = rng.nextInt(1000);
+			int m = i / 4; // a few events per message
+			switch (rng.nextInt(6)) {
+			case 0: out.println(t + "\tC\tM" + m + "\tp" + a + "\tp" + b + "\t"
+						+ rng.nextInt(1000000)); break;
+			case 1: out.println(t + "\tS\tM" + m + "\tp" + a + "\tp" + b); break;
+			case 2: out.println(t + "\tDE\tM" + m + "\t" + a + "\t" + b); break;
+			case 3: out.println(t + "\tA\tM" + m + "\t" + a + "\t" + b); break;
+			case 4: out.println(t + "\tDR\tM" + m + "\t" + a); break;
+			default: out.println(t + "\tCONN\t" + a + "\t" + b
+						+ (rng.nextBoolean() ? "\tup" : "\tdown")); break;
+			}
+		}
+		out.close();
+	}
+
+	static void writeMoves(File f, int lines) throws IOException {
+		Random rng = new Random(42);
+		PrintWriter out = new PrintWriter(f);
+		int hosts = 1000;
+		out.println("0 " + (lines / hosts) + " 0 5000 0 5000");
+		for (int i = 0; i < lines; i++) {
+			out.println((i / hosts) + " " + (i % hosts) + " "
+					+ String.format(Locale.US, "%.2f %.2f",
+							rng.nextDouble() * 5000, rng.nextDouble() * 5000));
+		}
+		out.close();
+	}
+
+	/** StandardEventsReader as it was before the byte-level parser */
+	private static class LegacyEventsReader implements ExternalEventsReader {
+		private final BufferedReader reader;
+
+		private LegacyEventsReader(File eventsFile) {
+			try {
+				this.reader = new BufferedReader(new FileReader(eventsFile));
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+		}
+
+		public List<ExternalEvent> readEvents(int nrof) {
+			ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+			Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
+			try {
+				String line = this.reader.readLine();
+				while (events.size() < nrof && line != null) {
+					if (!skipPattern.matcher(line).matches()) {
+						events.add(parse(new Scanner(line)));
+					}
+					if (events.size() < nrof) {
+						line = this.reader.readLine();
+					}
+				}
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+			return events;
+		}
+
+		private ExternalEvent parse(Scanner s) {
+			double time = s.nextDouble();
+			String action = s.next();
+			if (action.equals(StandardEventsReader.DROP)
+					|| action.equals(StandardEventsReader.REMOVE)) {
+				String msgId = s.next();
+				return new MessageDeleteEvent(getHostAddress(s.next()), msgId, time,
+						action.equals(StandardEventsReader.DROP));
+			} else if (action.equals(StandardEventsReader.CONNECTION)) {
+				int a = getHostAddress(s.next());
+				int b = getHostAddress(s.next());
+				boolean up = s.next().equalsIgnoreCase(StandardEventsReader.CONNECTION_UP);
+				return new ConnectionEvent(a, b, s.hasNext() ? s.next() : null, up, time);
+			}
+			String msgId = s.next();
+			int a = getHostAddress(s.next());
+			int b = getHostAddress(s.next());
+			if (action.equals(StandardEventsReader.CREATE)) {
+				int size = s.nextInt();
+				int respSize = s.hasNextInt() ? s.nextInt() : 0;
+				return new MessageCreateEvent(a, b, msgId, size, respSize, time);
+			}
+			int stage = action.equals(StandardEventsReader.SEND) ? MessageRelayEvent.SENDING
+					: action.equals(StandardEventsReader.DELIVERED)
+					? MessageRelayEvent.TRANSFERRED : MessageRelayEvent.ABORTED;
+			return new MessageRelayEvent(a, b, msgId, time, stage);
+		}
+
+		private int getHostAddress(String hostId) {
+			String addressPart = "";
+			if (hostId.matches("^\\d+$")) {
+				addressPart = hostId;
+			} else if (hostId.matches("^\\D+\\d+$")) {
+				String[] parts = hostId.split("\\D");
+				addressPart = parts[parts.length - 1];
+			}
+			return Integer.parseInt(addressPart);
+		}
+
+		public void close() {
+			try {
+				this.reader.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/** ExternalMovementReader as it was before the byte-level parser (normalizing) */
+	private static class LegacyMovementReader {
+		private final Scanner scanner;
+		private final double minTime;
+		private final double minX;
+		private final double minY;
+		private String lastLine;
+		private double lastTimeStamp;
+
+		private LegacyMovementReader(String path) {
+			try {
+				this.scanner = new Scanner(new File(path));
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+			Scanner s = new Scanner(this.scanner.nextLine());
+			this.minTime = s.nextDouble();
+			s.nextDouble();
+			this.minX = s.nextDouble();
+			s.nextDouble();
+			this.minY = s.nextDouble();
+			this.lastLine = this.scanner.nextLine();
+		}
+
+		private List<Tuple<String, Coord>> readNextMovements() {
+			ArrayList<Tuple<String, Coord>> moves = new ArrayList<Tuple<String, Coord>>();
+			if (!this.scanner.hasNextLine()) {
+				return moves;
+			}
+			Scanner s = new Scanner(this.lastLine);
+			double time = s.nextDouble() - this.minTime;
+			String id = s.next();
+			double x = s.nextDouble() - this.minX;
+			double y = s.nextDouble() - this.minY;
+			this.lastTimeStamp = time;
+			while (this.scanner.hasNextLine() && this.lastTimeStamp == time) {
+				this.lastLine = this.scanner.nextLine();
+				if (this.lastLine.trim().length() == 0 || this.lastLine.startsWith("#")) {
+					continue;
+				}
+				moves.add(new Tuple<String, Coord>(id, new Coord(x, y)));
+				s = new Scanner(this.lastLine);
+				time = s.nextDouble() - this.minTime;
+				id = s.next();
+				x = s.nextDouble() - this.minX;
+				y = s.nextDouble() - this.minY;
+			}
+			if (!this.scanner.hasNextLine()) {
+				moves.add(new Tuple<String, Coord>(id, new Coord(x, y)));
+			}
+			return moves;
+		}
+	}
+}
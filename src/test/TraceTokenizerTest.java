@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.StandardEventsReader;
+import input.TraceTokenizer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the byte-level trace tokenizer and the standard events reader that uses it
+ */
+public class TraceTokenizerTest extends TestCase {
+
+	private File write(String contents) throws IOException {
+		File f = File.createTempFile("ttTest", ".tmp");
+		f.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(contents.getBytes(StandardCharsets.UTF_8));
+		out.close();
+		return f;
+	}
+
+	public void testLines() throws IOException {
+		/* tiny buffer to cross the buffer boundaries */
+		for (int size : new int[] {1, 3, 7, TraceTokenizer.BUFFER_SIZE}) {
+			TraceTokenizer t = new TraceTokenizer(
+					write("first line\r\nsecond\rthird\n\n  \t\n# comment\nlast"), size);
+			assertTrue(t.nextLine());
+			assertEquals("first line", t.line());
+			assertTrue(t.hasMoreLines());
+			assertTrue(t.nextLine());
+			assertEquals("second", t.line());
+			assertTrue(t.nextLine());
+			assertEquals("third", t.line());
+			assertTrue(t.nextLine());
+			assertTrue(t.isBlank());
+			assertTrue(t.isWhitespace());
+			assertTrue(t.nextLine());
+			assertTrue(t.isWhitespace());
+			assertTrue(t.nextLine());
+			assertTrue(t.startsWith('#'));
+			assertFalse(t.isBlank());
+			assertTrue(t.nextLine());
+			assertEquals("last", t.line());
+			assertFalse(t.hasMoreLines());
+			assertFalse(t.nextLine());
+			t.close();
+		}
+
+		TraceTokenizer t = new TraceTokenizer(write("a\n"), 1);
+		assertTrue(t.nextLine());
+		assertFalse(t.hasMoreLines());
+		assertFalse(t.nextLine());
+		t.close();
+	}
+
+	public void testTokens() throws IOException {
+		TraceTokenizer t = new TraceTokenizer(
+				write("  12.5\tCONN p10 c2  Up x\n-3 1e3 0.000123 2147483648 10k\n7 a1b2"));
+		assertTrue(t.nextLine());
+		assertEquals(12.5, t.nextDouble());
+		assertTrue(t.nextToken());
+		assertTrue(t.tokenEquals("CONN"));
+		assertFalse(t.tokenEquals("C"));
+		assertEquals(10, t.nextHostAddress());
+		assertEquals(2, t.nextHostAddress());
+		assertTrue(t.nextToken());
+		assertTrue(t.tokenEqualsIgnoreCase("up"));
+		assertFalse(t.tokenEqualsIgnoreCase("down"));
+		assertEquals("x", t.next());
+		assertFalse(t.hasNext());
+		try {
+			t.next();
+			fail("No exception for a missing token");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+
+		assertTrue(t.nextLine());
+		assertEquals(-3.0, t.nextDouble());
+		assertEquals(1000.0, t.nextDouble());
+		assertEquals(0.000123, t.nextDouble());
+		assertTrue(t.nextToken());
+		assertFalse(t.tokenIsInt());
+		assertTrue(t.nextToken());
+		assertFalse(t.tokenIsInt());
+		assertEquals("10k", t.token());
+
+		assertTrue(t.nextLine());
+		assertTrue(t.nextToken());
+		assertTrue(t.tokenIsInt());
+		assertEquals(7, t.tokenInt());
+		try {
+			t.nextHostAddress();
+			fail("No exception for an invalid host ID");
+		} catch (NumberFormatException e) {
+			// expected
+		}
+		t.close();
+	}
+
+	public void testDoubles() throws IOException {
+		Random rng = new Random(1);
+		StringBuilder sb = new StringBuilder();
+		String[] values = new String[2000];
+		for (int i = 0; i < values.length; i++) {
+			switch (i % 5) {
+			case 0: values[i] = Double.toString(rng.nextDouble() * 1e6); break;
+			case 1: values[i] = String.format("%.1f", rng.nextDouble() * 700000); break;
+			case 2: values[i] = Double.toString(rng.nextGaussian() * 1e-30); break;
+			case 3: values[i] = Integer.toString(rng.nextInt()); break;
+			default: values[i] = Double.toString(rng.nextLong() * 1.0); break;
+			}
+			sb.append(values[i]).append(' ');
+		}
+		TraceTokenizer t = new TraceTokenizer(write(sb.toString()));
+		assertTrue(t.nextLine());
+		for (String v : values) {
+			assertEquals(v, Double.parseDouble(v), t.nextDouble());
+		}
+		t.close();
+	}
+
+	public void testStandardEvents() throws IOException {
+		String input =
+				"# comment\n" +
+				"1.5\tC\tM1\tp1\tp2\t10k\t20\n" +
+				"2 S M1 1 2\r\n" +
+				"\n" +
+				"3 DE M1 1 2\n" +
+				"4 A M1 1 2\n" +
+				"5 DR M1 2\n" +
+				"6 R * 2\n" +
+				"7 CONN 3 4 up V2V\n" +
+				"8 CONN 3 4 DOWN\n";
+		StandardEventsReader r = new StandardEventsReader(write(input));
+		List<ExternalEvent> events = r.readEvents(3);
+		assertEquals(3, events.size());
+		assertEquals("MSG @1.5 M1 [1->2] size:10000 CREATE", events.get(0).toString());
+		assertEquals(3.0, events.get(2).getTime());
+		events = r.readEvents(100);
+		assertEquals(5, events.size());
+		assertEquals("MSG @4.0 M1 [1->2] ABORTED", events.get(0).toString());
+		assertEquals("MSG @6.0 * [2] DELETE", events.get(2).toString());
+		assertEquals("CONN up @7.0 3<->4", events.get(3).toString());
+		assertEquals("CONN down @8.0 3<->4", events.get(4).toString());
+		assertEquals(0, r.readEvents(100).size());
+		r.close();
+	}
+}
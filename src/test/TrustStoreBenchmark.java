@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import routing.PassiveRouter;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.TrustStore;
+
+/**
+ * Compares the cost of the trust bookkeeping SecurityApplication does every tick (decaying stale
+ * opinions, the mean trust for the dynamic threshold, and the badmouth comparison of a few new
+ * contacts) with the trusts in maps of boxed pairs (like DTNHost had before) and in TrustStores.
+ * Run from the project root, e.g.:
+ * java -cp target/classes:lib/* test.TrustStoreBenchmark [hosts] [ticks]
+ */
+public class TrustStoreBenchmark {
+	private static final int DECAY_INTERVAL = 1800;
+	private static final double FLOOR = 0.5;
+	private static final int CONTACTS = 4;
+	private static final int UPDATES = 20;
+
+	public static void main(String[] args) {
+		int nrofHosts = args.length > 0 ? Integer.parseInt(args[0]) : 80;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setMessageRouterProto(new PassiveRouter(ts));
+		DTNHost[] hosts = new DTNHost[nrofHosts];
+		for (int i = 0; i < nrofHosts; i++) {
+			hosts[i] = utils.createHost();
+		}
+		com.sun.management.ThreadMXBean mx =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+
+		for (int round = 0; round < 2; round++) {
+			for (int impl = 0; impl < 2; impl++) {
+				Random rng = new Random(42);
+				MapTrusts[] maps = new MapTrusts[nrofHosts];
+				TrustStore[] stores = new TrustStore[nrofHosts];
+				for (int i = 0; i < nrofHosts; i++) {
+					maps[i] = new MapTrusts();
+					stores[i] = new TrustStore();
+				}
+				double sum = 0;
+				long bytes = mx.getThreadAllocatedBytes(tid);
+				long start = System.nanoTime();
+				for (int time = 0; time < ticks; time++) {
+					for (int u = 0; u < UPDATES; u++) {
+						int a = rng.nextInt(nrofHosts);
+						int b = rng.nextInt(nrofHosts);
+						double trust = rng.nextDouble();
+						if (impl == 0) {
+							maps[a].trusts.put(hosts[b], Pair.of(trust, (double) time));
+						} else {
+							stores[a].put(hosts[b], trust, time);
+						}
+					}
+					for (int h = 0; h < nrofHosts; h++) {
+						if (impl == 0) {
+							maps[h].decay(time);
+						} else {
+							stores[h].decay(time, DECAY_INTERVAL, 0.9, FLOOR);
+						}
+					}
+					for (int c = 0; c < CONTACTS; c++) {
+						int a = rng.nextInt(nrofHosts);
+						int b = rng.nextInt(nrofHosts);
+						if (impl == 0) {
+							sum += maps[a].distance(maps[b]) + maps[0].mean();
+						} else {
+							sum += distance(stores[a], stores[b]) + stores[0].getMeanTrust(0);
+						}
+					}
+				}
+				long ns = System.nanoTime() - start;
+				bytes = mx.getThreadAllocatedBytes(tid) - bytes;
+				if (round > 0) {
+					System.out.printf("%s: %.2f us/tick, %.1f KB allocated/tick, checksum %.6f%n",
+							impl == 0 ? "HashMap" : "TrustStore", ns / 1e3 / ticks,
+							bytes / 1e3 / ticks, sum);
+				}
+			}
+		}
+	}
+
+	private static double distance(TrustStore peer, TrustStore self) {
+		TrustStore small = peer.size() <= self.size() ? peer : self;
+		TrustStore big = small == peer ? self : peer;
+		double sum = 0;
+		int common = 0;
+		for (int i = 0; i < small.size(); i++) {
+			DTNHost h = small.hostAt(i);
+			if (big.contains(h)) {
+				sum += Math.abs(small.trustAt(i) - big.getTrust(h, 0));
+				common++;
+			}
+		}
+		return common == 0 ? 0 : sum / common;
+	}
+
+	/** The trusts as DTNHost and SecurityApplication kept them before TrustStore */
+	private static class MapTrusts {
+		private final Map<DTNHost, Pair<Double, Double>> trusts =
+				new HashMap<DTNHost, Pair<Double, Double>>();
+
+		private void decay(int time) {
+			for (Map.Entry<DTNHost, Pair<Double, Double>> e : trusts.entrySet()) {
+				if (time - e.getValue().getRight() > DECAY_INTERVAL) {
+					double newTrust = e.getValue().getLeft() * 0.9;
+					if (!(e.getValue().getLeft() >= FLOOR && newTrust < FLOOR)) {
+						trusts.put(e.getKey(), Pair.of(newTrust, (double) time));
+					}
+				}
+			}
+		}
+
+		private double mean() {
+			return trusts.values().stream().mapToDouble(Pair::getLeft).average().orElse(0);
+		}
+
+		private double distance(MapTrusts peer) {
+			Map<DTNHost, Pair<Double, Double>> self =
+					new HashMap<DTNHost, Pair<Double, Double>>(trusts);
+			HashSet<DTNHost> common = new HashSet<DTNHost>(peer.trusts.keySet());
+			common.retainAll(self.keySet());
+			if (common.isEmpty()) {
+				return 0;
+			}
+			ArrayList<DTNHost> list = new ArrayList<DTNHost>(common);
+			double sum = 0;
+			for (DTNHost h : list) {
+				sum += Math.abs(peer.trusts.get(h).getLeft() - self.get(h).getLeft());
+			}
+			return sum / list.size();
+		}
+	}
+}
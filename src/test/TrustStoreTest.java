@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.TrustStore;
+
+/**
+ * Tests for the hosts' trust stores
+ */
+public class TrustStoreTest extends TestCase {
+	private static final double DELTA = 1e-12;
+
+	private DTNHost[] hosts;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		DTNHost.reset();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.NAME_S, "test");
+		ts.setNameSpace(null);
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setMessageRouterProto(new PassiveRouter(ts));
+		hosts = new DTNHost[40];
+		for (int i = 0; i < hosts.length; i++) {
+			hosts[i] = utils.createHost();
+		}
+	}
+
+	public void testEntries() {
+		TrustStore t = new TrustStore();
+		assertEquals(0, t.size());
+		assertFalse(t.contains(hosts[5]));
+		assertEquals(-1.0, t.getTrust(hosts[5], -1));
+		assertEquals(0.5, t.getMeanTrust(0.5));
+
+		t.put(hosts[30], 0.2, 10); // grows the store
+		t.put(hosts[5], 0.6, 20);
+		t.put(hosts[12], 1.0, 30);
+		t.put(hosts[5], 0.4, 40);
+		assertEquals(3, t.size());
+		assertTrue(t.contains(hosts[5]));
+		assertEquals(0.4, t.getTrust(hosts[5], -1));
+		assertEquals((0.2 + 0.4 + 1.0) / 3, t.getMeanTrust(0.5), DELTA);
+
+		/* entries are in address order */
+		assertEquals(hosts[5], t.hostAt(0));
+		assertEquals(40.0, t.timeAt(0));
+		assertEquals(hosts[12], t.hostAt(1));
+		assertEquals(1.0, t.trustAt(1));
+		assertEquals(hosts[30], t.hostAt(2));
+		assertEquals(10.0, t.timeAt(2));
+	}
+
+	public void testDecay() {
+		TrustStore t = new TrustStore();
+		t.put(hosts[1], 0.4, 0);
+		t.put(hosts[2], 0.52, 0);
+		t.put(hosts[3], 0.3, 50);
+
+		t.decay(100, 100, 0.5, 0.5); // nothing is old enough
+		assertEquals(0.4, t.getTrust(hosts[1], -1));
+
+		t.decay(101, 100, 0.5, 0.5);
+		assertEquals(0.2, t.getTrust(hosts[1], -1), DELTA);
+		assertEquals(101.0, t.timeAt(0));
+		/* would cross the floor */
+		assertEquals(0.52, t.getTrust(hosts[2], -1));
+		assertEquals(0.0, t.timeAt(1));
+		assertEquals(0.3, t.getTrust(hosts[3], -1));
+		assertEquals((0.2 + 0.52 + 0.3) / 3, t.getMeanTrust(0), DELTA);
+
+		t.decay(151, 100, 0.5, 0.5);
+		assertEquals(0.2, t.getTrust(hosts[1], -1), DELTA);
+		assertEquals(0.52, t.getTrust(hosts[2], -1));
+		assertEquals(0.15, t.getTrust(hosts[3], -1), DELTA);
+		assertEquals(151.0, t.timeAt(2));
+
+		/* an update resets the age */
+		t.put(hosts[1], 0.45, 200);
+		t.decay(290, 100, 0.5, 0.5);
+		assertEquals(0.45, t.getTrust(hosts[1], -1));
+		t.decay(301, 100, 0.5, 0.5);
+		assertEquals(0.225, t.getTrust(hosts[1], -1), DELTA);
+	}
+}
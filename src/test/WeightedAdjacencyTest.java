@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+import util.WeightedAdjacency;
+import util.WeightedJaccardSimilarity;
+
+public class WeightedAdjacencyTest extends TestCase {
+
+	public void testAdd() {
+		WeightedAdjacency a = new WeightedAdjacency();
+		int[] targets = {7, 3, 9, 1, 3, 5, 7};
+		for (int t : targets) {
+			a.add(t, t);
+		}
+		assertEquals(5, a.size());
+		int[] sorted = {1, 3, 5, 7, 9};
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(sorted[i], a.targetAt(i));
+		}
+		assertEquals(6.0, a.getWeight(3));
+		assertEquals(14.0, a.getWeight(7));
+		assertEquals(0.0, a.getWeight(4));
+	}
+
+	public void testJaccard() {
+		WeightedAdjacency u = new WeightedAdjacency();
+		WeightedAdjacency v = new WeightedAdjacency();
+		assertEquals(0.0, WeightedAdjacency.jaccard(u, v));
+
+		u.add(1, 2);
+		u.add(2, 4);
+		v.add(2, 1);
+		v.add(3, 3);
+		/* common target 2 with min weight 1; union 2 + 1 + 3 */
+		assertEquals(1.0 / 6, WeightedAdjacency.jaccard(u, v), 1e-12);
+		assertEquals(WeightedAdjacency.jaccard(u, v),
+				WeightedAdjacency.jaccard(v, u));
+	}
+
+	/** Compares with the graph based implementation on random graphs */
+	public void testSameAsGraphJaccard() {
+		Random rng = new Random(42);
+		for (int round = 0; round < 50; round++) {
+			SimpleDirectedWeightedGraph<Integer, DefaultWeightedEdge> g =
+				new SimpleDirectedWeightedGraph<Integer, DefaultWeightedEdge>(
+						DefaultWeightedEdge.class);
+			WeightedAdjacency[] adj = {new WeightedAdjacency(),
+					new WeightedAdjacency()};
+			g.addVertex(0);
+			g.addVertex(1);
+			int nrofEdges = rng.nextInt(30);
+			for (int i = 0; i < nrofEdges; i++) {
+				int from = rng.nextInt(2);
+				int to = 2 + rng.nextInt(20);
+				int w = rng.nextInt(5);
+				DefaultWeightedEdge e = Graphs.addEdgeWithVertices(g, from, to);
+				if (e == null) {
+					e = g.getEdge(from, to);
+				} else {
+					adj[from].add(to, 1);
+				}
+				g.setEdgeWeight(e, g.getEdgeWeight(e) + w);
+				adj[from].add(to, w);
+			}
+
+			double expected = new WeightedJaccardSimilarity<Integer,
+					DefaultWeightedEdge>(g).predict(0, 1);
+			assertEquals(expected, WeightedAdjacency.jaccard(adj[0], adj[1]));
+		}
+	}
+}
@@ -5,14 +5,25 @@
 package test;
 
 import input.EventQueue;
+import input.ExternalEvent;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import core.Connection;
 import core.DTNHost;
+import core.HostWorkers;
+import core.MessageListener;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
+import core.Settings;
 import core.SimClock;
 import core.UpdateListener;
 import core.World;
@@ -36,10 +47,12 @@ public class WorldTest extends TestCase {
 	protected void setUp() throws Exception {
 		super.setUp();
 		SimClock.reset();
+		DTNHost.reset();
 		TestSettings testSettings = new TestSettings();
 		testSettings.setNameSpace(TestUtils.IFACE_NS);
 		testSettings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
 		testSettings.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		testSettings.putSetting(NetworkInterface.NAME_S, "test");
 
 		this.eQueues = new ArrayList<EventQueue>();
 		this.testHosts = new ArrayList<TestDTNHost>();
@@ -52,11 +65,13 @@ public class WorldTest extends TestCase {
 			this.testHosts.add(new TestDTNHost(li, comBus, testSettings));
 		}
 
-		TestScenario ts = new TestScenario();
-		this.world = new World(ts.getHosts(),ts.getWorldSizeX(),
-				ts.getWorldSizeY(),ts.getUpdateInterval(),
-				ts.getUpdateListeners(), ts.simulateConnections(),
-				ts.getExternalEvents() );
+		this.world = createWorld();
+	}
+
+	private World createWorld() {
+		return new World(new ArrayList<DTNHost>(testHosts), worldSizeX,
+				worldSizeY, upInterval, new ArrayList<UpdateListener>(),
+				simulateConnections, eQueues);
 	}
 
 	public void testUpdate() {
@@ -102,48 +117,210 @@ public class WorldTest extends TestCase {
 	}
 
 
-	/** Dummy scenario for providing test values for the World */
-	@SuppressWarnings("serial")
-	private class TestScenario extends core.SimScenario {
-		public TestScenario() {	}
+	public void testCoalescedEvents() {
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.COALESCE_EVENTS_S, "true");
+		try {
+			List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+			events.add(new LookupEvent(0.05, 1));
+			events.add(new LookupEvent(0.05, 2));
+			events.add(new LookupEvent(0.05, 1));
+			events.add(new LookupEvent(0.15, -1)); // touches no host
+			eQueues.add(new ListQueue(events));
+			world = createWorld();
+
+			world.update();
+			assertEquals(1, testHosts.get(0).nrofUpdate);
+			assertEquals(2, testHosts.get(1).nrofUpdate);
+			assertEquals(2, testHosts.get(2).nrofUpdate);
+			assertEquals(10 + 2, world.getNrofHostUpdates());
+
+			world.update();
+			assertEquals(3, testHosts.get(0).nrofUpdate);
+			assertEquals(4, testHosts.get(1).nrofUpdate);
+			assertEquals(10 + 2 + 20, world.getNrofHostUpdates());
+		} finally {
+			ts.putSetting(World.COALESCE_EVENTS_S, "false");
+		}
+	}
+
+	public void testUncoalescedEvents() {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		events.add(new LookupEvent(0.05, 1));
+		events.add(new LookupEvent(0.05, 2));
+		eQueues.add(new ListQueue(events));
+		world = createWorld();
+
+		world.update();
+		assertNrofUpdates(3);
+		assertEquals(30, world.getNrofHostUpdates());
+	}
+
+	public void testParallelHostsMatchSerial() {
+		assertParallelMatchesSerial(World.UPDATE_BY_ADDRESS);
+	}
+
+	public void testParallelHostsMatchSerialInRandomOrder() {
+		assertParallelMatchesSerial(World.UPDATE_RANDOM);
+	}
+
+	/**
+	 * Runs the same seeded scenario serially and with parallel host updates
+	 * with one and several threads and checks that the hosts' locations,
+	 * connections and routers are the same after every round.
+	 */
+	private void assertParallelMatchesSerial(String updateOrder) {
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		try {
+			List<String> serial = runSeededScenario(updateOrder, false, 1);
+			String routers = serial.get(serial.size() - 1);
+			assertTrue(routers.contains("+") && routers.contains("-"));
+
+			for (int threads : new int[] {1, 4}) {
+				List<String> parallel = runSeededScenario(updateOrder, true,
+						threads);
+				assertEquals(serial.size(), parallel.size());
+				for (int i = 0; i < serial.size(); i++) {
+					assertEquals(threads + " threads, round " + i,
+							serial.get(i), parallel.get(i));
+				}
+			}
+		} finally {
+			ts.putSetting(World.UPDATE_ORDER, World.DEF_UPDATE_ORDER);
+			ts.putSetting(World.PARALLEL_HOSTS_S, "false");
+			HostWorkers.reset();
+			/* leave a fresh generator to the following (seed dependent) tests */
+			MovementModel.reset();
+		}
+	}
+
+	/**
+	 * Runs a scenario of randomly moving hosts with the movement model's
+	 * default seed and returns the state of the hosts after every round: their
+	 * locations and connections and, as the last element, the logs of their
+	 * routers.
+	 */
+	private List<String> runSeededScenario(String updateOrder,
+			boolean parallel, int nrofThreads) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "100,100");
+		ts.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.UPDATE_ORDER, updateOrder);
+		ts.putSetting(World.PARALLEL_HOSTS_S, "" + parallel);
+		ts.putSetting(World.NROF_THREADS_S, "" + nrofThreads);
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(NetworkInterface.NAME_S, "seeded");
+		ts.setNameSpace(null);
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+		MovementModel.reset();
 
-		public int getWorldSizeX() {
-			return worldSizeX;
+		SimpleBroadcastInterface proto = new SimpleBroadcastInterface(
+				new TestSettings(TestUtils.IFACE_NS));
+		RandomWaypoint mmProto = new RandomWaypoint(ts);
+		LogRouter routerProto = new LogRouter(ts);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<40; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(proto);
+			hosts.add(new DTNHost(new ArrayList<MessageListener>(), null, "n",
+					li, new ModuleCommunicationBus(), mmProto, routerProto));
 		}
-		public int getWorldSizeY() {
-			return worldSizeY;
+		World w = new World(hosts, 100, 100, 0.5,
+				new ArrayList<UpdateListener>(), true, eQueues);
+
+		List<String> rounds = new ArrayList<String>();
+		for (int r=0; r<400; r++) {
+			w.update();
+			StringBuilder state = new StringBuilder();
+			for (DTNHost h : hosts) {
+				state.append(h).append(h.getLocation())
+					.append(h.getConnections()).append('\n');
+			}
+			rounds.add(state.toString());
+		}
+		StringBuilder logs = new StringBuilder();
+		for (DTNHost h : hosts) {
+			logs.append(h).append(": ")
+				.append(((LogRouter)h.getRouter()).log).append('\n');
+		}
+		rounds.add(logs.toString());
+		return rounds;
+	}
+
+	/**
+	 * Host-local router that logs the connection changes it is told about
+	 * and the peers it sees in every update
+	 */
+	private static class LogRouter extends PassiveRouter {
+		private StringBuilder log = new StringBuilder();
+
+		public LogRouter(Settings s) {
+			super(s);
 		}
 
-		public double getUpdateInterval() {
-			return upInterval;
+		protected LogRouter(LogRouter r) {
+			super(r);
 		}
 
-		public List<UpdateListener> getUpdateListeners() {
-			return new ArrayList<UpdateListener>();
+		@Override
+		public void changedConnection(Connection con) {
+			super.changedConnection(con);
+			log.append(con.isUp() ? '+' : '-')
+				.append(con.getOtherNode(getHost())).append(' ');
 		}
 
-		public List<DTNHost> getHosts() {
-			ArrayList<DTNHost> hs = new ArrayList<DTNHost>();
-			for (TestDTNHost h : testHosts) {
-				hs.add(h);
+		@Override
+		public void update() {
+			super.update();
+			log.append(SimClock.getTime()).append('[');
+			for (Connection con : getHost().getConnections()) {
+				log.append(con.getOtherNode(getHost())).append(' ');
 			}
-			return hs;
+			log.append("] ");
 		}
 
-		public boolean simulateConnections() {
-			return simulateConnections;
+		@Override
+		public MessageRouter replicate() {
+			return new LogRouter(this);
 		}
+	}
+
+	/** Event that looks up one host */
+	@SuppressWarnings("serial")
+	private static class LookupEvent extends ExternalEvent {
+		private int address;
+
+		public LookupEvent(double time, int address) {
+			super(time);
+			this.address = address;
+		}
+
+		public void processEvent(World world) {
+			if (address >= 0) {
+				world.getNodeByAddress(address);
+			}
+		}
+	}
+
+	private static class ListQueue implements EventQueue {
+		private List<ExternalEvent> events;
 
-		public List<EventQueue> getExternalEvents() {
-			return eQueues;
+		public ListQueue(List<ExternalEvent> events) {
+			this.events = events;
 		}
 
-		public double getMaxHostRange() {
-			return 10;
+		public ExternalEvent nextEvent() {
+			return events.remove(0);
 		}
 
-		protected void createHosts() {
-			this.hosts = new ArrayList<DTNHost>();
+		public double nextEventsTime() {
+			return events.isEmpty() ? Double.MAX_VALUE : events.get(0).getTime();
 		}
 	}
 }
@@ -4,21 +4,46 @@
  */
 package ui;
 
+import core.Settings;
 import core.SimClock;
+import input.BatchPrefetcher;
+import java.lang.management.ManagementFactory;
 
 /** Simple text-based user interface. */
 public class DTNSimTextUI extends DTNSimUI {
   /** How often the UI view is updated (milliseconds) */
   public static final long UI_UP_INTERVAL = 60000;
+  /**
+   * Print the memory allocated by the simulation thread at the end of the run -setting id
+   * ({@value}). Boolean; default is false. Used by allocation benchmarks, e.g.
+   * example_settings/stalb_allocation_benchmark.txt.
+   */
+  public static final String PRINT_ALLOCATION_S = "Benchmark.printAllocation";
+  /**
+   * Print the number of host updates ({@link core.World#getNrofHostUpdates()}) at the end of the run
+   * -setting id ({@value}). Boolean; default is false. Used e.g. by
+   * example_settings/coalesce_events_benchmark.txt.
+   */
+  public static final String PRINT_HOST_UPDATES_S = "Benchmark.printHostUpdates";
+  /**
+   * Print the batch, stall and lead statistics of the trace prefetchers ({@link
+   * input.BatchPrefetcher}) at the end of the run -setting id ({@value}). Boolean; default is false.
+   * Used e.g. by example_settings/prefetch_benchmark.txt.
+   */
+  public static final String PRINT_PREFETCH_S = "Benchmark.printPrefetch";
   private long lastUpdateRt; // real time of last ui update
   private long startTime; // simulation start time
 
   protected void runSim() {
     double simTime = SimClock.getTime();
+    double simTime0 = simTime;
     double endTime = scen.getEndTime();
 
     print("Running simulation '" + scen.getName() + "'");
 
+    Settings settings = new Settings();
+    long startAllocated =
+        settings.getBoolean(PRINT_ALLOCATION_S, false) ? allocatedBytes() : -1;
     startTime = System.currentTimeMillis();
     lastUpdateRt = startTime;
 
@@ -41,6 +66,41 @@ public class DTNSimTextUI extends DTNSimUI {
     this.update(true); // force final UI update
 
     print("Simulation done in " + String.format("%.2f", duration) + "s");
+    if (startAllocated >= 0) {
+      double mb = (allocatedBytes() - startAllocated) / (1024.0 * 1024.0);
+      print(
+          String.format(
+              "Allocated %.1f MB in the simulation thread (%.3f MB per simulated second)",
+              mb, mb / Math.max(SimClock.getTime() - simTime0, 1)));
+    }
+    if (settings.getBoolean(PRINT_HOST_UPDATES_S, false)) {
+      long updates = world.getNrofHostUpdates();
+      print(
+          String.format(
+              "Updated hosts %d times (%.0f host updates per simulated hour)",
+              updates, updates * 3600 / Math.max(SimClock.getTime() - simTime0, 1)));
+    }
+    if (settings.getBoolean(PRINT_PREFETCH_S, false)) {
+      for (BatchPrefetcher<?> p : BatchPrefetcher.getPrefetchers()) {
+        print(p.toString());
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes allocated by the current thread, if the JVM supports measuring it
+   *
+   * @return The allocated bytes or -1 if allocation can't be measured
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
   }
 
   /**
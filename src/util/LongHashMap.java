@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+/**
+ * Hash map with primitive <code>long</code> keys. Uses open addressing, so no objects are created
+ * when mappings are added, looked up or removed (except when the table grows). Null values are not
+ * allowed. Iteration order is determined by the keys' hash values and the table size, so it's
+ * repeatable between runs.
+ *
+ * @param <V> Type of the values
+ */
+public class LongHashMap<V> {
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private Object[] values;
+  private int size;
+  private int mask;
+  private int modCount;
+
+  /** Action for {@link LongHashMap#forEach(Consumer)} */
+  public interface Consumer<V> {
+    void accept(long key, V value);
+  }
+
+  /** Creates an empty map */
+  public LongHashMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * Creates an empty map with room for the given number of mappings
+   *
+   * @param expectedSize Number of mappings the map should hold without growing
+   */
+  public LongHashMap(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity * 3 / 4 < expectedSize) {
+      capacity <<= 1;
+    }
+    this.keys = new long[capacity];
+    this.values = new Object[capacity];
+    this.mask = capacity - 1;
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & this.mask;
+  }
+
+  /** Returns the slot of the key, or -1 if the key isn't in the map */
+  private int find(long key) {
+    for (int i = slot(key); this.values[i] != null; i = (i + 1) & this.mask) {
+      if (this.keys[i] == key) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the value of a key
+   *
+   * @param key The key
+   * @return The value or null if there's no mapping for the key
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    int i = find(key);
+    return i < 0 ? null : (V) this.values[i];
+  }
+
+  /**
+   * Returns true if the map contains the key
+   *
+   * @param key The key
+   * @return true if there's a mapping for the key
+   */
+  public boolean containsKey(long key) {
+    return find(key) >= 0;
+  }
+
+  /**
+   * Maps a key to a value
+   *
+   * @param key The key
+   * @param value The value (not null)
+   * @return The previous value of the key or null if there was none
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException("Null values are not supported");
+    }
+    int i = slot(key);
+    for (; this.values[i] != null; i = (i + 1) & this.mask) {
+      if (this.keys[i] == key) {
+        V old = (V) this.values[i];
+        this.values[i] = value;
+        return old;
+      }
+    }
+    this.keys[i] = key;
+    this.values[i] = value;
+    this.modCount++;
+    if (++this.size > this.keys.length * 3 / 4) {
+      grow();
+    }
+    return null;
+  }
+
+  /**
+   * Removes the mapping of a key
+   *
+   * @param key The key
+   * @return The removed value or null if there was no mapping for the key
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    int i = find(key);
+    if (i < 0) {
+      return null;
+    }
+    V old = (V) this.values[i];
+    this.values[i] = null;
+    this.size--;
+    this.modCount++;
+
+    /* shift back the following entries of the probe sequence */
+    for (int j = (i + 1) & this.mask; this.values[j] != null; j = (j + 1) & this.mask) {
+      int home = slot(this.keys[j]);
+      /* entry at j can be moved to i if its home slot isn't in the range (i, j] */
+      if (((j - home) & this.mask) >= ((j - i) & this.mask)) {
+        this.keys[i] = this.keys[j];
+        this.values[i] = this.values[j];
+        this.values[j] = null;
+        i = j;
+      }
+    }
+    return old;
+  }
+
+  private void grow() {
+    long[] oldKeys = this.keys;
+    Object[] oldValues = this.values;
+    this.keys = new long[oldKeys.length * 2];
+    this.values = new Object[oldKeys.length * 2];
+    this.mask = this.keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        int j = slot(oldKeys[i]);
+        while (this.values[j] != null) {
+          j = (j + 1) & this.mask;
+        }
+        this.keys[j] = oldKeys[i];
+        this.values[j] = oldValues[i];
+      }
+    }
+  }
+
+  /**
+   * Returns the number of mappings
+   *
+   * @return the number of mappings
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns true if the map has no mappings
+   *
+   * @return true if the map is empty
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /** Removes all mappings */
+  public void clear() {
+    Arrays.fill(this.values, null);
+    this.size = 0;
+    this.modCount++;
+  }
+
+  /**
+   * Performs the action for every mapping. The map must not be modified by the action.
+   *
+   * @param action The action
+   * @throws ConcurrentModificationException if the map was modified during the iteration
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(Consumer<? super V> action) {
+    int expectedModCount = this.modCount;
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.values[i] != null) {
+        action.accept(this.keys[i], (V) this.values[i]);
+        if (this.modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+      }
+    }
+  }
+}
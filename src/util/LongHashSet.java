@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Set of primitive <code>long</code> values. Adding, looking up and removing values doesn't create
+ * objects (except when the table grows).
+ *
+ * @see LongHashMap
+ */
+public class LongHashSet {
+  private static final Object PRESENT = new Object();
+  private final LongHashMap<Object> map;
+
+  /** Creates an empty set */
+  public LongHashSet() {
+    this.map = new LongHashMap<>();
+  }
+
+  /**
+   * Adds a value to the set
+   *
+   * @param value The value
+   * @return true if the set didn't contain the value
+   */
+  public boolean add(long value) {
+    return this.map.put(value, PRESENT) == null;
+  }
+
+  /**
+   * Returns true if the set contains the value
+   *
+   * @param value The value
+   * @return true if the value is in the set
+   */
+  public boolean contains(long value) {
+    return this.map.containsKey(value);
+  }
+
+  /**
+   * Removes a value from the set
+   *
+   * @param value The value
+   * @return true if the set contained the value
+   */
+  public boolean remove(long value) {
+    return this.map.remove(value) != null;
+  }
+
+  /**
+   * Returns the number of values in the set
+   *
+   * @return the number of values
+   */
+  public int size() {
+    return this.map.size();
+  }
+
+  /**
+   * Returns true if the set is empty
+   *
+   * @return true if the set is empty
+   */
+  public boolean isEmpty() {
+    return this.map.isEmpty();
+  }
+
+  /** Removes all values */
+  public void clear() {
+    this.map.clear();
+  }
+}
@@ -1,33 +1,319 @@
 package util;
 
 import core.Coord;
+import core.SimError;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Path similarity: the length of the longest common subsequence of two paths' coordinates, where
+ * two coordinates match if they are nearer than {@link #DEF_NEARBY} to each other, divided by the
+ * length of the shorter path.
+ *
+ * <p>The static {@link #lcs(List, List)} fills the dynamic programming table row by row. Instances
+ * hash the coordinates of the other path into a grid of nearby-sized cells, so only the pairs in the
+ * neighboring cells are compared and the subsequence is built from the matching pairs. For long
+ * road paths that seldom come near each other this takes near-linear time; short paths are
+ * compared with the table since the grid doesn't pay off for them. An instance can also restrict
+ * the matches to a Sakoe-Chiba style band around the diagonal and it remembers the result for
+ * paths whose coordinates have not changed since the previous call. An instance is not thread
+ * safe.
+ */
 public class PathDistance {
 
-    private static final double nearby = 100;
+    /** Default distance limit for matching coordinates */
+    public static final double DEF_NEARBY = 100;
 
+    /** paths with at most this many coordinate pairs are compared without the grid */
+    private static final int DENSE_LIMIT = 64 * 64;
+
+    /* grid keys: 21 bits for both cell coordinates and for the coordinate's index */
+    private static final int INDEX_BITS = 21;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final int CELL_MASK = (1 << INDEX_BITS) - 1;
+    private static final int CELL_OFFSET = 1 << (INDEX_BITS - 1);
+
+    private final double limit;
+    private final double limit2;
+    private final int band;
+
+    /** results for the other paths, valid while the first path stays the same */
+    private final Map<List<Coord>, Cached> cache;
+    private List<Coord> cachedPath;
+    /** copy of the first path's coordinates when the cached results were computed */
+    private double[] cachedCoords;
+
+    /* reused buffers */
+    private long[] cellKeys = new long[0];
+    private int[] matches = new int[16];
+    private int[] thresholds = new int[0];
+    private int[] prevRow = new int[0];
+    private int[] curRow = new int[0];
+
+    /**
+     * Creates a path similarity engine with the default distance limit and no band
+     */
+    public PathDistance() {
+        this(DEF_NEARBY, -1);
+    }
+
+    /**
+     * Creates a path similarity engine
+     *
+     * @param nearby Coordinates nearer than this match
+     * @param band Maximum distance (in path indexes) of a matching pair from the diagonal of the
+     *     two paths; negative value allows all pairs
+     */
+    public PathDistance(double nearby, int band) {
+        this.limit = nearby;
+        this.limit2 = nearby * nearby;
+        this.band = band;
+        this.cache = new IdentityHashMap<>();
+    }
+
+    /**
+     * Returns the path similarity of two coordinate lists using the full dynamic programming table
+     * (two rows of it at a time).
+     *
+     * @param l1 The first path
+     * @param l2 The second path
+     * @return Length of the longest common subsequence per the shorter path's length (NaN if either
+     *     path is empty)
+     */
     public static double lcs(List<Coord> l1, List<Coord> l2) {
         int len1 = l1.size();
         int len2 = l2.size();
-        var c = new int[len1 + 1][len2 + 1];
-
-        for (int i = 0; i <= len1; i++) {
-            for (int j = 0; j <= len2; j++) {
-                if (i == 0 || j == 0) {
-                    c[i][j] = 0;
-                } else if (isNearby(l1.get(i - 1), l2.get(j - 1))) {
-                    c[i][j] = c[i - 1][j - 1] + 1;
+        var prev = new int[len2 + 1];
+        var cur = new int[len2 + 1];
+
+        for (int i = 1; i <= len1; i++) {
+            Coord a = l1.get(i - 1);
+            for (int j = 1; j <= len2; j++) {
+                if (isNearby(a, l2.get(j - 1), DEF_NEARBY * DEF_NEARBY)) {
+                    cur[j] = prev[j - 1] + 1;
                 } else {
-                    c[i][j] = Math.max(c[i][j - 1], c[i - 1][j]);
+                    cur[j] = Math.max(cur[j - 1], prev[j]);
                 }
             }
+            var t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return (double) prev[len2] / Math.min(len1, len2);
+    }
+
+    /**
+     * Returns the path similarity of two coordinate lists. The result is cached for the two list
+     * instances and compared against copies of their coordinates on the next call, so it is
+     * recomputed if either list or any of their coordinates has been modified in between (e.g. a
+     * path whose {@link movement.Path#getCoords() internal list} got new waypoints).
+     *
+     * @param l1 The first path
+     * @param l2 The second path
+     * @return Length of the longest common subsequence per the shorter path's length (NaN if either
+     *     path is empty)
+     */
+    public double similarity(List<Coord> l1, List<Coord> l2) {
+        if (l1 != this.cachedPath || !sameCoords(l1, this.cachedCoords)) {
+            this.cache.clear();
+            this.cachedPath = l1;
+            this.cachedCoords = copyCoords(l1);
+        }
+        Cached c = this.cache.get(l2);
+        if (c == null || !sameCoords(l2, c.coords)) {
+            int length =
+                    (long) l1.size() * l2.size() <= DENSE_LIMIT
+                            ? this.denseLcs(l1, l2)
+                            : this.sparseLcs(l1, l2);
+            c = new Cached(copyCoords(l2), (double) length / Math.min(l1.size(), l2.size()));
+            this.cache.put(l2, c);
+        }
+        return c.value;
+    }
+
+    /** Returns the coordinates of a path as x, y pairs */
+    private static double[] copyCoords(List<Coord> l) {
+        double[] xy = new double[2 * l.size()];
+        for (int i = 0, n = l.size(); i < n; i++) {
+            Coord c = l.get(i);
+            xy[2 * i] = c.getX();
+            xy[2 * i + 1] = c.getY();
         }
-        return (double) c[len1][len2] / Math.min(len1, len2);
+        return xy;
     }
 
-    private static boolean isNearby(Coord c1, Coord c2) {
-        return (c1.distance(c2) < nearby);
+    /** Returns true if a path has the same coordinates as the copy */
+    private static boolean sameCoords(List<Coord> l, double[] xy) {
+        int n = l.size();
+        if (xy.length != 2 * n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            Coord c = l.get(i);
+            if (c.getX() != xy[2 * i] || c.getY() != xy[2 * i + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Longest common subsequence with two reused rows of the dynamic programming table */
+    private int denseLcs(List<Coord> l1, List<Coord> l2) {
+        int len1 = l1.size();
+        int len2 = l2.size();
+        if (this.prevRow.length < len2 + 1) {
+            this.prevRow = new int[len2 + 1];
+            this.curRow = new int[len2 + 1];
+        }
+        int[] prev = this.prevRow;
+        int[] cur = this.curRow;
+        Arrays.fill(prev, 0, len2 + 1, 0);
+        cur[0] = 0;
+        double slope = len1 == 0 ? 0 : (double) len2 / len1;
+
+        for (int i = 1; i <= len1; i++) {
+            Coord a = l1.get(i - 1);
+            double diagonal = (i - 1) * slope;
+            for (int j = 1; j <= len2; j++) {
+                if ((this.band < 0 || Math.abs(j - 1 - diagonal) <= this.band)
+                        && isNearby(a, l2.get(j - 1), this.limit2)) {
+                    cur[j] = prev[j - 1] + 1;
+                } else {
+                    cur[j] = Math.max(cur[j - 1], prev[j]);
+                }
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[len2];
+    }
+
+    /**
+     * Hunt-Szymanski style longest common subsequence over the matching pairs found via the grid.
+     */
+    private int sparseLcs(List<Coord> l1, List<Coord> l2) {
+        int len1 = l1.size();
+        int len2 = l2.size();
+        if (len1 == 0 || len2 == 0) {
+            return 0;
+        }
+        this.buildGrid(l2);
+        if (this.thresholds.length < len2) {
+            this.thresholds = new int[len2];
+        }
+        int[] t = this.thresholds;
+        int length = 0;
+        double slope = (double) len2 / len1;
+
+        for (int i = 0; i < len1; i++) {
+            Coord a = l1.get(i);
+            int n = this.findMatches(a, l2, i * slope);
+            Arrays.sort(this.matches, 0, n);
+            /* descending order so that one coordinate of l1 is used only once */
+            for (int m = n - 1; m >= 0; m--) {
+                int j = this.matches[m];
+                int p = Arrays.binarySearch(t, 0, length, j);
+                if (p < 0) {
+                    p = -p - 1;
+                }
+                t[p] = j;
+                if (p == length) {
+                    length++;
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Sorts the path's coordinates by their grid cell. Every key holds the cell's coordinates and
+     * the coordinate's index in the path.
+     */
+    private void buildGrid(List<Coord> l) {
+        int n = l.size();
+        if (n > INDEX_MASK) {
+            throw new SimError("Too long path for similarity: " + n + " coordinates");
+        }
+        if (this.cellKeys.length < n) {
+            this.cellKeys = new long[n];
+        }
+        for (int i = 0; i < n; i++) {
+            Coord c = l.get(i);
+            this.cellKeys[i] = this.cellOf(c.getX(), c.getY()) | i;
+        }
+        Arrays.sort(this.cellKeys, 0, n);
+    }
+
+    /** Returns the key of the coordinate's grid cell with zero index bits */
+    private long cellOf(double x, double y) {
+        return cellKey((int) Math.floor(x / this.limit), (int) Math.floor(y / this.limit));
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) ((cx + CELL_OFFSET) & CELL_MASK) << (2 * INDEX_BITS))
+                | ((long) ((cy + CELL_OFFSET) & CELL_MASK) << INDEX_BITS);
+    }
+
+    /** Collects the indexes of l2's coordinates that match a coordinate into the match buffer */
+    private int findMatches(Coord a, List<Coord> l2, double diagonal) {
+        int cx = (int) Math.floor(a.getX() / this.limit);
+        int cy = (int) Math.floor(a.getY() / this.limit);
+        int n = 0;
+        int size = l2.size();
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                long cell = cellKey(cx + dx, cy + dy);
+                for (int k = lowerBound(this.cellKeys, size, cell);
+                        k < size && (this.cellKeys[k] & ~INDEX_MASK) == cell; k++) {
+                    int j = (int) (this.cellKeys[k] & INDEX_MASK);
+                    if (this.band >= 0 && Math.abs(j - diagonal) > this.band) {
+                        continue;
+                    }
+                    if (isNearby(a, l2.get(j), this.limit2)) {
+                        if (n == this.matches.length) {
+                            this.matches = Arrays.copyOf(this.matches, n * 2);
+                        }
+                        this.matches[n++] = j;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    private static int lowerBound(long[] keys, int size, long key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static boolean isNearby(Coord c1, Coord c2, double limit2) {
+        double dx = c1.getX() - c2.getX();
+        double dy = c1.getY() - c2.getY();
+        return dx * dx + dy * dy < limit2;
+    }
+
+    /** Cached result for one other path */
+    private static class Cached {
+        /** copy of the other path's coordinates */
+        private final double[] coords;
+        private final double value;
+
+        private Cached(double[] coords, double value) {
+            this.coords = coords;
+            this.value = value;
+        }
     }
 }
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Mergeable streaming quantile sketch in the style of KLL (Karnin, Lang, Liberty: "Optimal Quantile
+ * Approximation in Streams", 2016). Values are kept in levels of compactors; an item on level
+ * <i>h</i> stands for 2<sup><i>h</i></sup> values. When a level is full, it is sorted and every
+ * other item (starting randomly from the first or the second) is moved one level up. The number of
+ * kept items grows only logarithmically with the number of values, and the quantiles have a
+ * normalized rank error of about {@link #getRankError()}.
+ *
+ * <p>Until the first compaction all values are kept and the results are exact. The random choices
+ * come from a fixed seed, so the same values give the same results in every run.
+ */
+public class QuantileSketch {
+  /** Default size parameter; gives about 1.3 % rank error */
+  public static final int DEFAULT_K = 200;
+  /** Capacity of a level shrinks by this factor for every level below the top */
+  private static final double CAPACITY_FACTOR = 2.0 / 3.0;
+  /** Smallest capacity of a level */
+  private static final int MIN_CAPACITY = 8;
+
+  private final int k;
+  private final Random rng;
+  private double[][] levels;
+  private int[] sizes;
+  private int nrofLevels;
+  /** Number of items kept on all levels */
+  private int retained;
+  private long count;
+  private double min;
+  private double max;
+  private boolean compacted;
+
+  /** Creates a sketch with the {@link #DEFAULT_K default} size parameter */
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * Creates a sketch
+   *
+   * @param k Size parameter; the rank error is roughly inversely proportional to it
+   */
+  public QuantileSketch(int k) {
+    if (k < MIN_CAPACITY) {
+      throw new IllegalArgumentException("Sketch size must be at least " + MIN_CAPACITY);
+    }
+    this.k = k;
+    this.rng = new Random(k);
+    this.levels = new double[1][];
+    this.levels[0] = new double[k];
+    this.sizes = new int[1];
+    this.nrofLevels = 1;
+    this.min = Double.NaN;
+    this.max = Double.NaN;
+  }
+
+  /**
+   * Adds a value
+   *
+   * @param value The value
+   */
+  public void add(double value) {
+    if (this.count == 0) {
+      this.min = value;
+      this.max = value;
+    } else {
+      this.min = Math.min(this.min, value);
+      this.max = Math.max(this.max, value);
+    }
+    this.count++;
+    append(0, value);
+    if (this.sizes[0] >= capacity(0)) {
+      compress();
+    }
+  }
+
+  /**
+   * Adds the values of another sketch to this sketch. The other sketch is not modified.
+   *
+   * @param other The sketch to merge
+   */
+  public void merge(QuantileSketch other) {
+    if (other.count == 0) {
+      return;
+    }
+    for (int h = 0; h < other.nrofLevels; h++) {
+      for (int i = 0; i < other.sizes[h]; i++) {
+        append(h, other.levels[h][i]);
+      }
+    }
+    if (this.count == 0) {
+      this.min = other.min;
+      this.max = other.max;
+    } else {
+      this.min = Math.min(this.min, other.min);
+      this.max = Math.max(this.max, other.max);
+    }
+    this.count += other.count;
+    this.compacted |= other.compacted;
+    compress();
+  }
+
+  private void append(int level, double value) {
+    while (level >= this.nrofLevels) {
+      addLevel();
+    }
+    double[] items = this.levels[level];
+    if (this.sizes[level] == items.length) {
+      this.levels[level] = items = Arrays.copyOf(items, items.length * 2);
+    }
+    items[this.sizes[level]++] = value;
+    this.retained++;
+  }
+
+  private void addLevel() {
+    if (this.nrofLevels == this.levels.length) {
+      this.levels = Arrays.copyOf(this.levels, this.nrofLevels * 2);
+      this.sizes = Arrays.copyOf(this.sizes, this.nrofLevels * 2);
+    }
+    this.levels[this.nrofLevels] = new double[MIN_CAPACITY];
+    this.nrofLevels++;
+  }
+
+  /** Returns the capacity of a level; the top level has the largest capacity (k) */
+  private int capacity(int level) {
+    int depth = this.nrofLevels - 1 - level;
+    return Math.max(MIN_CAPACITY, (int) Math.ceil(this.k * Math.pow(CAPACITY_FACTOR, depth)));
+  }
+
+  /** Compacts the full levels, starting from the lowest one */
+  private void compress() {
+    for (int h = 0; h < this.nrofLevels; h++) {
+      if (this.sizes[h] >= capacity(h)) {
+        compact(h);
+      }
+    }
+  }
+
+  /**
+   * Sorts a level and moves every other item one level up. If the number of items is odd, the
+   * largest one stays on the level.
+   */
+  private void compact(int level) {
+    if (level + 1 == this.nrofLevels) {
+      addLevel();
+    }
+    double[] items = this.levels[level];
+    int size = this.sizes[level];
+    Arrays.sort(items, 0, size);
+    int pairs = size / 2;
+    int offset = this.rng.nextBoolean() ? 1 : 0;
+    for (int i = 0; i < pairs; i++) {
+      append(level + 1, items[2 * i + offset]);
+    }
+    if (size % 2 == 1) {
+      items[0] = items[size - 1];
+    }
+    this.sizes[level] = size % 2;
+    this.retained -= 2 * pairs;
+    this.compacted = true;
+  }
+
+  /** Action for {@link QuantileSketch#forEachSorted(Consumer)} */
+  public interface Consumer {
+    /**
+     * Called for every kept item
+     *
+     * @param value The value of the item
+     * @param weight How many values the item stands for
+     */
+    void accept(double value, long weight);
+  }
+
+  /**
+   * Performs the action for every kept item in ascending order of the values. The weights of the
+   * items sum up to {@link #getCount()}. Until the first compaction every value is an item of its
+   * own.
+   *
+   * @param action The action
+   */
+  public void forEachSorted(Consumer action) {
+    double[] values = new double[this.retained];
+    long[] weights = new long[this.retained];
+    int n = sortedItems(values, weights);
+    for (int i = 0; i < n; i++) {
+      action.accept(values[i], weights[i]);
+    }
+  }
+
+  /**
+   * Fills the arrays with the kept items sorted by value and returns the number of items. Sorts
+   * the levels in place (their order doesn't matter otherwise) and merges them from the top down.
+   */
+  private int sortedItems(double[] values, long[] weights) {
+    double[] mergedValues = new double[this.retained];
+    long[] mergedWeights = new long[this.retained];
+    int n = 0;
+    for (int h = this.nrofLevels - 1; h >= 0; h--) {
+      double[] items = this.levels[h];
+      int size = this.sizes[h];
+      Arrays.sort(items, 0, size);
+      long weight = 1L << h;
+      int i = 0;
+      int j = 0;
+      int m = 0;
+      while (i < n || j < size) {
+        if (j == size || (i < n && values[i] <= items[j])) {
+          mergedValues[m] = values[i];
+          mergedWeights[m++] = weights[i++];
+        } else {
+          mergedValues[m] = items[j++];
+          mergedWeights[m++] = weight;
+        }
+      }
+      n = m;
+      System.arraycopy(mergedValues, 0, values, 0, n);
+      System.arraycopy(mergedWeights, 0, weights, 0, n);
+    }
+    return n;
+  }
+
+  /**
+   * Returns an estimate of a quantile: the smallest kept value whose cumulative weight is greater
+   * than <code>q * count</code>. Until the first compaction this is the element at index <code>
+   * (int) (q * count)</code> of the sorted values.
+   *
+   * @param q The quantile (0..1), e.g. 0.5 for the median
+   * @return The estimate or NaN if no values have been added
+   */
+  public double getQuantile(double q) {
+    if (this.count == 0) {
+      return Double.NaN;
+    }
+    if (q <= 0) {
+      return this.min;
+    }
+    if (q >= 1) {
+      return this.max;
+    }
+    double[] values = new double[this.retained];
+    long[] weights = new long[this.retained];
+    int n = sortedItems(values, weights);
+    double target = q * this.count;
+    long cumulative = 0;
+    for (int i = 0; i < n; i++) {
+      cumulative += weights[i];
+      if (cumulative > target) {
+        return values[i];
+      }
+    }
+    return this.max;
+  }
+
+  /**
+   * Returns an estimate of the normalized rank of a value: the fraction of values that are smaller
+   * than or equal to it.
+   *
+   * @param value The value
+   * @return The rank (0..1) or NaN if no values have been added
+   */
+  public double getRank(double value) {
+    if (this.count == 0) {
+      return Double.NaN;
+    }
+    long below = 0;
+    for (int h = 0; h < this.nrofLevels; h++) {
+      for (int i = 0; i < this.sizes[h]; i++) {
+        if (this.levels[h][i] <= value) {
+          below += 1L << h;
+        }
+      }
+    }
+    return (double) below / this.count;
+  }
+
+  /**
+   * Returns the normalized rank error of the quantile and rank estimates: with about 99 %
+   * confidence the true rank of a returned quantile is within this distance of the requested one.
+   * The value is the empirical bound of KLL sketches (2.296 / k<sup>0.9723</sup>), or 0 while the
+   * results are exact.
+   *
+   * @return The rank error (0..1)
+   */
+  public double getRankError() {
+    if (!this.compacted) {
+      return 0;
+    }
+    return 2.296 / Math.pow(this.k, 0.9723);
+  }
+
+  /**
+   * Returns the number of values added
+   *
+   * @return the number of values
+   */
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the number of items kept in the sketch
+   *
+   * @return the number of kept items
+   */
+  public int getRetained() {
+    return this.retained;
+  }
+
+  /**
+   * Returns the smallest value added
+   *
+   * @return the smallest value or NaN if no values have been added
+   */
+  public double getMin() {
+    return this.min;
+  }
+
+  /**
+   * Returns the largest value added
+   *
+   * @return the largest value or NaN if no values have been added
+   */
+  public double getMax() {
+    return this.max;
+  }
+
+  @Override
+  public String toString() {
+    return "QuantileSketch[k="
+        + this.k
+        + ", count="
+        + this.count
+        + ", retained="
+        + this.retained
+        + ", levels="
+        + this.nrofLevels
+        + "]";
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Running count, mean and variance of a stream of values (Welford's algorithm), in constant memory.
+ * Two instances can be merged (Chan et al.), e.g. to combine the statistics of parallel runs.
+ */
+public class RunningStats {
+  private long count;
+  private double mean;
+  /** sum of squared differences from the mean */
+  private double m2;
+
+  /**
+   * Adds a value
+   *
+   * @param value The value
+   */
+  public void add(double value) {
+    this.count++;
+    double delta = value - this.mean;
+    this.mean += delta / this.count;
+    this.m2 += delta * (value - this.mean);
+  }
+
+  /**
+   * Adds the values of another instance to this one. The other instance is not modified.
+   *
+   * @param other The statistics to merge
+   */
+  public void merge(RunningStats other) {
+    if (other.count == 0) {
+      return;
+    }
+    long total = this.count + other.count;
+    double delta = other.mean - this.mean;
+    this.mean += delta * other.count / total;
+    this.m2 += other.m2 + delta * delta * ((double) this.count * other.count / total);
+    this.count = total;
+  }
+
+  /**
+   * Returns the number of values added
+   *
+   * @return the number of values
+   */
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the mean of the values
+   *
+   * @return the mean or NaN if no values have been added
+   */
+  public double getMean() {
+    return this.count > 0 ? this.mean : Double.NaN;
+  }
+
+  /**
+   * Returns the (sample) variance of the values
+   *
+   * @return the variance or NaN if less than two values have been added
+   */
+  public double getVariance() {
+    return this.count > 1 ? this.m2 / (this.count - 1) : Double.NaN;
+  }
+}
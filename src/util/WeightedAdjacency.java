@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Weighted outgoing edges of one graph vertex, kept in primitive arrays sorted by the target's
+ * integer id (e.g., host address). Adding weight to an existing edge is a binary search and a new
+ * edge is inserted in place, so the adjacency can be updated incrementally as contacts happen.
+ */
+public class WeightedAdjacency {
+  private static final int MIN_CAPACITY = 4;
+
+  private int[] targets;
+  private double[] weights;
+  private int size;
+
+  /** Creates an adjacency without edges */
+  public WeightedAdjacency() {
+    this.targets = new int[MIN_CAPACITY];
+    this.weights = new double[MIN_CAPACITY];
+  }
+
+  /**
+   * Adds weight to the edge to a target. Creates the edge with the given weight if there is no edge
+   * to the target yet.
+   *
+   * @param target Id of the target vertex
+   * @param weight The weight to add
+   */
+  public void add(int target, double weight) {
+    int i = Arrays.binarySearch(this.targets, 0, this.size, target);
+    if (i >= 0) {
+      this.weights[i] += weight;
+      return;
+    }
+
+    i = -i - 1;
+    if (this.size == this.targets.length) {
+      this.targets = Arrays.copyOf(this.targets, this.size * 2);
+      this.weights = Arrays.copyOf(this.weights, this.size * 2);
+    }
+    System.arraycopy(this.targets, i, this.targets, i + 1, this.size - i);
+    System.arraycopy(this.weights, i, this.weights, i + 1, this.size - i);
+    this.targets[i] = target;
+    this.weights[i] = weight;
+    this.size++;
+  }
+
+  /**
+   * Returns the weight of the edge to a target
+   *
+   * @param target Id of the target vertex
+   * @return The weight or 0 if there is no edge to the target
+   */
+  public double getWeight(int target) {
+    int i = Arrays.binarySearch(this.targets, 0, this.size, target);
+    return i >= 0 ? this.weights[i] : 0;
+  }
+
+  /**
+   * Returns the number of edges
+   *
+   * @return the number of edges
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the target of the i:th edge in ascending target order
+   *
+   * @param i Index of the edge
+   * @return Id of the target vertex
+   */
+  public int targetAt(int i) {
+    return this.targets[i];
+  }
+
+  /**
+   * Returns the weight of the i:th edge in ascending target order
+   *
+   * @param i Index of the edge
+   * @return The weight
+   */
+  public double weightAt(int i) {
+    return this.weights[i];
+  }
+
+  /**
+   * Weighted Jaccard similarity of two vertices' outgoing edges. Gives the same result as {@link
+   * WeightedJaccardSimilarity#predict(Object, Object)} for distinct vertices of a graph with these
+   * edges: the common targets are weighted with the smaller of the two weights, the rest with their
+   * own weight. Walks the sorted arrays in one merge pass without allocating.
+   *
+   * @param u Outgoing edges of the first vertex
+   * @param v Outgoing edges of the second vertex
+   * @return The similarity or 0 if neither vertex has edges
+   */
+  public static double jaccard(WeightedAdjacency u, WeightedAdjacency v) {
+    double inter = 0.0;
+    double union = 0.0;
+    int i = 0;
+    int j = 0;
+    while (i < u.size && j < v.size) {
+      int a = u.targets[i];
+      int b = v.targets[j];
+      if (a == b) {
+        double w = Math.min(u.weights[i++], v.weights[j++]);
+        inter += w;
+        union += w;
+      } else if (a < b) {
+        union += u.weights[i++];
+      } else {
+        union += v.weights[j++];
+      }
+    }
+    while (i < u.size) {
+      union += u.weights[i++];
+    }
+    while (j < v.size) {
+      union += v.weights[j++];
+    }
+
+    if (u.size == 0 && v.size == 0) {
+      return 0.0;
+    }
+    return inter / union;
+  }
+}